@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2018 IBM Corporation and others.
+ * Copyright (c) 2000, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -25,6 +25,7 @@ import java.net.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.security.*;
 import java.util.*;
 import java.util.zip.ZipEntry;
@@ -263,6 +264,14 @@ public class Main {
 	private static final String KEY_CONFIGINI_TIMESTAMP = "configIniTimestamp"; //$NON-NLS-1$
 	private static final String PROP_IGNORE_USER_CONFIGURATION = "eclipse.ignoreUserConfiguration"; //$NON-NLS-1$
 
+	//for remembering the results of searching directories across launches
+	private static final String PROP_LAUNCH_CACHE = "eclipse.launchCache"; //$NON-NLS-1$
+	private static final String LAUNCH_CACHE_FILE = ".launchCache"; //$NON-NLS-1$
+	// directories modified this recently may still change within the granularity of their timestamp
+	private static final long LAUNCH_CACHE_MIN_AGE = 2000;
+	private Properties launchCache = null;
+	private boolean launchCacheChanged = false;
+
 	/**
 	 * A structured form for a version identifier.
 	 * 
@@ -590,6 +599,8 @@ public class Main {
 		// the location of the boot plugin we are going to use
 		handleSplash(bootPath);
 
+		saveLaunchCache();
+
 		beforeFwkInvocation();
 		invokeFramework(passThruArgs, bootPath);
 	}
@@ -1007,6 +1018,22 @@ public class Main {
 	protected String searchFor(final String target, String start) {
 		File root = resolveFile(new File(start));
 
+		// check if the result is known from a previous launch and the directory has not changed since
+		Properties cache = getLaunchCache();
+		String cacheKey = target + '@' + root.getAbsolutePath();
+		long rootModified = cache == null ? 0 : root.lastModified();
+		if (cache != null) {
+			String cached = cache.getProperty(cacheKey);
+			int separator = cached == null ? -1 : cached.indexOf(',');
+			if (separator > 0 && cached.substring(0, separator).equals(Long.toString(rootModified))) {
+				String cachedResult = cached.substring(separator + 1);
+				if (cachedResult.length() == 0)
+					return null;
+				if (new File(cachedResult).exists())
+					return cachedResult;
+			}
+		}
+
 		// Note that File.list only gives you file names not the complete path from start
 		String[] candidates = root.list();
 		if (candidates == null)
@@ -1020,10 +1047,86 @@ public class Main {
 		}
 		String[] names = matches.toArray(new String[matches.size()]);
 		int result = findMax(target, names);
-		if (result == -1)
+		String found = null;
+		if (result != -1) {
+			File candidate = new File(start, names[result]);
+			found = candidate.getAbsolutePath().replace(File.separatorChar, '/') + (candidate.isDirectory() ? "/" : ""); //$NON-NLS-1$//$NON-NLS-2$
+		}
+		if (cache != null && System.currentTimeMillis() - rootModified > LAUNCH_CACHE_MIN_AGE) {
+			cache.setProperty(cacheKey, rootModified + "," + (found == null ? "" : found)); //$NON-NLS-1$ //$NON-NLS-2$
+			launchCacheChanged = true;
+		}
+		return found;
+	}
+
+	/*
+	 * Returns the results of directory searches remembered from previous launches or
+	 * null if the launch cache is not enabled.  The results are kept in the equinox
+	 * launcher sub-dir in the config area along with the timestamp of the directory searched.
+	 */
+	private Properties getLaunchCache() {
+		if (launchCache != null)
+			return launchCache;
+		if (!Boolean.parseBoolean(System.getProperty(PROP_LAUNCH_CACHE)))
+			return null;
+		File cacheFile = getLaunchCacheFile();
+		if (cacheFile == null)
+			return null;
+		launchCache = new Properties();
+		boolean clean = false;
+		if (commands != null) {
+			for (String command : commands) {
+				if (CLEAN.equalsIgnoreCase(command)) {
+					clean = true;
+					break;
+				}
+			}
+		}
+		if (!clean && cacheFile.isFile()) {
+			try (InputStream is = new FileInputStream(cacheFile)) {
+				launchCache.load(is);
+			} catch (IOException | IllegalArgumentException e) {
+				// start over with an empty cache
+				launchCache.clear();
+				if (debug)
+					System.out.println("Could not read the launch cache " + cacheFile + ": " + e); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+		return launchCache;
+	}
+
+	private File getLaunchCacheFile() {
+		URL configURL = getConfigurationLocation();
+		if (configURL == null || !"file".equals(configURL.getProtocol())) //$NON-NLS-1$
 			return null;
-		File candidate = new File(start, names[result]);
-		return candidate.getAbsolutePath().replace(File.separatorChar, '/') + (candidate.isDirectory() ? "/" : ""); //$NON-NLS-1$//$NON-NLS-2$
+		return new File(new File(configURL.getPath(), PLUGIN_ID), LAUNCH_CACHE_FILE);
+	}
+
+	private void saveLaunchCache() {
+		if (launchCache == null || !launchCacheChanged)
+			return;
+		if (Boolean.parseBoolean(System.getProperty(PROP_CONFIG_AREA + READ_ONLY_AREA_SUFFIX)))
+			return;
+		File cacheFile = getLaunchCacheFile();
+		if (cacheFile == null)
+			return;
+		try {
+			Path cacheDir = Files.createDirectories(cacheFile.getParentFile().toPath());
+			// write to a temporary file first so that concurrent launches never read a partial cache
+			Path tempFile = Files.createTempFile(cacheDir, LAUNCH_CACHE_FILE, null);
+			try {
+				try (OutputStream os = Files.newOutputStream(tempFile)) {
+					launchCache.store(os, null);
+				}
+				Files.move(tempFile, cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(tempFile);
+			}
+			launchCacheChanged = false;
+		} catch (IOException e) {
+			if (debug)
+				System.out.println("Could not save the launch cache " + cacheFile + ": " + e); //$NON-NLS-1$ //$NON-NLS-2$
+		}
 	}
 
 	private boolean isMatchingCandidate(String target, String candidate, File root) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2016 IBM Corporation and others.
+ * Copyright (c) 2004, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials are made available under the
  * terms of the Eclipse Public License 2.0 which accompanies this distribution,
@@ -20,11 +20,17 @@ import org.eclipse.osgi.service.resolver.ExportPackageDescription;
  * The GroupingChecker checks the 'uses' directive on exported packages for consistency
  */
 public class GroupingChecker {
+	// the maximum number of package roots kept for resolved bundles between resolve operations
+	static final int MAX_RETAINED_ROOTS = 50000;
 	final PackageRoots nullPackageRoots = new PackageRoots(null);
 	// a mapping of bundles to their package roots; keyed by
 	// ResolverBundle -> HashMap of packages; keyed by
 	// package name -> PackageRoots
 	private Map<ResolverBundle, Map<String, PackageRoots>> bundles = new HashMap<>();
+	// the bundles whose package roots have been fully populated for resolving dynamic imports
+	private Set<ResolverBundle> populated = new HashSet<>();
+	// true if a dynamic import has been wired since the package roots were cleared
+	private boolean dynamicImportsWired = false;
 
 	/*
 	 * This method fully populates a bundles package roots for the purpose of resolving
@@ -32,7 +38,7 @@ public class GroupingChecker {
 	 * roots to do proper uses constraint verification on a dynamic import supplier.
 	 */
 	public void populateRoots(ResolverBundle bundle) {
-		if (bundles.containsKey(bundle))
+		if (!populated.add(bundle))
 			// only do the full populate the first time (bug 337272)
 			return;
 		// process all requires
@@ -59,6 +65,7 @@ public class GroupingChecker {
 	 * This is done after wiring a package from a dynamic import (bug 337272)
 	 */
 	public void populateRoots(ResolverBundle importingBundle, ResolverExport export) {
+		dynamicImportsWired = true;
 		Map<String, PackageRoots> packageRoots = bundles.get(importingBundle);
 		if (packageRoots != null)
 			packageRoots.remove(export.getName());
@@ -274,10 +281,40 @@ public class GroupingChecker {
 
 	public void clear() {
 		bundles.clear();
+		populated.clear();
+		dynamicImportsWired = false;
 	}
 
 	public void clear(ResolverBundle rb) {
 		bundles.remove(rb);
+		populated.remove(rb);
+	}
+
+	/*
+	 * Clears the package roots of the bundles which are not resolved in the state.
+	 * The package roots of a resolved bundle only depend on the wires of other resolved
+	 * bundles; they are kept for the next resolve operation unless a dynamic import has
+	 * been wired since they were populated.  The resolver must clear all the package roots
+	 * when a resolved bundle is unresolved.  All the package roots are cleared if more than
+	 * MAX_RETAINED_ROOTS would be kept.
+	 */
+	public void clearUnresolved() {
+		if (dynamicImportsWired) {
+			clear();
+			return;
+		}
+		int retained = 0;
+		for (Iterator<Map.Entry<ResolverBundle, Map<String, PackageRoots>>> iBundles = bundles.entrySet().iterator(); iBundles.hasNext();) {
+			Map.Entry<ResolverBundle, Map<String, PackageRoots>> entry = iBundles.next();
+			if (!entry.getKey().getBundleDescription().isResolved()) {
+				iBundles.remove();
+				populated.remove(entry.getKey());
+			} else {
+				retained += entry.getValue().size();
+			}
+		}
+		if (retained > MAX_RETAINED_ROOTS)
+			clear();
 	}
 
 	class PackageRoots {
@@ -410,6 +410,9 @@ public class ResolverImpl implements Resolver {
 		// we are left with only candidates that satisfy the host constraint
 		for (ResolverBundle host : candidates) {
 			foundMatch = true;
+			if (host.getBundleDescription().isResolved())
+				// the fragment may add packages to the package roots of a resolved host
+				groupingChecker.clear();
 			host.attachFragment(bundle, true);
 		}
 		if (!foundMatch)
@@ -914,7 +917,7 @@ public class ResolverImpl implements Resolver {
 		// first try out the initial selections
 		List<ResolverConstraint> initialConflicts = getConflicts(bundles, packageConstraints, bundleConstraints, multiRequirementWithMultiSuppliers);
 		if (initialConflicts == null || "tryFirst".equals(usesMode) || usesCalculationTimeout) { //$NON-NLS-1$
-			groupingChecker.clear();
+			groupingChecker.clearUnresolved();
 			// the first combination have no conflicts or 
 			// we only are trying the first combination or
 			// we have timed out the calculation; return without iterating over all combinations
@@ -938,7 +941,7 @@ public class ResolverImpl implements Resolver {
 			}
 		}
 		if (!multiRequirementWithMultiSuppliers.isEmpty()) {
-			groupingChecker.clear();
+			groupingChecker.clearUnresolved();
 			for (GenericConstraint multiConstraint : multiRequirementWithMultiSuppliers) {
 				VersionSupplier[] matchingSuppliers = multiConstraint.getMatchingCapabilities();
 				if (matchingSuppliers != null) {
@@ -950,8 +953,8 @@ public class ResolverImpl implements Resolver {
 				}
 			}
 		}
-		// do not need to keep uses data in memory
-		groupingChecker.clear();
+		// only keep the uses data of the bundles resolved before this resolve operation
+		groupingChecker.clearUnresolved();
 		return conflicts;
 	}
 
@@ -1074,7 +1077,8 @@ public class ResolverImpl implements Resolver {
 	}
 
 	private List<ResolverConstraint> getConflicts(ResolverBundle[] bundles, Set<String> packageConstraints, Set<String> bundleConstraints, Collection<GenericConstraint> multiRequirementWithMultiSuppliers) {
-		groupingChecker.clear();
+		// the package roots of the bundles being resolved depend on the current combination of suppliers
+		groupingChecker.clearUnresolved();
 		List<ResolverConstraint> conflicts = null;
 		for (ResolverBundle bundle : bundles) {
 			conflicts = addConflicts(bundle, packageConstraints, bundleConstraints, multiRequirementWithMultiSuppliers, conflicts);
@@ -1786,6 +1790,9 @@ public class ResolverImpl implements Resolver {
 		// Note that when in dev mode we only want to force the fragment detach if asked to;
 		// this would be done only when forcing a dependency chain to unresolve from unresolveBundle method
 		if (removed || !keepFragsAttached) {
+			if (bundle.isFragment())
+				// the fragment may have added packages to the package roots of a resolved host
+				groupingChecker.clear();
 			// Force the initialization of the bundle, its exports and its capabilities.  This is needed to force proper attachment of fragments.
 			resolverExports.remove(bundle.getExportPackages());
 			removeGenerics(bundle.getGenericCapabilities());
@@ -2200,6 +2207,8 @@ public class ResolverImpl implements Resolver {
 			if (helper != null)
 				helper.giveExports(null);
 		}
+		// the package roots of other resolved bundles may be rooted in the bundle
+		groupingChecker.clear();
 		// if not removed then add to the list of unresolvedBundles,
 		// passing false for devmode because we need all fragments detached
 		setBundleUnresolved(bundle, removed, false);
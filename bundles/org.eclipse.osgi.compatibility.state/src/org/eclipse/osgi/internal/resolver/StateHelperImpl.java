@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2016 IBM Corporation and others.
+ * Copyright (c) 2004, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -405,8 +405,15 @@ public final class StateHelperImpl implements StateHelper {
 	public ExportPackageDescription[] getVisiblePackages(BundleDescription bundle, int options) {
 		StateImpl state = (StateImpl) bundle.getContainingState();
 		boolean strict = false;
-		if (state != null)
+		Map<BundleDescription, ExportPackageDescription[]> cache = null;
+		if (state != null) {
 			strict = state.inStrictMode();
+			// tooling asks for the visible packages of every bundle; the result only changes when the state changes
+			cache = state.getVisiblePackagesCache((options << 1) | (strict ? 1 : 0));
+			ExportPackageDescription[] cached = cache == null ? null : cache.get(bundle);
+			if (cached != null)
+				return cached.clone();
+		}
 		BundleDescription host = (BundleDescription) (bundle.getHost() == null ? bundle : bundle.getHost().getSupplier());
 		List<ExportPackageDescription> orderedPkgList = new ArrayList<>(); // list of all ExportPackageDescriptions that are visible (ArrayList is used to keep order)
 		Set<ExportPackageDescription> pkgSet = new HashSet<>();
@@ -444,7 +451,10 @@ public final class StateHelperImpl implements StateHelper {
 			if (bundleSupplier != null)
 				getPackages(bundleSupplier, bundle.getSymbolicName(), importList, orderedPkgList, pkgSet, visited, strict, null, options);
 		}
-		return orderedPkgList.toArray(new ExportPackageDescription[orderedPkgList.size()]);
+		ExportPackageDescription[] result = orderedPkgList.toArray(new ExportPackageDescription[orderedPkgList.size()]);
+		if (cache != null)
+			cache.put(bundle, result.clone());
+		return result;
 	}
 
 	private void getPackages(BundleDescription requiredBundle, String symbolicName, Set<String> importList, List<ExportPackageDescription> orderedPkgList, Set<ExportPackageDescription> pkgSet, Set<BundleDescription> visited, boolean strict, Set<String> pkgNames, int options) {
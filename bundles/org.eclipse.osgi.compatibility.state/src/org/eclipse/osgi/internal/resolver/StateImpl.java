@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2018 IBM Corporation and others.
+ * Copyright (c) 2003, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -31,6 +31,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.eclipse.osgi.framework.util.CaseInsensitiveDictionaryMap;
 import org.eclipse.osgi.internal.framework.EquinoxContainer;
 import org.eclipse.osgi.internal.framework.FilterImpl;
@@ -176,6 +177,22 @@ public abstract class StateImpl implements State {
 	private boolean developmentMode = false;
 
 	final Object monitor = new Object();
+	/*
+	 * The views of the state used by read queries which do not hold the monitor.  They are
+	 * only changed while holding the monitor.  The bundle maps are updated one bundle at a
+	 * time as bundles are added and removed.  The arrays and the resolution view are discarded
+	 * when they change and are built again by the next query which needs them.  While a resolve
+	 * is in progress the resolution view, the time stamp and the resolved flag are left as they
+	 * were before the resolve began; they are published again when it is done.
+	 */
+	private final Map<Long, BundleDescription> publishedBundlesById = new ConcurrentHashMap<>();
+	private final Map<String, BundleDescription[]> publishedBundlesByName = new ConcurrentHashMap<>();
+	private volatile BundleDescription[] publishedBundles;
+	private volatile ResolutionView publishedResolution;
+	private volatile long publishedTimeStamp = timeStamp;
+	private volatile boolean publishedResolved = resolved;
+	// true while a resolve operation is in progress
+	private volatile boolean resolveInProgress = false;
 
 	// to prevent extra-package instantiation 
 	protected StateImpl() {
@@ -233,7 +250,9 @@ public abstract class StateImpl implements State {
 			if (bundleDescriptions.remove(existing.getBundleId()) == null)
 				return false;
 			removeBundleNameCacheEntry(existing);
+			publishBundleRemoved(existing);
 			resolvedBundles.remove(existing.getBundleId());
+			resolutionChanging(null);
 			List<DisabledInfo> infos = disabledBundles.remove(existing);
 			if (infos != null) {
 				List<DisabledInfo> newInfos = new ArrayList<>(infos.size());
@@ -287,8 +306,10 @@ public abstract class StateImpl implements State {
 			if (toRemove == null || bundleDescriptions.remove(toRemove.getBundleId()) == null)
 				return false;
 			resolvedBundles.remove(toRemove.getBundleId());
+			resolutionChanging(null);
 			disabledBundles.remove(toRemove);
 			removeBundleNameCacheEntry(toRemove);
+			publishBundleRemoved(toRemove);
 			resolved = false;
 			getDelta().recordBundleRemoved((BundleDescriptionImpl) toRemove);
 			((BundleDescriptionImpl) toRemove).setStateBit(BundleDescriptionImpl.REMOVAL_PENDING, true);
@@ -331,9 +352,13 @@ public abstract class StateImpl implements State {
 	}
 
 	public BundleDescription[] getBundles(String symbolicName) {
+		if (Constants.SYSTEM_BUNDLE_SYMBOLICNAME.equals(symbolicName))
+			symbolicName = getSystemBundle();
+		if (symbolicName != null && !Thread.holdsLock(this.monitor)) {
+			BundleDescription[] named = publishedBundlesByName.get(symbolicName);
+			return named == null ? new BundleDescription[0] : named.clone();
+		}
 		synchronized (this.monitor) {
-			if (Constants.SYSTEM_BUNDLE_SYMBOLICNAME.equals(symbolicName))
-				symbolicName = getSystemBundle();
 			final Set<BundleDescription> bundles = bundleNameCache.get(symbolicName);
 			if (bundles == null) {
 				return new BundleDescription[0];
@@ -343,12 +368,18 @@ public abstract class StateImpl implements State {
 	}
 
 	public BundleDescription[] getBundles() {
+		if (!Thread.holdsLock(this.monitor))
+			return getPublishedBundles().clone();
 		synchronized (this.monitor) {
 			return bundleDescriptions.values().toArray(new BundleDescription[0]);
 		}
 	}
 
 	public BundleDescription getBundle(long id) {
+		if (!Thread.holdsLock(this.monitor)) {
+			BundleDescription result = publishedBundlesById.get(id);
+			return result != null ? result : getResolutionView().getRemovalPending(id);
+		}
 		synchronized (this.monitor) {
 			BundleDescription result = bundleDescriptions.get(id);
 			if (result != null)
@@ -364,50 +395,66 @@ public abstract class StateImpl implements State {
 	}
 
 	public BundleDescription getBundle(String name, Version version) {
+		if (name != null && !Thread.holdsLock(this.monitor)) {
+			// the resolution of the bundles may be changed by a resolve in progress; use the published one
+			return selectBundle(getBundles(name), version, getResolutionView());
+		}
 		synchronized (this.monitor) {
-			BundleDescription[] allBundles = getBundles(name);
-			if (allBundles.length == 1)
-				return version == null || allBundles[0].getVersion().equals(version) ? allBundles[0] : null;
-			if (allBundles.length == 0)
-				return null;
-			BundleDescription unresolvedFound = null;
-			BundleDescription resolvedFound = null;
-			for (BundleDescription current : allBundles) {
-				BundleDescription base;
-
-				if (current.isResolved())
-					base = resolvedFound;
-				else
-					base = unresolvedFound;
-
-				if (version == null || current.getVersion().equals(version)) {
-					if (base != null && (base.getVersion().compareTo(current.getVersion()) <= 0 || base.getBundleId() > current.getBundleId())) {
-						if (base == resolvedFound)
-							resolvedFound = current;
-						else
-							unresolvedFound = current;
-					} else {
-						if (current.isResolved())
-							resolvedFound = current;
-						else
-							unresolvedFound = current;
-					}
+			return selectBundle(getBundles(name), version, null);
+		}
+	}
 
+	/*
+	 * Selects the bundle to return from getBundle(String, Version).  If a resolution view is
+	 * specified then it decides which bundles are resolved, otherwise the bundles do.
+	 */
+	private static BundleDescription selectBundle(BundleDescription[] allBundles, Version version, ResolutionView resolution) {
+		if (allBundles.length == 1)
+			return version == null || allBundles[0].getVersion().equals(version) ? allBundles[0] : null;
+		if (allBundles.length == 0)
+			return null;
+		BundleDescription unresolvedFound = null;
+		BundleDescription resolvedFound = null;
+		for (BundleDescription current : allBundles) {
+			BundleDescription base;
+			boolean isResolved = resolution == null ? current.isResolved() : resolution.isResolved(current);
+
+			if (isResolved)
+				base = resolvedFound;
+			else
+				base = unresolvedFound;
+
+			if (version == null || current.getVersion().equals(version)) {
+				if (base != null && (base.getVersion().compareTo(current.getVersion()) <= 0 || base.getBundleId() > current.getBundleId())) {
+					if (base == resolvedFound)
+						resolvedFound = current;
+					else
+						unresolvedFound = current;
+				} else {
+					if (isResolved)
+						resolvedFound = current;
+					else
+						unresolvedFound = current;
 				}
+
 			}
-			if (resolvedFound != null)
-				return resolvedFound;
-			return unresolvedFound;
 		}
+		if (resolvedFound != null)
+			return resolvedFound;
+		return unresolvedFound;
 	}
 
 	public long getTimeStamp() {
+		if (!Thread.holdsLock(this.monitor))
+			return publishedTimeStamp;
 		synchronized (this.monitor) {
 			return timeStamp;
 		}
 	}
 
 	public boolean isResolved() {
+		if (!Thread.holdsLock(this.monitor))
+			return publishedResolved || publishedBundlesById.isEmpty();
 		synchronized (this.monitor) {
 			return resolved || isEmpty();
 		}
@@ -415,6 +462,7 @@ public abstract class StateImpl implements State {
 
 	public void resolveConstraint(VersionConstraint constraint, BaseDescription supplier) {
 		((VersionConstraintImpl) constraint).setSupplier(supplier);
+		visiblePackagesChanged();
 	}
 
 	/**
@@ -436,6 +484,7 @@ public abstract class StateImpl implements State {
 			if (!resolving)
 				throw new IllegalStateException(); // TODO need error message here!
 			BundleDescriptionImpl modifiable = (BundleDescriptionImpl) bundle;
+			resolutionChanging(modifiable);
 			// must record the change before setting the resolve state to 
 			// accurately record if a change has happened.
 			getDelta().recordBundleResolved(modifiable, status);
@@ -465,6 +514,7 @@ public abstract class StateImpl implements State {
 				throw new IllegalStateException(); // TODO need error message here!
 			getDelta().recordBundleRemovalComplete((BundleDescriptionImpl) bundle);
 			removalPendings.remove(bundle);
+			resolutionChanging(null);
 		}
 	}
 
@@ -541,6 +591,10 @@ public abstract class StateImpl implements State {
 				throw new IllegalStateException("no resolver set"); //$NON-NLS-1$
 			if (resolving == true)
 				throw new IllegalStateException("An attempt to start a nested resolve process has been detected."); //$NON-NLS-1$
+			// queries made while resolving use the state as it was before the resolve began
+			getPublishedBundles();
+			publishResolution();
+			resolveInProgress = true;
 			try {
 				resolving = true;
 				if (!incremental) {
@@ -610,6 +664,9 @@ public abstract class StateImpl implements State {
 				return savedChanges;
 			} finally {
 				resolving = false;
+				resolveInProgress = false;
+				publishedResolution = null;
+				publishState();
 			}
 		}
 	}
@@ -705,12 +762,16 @@ public abstract class StateImpl implements State {
 	}
 
 	public BundleDescription[] getResolvedBundles() {
+		if (!Thread.holdsLock(this.monitor))
+			return getResolutionView().resolvedBundles.clone();
 		synchronized (this.monitor) {
 			return resolvedBundles.values().toArray(new BundleDescription[0]);
 		}
 	}
 
 	public boolean isEmpty() {
+		if (!Thread.holdsLock(this.monitor))
+			return publishedBundlesById.isEmpty();
 		synchronized (this.monitor) {
 			return bundleDescriptions.isEmpty();
 		}
@@ -719,6 +780,7 @@ public abstract class StateImpl implements State {
 	void setResolved(boolean resolved) {
 		synchronized (this.monitor) {
 			this.resolved = resolved;
+			publishState();
 		}
 	}
 
@@ -737,6 +799,7 @@ public abstract class StateImpl implements State {
 				if (description.getBundleId() > getHighestBundleId())
 					highestBundleId = description.getBundleId();
 				addBundleNameCacheEntry(description);
+				publishBundleAdded(description);
 				return true;
 			}
 			return false;
@@ -746,11 +809,16 @@ public abstract class StateImpl implements State {
 	void addResolvedBundle(BundleDescriptionImpl resolvedBundle) {
 		synchronized (this.monitor) {
 			add(resolvedBundle, resolvedBundles, true);
+			resolutionChanging(null);
 		}
 	}
 
 	public ExportPackageDescription[] getExportedPackages() {
-		fullyLoad();
+		// a resolve in progress has loaded the lazy data already
+		if (!resolveInProgress)
+			fullyLoad();
+		if (!Thread.holdsLock(this.monitor))
+			return getResolutionView().getExportedPackages();
 		synchronized (this.monitor) {
 			List<ExportPackageDescription> allExportedPackages = new ArrayList<>();
 			for (Iterator<BundleDescription> iter = resolvedBundles.values().iterator(); iter.hasNext();) {
@@ -796,6 +864,7 @@ public abstract class StateImpl implements State {
 	public void setTimeStamp(long newTimeStamp) {
 		synchronized (this.monitor) {
 			timeStamp = newTimeStamp;
+			publishState();
 		}
 	}
 
@@ -816,6 +885,13 @@ public abstract class StateImpl implements State {
 	}
 
 	public BundleDescription getBundleByLocation(String location) {
+		if (!Thread.holdsLock(this.monitor)) {
+			for (BundleDescription bundle : getPublishedBundles()) {
+				if (location.equals(bundle.getLocation()))
+					return bundle;
+			}
+			return null;
+		}
 		synchronized (this.monitor) {
 			for (Iterator<BundleDescription> i = bundleDescriptions.values().iterator(); i.hasNext();) {
 				BundleDescription current = i.next();
@@ -1083,8 +1159,10 @@ public abstract class StateImpl implements State {
 
 	private void addRemovalPending(BundleDescription removed) {
 		synchronized (this.monitor) {
-			if (!removalPendings.contains(removed))
+			if (!removalPendings.contains(removed)) {
 				removalPendings.addFirst(removed);
+				resolutionChanging(null);
+			}
 		}
 	}
 
@@ -1153,6 +1231,7 @@ public abstract class StateImpl implements State {
 					importer.setDynamicStamp(requestedPackage, null); // remove any cached timestamp
 					// need to add the result to the list of resolved imports
 					importer.addDynamicResolvedImport(result);
+					visiblePackagesChanged();
 				}
 				setDynamicCacheChanged(true);
 				return result;
@@ -1169,6 +1248,7 @@ public abstract class StateImpl implements State {
 		synchronized (this.monitor) {
 			((BundleDescriptionImpl) importingBundle).addDynamicImportPackages(dynamicImports);
 			setDynamicCacheChanged(true);
+			visiblePackagesChanged();
 		}
 	}
 
@@ -1409,4 +1489,187 @@ public abstract class StateImpl implements State {
 			}
 		}
 	}
+
+	// must be called while holding the monitor after the bundle has been added to the name cache
+	private void publishBundleAdded(BundleDescription description) {
+		publishedBundlesById.put(description.getBundleId(), description);
+		publishBundleName(description.getSymbolicName());
+		publishedBundles = null;
+	}
+
+	// must be called while holding the monitor after the bundle has been removed from the name cache
+	private void publishBundleRemoved(BundleDescription description) {
+		publishedBundlesById.remove(description.getBundleId());
+		publishBundleName(description.getSymbolicName());
+		publishedBundles = null;
+	}
+
+	private void publishBundleName(String symbolicName) {
+		// bundles without a symbolic name are only found by queries which hold the monitor
+		if (symbolicName == null)
+			return;
+		Set<BundleDescription> named = bundleNameCache.get(symbolicName);
+		if (named == null)
+			publishedBundlesByName.remove(symbolicName);
+		else
+			publishedBundlesByName.put(symbolicName, named.toArray(new BundleDescription[named.size()]));
+	}
+
+	private BundleDescription[] getPublishedBundles() {
+		BundleDescription[] current = publishedBundles;
+		if (current != null)
+			return current;
+		synchronized (this.monitor) {
+			current = publishedBundles;
+			if (current == null) {
+				current = bundleDescriptions.values().toArray(new BundleDescription[bundleDescriptions.size()]);
+				publishedBundles = current;
+			}
+			return current;
+		}
+	}
+
+	/*
+	 * Must be called while holding the monitor before the resolution of the state is changed.
+	 * Outside of a resolve the published resolution view is discarded.  While a resolve is in
+	 * progress the view is kept, but it must save the exports of a bundle before the resolver
+	 * changes them.
+	 */
+	private void resolutionChanging(BundleDescription bundle) {
+		ResolutionView current = publishedResolution;
+		if (current == null)
+			return;
+		if (!resolveInProgress)
+			publishedResolution = null;
+		else if (bundle != null)
+			current.bundleChanging(bundle);
+	}
+
+	// must be called while holding the monitor
+	private void publishState() {
+		if (!resolveInProgress) {
+			publishedTimeStamp = timeStamp;
+			publishedResolved = resolved;
+		}
+	}
+
+	private ResolutionView getResolutionView() {
+		ResolutionView current = publishedResolution;
+		if (current != null)
+			return current;
+		synchronized (this.monitor) {
+			return publishResolution();
+		}
+	}
+
+	// must be called while holding the monitor
+	private ResolutionView publishResolution() {
+		ResolutionView current = publishedResolution;
+		if (current == null) {
+			current = new ResolutionView(this);
+			publishedResolution = current;
+		}
+		return current;
+	}
+
+	/*
+	 * Returns the packages visible to bundles computed by the state helper with the specified
+	 * options, or null if they cannot be cached.  The cache belongs to the published resolution
+	 * view, so it is discarded with the view when the resolution of the state changes.  Nothing
+	 * is cached while a resolve is in progress because the resolver is changing the wiring the
+	 * visible packages are computed from.  Results stored by a computation which overlaps the
+	 * start of a resolve are discarded with the view when the resolve is done.
+	 */
+	Map<BundleDescription, ExportPackageDescription[]> getVisiblePackagesCache(int options) {
+		if (resolveInProgress || Thread.holdsLock(this.monitor))
+			return null;
+		ResolutionView current = getResolutionView();
+		// check again in case a resolve started before the view was returned
+		return resolveInProgress ? null : current.getVisiblePackages(options);
+	}
+
+	// a change to the wiring which does not change the resolution view
+	private void visiblePackagesChanged() {
+		ResolutionView current = publishedResolution;
+		if (current != null)
+			current.clearVisiblePackages();
+	}
+
+	/**
+	 * An immutable view of the resolved and removal pending bundles of a state.
+	 * The bundle descriptions themselves are shared with the state.
+	 */
+	private static final class ResolutionView {
+		final BundleDescription[] resolvedBundles;
+		final BundleDescription[] removalPendings;
+		private final Map<Long, BundleDescription> resolvedById;
+		// the exports of the bundles changed by a resolve in progress as they were before the change; guarded by this
+		private Map<BundleDescription, ExportPackageDescription[]> previousExports;
+		// computed on first use since it needs the lazy data of the bundles; guarded by this
+		private ExportPackageDescription[] exportedPackages;
+		// the packages visible to each bundle keyed by the options used to compute them; guarded by this
+		private Map<Integer, Map<BundleDescription, ExportPackageDescription[]>> visiblePackages;
+
+		ResolutionView(StateImpl state) {
+			this.resolvedBundles = state.resolvedBundles.values().toArray(new BundleDescription[state.resolvedBundles.size()]);
+			this.removalPendings = state.removalPendings.toArray(new BundleDescription[state.removalPendings.size()]);
+			this.resolvedById = new HashMap<>(state.resolvedBundles);
+		}
+
+		boolean isResolved(BundleDescription bundle) {
+			return resolvedById.get(bundle.getBundleId()) == bundle;
+		}
+
+		BundleDescription getRemovalPending(long id) {
+			for (BundleDescription removedBundle : removalPendings) {
+				if (removedBundle.getBundleId() == id) // just return the first matching id
+					return removedBundle;
+			}
+			return null;
+		}
+
+		// called by the resolver thread before it changes the exports of the bundle
+		synchronized void bundleChanging(BundleDescription bundle) {
+			if (exportedPackages != null)
+				return;
+			if (previousExports == null)
+				previousExports = new HashMap<>();
+			if (!previousExports.containsKey(bundle))
+				previousExports.put(bundle, bundle.getSelectedExports());
+		}
+
+		synchronized ExportPackageDescription[] getExportedPackages() {
+			if (exportedPackages == null) {
+				List<ExportPackageDescription> allExportedPackages = new ArrayList<>();
+				addSelectedExports(resolvedBundles, allExportedPackages);
+				addSelectedExports(removalPendings, allExportedPackages);
+				exportedPackages = allExportedPackages.toArray(new ExportPackageDescription[allExportedPackages.size()]);
+				previousExports = null;
+			}
+			return exportedPackages.clone();
+		}
+
+		synchronized Map<BundleDescription, ExportPackageDescription[]> getVisiblePackages(int options) {
+			if (visiblePackages == null)
+				visiblePackages = new HashMap<>(4);
+			Map<BundleDescription, ExportPackageDescription[]> result = visiblePackages.get(options);
+			if (result == null) {
+				result = new ConcurrentHashMap<>();
+				visiblePackages.put(options, result);
+			}
+			return result;
+		}
+
+		synchronized void clearVisiblePackages() {
+			visiblePackages = null;
+		}
+
+		private void addSelectedExports(BundleDescription[] bundles, List<ExportPackageDescription> allExportedPackages) {
+			for (BundleDescription bundle : bundles) {
+				ExportPackageDescription[] bundlePackages = previousExports != null && previousExports.containsKey(bundle) ? previousExports.get(bundle) : bundle.getSelectedExports();
+				if (bundlePackages != null)
+					Collections.addAll(allExportedPackages, bundlePackages);
+			}
+		}
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2016 IBM Corporation and others.
+ * Copyright (c) 2003, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -16,6 +16,8 @@ package org.eclipse.osgi.internal.resolver;
 
 import java.io.*;
 import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.AccessController;
 import java.util.*;
 import java.util.Map.Entry;
@@ -35,7 +37,6 @@ final class StateReader {
 	public static final String LAZY_FILE = ".lazy"; //$NON-NLS-1$
 	public static final String UTF_8 = "UTF-8"; //$NON-NLS-1$
 	private static final int BUFFER_SIZE_LAZY = 4096;
-	private static final int BUFFER_SIZE_FULLYREAD = 16384;
 	private static final SecureAction secureAction = AccessController.doPrivileged(SecureAction.createSecureAction());
 
 	// objectTable will be a hashmap of objects. The objects will be things
@@ -50,8 +51,12 @@ final class StateReader {
 	private volatile boolean lazyLoad = true;
 	private volatile int numBundles;
 	private volatile boolean accessedFlag = false;
+	// the strings of the state and lazy files; null when reading a format with inline strings
+	private volatile StringTable strings;
 
-	public static final byte STATE_CACHE_VERSION = 38;
+	public static final byte STATE_CACHE_VERSION = 39;
+	// the previous version of the state file which has the strings inline; still used by the deprecated format
+	public static final byte STATE_CACHE_VERSION_INLINE_STRINGS = 38;
 	public static final byte NULL = 0;
 	public static final byte OBJECT = 1;
 	public static final byte INDEX = 2;
@@ -88,10 +93,16 @@ final class StateReader {
 	}
 
 	private boolean readState(StateImpl state, long expectedTimestamp) throws IOException {
-		DataInputStream in = new DataInputStream(new BufferedInputStream(secureAction.getFileInputStream(stateFile), BUFFER_SIZE_FULLYREAD));
+		byte[] stateData = readFile(stateFile);
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(stateData));
 		DataInputStream lazyIn = null;
 		try {
-			if (in.readByte() != STATE_CACHE_VERSION)
+			byte version = in.readByte();
+			if (version == STATE_CACHE_VERSION)
+				strings = new StringTable(stateData);
+			else if (version == STATE_CACHE_VERSION_INLINE_STRINGS)
+				strings = null;
+			else
 				return false;
 			byte tag = readTag(in);
 			if (tag != OBJECT)
@@ -134,8 +145,8 @@ final class StateReader {
 			state.setResolved(in.readBoolean());
 			if (lazyLoad)
 				return true;
-			//read in from lazy data file; using the fully read buffer size because we are reading the complete file in.
-			lazyIn = new DataInputStream(new BufferedInputStream(secureAction.getFileInputStream(lazyFile), BUFFER_SIZE_FULLYREAD));
+			//read in from lazy data file; the complete file is read in.
+			lazyIn = new DataInputStream(new ByteArrayInputStream(readFile(lazyFile)));
 			for (int i = 0; i < numBundles; i++)
 				readBundleDescriptionLazyData(lazyIn, 0);
 		} finally {
@@ -151,8 +162,9 @@ final class StateReader {
 	}
 
 	private boolean readStateDeprecated(StateImpl state, DataInputStream in, long expectedTimestamp) throws IOException {
-		if (in.readByte() != STATE_CACHE_VERSION)
+		if (in.readByte() != STATE_CACHE_VERSION_INLINE_STRINGS)
 			return false;
+		strings = null;
 		byte tag = readTag(in);
 		if (tag != OBJECT)
 			return false;
@@ -753,6 +765,14 @@ final class StateReader {
 	}
 
 	private String readString(DataInputStream in, boolean intern) throws IOException {
+		StringTable table = strings;
+		if (table != null) {
+			int index = in.readInt();
+			if (index < 0)
+				return null;
+			String string = table.get(index);
+			return intern ? string.intern() : string;
+		}
 		byte type = in.readByte();
 		if (type == NULL)
 			return null;
@@ -779,7 +799,7 @@ final class StateReader {
 
 	private DataInputStream openLazyFile() throws IOException {
 		if (lazyFile == null)
-			throw new IOException(); // TODO error message here!
+			throw new IOException("The lazy data of the state is not available."); //$NON-NLS-1$
 		return new DataInputStream(new BufferedInputStream(secureAction.getFileInputStream(lazyFile), BUFFER_SIZE_LAZY));
 	}
 
@@ -795,15 +815,36 @@ final class StateReader {
 		this.accessedFlag = accessedFlag;
 	}
 
+	private static byte[] readFile(File file) throws IOException {
+		FileInputStream input = secureAction.getFileInputStream(file);
+		try {
+			FileChannel channel = input.getChannel();
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+				throw new IOException("The file is too large: " + file); //$NON-NLS-1$
+			// reading the complete file at once is faster than decoding it from a buffered stream
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0)
+					throw new EOFException(file.toString());
+			}
+			return buffer.array();
+		} finally {
+			input.close();
+		}
+	}
+
 	void fullyLoad() {
 		setAccessedFlag(true);
 		DataInputStream in = null;
 		try {
-			in = openLazyFile();
+			if (lazyFile == null)
+				throw new IOException("The lazy data of the state is not available."); //$NON-NLS-1$
+			in = new DataInputStream(new ByteArrayInputStream(readFile(lazyFile)));
 			for (int i = 0; i < numBundles; i++)
 				readBundleDescriptionLazyData(in, 0);
 		} catch (IOException ioe) {
-			throw new RuntimeException(ioe.getMessage(), ioe); // TODO need error message here
+			throw new RuntimeException("Error reading the lazy data of the state: " + ioe.getMessage(), ioe); //$NON-NLS-1$
 		} finally {
 			if (in != null)
 				try {
@@ -875,4 +916,58 @@ final class StateReader {
 				entries.remove();
 		}
 	}
+
+	/**
+	 * The strings of a state written once at the end of the state file.  The last int of
+	 * the state file is the offset of the table.  A string is only decoded the first time
+	 * it is read, many strings of the lazy data are never read.
+	 */
+	private static final class StringTable {
+		// the raw table is released once all of its strings are decoded
+		private byte[] data;
+		private int[] offsets;
+		private final String[] decoded;
+		private int decodedCount;
+
+		StringTable(byte[] stateData) throws IOException {
+			if (stateData.length < 9)
+				throw new EOFException();
+			int tableOffset = ByteBuffer.wrap(stateData, stateData.length - 4, 4).getInt();
+			if (tableOffset < 1 || tableOffset > stateData.length - 8)
+				throw new IOException("Invalid string table offset: " + tableOffset); //$NON-NLS-1$
+			// copy the table so that the rest of the state file is not kept in memory
+			data = Arrays.copyOfRange(stateData, tableOffset, stateData.length - 4);
+			ByteBuffer table = ByteBuffer.wrap(data);
+			int count = table.getInt();
+			if (count < 0 || count > data.length / 4)
+				throw new IOException("Invalid string table size: " + count); //$NON-NLS-1$
+			offsets = new int[count];
+			for (int i = 0; i < count; i++) {
+				offsets[i] = table.position();
+				int length = table.getInt();
+				if (length < 0 || length > table.remaining())
+					throw new IOException("Invalid string length: " + length); //$NON-NLS-1$
+				table.position(table.position() + length);
+			}
+			decoded = new String[count];
+		}
+
+		synchronized String get(int index) throws IOException {
+			if (index >= decoded.length)
+				throw new IOException("Invalid string index: " + index); //$NON-NLS-1$
+			String result = decoded[index];
+			if (result == null) {
+				int offset = offsets[index];
+				int length = ByteBuffer.wrap(data, offset, 4).getInt();
+				result = ObjectPool.intern(new String(data, offset + 4, length, UTF_8));
+				decoded[index] = result;
+				if (++decodedCount == decoded.length) {
+					data = null;
+					offsets = null;
+				}
+			}
+			return result;
+		}
+
+	}
 }
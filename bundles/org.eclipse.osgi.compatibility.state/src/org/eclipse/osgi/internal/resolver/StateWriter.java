@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2016 IBM Corporation and others.
+ * Copyright (c) 2003, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -34,6 +34,10 @@ class StateWriter {
 
 	private final List<Object> forcedWrite = new ArrayList<>();
 
+	// the strings written to the string table of the state file mapped to their index in the
+	// table; null when the strings are written inline as in the deprecated format
+	private Map<String, Integer> stringTable;
+
 	private int addToObjectTable(Object object) {
 		Integer cur = objectTable.get(object);
 		if (cur != null)
@@ -64,7 +68,8 @@ class StateWriter {
 	}
 
 	private void writeStateDeprecated(StateImpl state, DataOutputStream out) throws IOException {
-		out.write(StateReader.STATE_CACHE_VERSION);
+		// the deprecated format is a single stream which cannot have a string table
+		out.write(StateReader.STATE_CACHE_VERSION_INLINE_STRINGS);
 		if (writePrefix(state, out))
 			return;
 		out.writeLong(state.getTimeStamp());
@@ -104,6 +109,8 @@ class StateWriter {
 			try {
 				BundleDescription[] bundles = state.getBundles();
 				StateHelperImpl.getInstance().sortBundles(bundles);
+				// the strings of both files are written once to a table at the end of the state file
+				stringTable = new LinkedHashMap<>();
 				// need to prime the object table with all bundles
 				// this allows us to write only indexes to bundles in the lazy data
 				for (BundleDescription bundle : bundles) {
@@ -150,7 +157,12 @@ class StateWriter {
 					writeDisabledInfo(info, outState);
 				}
 				outState.writeBoolean(state.isResolved());
+				// the offset of the string table is the last int of the state file
+				int stringTableOffset = outState.size();
+				writeStringTable(outState);
+				outState.writeInt(stringTableOffset);
 			} finally {
+				stringTable = null;
 				if (outLazy != null) {
 					try {
 						outLazy.flush();
@@ -714,7 +726,30 @@ class StateWriter {
 		}
 	}
 
+	private void writeStringTable(DataOutputStream out) throws IOException {
+		out.writeInt(stringTable.size());
+		// the strings are iterated in the order of their indexes
+		for (String string : stringTable.keySet()) {
+			byte[] data = string.getBytes(StateReader.UTF_8);
+			out.writeInt(data.length);
+			out.write(data);
+		}
+	}
+
 	private void writeStringOrNull(String string, DataOutputStream out) throws IOException {
+		if (stringTable != null) {
+			if (string == null) {
+				out.writeInt(-1);
+				return;
+			}
+			Integer index = stringTable.get(string);
+			if (index == null) {
+				index = Integer.valueOf(stringTable.size());
+				stringTable.put(string, index);
+			}
+			out.writeInt(index.intValue());
+			return;
+		}
 		if (string == null)
 			out.writeByte(StateReader.NULL);
 		else {
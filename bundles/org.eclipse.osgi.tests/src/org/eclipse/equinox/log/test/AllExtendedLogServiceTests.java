@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011 Cognos Incorporated, IBM Corporation and others
+ * Copyright (c) 2011, 2019 Cognos Incorporated, IBM Corporation and others
  *
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0 which
@@ -18,6 +18,7 @@ public class AllExtendedLogServiceTests {
 		TestSuite suite = new TestSuite("Test extended log service"); //$NON-NLS-1$
 		suite.addTestSuite(ExtendedLogServiceTest.class);
 		suite.addTestSuite(ExtendedLogReaderServiceTest.class);
+		suite.addTestSuite(LogListenerQueueTest.class);
 		return suite;
 	}
 }
@@ -196,4 +196,29 @@ public class ExtendedLogServiceTest extends TestCase {
 		if (log.getLogger("test").isLoggable(LogService.LOG_INFO))
 			fail();
 	}
+
+	public void testCachedLoggerLevelChanges() throws Exception {
+		Logger logger = log.getLogger("test.cached");
+		assertTrue("Debug should be enabled.", logger.isDebugEnabled());
+		assertTrue("Default logger debug should be enabled.", log.isDebugEnabled());
+
+		Map<String, LogLevel> copyLogLevels = new HashMap<String, LogLevel>(rootLogLevels);
+		copyLogLevels.put(Logger.ROOT_LOGGER_NAME, LogLevel.WARN);
+		rootLoggerContext.setLogLevels(copyLogLevels);
+		assertFalse("Debug should be disabled.", logger.isDebugEnabled());
+		assertFalse("Default logger debug should be disabled.", log.isDebugEnabled());
+		assertTrue("Warn should be enabled.", logger.isWarnEnabled());
+
+		// disabled calls must not be delivered
+		logger.debug("debug {}", "arg");
+		logger.warn("warn {}", "arg");
+		ExtendedLogEntry entry = listener.getEntryX();
+		assertEquals("Wrong level.", LogLevel.WARN, entry.getLogLevel());
+		assertEquals("Wrong message.", "warn arg", entry.getMessage());
+
+		copyLogLevels.put(Logger.ROOT_LOGGER_NAME, LogLevel.TRACE);
+		rootLoggerContext.setLogLevels(copyLogLevels);
+		assertTrue("Debug should be enabled.", logger.isDebugEnabled());
+		assertTrue("Default logger debug should be enabled.", log.isDebugEnabled());
+	}
 }
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.log.test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+import org.eclipse.equinox.log.ExtendedLogReaderService;
+import org.eclipse.equinox.log.ExtendedLogService;
+import org.eclipse.osgi.internal.log.ExtendedLogReaderServiceImpl;
+import org.eclipse.osgi.launch.Equinox;
+import org.eclipse.osgi.tests.OSGiTestsActivator;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.service.log.LogEntry;
+import org.osgi.service.log.LogListener;
+import org.osgi.service.log.LogService;
+
+/**
+ * Tests the overflow policies of the bounded queues of asynchronous log
+ * listeners configured with <code>equinox.log.listener.queue.max</code> and
+ * <code>equinox.log.listener.queue.overflow</code>.
+ */
+public class LogListenerQueueTest extends TestCase {
+	private static final String PREFIX = "queue test "; //$NON-NLS-1$
+	private static final int MAX_QUEUED = 5;
+
+	private Equinox equinox;
+	private ExtendedLogService log;
+	private ExtendedLogReaderService reader;
+	private BlockingListener listener;
+
+	public LogListenerQueueTest(String name) {
+		super(name);
+	}
+
+	protected void tearDown() throws Exception {
+		if (listener != null) {
+			listener.release.countDown();
+		}
+		if (equinox != null) {
+			equinox.stop();
+			equinox.waitForStop(10000);
+		}
+	}
+
+	public void testDefaultPolicyDropsOldest() throws Exception {
+		startFramework(null);
+		fillQueue(10);
+		assertEquals("Wrong dropped count.", 5, ((ExtendedLogReaderServiceImpl) reader).getDroppedCount()); //$NON-NLS-1$
+		listener.release.countDown();
+		assertEquals("Wrong entries delivered.", Arrays.asList(0, 6, 7, 8, 9, 10), listener.waitFor(6)); //$NON-NLS-1$
+	}
+
+	public void testDropOldest() throws Exception {
+		startFramework("drop.oldest"); //$NON-NLS-1$
+		fillQueue(10);
+		assertEquals("Wrong dropped count.", 5, ((ExtendedLogReaderServiceImpl) reader).getDroppedCount()); //$NON-NLS-1$
+		listener.release.countDown();
+		assertEquals("Wrong entries delivered.", Arrays.asList(0, 6, 7, 8, 9, 10), listener.waitFor(6)); //$NON-NLS-1$
+	}
+
+	public void testDropNewest() throws Exception {
+		startFramework("drop.newest"); //$NON-NLS-1$
+		fillQueue(10);
+		assertEquals("Wrong dropped count.", 5, ((ExtendedLogReaderServiceImpl) reader).getDroppedCount()); //$NON-NLS-1$
+		listener.release.countDown();
+		assertEquals("Wrong entries delivered.", Arrays.asList(0, 1, 2, 3, 4, 5), listener.waitFor(6)); //$NON-NLS-1$
+	}
+
+	public void testBlock() throws Exception {
+		startFramework("block"); //$NON-NLS-1$
+		fillQueue(MAX_QUEUED);
+		Thread logger = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				log(MAX_QUEUED + 1);
+			}
+		}, getName());
+		logger.start();
+		logger.join(1000);
+		assertTrue("The logging thread did not wait for the listener.", logger.isAlive()); //$NON-NLS-1$
+		listener.release.countDown();
+		logger.join(10000);
+		assertFalse("The logging thread is still waiting.", logger.isAlive()); //$NON-NLS-1$
+		assertEquals("Wrong entries delivered.", Arrays.asList(0, 1, 2, 3, 4, 5, 6), listener.waitFor(7)); //$NON-NLS-1$
+		assertEquals("Wrong dropped count.", 0, ((ExtendedLogReaderServiceImpl) reader).getDroppedCount()); //$NON-NLS-1$
+	}
+
+	private void startFramework(String overflowPolicy) throws Exception {
+		File config = OSGiTestsActivator.getContext().getDataFile(getName());
+		Map<String, Object> configuration = new HashMap<String, Object>();
+		configuration.put(Constants.FRAMEWORK_STORAGE, config.getAbsolutePath());
+		configuration.put(Constants.FRAMEWORK_STORAGE_CLEAN, Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT);
+		configuration.put("equinox.log.listener.queue.max", Integer.toString(MAX_QUEUED)); //$NON-NLS-1$
+		if (overflowPolicy != null) {
+			configuration.put("equinox.log.listener.queue.overflow", overflowPolicy); //$NON-NLS-1$
+		}
+		equinox = new Equinox(configuration);
+		equinox.start();
+		BundleContext context = equinox.getBundleContext();
+		log = context.getService(context.getServiceReference(ExtendedLogService.class));
+		reader = context.getService(context.getServiceReference(ExtendedLogReaderService.class));
+		listener = new BlockingListener();
+		reader.addLogListener(listener);
+	}
+
+	/*
+	 * Logs entry 0 and waits for the listener to block on it so that the
+	 * following entries 1 to count fill the listener queue.
+	 */
+	private void fillQueue(int count) throws InterruptedException {
+		log(0);
+		assertTrue("The listener did not receive the first entry.", listener.blocked.await(10, TimeUnit.SECONDS)); //$NON-NLS-1$
+		for (int i = 1; i <= count; i++) {
+			log(i);
+		}
+	}
+
+	void log(int i) {
+		log.log(LogService.LOG_ERROR, PREFIX + i);
+	}
+
+	static class BlockingListener implements LogListener {
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		private final List<Integer> received = new ArrayList<Integer>();
+
+		@Override
+		public void logged(LogEntry entry) {
+			String message = entry.getMessage();
+			if (message == null || !message.startsWith(PREFIX)) {
+				// ignore the framework entries and the dropped entries report
+				return;
+			}
+			synchronized (this) {
+				received.add(Integer.valueOf(message.substring(PREFIX.length())));
+				notifyAll();
+			}
+			blocked.countDown();
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		synchronized List<Integer> waitFor(int count) throws InterruptedException {
+			long end = System.currentTimeMillis() + 10000;
+			while (received.size() < count) {
+				long wait = end - System.currentTimeMillis();
+				if (wait <= 0) {
+					break;
+				}
+				wait(wait);
+			}
+			return new ArrayList<Integer>(received);
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2013 IBM Corporation and others.
+ * Copyright (c) 2004, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -15,6 +15,7 @@ package org.eclipse.osgi.tests;
 
 import junit.framework.*;
 import org.eclipse.osgi.tests.bundles.BundleTests;
+import org.eclipse.osgi.tests.debugoptions.AsyncDebugTraceTest;
 import org.eclipse.osgi.tests.debugoptions.DebugOptionsTestCase;
 import org.eclipse.osgi.tests.eventmgr.EventManagerTests;
 import org.eclipse.osgi.tests.filter.FilterTests;
@@ -52,6 +53,7 @@ public class AutomatedTests extends TestCase {
 		suite.addTest(org.eclipse.osgi.tests.eclipseadaptor.AllTests.suite());
 		suite.addTest(org.eclipse.osgi.tests.services.resolver.AllTests.suite());
 		suite.addTest(DebugOptionsTestCase.suite());
+		suite.addTest(AsyncDebugTraceTest.suite());
 		suite.addTest(org.eclipse.equinox.log.test.AllTests.suite());
 		suite.addTest(org.eclipse.osgi.tests.security.SecurityTestSuite.suite());
 		suite.addTest(org.eclipse.osgi.tests.appadmin.AllTests.suite());
@@ -19,6 +19,7 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.net.MalformedURLException;
@@ -38,6 +39,7 @@ import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Hashtable;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -70,7 +72,10 @@ import org.eclipse.equinox.log.ExtendedLogReaderService;
 import org.eclipse.equinox.log.ExtendedLogService;
 import org.eclipse.equinox.log.test.TestListener2;
 import org.eclipse.osgi.container.Module;
+import org.eclipse.osgi.container.ModuleCapability;
+import org.eclipse.osgi.container.ModuleRevision;
 import org.eclipse.osgi.framework.util.FilePath;
+import org.eclipse.osgi.internal.container.IdentifiableResolverHook;
 import org.eclipse.osgi.internal.debug.Debug;
 import org.eclipse.osgi.internal.framework.EquinoxConfiguration;
 import org.eclipse.osgi.internal.location.EquinoxLocations;
@@ -4199,4 +4204,393 @@ public class SystemBundleTests extends AbstractBundleTests {
 			fail("Unexpected interrupted exception", e); //$NON-NLS-1$
 		}
 	}
+
+	public void testResolutionCacheRefresh() throws Exception {
+		File config = OSGiTestsActivator.getContext().getDataFile(getName()); //$NON-NLS-1$
+		Map<String, Object> configuration = new HashMap<String, Object>();
+		configuration.put(Constants.FRAMEWORK_STORAGE, config.getAbsolutePath());
+		Equinox equinox = new Equinox(configuration);
+		try {
+			equinox.start();
+			BundleContext systemContext = equinox.getBundleContext();
+			FrameworkWiring frameworkWiring = equinox.adapt(FrameworkWiring.class);
+
+			Map<String, String> exporterHeaders = new HashMap<String, String>();
+			exporterHeaders.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+			exporterHeaders.put(Constants.BUNDLE_SYMBOLICNAME, getName() + ".exporter");
+			exporterHeaders.put(Constants.EXPORT_PACKAGE, "resolution.cache; version=1.0");
+			File exporterV1 = createBundle(config, getName() + ".exporter1", exporterHeaders);
+			exporterHeaders.put(Constants.EXPORT_PACKAGE, "resolution.cache; version=2.0");
+			File exporterV2 = createBundle(config, getName() + ".exporter2", exporterHeaders);
+
+			Map<String, String> importerHeaders = new HashMap<String, String>();
+			importerHeaders.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+			importerHeaders.put(Constants.BUNDLE_SYMBOLICNAME, getName() + ".importer");
+			importerHeaders.put(Constants.IMPORT_PACKAGE, "resolution.cache; version=\"[1.0,2.0)\"");
+			File importerFile = createBundle(config, getName() + ".importer", importerHeaders);
+
+			Bundle exporter = systemContext.installBundle(getName() + ".exporter", new FileInputStream(exporterV1));
+			Bundle importer = systemContext.installBundle("reference:file:///" + importerFile.getAbsolutePath()); //$NON-NLS-1$
+			List<Bundle> bundles = Arrays.asList(exporter, importer);
+
+			assertTrue("Could not resolve bundles.", frameworkWiring.resolveBundles(bundles));
+			assertPackageProvider(importer, exporter);
+
+			// refreshing the same bundles must result in the same wiring
+			refreshBundles(frameworkWiring, bundles);
+			assertTrue("Could not resolve bundles.", frameworkWiring.resolveBundles(bundles));
+			assertPackageProvider(importer, exporter);
+
+			// the exporter no longer provides a matching package; the previous result must not be used
+			exporter.update(new FileInputStream(exporterV2));
+			refreshBundles(frameworkWiring, bundles);
+			assertFalse("Importer should not resolve.", frameworkWiring.resolveBundles(bundles));
+			assertEquals("Wrong exporter state.", Bundle.RESOLVED, exporter.getState());
+			assertEquals("Wrong importer state.", Bundle.INSTALLED, importer.getState());
+
+			// going back to the original content resolves again
+			exporter.update(new FileInputStream(exporterV1));
+			refreshBundles(frameworkWiring, bundles);
+			assertTrue("Could not resolve bundles.", frameworkWiring.resolveBundles(bundles));
+			assertPackageProvider(importer, exporter);
+		} finally {
+			stopQuietly(equinox);
+		}
+	}
+
+	public void testResolutionCacheHit() throws Exception {
+		File config = OSGiTestsActivator.getContext().getDataFile(getName()); //$NON-NLS-1$
+		Map<String, Object> configuration = new HashMap<String, Object>();
+		configuration.put(Constants.FRAMEWORK_STORAGE, config.getAbsolutePath());
+		Equinox equinox = new Equinox(configuration);
+		try {
+			equinox.start();
+			HidingResolverHook hook = new IdentifiableHidingResolverHook();
+			registerResolverHook(equinox.getBundleContext(), hook);
+			FrameworkWiring frameworkWiring = equinox.adapt(FrameworkWiring.class);
+			Bundle exporter = installExporter(equinox.getBundleContext(), config, getName() + ".exporter", "1.0"); //$NON-NLS-1$ //$NON-NLS-2$
+			Bundle importer = installCacheImporter(equinox.getBundleContext(), config, null);
+			List<Bundle> bundles = Arrays.asList(exporter, importer);
+
+			assertTrue("Could not resolve bundles.", frameworkWiring.resolveBundles(bundles));
+			assertPackageProvider(importer, exporter);
+			assertTrue("The resolver did not run.", hook.missingMatches.getAndSet(0) > 0);
+
+			refreshBundles(frameworkWiring, bundles);
+			assertTrue("Could not resolve bundles.", frameworkWiring.resolveBundles(bundles));
+			assertPackageProvider(importer, exporter);
+			assertEquals("The cached resolution was not used.", 0, hook.missingMatches.get());
+		} finally {
+			stopQuietly(equinox);
+		}
+	}
+
+	public void testResolutionCacheRewiredProvider() throws Exception {
+		File config = OSGiTestsActivator.getContext().getDataFile(getName()); //$NON-NLS-1$
+		Map<String, Object> configuration = new HashMap<String, Object>();
+		configuration.put(Constants.FRAMEWORK_STORAGE, config.getAbsolutePath());
+		Equinox equinox = new Equinox(configuration);
+		try {
+			equinox.start();
+			BundleContext systemContext = equinox.getBundleContext();
+			HidingResolverHook hook = new IdentifiableHidingResolverHook();
+			registerResolverHook(systemContext, hook);
+			FrameworkWiring frameworkWiring = equinox.adapt(FrameworkWiring.class);
+			Bundle exporter1 = installExporter(systemContext, config, getName() + ".exporter1", "1.0"); //$NON-NLS-1$ //$NON-NLS-2$
+			Bundle exporter2 = installExporter(systemContext, config, getName() + ".exporter2", "1.0"); //$NON-NLS-1$ //$NON-NLS-2$
+
+			Map<String, String> libraryHeaders = new HashMap<String, String>();
+			libraryHeaders.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+			libraryHeaders.put(Constants.BUNDLE_SYMBOLICNAME, getName() + ".library");
+			libraryHeaders.put(Constants.IMPORT_PACKAGE, "resolution.cache");
+			libraryHeaders.put(Constants.EXPORT_PACKAGE, "resolution.cache.library; uses:=resolution.cache");
+			Bundle library = systemContext.installBundle(getName() + ".library", new FileInputStream(createBundle(config, getName() + ".library", libraryHeaders)));
+
+			Map<String, String> consumerHeaders = new HashMap<String, String>();
+			consumerHeaders.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+			consumerHeaders.put(Constants.BUNDLE_SYMBOLICNAME, getName() + ".consumer");
+			consumerHeaders.put(Constants.IMPORT_PACKAGE, "resolution.cache, resolution.cache.library");
+			Bundle consumer = systemContext.installBundle(getName() + ".consumer", new FileInputStream(createBundle(config, getName() + ".consumer", consumerHeaders)));
+
+			// wire the library to the first exporter, then resolve only the consumer which must use the same exporter
+			hook.hidden = library.getSymbolicName();
+			assertFalse("Consumer should not resolve.", frameworkWiring.resolveBundles(Arrays.asList(exporter1, exporter2, library, consumer)));
+			assertPackageProvider(library, exporter1);
+			hook.hidden = null;
+			assertTrue("Could not resolve consumer.", frameworkWiring.resolveBundles(Collections.singleton(consumer)));
+			assertEquals("Wrong provider.", exporter1.adapt(BundleRevision.class), getPackageProvider(consumer, "resolution.cache")); //$NON-NLS-1$
+
+			// rewire the library to the second exporter and leave the consumer unresolved
+			hook.hidden = exporter1.getSymbolicName();
+			refreshBundles(frameworkWiring, Collections.singleton(library));
+			assertPackageProvider(library, exporter2);
+			hook.hidden = library.getSymbolicName();
+			refreshBundles(frameworkWiring, Collections.singleton(consumer));
+			assertEquals("Wrong consumer state.", Bundle.INSTALLED, consumer.getState());
+
+			// the previous consumer wires violate the uses constraint of the rewired library; they must not be used
+			hook.hidden = null;
+			assertTrue("Could not resolve consumer.", frameworkWiring.resolveBundles(Collections.singleton(consumer)));
+			assertEquals("Wrong provider.", exporter2.adapt(BundleRevision.class), getPackageProvider(consumer, "resolution.cache")); //$NON-NLS-1$
+		} finally {
+			stopQuietly(equinox);
+		}
+	}
+
+	public void testResolutionCacheHookChange() throws Exception {
+		doTestResolutionCacheHookChange(new IdentifiableHidingResolverHook());
+	}
+
+	public void testResolutionCacheHookNotIdentifiable() throws Exception {
+		doTestResolutionCacheHookChange(new HidingResolverHook());
+	}
+
+	private void doTestResolutionCacheHookChange(HidingResolverHook hook) throws Exception {
+		File config = OSGiTestsActivator.getContext().getDataFile(getName()); //$NON-NLS-1$
+		Map<String, Object> configuration = new HashMap<String, Object>();
+		configuration.put(Constants.FRAMEWORK_STORAGE, config.getAbsolutePath());
+		Equinox equinox = new Equinox(configuration);
+		try {
+			equinox.start();
+			registerResolverHook(equinox.getBundleContext(), hook);
+			FrameworkWiring frameworkWiring = equinox.adapt(FrameworkWiring.class);
+			Bundle better = installExporter(equinox.getBundleContext(), config, getName() + ".better", "1.1"); //$NON-NLS-1$ //$NON-NLS-2$
+			Bundle other = installExporter(equinox.getBundleContext(), config, getName() + ".other", "1.0"); //$NON-NLS-1$ //$NON-NLS-2$
+			Bundle importer = installCacheImporter(equinox.getBundleContext(), config, null);
+			List<Bundle> bundles = Arrays.asList(better, other, importer);
+
+			// the hook hides the better exporter
+			hook.hidden = better.getSymbolicName();
+			assertTrue("Could not resolve bundles.", frameworkWiring.resolveBundles(bundles));
+			assertPackageProvider(importer, other);
+
+			// the hook no longer hides the better exporter; the previous result must not be used
+			hook.hidden = null;
+			refreshBundles(frameworkWiring, bundles);
+			assertTrue("Could not resolve bundles.", frameworkWiring.resolveBundles(bundles));
+			assertPackageProvider(importer, better);
+
+			// the same hook configuration again
+			hook.missingMatches.set(0);
+			refreshBundles(frameworkWiring, bundles);
+			assertTrue("Could not resolve bundles.", frameworkWiring.resolveBundles(bundles));
+			assertPackageProvider(importer, better);
+			if (hook instanceof IdentifiableResolverHook) {
+				assertEquals("The cached resolution was not used.", 0, hook.missingMatches.get());
+			} else {
+				assertTrue("A cached resolution was used for a hook without identity.", hook.missingMatches.get() > 0);
+			}
+		} finally {
+			stopQuietly(equinox);
+		}
+	}
+
+	public void testResolutionCacheTransientAttributes() throws Exception {
+		File config = OSGiTestsActivator.getContext().getDataFile(getName()); //$NON-NLS-1$
+		Map<String, Object> configuration = new HashMap<String, Object>();
+		configuration.put(Constants.FRAMEWORK_STORAGE, config.getAbsolutePath());
+		Equinox equinox = new Equinox(configuration);
+		try {
+			equinox.start();
+			HidingResolverHook hook = new IdentifiableHidingResolverHook();
+			registerResolverHook(equinox.getBundleContext(), hook);
+			FrameworkWiring frameworkWiring = equinox.adapt(FrameworkWiring.class);
+			Bundle exporter = installExporter(equinox.getBundleContext(), config, getName() + ".exporter", "1.0"); //$NON-NLS-1$ //$NON-NLS-2$
+			Bundle importer = installCacheImporter(equinox.getBundleContext(), config, "(resolution.cache.native=1)"); //$NON-NLS-1$
+			List<Bundle> bundles = Arrays.asList(exporter, importer);
+			ModuleCapability nativeCapability = ((ModuleRevision) equinox.adapt(BundleRevision.class)).getModuleCapabilities(NativeNamespace.NATIVE_NAMESPACE).get(0);
+			Map<String, Object> nativeAttrs = new HashMap<String, Object>(nativeCapability.getAttributes());
+
+			nativeAttrs.put("resolution.cache.native", "1"); //$NON-NLS-1$ //$NON-NLS-2$
+			nativeCapability.setTransientAttrs(nativeAttrs);
+			assertTrue("Could not resolve bundles.", frameworkWiring.resolveBundles(bundles));
+			assertPackageProvider(importer, exporter);
+
+			// a transient attribute changed; the previous result must not be used
+			nativeAttrs.put("resolution.cache.other", "1"); //$NON-NLS-1$ //$NON-NLS-2$
+			nativeCapability.setTransientAttrs(nativeAttrs);
+			hook.missingMatches.set(0);
+			refreshBundles(frameworkWiring, bundles);
+			assertTrue("Could not resolve bundles.", frameworkWiring.resolveBundles(bundles));
+			assertPackageProvider(importer, exporter);
+			assertTrue("A cached resolution was used after a transient attribute changed.", hook.missingMatches.get() > 0);
+
+			// the native requirement is no longer satisfied
+			nativeAttrs.put("resolution.cache.native", "2"); //$NON-NLS-1$ //$NON-NLS-2$
+			nativeCapability.setTransientAttrs(nativeAttrs);
+			refreshBundles(frameworkWiring, bundles);
+			assertFalse("Importer should not resolve.", frameworkWiring.resolveBundles(bundles));
+			assertEquals("Wrong importer state.", Bundle.INSTALLED, importer.getState());
+		} finally {
+			stopQuietly(equinox);
+		}
+	}
+
+	public void testResolutionCachePersistence() throws Exception {
+		File config = OSGiTestsActivator.getContext().getDataFile(getName()); //$NON-NLS-1$
+		Map<String, Object> configuration = new HashMap<String, Object>();
+		configuration.put(Constants.FRAMEWORK_STORAGE, config.getAbsolutePath());
+		Equinox equinox = new Equinox(configuration);
+		try {
+			equinox.start();
+			registerResolverHook(equinox.getBundleContext(), new IdentifiableHidingResolverHook());
+			Bundle exporter = installExporter(equinox.getBundleContext(), config, getName() + ".exporter", "1.0"); //$NON-NLS-1$ //$NON-NLS-2$
+			Bundle importer = installCacheImporter(equinox.getBundleContext(), config, null);
+			assertTrue("Could not resolve bundles.", equinox.adapt(FrameworkWiring.class).resolveBundles(Arrays.asList(exporter, importer)));
+		} finally {
+			stopQuietly(equinox);
+		}
+
+		equinox = new Equinox(configuration);
+		try {
+			equinox.start();
+			HidingResolverHook hook = new IdentifiableHidingResolverHook();
+			registerResolverHook(equinox.getBundleContext(), hook);
+			FrameworkWiring frameworkWiring = equinox.adapt(FrameworkWiring.class);
+			Bundle exporter = equinox.getBundleContext().getBundle(getName() + ".exporter"); //$NON-NLS-1$
+			Bundle importer = equinox.getBundleContext().getBundle(getName() + ".importer"); //$NON-NLS-1$
+			List<Bundle> bundles = Arrays.asList(exporter, importer);
+			refreshBundles(frameworkWiring, bundles);
+			assertTrue("Could not resolve bundles.", frameworkWiring.resolveBundles(bundles));
+			assertPackageProvider(importer, exporter);
+			assertEquals("The persistent cached resolution was not used.", 0, hook.missingMatches.get());
+		} finally {
+			stopQuietly(equinox);
+		}
+	}
+
+	private Bundle installExporter(BundleContext context, File config, String symbolicName, String version) throws Exception {
+		Map<String, String> headers = new HashMap<String, String>();
+		headers.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+		headers.put(Constants.BUNDLE_SYMBOLICNAME, symbolicName);
+		headers.put(Constants.EXPORT_PACKAGE, "resolution.cache; version=" + version);
+		return context.installBundle(symbolicName, new FileInputStream(createBundle(config, symbolicName, headers)));
+	}
+
+	private Bundle installCacheImporter(BundleContext context, File config, String nativeFilter) throws Exception {
+		Map<String, String> headers = new HashMap<String, String>();
+		headers.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+		headers.put(Constants.BUNDLE_SYMBOLICNAME, getName() + ".importer");
+		// the optional import is never satisfied; only a resolver run looks for its providers
+		headers.put(Constants.IMPORT_PACKAGE, "resolution.cache, " + HidingResolverHook.MISSING_PACKAGE + "; resolution:=optional");
+		if (nativeFilter != null) {
+			headers.put(Constants.REQUIRE_CAPABILITY, NativeNamespace.NATIVE_NAMESPACE + "; filter:=\"" + nativeFilter + "\"");
+		}
+		return context.installBundle(getName() + ".importer", new FileInputStream(createBundle(config, getName() + ".importer", headers)));
+	}
+
+	private void registerResolverHook(BundleContext context, final ResolverHook hook) {
+		context.registerService(ResolverHookFactory.class, new ResolverHookFactory() {
+			@Override
+			public ResolverHook begin(Collection<BundleRevision> triggers) {
+				return hook;
+			}
+		}, null);
+	}
+
+	/**
+	 * Hides the exporter with a configurable symbolic name and counts the
+	 * resolver searches for the package nobody exports.
+	 */
+	static class HidingResolverHook implements ResolverHook {
+		static final String MISSING_PACKAGE = "resolution.cache.missing"; //$NON-NLS-1$
+		final AtomicInteger missingMatches = new AtomicInteger();
+		volatile String hidden;
+
+		@Override
+		public void filterResolvable(Collection<BundleRevision> candidates) {
+			// nothing
+		}
+
+		@Override
+		public void filterSingletonCollisions(BundleCapability singleton, Collection<BundleCapability> collisionCandidates) {
+			// nothing
+		}
+
+		@Override
+		public void filterMatches(BundleRequirement requirement, Collection<BundleCapability> candidates) {
+			String filter = requirement.getDirectives().get(Constants.FILTER_DIRECTIVE);
+			if (filter != null && filter.contains(MISSING_PACKAGE)) {
+				missingMatches.incrementAndGet();
+			}
+			String hiddenName = hidden;
+			for (Iterator<BundleCapability> iCandidates = candidates.iterator(); iCandidates.hasNext();) {
+				if (iCandidates.next().getRevision().getSymbolicName().equals(hiddenName)) {
+					iCandidates.remove();
+				}
+			}
+		}
+
+		@Override
+		public void end() {
+			// nothing
+		}
+	}
+
+	static class IdentifiableHidingResolverHook extends HidingResolverHook implements IdentifiableResolverHook {
+		@Override
+		public String getHookIdentity() {
+			return "hidden=" + hidden; //$NON-NLS-1$
+		}
+	}
+
+	public void testStartupProfile() throws Exception {
+		File config = OSGiTestsActivator.getContext().getDataFile(getName()); //$NON-NLS-1$
+		File profile = new File(config, "profile.json"); //$NON-NLS-1$
+		Map<String, Object> configuration = new HashMap<String, Object>();
+		configuration.put(Constants.FRAMEWORK_STORAGE, config.getAbsolutePath());
+		configuration.put(EquinoxConfiguration.PROP_STARTUP_PROFILE, profile.getAbsolutePath());
+		Equinox equinox = new Equinox(configuration);
+		try {
+			equinox.start();
+			assertTrue("No profile written.", profile.isFile());
+			String content = readFile(profile);
+			assertTrue("No resolve events: " + content, content.contains("\"cat\":\"resolve\""));
+			assertTrue("No start level events: " + content, content.contains("\"cat\":\"startlevel\""));
+			assertTrue("No started event: " + content, content.contains("\"name\":\"STARTED\""));
+		} finally {
+			stopQuietly(equinox);
+		}
+		assertTrue("No stopped event.", readFile(profile).contains("\"name\":\"STOPPED\""));
+	}
+
+	private static String readFile(File file) throws IOException {
+		StringBuilder result = new StringBuilder();
+		InputStreamReader reader = new InputStreamReader(new FileInputStream(file), "UTF-8"); //$NON-NLS-1$
+		try {
+			char[] buffer = new char[1024];
+			for (int read = reader.read(buffer); read >= 0; read = reader.read(buffer)) {
+				result.append(buffer, 0, read);
+			}
+		} finally {
+			reader.close();
+		}
+		return result.toString();
+	}
+
+	private void assertPackageProvider(Bundle importer, Bundle exporter) {
+		List<BundleWire> pkgWires = importer.adapt(BundleWiring.class).getRequiredWires(PackageNamespace.PACKAGE_NAMESPACE);
+		assertEquals("Wrong number of wires.", 1, pkgWires.size());
+		assertEquals("Wrong provider.", exporter.adapt(BundleRevision.class), pkgWires.get(0).getProvider());
+	}
+
+	private BundleRevision getPackageProvider(Bundle importer, String packageName) {
+		for (BundleWire pkgWire : importer.adapt(BundleWiring.class).getRequiredWires(PackageNamespace.PACKAGE_NAMESPACE)) {
+			if (packageName.equals(pkgWire.getCapability().getAttributes().get(PackageNamespace.PACKAGE_NAMESPACE))) {
+				return pkgWire.getProvider();
+			}
+		}
+		return null;
+	}
+
+	private void refreshBundles(FrameworkWiring frameworkWiring, Collection<Bundle> bundles) throws InterruptedException {
+		final CountDownLatch refreshed = new CountDownLatch(1);
+		frameworkWiring.refreshBundles(bundles, new FrameworkListener() {
+			@Override
+			public void frameworkEvent(FrameworkEvent event) {
+				refreshed.countDown();
+			}
+		});
+		assertTrue("Refresh did not finish.", refreshed.await(30, TimeUnit.SECONDS));
+	}
 }
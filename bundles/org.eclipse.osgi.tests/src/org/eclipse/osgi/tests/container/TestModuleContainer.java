@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2017 IBM Corporation and others.
+ * Copyright (c) 2013, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -26,6 +26,7 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.lang.reflect.Method;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -64,6 +65,7 @@ import org.eclipse.osgi.container.ModuleCapability;
 import org.eclipse.osgi.container.ModuleContainer;
 import org.eclipse.osgi.container.ModuleContainerAdaptor.ContainerEvent;
 import org.eclipse.osgi.container.ModuleContainerAdaptor.ModuleEvent;
+import org.eclipse.osgi.container.ModuleDatabase;
 import org.eclipse.osgi.container.ModuleRequirement;
 import org.eclipse.osgi.container.ModuleRevision;
 import org.eclipse.osgi.container.ModuleRevisionBuilder;
@@ -1319,6 +1321,66 @@ public class TestModuleContainer extends AbstractTest {
 		Assert.assertEquals("Wrong container events.", expectedContainerEvents, actualContainerEvents);
 	}
 
+	@Test
+	public void testParallelEagerStartByDependencies() throws BundleException, IOException {
+		Map<String, String> configuration = new HashMap<String, String>();
+		configuration.put(EquinoxConfiguration.PROP_EQUINOX_START_LEVEL_PARALLEL_EAGER, "true");
+		DummyContainerAdaptor adaptor = new DummyContainerAdaptor(new DummyCollisionHook(false), configuration);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		adaptor.setStartLevelExecutor(executor);
+		try {
+			ModuleContainer container = adaptor.getContainer();
+			DummyModuleDatabase database = adaptor.getDatabase();
+
+			Module systemBundle = installDummyModule("system.bundle.MF", Constants.SYSTEM_BUNDLE_LOCATION, container);
+			container.resolve(Arrays.asList(systemBundle), true);
+
+			// install the consumers before their providers so the ID order is wrong
+			Module c = installDummyModule(createRequireManifest("c", "b"), "c", container);
+			Module b = installDummyModule(createRequireManifest("b", "a"), "b", container);
+			Module a = installDummyModule(createRequireManifest("a", null), "a", container);
+			Module d = installDummyModule(createRequireManifest("d", null), "d", container);
+			List<Module> modules = Arrays.asList(c, b, a, d);
+			container.resolve(modules, true);
+			for (Module module : modules) {
+				module.setStartLevel(2);
+				module.start();
+			}
+			systemBundle.start();
+			database.getModuleEvents(2);
+
+			container.getFrameworkStartLevel().setStartLevel(2);
+			List<DummyModuleEvent> actualModuleEvents = database.getModuleEvents(8);
+			Assert.assertEquals("Wrong number of events: " + actualModuleEvents, 8, actualModuleEvents.size());
+			List<Module> started = new ArrayList<Module>();
+			for (DummyModuleEvent event : actualModuleEvents) {
+				if (event.event == ModuleEvent.STARTING) {
+					// all the providers of a module must be started before it starts
+					if (event.module == b) {
+						Assert.assertTrue("Provider not started: " + actualModuleEvents, started.contains(a));
+					} else if (event.module == c) {
+						Assert.assertTrue("Provider not started: " + actualModuleEvents, started.contains(b));
+					}
+				} else if (event.event == ModuleEvent.STARTED) {
+					started.add(event.module);
+				}
+			}
+			Assert.assertEquals("Wrong started modules.", new HashSet<Module>(modules), new HashSet<Module>(started));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static Map<String, String> createRequireManifest(String symbolicName, String requireBundle) {
+		Map<String, String> manifest = new HashMap<String, String>();
+		manifest.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+		manifest.put(Constants.BUNDLE_SYMBOLICNAME, symbolicName);
+		if (requireBundle != null) {
+			manifest.put(Constants.REQUIRE_BUNDLE, requireBundle);
+		}
+		return manifest;
+	}
+
 	@Test
 	public void testDynamicImport01() throws BundleException, IOException {
 		DummyContainerAdaptor adaptor = createDummyAdaptor();
@@ -3474,6 +3536,54 @@ public class TestModuleContainer extends AbstractTest {
 		}
 	}
 
+	@Test
+	public void testSharedAttributesAndDirectives() throws BundleException, IOException {
+		DummyContainerAdaptor adaptor = createDummyAdaptor();
+		ModuleContainer container = adaptor.getContainer();
+
+		// install the system.bundle
+		installDummyModule("system.bundle.MF", Constants.SYSTEM_BUNDLE_LOCATION, Constants.SYSTEM_BUNDLE_SYMBOLICNAME, null, null, container);
+
+		Map<String, String> manifest = new HashMap<String, String>();
+		manifest.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+		manifest.put(Constants.EXPORT_PACKAGE, "shared.pkg; version=1.0; uses:=\"org.osgi.framework\"; mandatory:=x-attr; x-attr=test");
+		manifest.put(Constants.IMPORT_PACKAGE, "org.osgi.framework; version=\"[1.0,2.0)\"; x-attr=test; resolution:=optional");
+		manifest.put(Constants.BUNDLE_SYMBOLICNAME, "shared.a");
+		Module moduleA = installDummyModule(manifest, manifest.get(Constants.BUNDLE_SYMBOLICNAME), container);
+		manifest.put(Constants.BUNDLE_SYMBOLICNAME, "shared.b");
+		Module moduleB = installDummyModule(manifest, manifest.get(Constants.BUNDLE_SYMBOLICNAME), container);
+
+		assertSharedMaps(moduleA.getCurrentRevision(), moduleB.getCurrentRevision());
+
+		// the sharing must survive storing and loading the database
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		adaptor.getDatabase().store(new DataOutputStream(bytes), false);
+		DummyContainerAdaptor loadedAdaptor = createDummyAdaptor();
+		loadedAdaptor.getDatabase().load(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		ModuleContainer loadedContainer = loadedAdaptor.getContainer();
+		ModuleRevision loadedA = loadedContainer.getModule(moduleA.getLocation()).getCurrentRevision();
+		ModuleRevision loadedB = loadedContainer.getModule(moduleB.getLocation()).getCurrentRevision();
+		assertSharedMaps(loadedA, loadedB);
+		assertSharedMaps(moduleA.getCurrentRevision(), loadedA);
+	}
+
+	private static void assertSharedMaps(ModuleRevision revision1, ModuleRevision revision2) {
+		ModuleCapability export1 = revision1.getModuleCapabilities(PackageNamespace.PACKAGE_NAMESPACE).get(0);
+		ModuleCapability export2 = revision2.getModuleCapabilities(PackageNamespace.PACKAGE_NAMESPACE).get(0);
+		// the export attributes include the bundle symbolic name so only the directives can be shared
+		Assert.assertSame("Capability directives are not shared.", export1.getDirectives(), export2.getDirectives());
+		ModuleRequirement import1 = revision1.getModuleRequirements(PackageNamespace.PACKAGE_NAMESPACE).get(0);
+		ModuleRequirement import2 = revision2.getModuleRequirements(PackageNamespace.PACKAGE_NAMESPACE).get(0);
+		Assert.assertSame("Requirement attributes are not shared.", import1.getAttributes(), import2.getAttributes());
+		Assert.assertSame("Requirement directives are not shared.", import1.getDirectives(), import2.getDirectives());
+		try {
+			import1.getAttributes().put("x-attr", "modified");
+			Assert.fail("Attributes are modifiable.");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
 	@Test
 	public void testAliasBundleNameReport() throws BundleException, IOException {
 		DummyContainerAdaptor adaptor = createDummyAdaptor();
@@ -3571,6 +3681,105 @@ public class TestModuleContainer extends AbstractTest {
 		stopError.printStackTrace();
 	}
 
+	@Test
+	public void testWiringsSnapshotNotChanged() throws Exception {
+		DummyContainerAdaptor adaptor = createDummyAdaptor();
+		ModuleContainer container = adaptor.getContainer();
+		ModuleDatabase database = adaptor.getDatabase();
+
+		Module systemBundle = installDummyModule("system.bundle.MF", Constants.SYSTEM_BUNDLE_LOCATION, container);
+		container.resolve(Arrays.asList(systemBundle), true);
+		Module exporter = installDummyModule(getSnapshotManifest("exporter", Constants.EXPORT_PACKAGE), "exporter", container);
+		Module importer1 = installDummyModule(getSnapshotManifest("importer1", Constants.IMPORT_PACKAGE), "importer1", container);
+		container.resolve(Arrays.asList(exporter, importer1), true);
+		ModuleRevision exporterRevision = exporter.getCurrentRevision();
+		ModuleRevision importer1Revision = importer1.getCurrentRevision();
+
+		// merge the wiring of a new bundle
+		Map<ModuleRevision, ModuleWiring> snapshot = getWirings(database, "getWiringsSnapshot");
+		Map<ModuleRevision, ModuleWiring> expected = new HashMap<ModuleRevision, ModuleWiring>(snapshot);
+		Map<ModuleRevision, ModuleWiring> clone = getWirings(database, "getWiringsClone");
+		Module importer2 = installDummyModule(getSnapshotManifest("importer2", Constants.IMPORT_PACKAGE), "importer2", container);
+		container.resolve(Arrays.asList(importer2), true);
+		ModuleRevision importer2Revision = importer2.getCurrentRevision();
+		Assert.assertEquals("Snapshot changed by a merge.", expected, snapshot);
+		Assert.assertEquals("Clone changed by a merge.", expected.keySet(), clone.keySet());
+		Assert.assertEquals("Wrong provided wires in the clone.", 1, clone.get(exporterRevision).getProvidedModuleWires(null).size());
+		Assert.assertEquals("Wrong provided wires.", 2, exporterRevision.getWiring().getProvidedModuleWires(null).size());
+		Assert.assertTrue("Missing merged wiring.", getWirings(database, "getWiringsSnapshot").containsKey(importer2Revision));
+
+		// remove the wiring of an uninstalled bundle
+		snapshot = getWirings(database, "getWiringsSnapshot");
+		expected = new HashMap<ModuleRevision, ModuleWiring>(snapshot);
+		clone = getWirings(database, "getWiringsClone");
+		container.uninstall(importer2);
+		Assert.assertFalse("Wiring not removed.", getWirings(database, "getWiringsSnapshot").containsKey(importer2Revision));
+		Assert.assertEquals("Snapshot changed by a removal.", expected, snapshot);
+		Assert.assertEquals("Clone changed by a removal.", expected.keySet(), clone.keySet());
+		Assert.assertEquals("Wrong provided wires in the clone.", 2, clone.get(exporterRevision).getProvidedModuleWires(null).size());
+		Assert.assertEquals("Wrong provided wires.", 1, exporterRevision.getWiring().getProvidedModuleWires(null).size());
+
+		// replace all the wirings by refreshing a bundle
+		snapshot = getWirings(database, "getWiringsSnapshot");
+		expected = new HashMap<ModuleRevision, ModuleWiring>(snapshot);
+		clone = getWirings(database, "getWiringsClone");
+		container.refresh(Arrays.asList(importer1));
+		Assert.assertNotSame("Importer wiring not replaced.", expected.get(importer1Revision), importer1Revision.getWiring());
+		Assert.assertEquals("Snapshot changed by setting the wirings.", expected, snapshot);
+		Assert.assertEquals("Clone changed by setting the wirings.", expected.keySet(), clone.keySet());
+		Assert.assertEquals("Wrong required wires in the clone.", 1, clone.get(importer1Revision).getRequiredModuleWires(null).size());
+	}
+
+	@Test
+	public void testWiringsCloneInvalidated() throws Exception {
+		DummyContainerAdaptor adaptor = createDummyAdaptor();
+		ModuleContainer container = adaptor.getContainer();
+		ModuleDatabase database = adaptor.getDatabase();
+
+		Module systemBundle = installDummyModule("system.bundle.MF", Constants.SYSTEM_BUNDLE_LOCATION, container);
+		container.resolve(Arrays.asList(systemBundle), true);
+		Module exporter = installDummyModule(getSnapshotManifest("exporter", Constants.EXPORT_PACKAGE), "exporter", container);
+		Module importer = installDummyModule(getSnapshotManifest("importer", Constants.IMPORT_PACKAGE), "importer", container);
+		container.resolve(Arrays.asList(exporter, importer), true);
+		ModuleRevision importerRevision = importer.getCurrentRevision();
+
+		Map<ModuleRevision, ModuleWiring> clone = getWirings(database, "getWiringsClone");
+		Assert.assertSame("The clone is not reused.", clone, getWirings(database, "getWiringsClone"));
+
+		// adding dynamic imports must invalidate the clone
+		Map<String, String> dynamicManifest = new HashMap<String, String>();
+		dynamicManifest.put(Constants.DYNAMICIMPORT_PACKAGE, "snapshot.dynamic");
+		importerRevision.getWiring().addDynamicImports(OSGiManifestBuilderFactory.createBuilder(dynamicManifest));
+		Map<ModuleRevision, ModuleWiring> dynamicClone = getWirings(database, "getWiringsClone");
+		Assert.assertNotSame("The clone is not invalidated by dynamic imports.", clone, dynamicClone);
+		Assert.assertEquals("Wrong requirements in the old clone.", 1, clone.get(importerRevision).getModuleRequirements(PackageNamespace.PACKAGE_NAMESPACE).size());
+		Assert.assertEquals("Wrong requirements in the new clone.", 2, dynamicClone.get(importerRevision).getModuleRequirements(PackageNamespace.PACKAGE_NAMESPACE).size());
+
+		// refreshing must invalidate the clone
+		container.refresh(Arrays.asList(exporter));
+		Map<ModuleRevision, ModuleWiring> refreshedClone = getWirings(database, "getWiringsClone");
+		Assert.assertNotSame("The clone is not invalidated by a refresh.", dynamicClone, refreshedClone);
+		Assert.assertEquals("Wrong wirings in the refreshed clone.", getWirings(database, "getWiringsSnapshot").keySet(), refreshedClone.keySet());
+		// the refreshed wiring no longer has the dynamic imports
+		Assert.assertEquals("Wrong requirements in the refreshed clone.", 1, refreshedClone.get(importerRevision).getModuleRequirements(PackageNamespace.PACKAGE_NAMESPACE).size());
+	}
+
+	private static Map<String, String> getSnapshotManifest(String symbolicName, String packageHeader) {
+		Map<String, String> manifest = new HashMap<String, String>();
+		manifest.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+		manifest.put(Constants.BUNDLE_SYMBOLICNAME, symbolicName);
+		manifest.put(packageHeader, "snapshot.a");
+		return manifest;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<ModuleRevision, ModuleWiring> getWirings(ModuleDatabase database, String methodName) throws Exception {
+		// the snapshot methods are internal to the container
+		Method method = ModuleDatabase.class.getDeclaredMethod(methodName);
+		method.setAccessible(true);
+		return (Map<ModuleRevision, ModuleWiring>) method.invoke(database);
+	}
+
 	private static void assertWires(List<ModuleWire> required, List<ModuleWire>... provided) {
 		for (ModuleWire requiredWire : required) {
 			for (List<ModuleWire> providedList : provided) {
@@ -44,6 +44,7 @@ public class DummyContainerAdaptor extends ModuleContainerAdaptor {
 	private final AtomicReference<CountDownLatch> startLatch = new AtomicReference<CountDownLatch>();
 	private final AtomicReference<CountDownLatch> stopLatch = new AtomicReference<CountDownLatch>();
 	private volatile Executor resolverExecutor;
+	private volatile Executor startLevelExecutor;
 	private volatile ScheduledExecutorService timeoutExecutor;
 
 	public DummyContainerAdaptor(ModuleCollisionHook collisionHook, Map<String, String> configuration) {
@@ -149,6 +150,19 @@ public class DummyContainerAdaptor extends ModuleContainerAdaptor {
 		return super.getResolverExecutor();
 	}
 
+	public void setStartLevelExecutor(Executor executor) {
+		this.startLevelExecutor = executor;
+	}
+
+	@Override
+	public Executor getStartLevelExecutor() {
+		Executor current = this.startLevelExecutor;
+		if (current != null) {
+			return current;
+		}
+		return super.getStartLevelExecutor();
+	}
+
 	public void setTimeoutExecutor(ScheduledExecutorService timeoutExecutor) {
 		this.timeoutExecutor = timeoutExecutor;
 	}
@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.osgi.tests.debugoptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import org.eclipse.core.tests.harness.CoreTest;
+import org.eclipse.osgi.launch.Equinox;
+import org.eclipse.osgi.service.debug.DebugOptions;
+import org.eclipse.osgi.service.debug.DebugTrace;
+import org.eclipse.osgi.tests.OSGiTestsActivator;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+
+/**
+ * Tests the asynchronous trace writer enabled with <code>eclipse.trace.async</code>.
+ */
+public class AsyncDebugTraceTest extends CoreTest {
+	public static Test suite() {
+		return new TestSuite(AsyncDebugTraceTest.class);
+	}
+
+	private static final String BUNDLE = "test.async"; //$NON-NLS-1$
+	private static final String OPTION = "/debug"; //$NON-NLS-1$
+
+	private Equinox equinox;
+	private File traceFile;
+	private DebugTrace debugTrace;
+
+	public AsyncDebugTraceTest(String name) {
+		super(name);
+	}
+
+	protected void tearDown() throws Exception {
+		stopFramework();
+	}
+
+	public void testEntryOrder() throws Exception {
+		startFramework(0);
+		final int count = 1000;
+		Thread[] threads = new Thread[3];
+		for (int t = 0; t < threads.length; t++) {
+			final String prefix = "thread" + t + " entry "; //$NON-NLS-1$ //$NON-NLS-2$
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < count; i++) {
+						debugTrace.trace(OPTION, prefix + i + ';');
+					}
+				}
+			}, getName() + t);
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		stopFramework();
+		String trace = readTrace();
+		for (int t = 0; t < threads.length; t++) {
+			String prefix = "thread" + t + " entry "; //$NON-NLS-1$ //$NON-NLS-2$
+			int last = -1;
+			for (int i = 0; i < count; i++) {
+				int index = trace.indexOf(prefix + i + ';');
+				assertTrue("Missing trace entry: " + prefix + i, index >= 0); //$NON-NLS-1$
+				assertTrue("Trace entry out of order: " + prefix + i, index > last); //$NON-NLS-1$
+				last = index;
+			}
+		}
+		assertEquals("Unexpected dropped entries.", -1, trace.indexOf("trace entries were dropped")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	public void testFlushOnShutdown() throws Exception {
+		startFramework(0);
+		BlockingThrowable blocking = new BlockingThrowable();
+		debugTrace.trace(OPTION, "blocking", blocking); //$NON-NLS-1$
+		assertTrue("The writer did not write the blocking entry.", blocking.writing.await(10, TimeUnit.SECONDS)); //$NON-NLS-1$
+		for (int i = 0; i < 10; i++) {
+			debugTrace.trace(OPTION, "pending " + i + ';'); //$NON-NLS-1$
+		}
+		assertEquals("Entries written while the writer is blocked.", -1, readTrace().indexOf("pending ")); //$NON-NLS-1$ //$NON-NLS-2$
+		// release the writer only after the framework has started to stop
+		blocking.releaseLater(500);
+		stopFramework();
+		String trace = readTrace();
+		for (int i = 0; i < 10; i++) {
+			assertTrue("Pending trace entry not flushed: " + i, trace.indexOf("pending " + i + ';') >= 0); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	public void testBufferFull() throws Exception {
+		startFramework(4);
+		BlockingThrowable blocking = new BlockingThrowable();
+		debugTrace.trace(OPTION, "blocking", blocking); //$NON-NLS-1$
+		assertTrue("The writer did not write the blocking entry.", blocking.writing.await(10, TimeUnit.SECONDS)); //$NON-NLS-1$
+		long start = System.nanoTime();
+		for (int i = 0; i < 10; i++) {
+			debugTrace.trace(OPTION, "queued " + i + ';'); //$NON-NLS-1$
+		}
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertTrue("Tracing waited for the blocked writer: " + elapsed + "ms", elapsed < 5000); //$NON-NLS-1$ //$NON-NLS-2$
+		blocking.release.countDown();
+		stopFramework();
+		String trace = readTrace();
+		// the ring holds the first 4 entries; the newest entries are dropped
+		for (int i = 0; i < 4; i++) {
+			assertTrue("Missing trace entry: " + i, trace.indexOf("queued " + i + ';') >= 0); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		for (int i = 4; i < 10; i++) {
+			assertEquals("Dropped trace entry was written: " + i, -1, trace.indexOf("queued " + i + ';')); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		assertTrue("Missing dropped entries comment.", trace.indexOf("6 trace entries were dropped") >= 0); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	public void testWriterError() throws Exception {
+		startFramework(0);
+		BlockingThrowable failing = new FailingThrowable();
+		debugTrace.trace(OPTION, "failing", failing); //$NON-NLS-1$
+		assertTrue("The writer did not write the failing entry.", failing.writing.await(10, TimeUnit.SECONDS)); //$NON-NLS-1$
+		for (int i = 0; i < 10; i++) {
+			debugTrace.trace(OPTION, "after " + i + ';'); //$NON-NLS-1$
+		}
+		// the writer thread ends with an error once released
+		failing.release.countDown();
+		Thread stopper = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					stopFramework();
+				} catch (Exception e) {
+					// checked below by the trace content
+				}
+			}
+		}, getName());
+		stopper.start();
+		stopper.join(30000);
+		assertFalse("Flushing the trace waited for the failed writer.", stopper.isAlive()); //$NON-NLS-1$
+		String trace = readTrace();
+		for (int i = 0; i < 10; i++) {
+			assertTrue("Trace entry not written after the error: " + i, trace.indexOf("after " + i + ';') >= 0); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	private void startFramework(int bufferSize) throws BundleException {
+		File config = OSGiTestsActivator.getContext().getDataFile(getName());
+		traceFile = new File(config, "async.trace"); //$NON-NLS-1$
+		Map<String, Object> configuration = new HashMap<String, Object>();
+		configuration.put(Constants.FRAMEWORK_STORAGE, config.getAbsolutePath());
+		configuration.put(Constants.FRAMEWORK_STORAGE_CLEAN, Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT);
+		configuration.put("eclipse.trace.async", "true"); //$NON-NLS-1$ //$NON-NLS-2$
+		if (bufferSize > 0) {
+			configuration.put("eclipse.trace.async.buffer", Integer.toString(bufferSize)); //$NON-NLS-1$
+		}
+		equinox = new Equinox(configuration);
+		equinox.start();
+		BundleContext context = equinox.getBundleContext();
+		DebugOptions debugOptions = context.getService(context.getServiceReference(DebugOptions.class));
+		debugOptions.setDebugEnabled(true);
+		debugOptions.setOption(BUNDLE + OPTION, Boolean.TRUE.toString());
+		traceFile.delete();
+		debugOptions.setFile(traceFile);
+		debugTrace = debugOptions.newDebugTrace(BUNDLE);
+	}
+
+	private void stopFramework() throws Exception {
+		if (equinox != null) {
+			equinox.stop();
+			equinox.waitForStop(10000);
+			equinox = null;
+		}
+	}
+
+	private String readTrace() throws IOException {
+		if (!traceFile.exists()) {
+			return ""; //$NON-NLS-1$
+		}
+		return new String(Files.readAllBytes(traceFile.toPath()), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Blocks the writer thread while it formats the stack trace.
+	 */
+	static class BlockingThrowable extends Throwable {
+		private static final long serialVersionUID = 1L;
+		final CountDownLatch writing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		@Override
+		public void printStackTrace(PrintStream s) {
+			writing.countDown();
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			super.printStackTrace(s);
+		}
+
+		void releaseLater(final long millis) {
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						Thread.sleep(millis);
+					} catch (InterruptedException e) {
+						// release now
+					}
+					release.countDown();
+				}
+			}).start();
+		}
+	}
+
+	/**
+	 * Blocks the writer thread like {@link BlockingThrowable} and then
+	 * ends it with an error.
+	 */
+	static class FailingThrowable extends BlockingThrowable {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void printStackTrace(PrintStream s) {
+			super.printStackTrace(s);
+			throw new Error("test error"); //$NON-NLS-1$
+		}
+	}
+}
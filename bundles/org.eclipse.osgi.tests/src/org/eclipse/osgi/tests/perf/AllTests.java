@@ -31,6 +31,10 @@ public class AllTests extends TestSuite {
 		TestSuite suite = new TestSuite(AllTests.class.getName());
 		suite.addTest(StatePerformanceTest.suite());
 		suite.addTest(StateUsesPerformanceTest.suite());
+		suite.addTest(ContainerUsesPerformanceTest.suite());
+		suite.addTest(LockSetPerformanceTest.suite());
+		suite.addTest(InstallPerformanceTest.suite());
+		suite.addTest(PromisePerformanceTest.suite());
 		return suite;
 	}
 }
@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.osgi.tests.perf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import org.eclipse.core.tests.harness.PerformanceTestRunner;
+import org.eclipse.osgi.container.Module;
+import org.eclipse.osgi.container.ModuleContainer;
+import org.eclipse.osgi.container.builders.OSGiManifestBuilderFactory;
+import org.eclipse.osgi.internal.framework.EquinoxConfiguration;
+import org.eclipse.osgi.tests.OSGiTest;
+import org.eclipse.osgi.tests.container.dummys.DummyCollisionHook;
+import org.eclipse.osgi.tests.container.dummys.DummyContainerAdaptor;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+
+/**
+ * Measures the resolution of the uses constraint permutations from
+ * {@link StateUsesPerformanceTest} with the resolver used by the module container.
+ */
+public class ContainerUsesPerformanceTest extends OSGiTest {
+	private Random random;
+
+	public static Test suite() {
+		return new TestSuite(ContainerUsesPerformanceTest.class);
+	}
+
+	public ContainerUsesPerformanceTest(String name) {
+		super(name);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		// uses a constant seed to prevent variation on results
+		this.random = new Random(0);
+	}
+
+	private void doUsesResolution(int containerSize, int repetitions, String localName, String degradation) throws BundleException {
+		// disable the resolution cache so that each refresh runs the resolver
+		DummyContainerAdaptor adaptor = new DummyContainerAdaptor(new DummyCollisionHook(false), Collections.singletonMap(EquinoxConfiguration.PROP_RESOLVER_CACHE_SIZE, "0"));
+		final ModuleContainer container = adaptor.getContainer();
+		installSystemModule(container);
+		final List<Module> modules = new ArrayList<Module>();
+		installRandomModules(container, containerSize, modules);
+		installUsesModules(container, modules);
+		container.resolve(modules, false);
+		PerformanceTestRunner runner = new PerformanceTestRunner() {
+			protected void test() {
+				container.refresh(modules);
+			}
+		};
+		runner.setRegressionReason(degradation);
+		runner.run(this, localName, 10, repetitions);
+	}
+
+	public void testUsesResolution00100() throws BundleException {
+		doUsesResolution(100, 100, null, AllTests.DEGRADATION_RESOLUTION);
+	}
+
+	public void testUsesResolution00500() throws BundleException {
+		doUsesResolution(500, 10, null, AllTests.DEGRADATION_RESOLUTION);
+	}
+
+	public void testUsesResolution01000() throws BundleException {
+		doUsesResolution(1000, 10, null, AllTests.DEGRADATION_RESOLUTION);
+	}
+
+	public void testUsesResolution05000() throws BundleException {
+		doUsesResolution(5000, 1, null, AllTests.DEGRADATION_RESOLUTION);
+	}
+
+	private void installSystemModule(ModuleContainer container) throws BundleException {
+		Map<String, String> manifest = new HashMap<String, String>();
+		manifest.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+		manifest.put(Constants.BUNDLE_SYMBOLICNAME, "org.eclipse.osgi");
+		manifest.put(Constants.BUNDLE_VERSION, "5.0.0");
+		manifest.put(Constants.EXPORT_PACKAGE, "org.osgi.framework; version=1.7");
+		container.install(null, Constants.SYSTEM_BUNDLE_LOCATION, OSGiManifestBuilderFactory.createBuilder(manifest), null);
+	}
+
+	private void installRandomModules(ModuleContainer container, int size, List<Module> modules) throws BundleException {
+		int exportedPackages = 0;
+		for (int i = 0; i < size; i++) {
+			Map<String, String> manifest = new HashMap<String, String>();
+			manifest.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+			manifest.put(Constants.BUNDLE_SYMBOLICNAME, "bundle" + i);
+			manifest.put(Constants.BUNDLE_VERSION, "1.0.0");
+
+			int exportPackageCount = random.nextInt(5);
+			StringBuilder exports = new StringBuilder();
+			for (int j = 0; j < exportPackageCount; j++) {
+				if (j > 0) {
+					exports.append(", ");
+				}
+				exports.append("package.").append(exportedPackages++).append("; version=1.0.0");
+				if (exportedPackages > 1) {
+					// use a previously exported package to build uses chains
+					exports.append("; uses:=package.").append(random.nextInt(exportedPackages - 1));
+				}
+			}
+			if (exports.length() > 0) {
+				manifest.put(Constants.EXPORT_PACKAGE, exports.toString());
+			}
+
+			int importPackageCount = Math.min(exportedPackages, random.nextInt(5));
+			Set<Integer> importedPackages = new LinkedHashSet<Integer>();
+			for (int j = 0; j < importPackageCount; j++) {
+				importedPackages.add(random.nextInt(exportedPackages));
+			}
+			StringBuilder imports = new StringBuilder();
+			for (Integer importedPackage : importedPackages) {
+				if (imports.length() > 0) {
+					imports.append(", ");
+				}
+				imports.append("package.").append(importedPackage).append("; version=1.0.0");
+			}
+			if (imports.length() > 0) {
+				manifest.put(Constants.IMPORT_PACKAGE, imports.toString());
+			}
+
+			int requiredBundleCount = Math.min(i, random.nextInt(5));
+			Set<Integer> requiredBundles = new LinkedHashSet<Integer>();
+			for (int j = 0; j < requiredBundleCount; j++) {
+				requiredBundles.add(random.nextInt(i));
+			}
+			StringBuilder requires = new StringBuilder();
+			for (Integer requiredBundle : requiredBundles) {
+				if (requires.length() > 0) {
+					requires.append(", ");
+				}
+				requires.append("bundle").append(requiredBundle);
+				if (random.nextInt(10) > 6) {
+					requires.append("; visibility:=reexport");
+				}
+				if (random.nextInt(10) > 8) {
+					requires.append("; resolution:=optional");
+				}
+			}
+			if (requires.length() > 0) {
+				manifest.put(Constants.REQUIRE_BUNDLE, requires.toString());
+			}
+			modules.add(install(container, manifest));
+		}
+	}
+
+	private void installUsesModules(ModuleContainer container, List<Module> modules) throws BundleException {
+		for (int i = 1; i <= 5; i++) {
+			Map<String, String> manifest = new HashMap<String, String>();
+			manifest.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+			manifest.put(Constants.BUNDLE_SYMBOLICNAME, "A");
+			manifest.put(Constants.BUNDLE_VERSION, i + ".0.0");
+			manifest.put(Constants.EXPORT_PACKAGE, "a");
+			modules.add(install(container, manifest));
+		}
+		for (int i = 1; i <= 5; i++) {
+			Map<String, String> manifest = new HashMap<String, String>();
+			manifest.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+			manifest.put(Constants.BUNDLE_SYMBOLICNAME, "B");
+			manifest.put(Constants.BUNDLE_VERSION, i + ".0.0");
+			manifest.put(Constants.EXPORT_PACKAGE, "b; uses:=a");
+			manifest.put(Constants.REQUIRE_BUNDLE, "A; bundle-version=\"[1.0.0,2.0.0)\"; visibility:=reexport");
+			modules.add(install(container, manifest));
+		}
+		for (int i = 1; i <= 5; i++) {
+			Map<String, String> manifest = new HashMap<String, String>();
+			manifest.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+			manifest.put(Constants.BUNDLE_SYMBOLICNAME, "C");
+			manifest.put(Constants.BUNDLE_VERSION, i + ".0.0");
+			manifest.put(Constants.EXPORT_PACKAGE, "c; uses:=a");
+			manifest.put(Constants.REQUIRE_BUNDLE, "A; bundle-version=\"[2.0.0,3.0.0)\"; visibility:=reexport");
+			modules.add(install(container, manifest));
+		}
+		Map<String, String> manifest = new HashMap<String, String>();
+		manifest.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+		manifest.put(Constants.BUNDLE_SYMBOLICNAME, "F");
+		manifest.put(Constants.BUNDLE_VERSION, "1.0.0");
+		manifest.put(Constants.EXPORT_PACKAGE, "f; uses:=b");
+		manifest.put(Constants.REQUIRE_BUNDLE, "A, B, C");
+		modules.add(install(container, manifest));
+	}
+
+	private Module install(ModuleContainer container, Map<String, String> manifest) throws BundleException {
+		String location = manifest.get(Constants.BUNDLE_SYMBOLICNAME) + manifest.get(Constants.BUNDLE_VERSION);
+		return container.install(container.getModule(0), location, OSGiManifestBuilderFactory.createBuilder(manifest), null);
+	}
+}
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.osgi.tests.perf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import org.eclipse.core.tests.harness.PerformanceTestRunner;
+import org.eclipse.osgi.launch.Equinox;
+import org.eclipse.osgi.tests.OSGiTest;
+import org.eclipse.osgi.tests.OSGiTestsActivator;
+import org.eclipse.osgi.tests.bundles.SystemBundleTests;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+import org.osgi.framework.wiring.FrameworkWiring;
+
+/**
+ * Measures the first start of a framework that installs the initial bundles
+ * one at a time and with a pool of threads, as the
+ * <code>osgi.bundles.installThreads</code> launcher option does.
+ */
+public class InstallPerformanceTest extends OSGiTest {
+	private static final int BUNDLES = 500;
+
+	public static Test suite() {
+		return new TestSuite(InstallPerformanceTest.class);
+	}
+
+	public InstallPerformanceTest(String name) {
+		super(name);
+	}
+
+	public void testFirstStartSerial() throws IOException {
+		doFirstStart(1);
+	}
+
+	public void testFirstStartParallel() throws IOException {
+		doFirstStart(Runtime.getRuntime().availableProcessors());
+	}
+
+	private void doFirstStart(final int threads) throws IOException {
+		File bundlesDir = OSGiTestsActivator.getContext().getDataFile(getName() + "/bundles"); //$NON-NLS-1$
+		bundlesDir.mkdirs();
+		final List<String> locations = new ArrayList<>(BUNDLES);
+		for (int i = 0; i < BUNDLES; i++) {
+			locations.add(SystemBundleTests.createBundle(bundlesDir, getName() + i, false, false).toURI().toString());
+		}
+		File config = OSGiTestsActivator.getContext().getDataFile(getName() + "/config"); //$NON-NLS-1$
+		final Map<String, Object> configuration = new HashMap<>();
+		configuration.put(Constants.FRAMEWORK_STORAGE, config.getAbsolutePath());
+		// each start must install the bundles into an empty storage
+		configuration.put(Constants.FRAMEWORK_STORAGE_CLEAN, Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT);
+		new PerformanceTestRunner() {
+			protected void test() {
+				firstStart(configuration, locations, threads);
+			}
+		}.run(this, 10, 1);
+	}
+
+	void firstStart(Map<String, Object> configuration, List<String> locations, int threads) {
+		Equinox equinox = new Equinox(configuration);
+		ExecutorService installer = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+		try {
+			equinox.start();
+			final BundleContext systemContext = equinox.getBundleContext();
+			if (installer == null) {
+				for (String location : locations) {
+					systemContext.installBundle(location);
+				}
+			} else {
+				List<Future<Bundle>> installs = new ArrayList<>(locations.size());
+				for (final String location : locations) {
+					installs.add(installer.submit(new Callable<Bundle>() {
+						@Override
+						public Bundle call() throws BundleException {
+							return systemContext.installBundle(location);
+						}
+					}));
+				}
+				for (Future<Bundle> install : installs) {
+					install.get();
+				}
+			}
+			assertTrue("Failed to resolve the bundles.", equinox.adapt(FrameworkWiring.class).resolveBundles(null)); //$NON-NLS-1$
+			equinox.stop();
+			equinox.waitForStop(10000);
+		} catch (BundleException | ExecutionException e) {
+			fail("Failed to install the bundles.", e); //$NON-NLS-1$
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			fail("Interrupted installing the bundles.", e); //$NON-NLS-1$
+		} finally {
+			if (installer != null) {
+				installer.shutdown();
+			}
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.osgi.tests.perf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import org.eclipse.core.tests.harness.PerformanceTestRunner;
+import org.eclipse.osgi.internal.container.LockSet;
+import org.eclipse.osgi.tests.OSGiTest;
+
+/**
+ * Measures the {@link LockSet} used by the module container to lock bundle
+ * locations and symbolic names while many threads install bundles.
+ */
+public class LockSetPerformanceTest extends OSGiTest {
+	private static final int THREADS = 64;
+	private static final int OPERATIONS = 2000;
+
+	public static Test suite() {
+		return new TestSuite(LockSetPerformanceTest.class);
+	}
+
+	public LockSetPerformanceTest(String name) {
+		super(name);
+	}
+
+	public void testDistinctKeys() {
+		// each thread locks its own keys, as when installing different bundles
+		doLockSet(THREADS * OPERATIONS);
+	}
+
+	public void testSharedKeys() {
+		// threads compete for a few keys, as when installing bundles with the same name
+		doLockSet(8);
+	}
+
+	public void testSingleKey() {
+		doLockSet(1);
+	}
+
+	private void doLockSet(final int keyCount) {
+		final LockSet<String> lockSet = new LockSet<>();
+		final String[] keys = new String[keyCount];
+		for (int i = 0; i < keyCount; i++) {
+			keys[i] = "location" + i;
+		}
+		new PerformanceTestRunner() {
+			protected void test() {
+				runThreads(lockSet, keys);
+			}
+		}.run(this, 10, 1);
+	}
+
+	void runThreads(final LockSet<String> lockSet, final String[] keys) {
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicInteger failures = new AtomicInteger();
+		List<Thread> threads = new ArrayList<>(THREADS);
+		for (int t = 0; t < THREADS; t++) {
+			final int offset = t * OPERATIONS;
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < OPERATIONS; i++) {
+							String key = keys[(offset + i) % keys.length];
+							if (lockSet.tryLock(key, 5, TimeUnit.SECONDS)) {
+								lockSet.unlock(key);
+							} else {
+								failures.incrementAndGet();
+							}
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						failures.incrementAndGet();
+					}
+				}
+			}, "LockSet contention " + t);
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				fail("Interrupted waiting for threads.");
+			}
+		}
+		assertEquals("Failed to obtain locks.", 0, failures.get());
+	}
+}
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.osgi.tests.perf;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import org.eclipse.core.tests.harness.PerformanceTestRunner;
+import org.eclipse.osgi.tests.OSGiTest;
+import org.osgi.util.function.Function;
+import org.osgi.util.promise.Deferred;
+import org.osgi.util.promise.Promise;
+import org.osgi.util.promise.PromiseFactory;
+import org.osgi.util.promise.Success;
+
+/**
+ * Measures the throughput of long chains of promises resolved with the
+ * inline callback executor and with a pool of callback threads, and of
+ * timeouts which are cancelled by resolving the promise before they expire.
+ */
+public class PromisePerformanceTest extends OSGiTest {
+	private static final int CHAIN_LENGTH = 1000;
+	private static final int CHAINS = 100;
+	private static final int TIMEOUTS = 100000;
+	private static final String HASHED_WHEEL_TIMER = "org.osgi.util.promise.hashedWheelTimer";
+
+	private static final Success<Integer, Integer> INCREMENT = new Success<Integer, Integer>() {
+		@Override
+		public Promise<Integer> call(Promise<Integer> resolved) throws Exception {
+			return resolved.map(new Function<Integer, Integer>() {
+				@Override
+				public Integer apply(Integer t) {
+					return Integer.valueOf(t.intValue() + 1);
+				}
+			});
+		}
+	};
+
+	private static final Function<Integer, Integer> MAP_INCREMENT = new Function<Integer, Integer>() {
+		@Override
+		public Integer apply(Integer t) {
+			return Integer.valueOf(t.intValue() + 1);
+		}
+	};
+
+	public static Test suite() {
+		return new TestSuite(PromisePerformanceTest.class);
+	}
+
+	public PromisePerformanceTest(String name) {
+		super(name);
+	}
+
+	public void testThenChainInline() {
+		doThenChain(new PromiseFactory(PromiseFactory.inlineExecutor()));
+	}
+
+	public void testThenChainThreadPool() {
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		try {
+			doThenChain(new PromiseFactory(executor));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	public void testMapChainResolved() {
+		final PromiseFactory factory = new PromiseFactory(PromiseFactory.inlineExecutor());
+		new PerformanceTestRunner() {
+			protected void test() {
+				for (int i = 0; i < CHAINS; i++) {
+					Promise<Integer> chain = factory.resolved(Integer.valueOf(0));
+					for (int j = 0; j < CHAIN_LENGTH; j++) {
+						chain = chain.map(MAP_INCREMENT);
+					}
+					assertChainValue(chain);
+				}
+			}
+		}.run(this, 10, 10);
+	}
+
+	public void testTimeoutsScheduledExecutor() {
+		doTimeouts(createFactory(false));
+	}
+
+	public void testTimeoutsHashedWheelTimer() {
+		doTimeouts(createFactory(true));
+	}
+
+	private PromiseFactory createFactory(boolean hashedWheelTimer) {
+		String previous = System.setProperty(HASHED_WHEEL_TIMER, Boolean.toString(hashedWheelTimer));
+		try {
+			return new PromiseFactory(PromiseFactory.inlineExecutor());
+		} finally {
+			if (previous == null) {
+				System.clearProperty(HASHED_WHEEL_TIMER);
+			} else {
+				System.setProperty(HASHED_WHEEL_TIMER, previous);
+			}
+		}
+	}
+
+	private void doTimeouts(final PromiseFactory factory) {
+		new PerformanceTestRunner() {
+			protected void test() {
+				for (int i = 0; i < TIMEOUTS; i++) {
+					Deferred<Integer> deferred = factory.deferred();
+					Promise<Integer> timeout = deferred.getPromise().timeout(30000);
+					deferred.resolve(Integer.valueOf(i));
+					assertTrue("Timeout not cancelled.", timeout.isDone());
+				}
+			}
+		}.run(this, 10, 1);
+	}
+
+	private void doThenChain(final PromiseFactory factory) {
+		new PerformanceTestRunner() {
+			protected void test() {
+				for (int i = 0; i < CHAINS; i++) {
+					// build the chain before resolving it so every callback is queued
+					Deferred<Integer> deferred = factory.deferred();
+					Promise<Integer> chain = deferred.getPromise();
+					for (int j = 0; j < CHAIN_LENGTH; j++) {
+						chain = chain.then(INCREMENT);
+					}
+					deferred.resolve(Integer.valueOf(0));
+					assertChainValue(chain);
+				}
+			}
+		}.run(this, 10, 1);
+	}
+
+	void assertChainValue(Promise<Integer> chain) {
+		try {
+			assertEquals("Wrong chain value.", CHAIN_LENGTH, chain.getValue().intValue());
+		} catch (InvocationTargetException e) {
+			fail("Chain failed.", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			fail("Interrupted waiting for the chain.", e);
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2010 IBM Corporation and others.
+ * Copyright (c) 2003, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -16,7 +16,9 @@ package org.eclipse.osgi.tests.perf;
 import java.util.Hashtable;
 import junit.framework.Test;
 import junit.framework.TestSuite;
+import org.eclipse.core.tests.harness.CoreTest;
 import org.eclipse.core.tests.harness.PerformanceTestRunner;
+import org.eclipse.osgi.service.resolver.BundleDescription;
 import org.eclipse.osgi.service.resolver.State;
 import org.osgi.framework.BundleException;
 import org.osgi.framework.Constants;
@@ -60,6 +62,56 @@ public class StateUsesPerformanceTest extends BasePerformanceTest {
 		doUsesResolution(5000, 1, null, AllTests.DEGRADATION_RESOLUTION);
 	}
 
+	private void doDeltaResolution(int stateSize, final int deltaSize, int repetitions, String localName, String degradation) throws BundleException {
+		final State originalState = buildRandomState(stateSize);
+		addUsesBundles(originalState);
+		originalState.resolve(false);
+		PerformanceTestRunner runner = new PerformanceTestRunner() {
+			protected void test() {
+				// only the delta bundles are unresolved; the rest of the state stays resolved.
+				// The delta bundles are not removed again because unresolving a bundle clears
+				// the uses data kept by the resolver; each run adds new bundles instead.
+				try {
+					for (BundleDescription bundle : createDeltaBundles(originalState, deltaSize))
+						originalState.addBundle(bundle);
+				} catch (BundleException e) {
+					CoreTest.fail("", e);
+				}
+				originalState.resolve();
+			}
+		};
+		runner.setRegressionReason(degradation);
+		runner.run(this, localName, 10, repetitions);
+	}
+
+	public void testDeltaResolution05000Add001() throws BundleException {
+		doDeltaResolution(5000, 1, 10, null, AllTests.DEGRADATION_RESOLUTION);
+	}
+
+	public void testDeltaResolution05000Add010() throws BundleException {
+		doDeltaResolution(5000, 10, 10, null, AllTests.DEGRADATION_RESOLUTION);
+	}
+
+	public void testDeltaResolution05000Add100() throws BundleException {
+		doDeltaResolution(5000, 100, 10, null, AllTests.DEGRADATION_RESOLUTION);
+	}
+
+	private BundleDescription[] createDeltaBundles(State state, int deltaSize) throws BundleException {
+		int id = state.getBundles().length + 1000;
+		BundleDescription[] delta = new BundleDescription[deltaSize];
+		for (int i = 0; i < deltaSize; i++) {
+			Hashtable manifest = new Hashtable();
+			manifest.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+			manifest.put(Constants.BUNDLE_SYMBOLICNAME, "D" + i);
+			manifest.put(Constants.BUNDLE_VERSION, "1.0.0");
+			manifest.put(Constants.EXPORT_PACKAGE, "d" + i + "; uses:=f");
+			manifest.put(Constants.IMPORT_PACKAGE, "f");
+			manifest.put(Constants.REQUIRE_BUNDLE, "B");
+			delta[i] = state.getFactory().createBundleDescription(state, manifest, (String) manifest.get(Constants.BUNDLE_SYMBOLICNAME) + (String) manifest.get(Constants.BUNDLE_VERSION), id++);
+		}
+		return delta;
+	}
+
 	private void addUsesBundles(State state) throws BundleException {
 		int id = state.getBundles().length + 500;
 		Hashtable manifest = new Hashtable();
@@ -344,6 +344,57 @@ public class ServiceHookTests extends AbstractBundleTests {
 		}
 	}
 
+	public void testFindHookOrderUpdates() throws InvalidSyntaxException {
+		// test the FindHooks are called in the current ranking order after registrations change
+		final BundleContext testContext = OSGiTestsActivator.getContext();
+		final List<String> calls = new ArrayList<String>();
+		final String filter = "(name=testFindHookOrderUpdates)"; //$NON-NLS-1$
+
+		// look up once before any hooks are registered
+		testContext.getServiceReferences(Runnable.class.getName(), filter);
+
+		Hashtable props = new Hashtable();
+		props.put(Constants.SERVICE_RANKING, Integer.valueOf(1));
+		ServiceRegistration regHook1 = testContext.registerService(FindHook.class.getName(), new FindHook() {
+			public void find(BundleContext context, String name, String f, boolean allServices, Collection references) {
+				if (filter.equals(f)) {
+					calls.add("hook1"); //$NON-NLS-1$
+				}
+			}
+		}, props);
+		props.put(Constants.SERVICE_RANKING, Integer.valueOf(2));
+		ServiceRegistration regHook2 = testContext.registerService(FindHook.class.getName(), new FindHook() {
+			public void find(BundleContext context, String name, String f, boolean allServices, Collection references) {
+				if (filter.equals(f)) {
+					calls.add("hook2"); //$NON-NLS-1$
+				}
+			}
+		}, props);
+		try {
+			testContext.getServiceReferences(Runnable.class.getName(), filter);
+			assertEquals("Wrong hook calls.", Arrays.asList("hook2", "hook1"), calls); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+			// change the ranking of hook1 so that it is called first
+			calls.clear();
+			props.put(Constants.SERVICE_RANKING, Integer.valueOf(3));
+			regHook1.setProperties(props);
+			testContext.getServiceReferences(Runnable.class.getName(), filter);
+			assertEquals("Wrong hook calls.", Arrays.asList("hook1", "hook2"), calls); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+			// unregister hook2 so that only hook1 is called
+			calls.clear();
+			regHook2.unregister();
+			regHook2 = null;
+			testContext.getServiceReferences(Runnable.class.getName(), filter);
+			assertEquals("Wrong hook calls.", Arrays.asList("hook1"), calls); //$NON-NLS-1$ //$NON-NLS-2$
+		} finally {
+			regHook1.unregister();
+			if (regHook2 != null) {
+				regHook2.unregister();
+			}
+		}
+	}
+
 	public void testEventHook01() {
 		final String testMethodName = "testEventHook01"; //$NON-NLS-1$
 		// test the EventHook is called and can remove a reference from the results
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2011 IBM Corporation and others.
+ * Copyright (c) 2004, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -22,6 +22,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.util.zip.Adler32;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 import org.eclipse.core.runtime.Platform;
@@ -201,6 +202,64 @@ public class StreamManagerTests extends OSGiTest {
 		}
 	}
 
+	/**
+	 * This tests that a reliableFile signed with an Adler32 checksum is verified
+	 * and that corrupting it will recover the previous contents.
+	 */
+	public void testAdler32ReliableFile() {
+		String fileName = "testAdler32ReliableFile.txt";
+		File file1 = new File(base, fileName + ".1");
+		File file2 = new File(base, fileName + ".2");
+		String contents1 = "test reliable file cOntents #1";
+		String contents2 = "test reliable file cOntents #2";
+		try {
+			System.setProperty("osgi.useReliableFiles", "true"); // force reliable files
+			manager1 = new StorageManager(base, null);
+			manager1.open(true);
+			ManagedOutputStream fmos = manager1.getOutputStream(fileName);
+			fmos.write(contents1.getBytes());
+			fmos.close();
+			fmos = manager1.getOutputStream(fileName);
+			fmos.write("to be replaced".getBytes());
+			fmos.close();
+			assertTrue(file1.exists());
+			assertTrue(file2.exists());
+			manager1.close();
+			manager1 = null;
+
+			// replace version 2 with contents signed as if osgi.reliableFile.checksum=adler32
+			Adler32 checksum = new Adler32();
+			checksum.update(contents2.getBytes());
+			long lastModified = file2.lastModified();
+			writeToFile(file2, contents2 + ".adl" + String.format("%08x", Integer.valueOf((int) checksum.getValue())) + ".v1\n");
+			file2.setLastModified(lastModified + 10000);
+
+			System.setProperty("osgi.useReliableFiles", "true"); // force reliable files
+			manager2 = new StorageManager(base, null);
+			manager2.open(true);
+			InputStream is = manager2.getInputStream(fileName);
+			assertNotNull(is);
+			assertEquals(contents2, getInputStreamContents(is));
+
+			//now, corrupt version 2 of the file
+			RandomAccessFile raf = new RandomAccessFile(file2, "rw");
+			raf.seek(20);
+			raf.write('0'); // change 'O' to '0'
+			raf.close();
+			file2.setLastModified(lastModified + 20000);
+
+			is = manager2.getInputStream(fileName);
+			assertNotNull(is);
+			assertEquals(contents1, getInputStreamContents(is));
+			manager2.close();
+			manager2 = null;
+		} catch (IOException e) {
+			fail("unexepected exception", e);
+		} finally {
+			System.setProperty("osgi.useReliableFiles", "false"); // force reliable files off
+		}
+	}
+
 	public void testBigReliableFile() {
 		String fileName = getName() + ".txt";
 		try {
@@ -439,6 +498,87 @@ public class StreamManagerTests extends OSGiTest {
 		}
 	}
 
+	/**
+	 * This tests that a managed stream-set is only committed once all of its
+	 * streams are closed and that a partially closed or aborted set leaves the
+	 * previous contents of the set intact.
+	 */
+	public void testStreamSetCommit() {
+		testStreamSetCommit(true);
+		testStreamSetCommit(false);
+	}
+
+	private void testStreamSetCommit(boolean reliable) {
+		File mgrDir = new File(base, reliable ? "commitSetReliable" : "commitSetStd");
+		String fileName1 = "testSet1.txt";
+		String fileName2 = "testSet2.txt";
+		String[] names = new String[] {fileName1, fileName2};
+		String contents1 = "test set contents #1";
+		String contents2 = "test set contents #2";
+		try {
+			System.setProperty("osgi.useReliableFiles", reliable ? "true" : "false"); // force reliable files
+			manager1 = new StorageManager(mgrDir, null);
+			manager1.open(true);
+			ManagedOutputStream[] outs = manager1.getOutputStreamSet(names);
+			outs[0].write(contents1.getBytes());
+			outs[1].write(contents2.getBytes());
+			outs[0].close();
+			outs[1].close();
+			String[] committed = mgrDir.list();
+
+			// close only part of the next set
+			outs = manager1.getOutputStreamSet(names);
+			outs[0].write("new data #1".getBytes());
+			outs[1].write("new data #2".getBytes());
+			outs[0].close();
+			assertEquals(contents1, getInputStreamContents(manager1.getInputStream(fileName1)));
+			assertEquals(contents2, getInputStreamContents(manager1.getInputStream(fileName2)));
+
+			// another manager must not see the partially closed set either
+			manager2 = new StorageManager(mgrDir, null);
+			manager2.open(true);
+			assertEquals(contents1, getInputStreamContents(manager2.getInputStream(fileName1)));
+			assertEquals(contents2, getInputStreamContents(manager2.getInputStream(fileName2)));
+			manager2.close();
+			manager2 = null;
+
+			// aborting the last open stream discards the whole set
+			outs[1].abort();
+			outs[0].close(); //noop
+			outs[1].close(); //noop
+			assertEquals(committed.length, mgrDir.list().length);
+			assertEquals(contents1, getInputStreamContents(manager1.getInputStream(fileName1)));
+			assertEquals(contents2, getInputStreamContents(manager1.getInputStream(fileName2)));
+			manager1.close();
+			manager1 = null;
+
+			manager2 = new StorageManager(mgrDir, null);
+			manager2.open(true);
+			assertEquals(contents1, getInputStreamContents(manager2.getInputStream(fileName1)));
+			assertEquals(contents2, getInputStreamContents(manager2.getInputStream(fileName2)));
+
+			// the set is committed once its last stream is closed
+			outs = manager2.getOutputStreamSet(names);
+			outs[1].write("new data #2".getBytes());
+			outs[1].close();
+			outs[0].write("new data #1".getBytes());
+			outs[0].close();
+			assertEquals("new data #1", getInputStreamContents(manager2.getInputStream(fileName1)));
+			assertEquals("new data #2", getInputStreamContents(manager2.getInputStream(fileName2)));
+			manager2.close();
+			manager2 = null;
+
+			manager1 = new StorageManager(mgrDir, null);
+			manager1.open(true);
+			assertEquals("new data #1", getInputStreamContents(manager1.getInputStream(fileName1)));
+			assertEquals("new data #2", getInputStreamContents(manager1.getInputStream(fileName2)));
+			manager1.close();
+			manager1 = null;
+		} catch (IOException e) {
+			fail("unexepected exception", e);
+		}
+	}
+
 	/**
 	 * This tests if aborting a managed stream-set works as expected
 	 *
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2018 IBM Corporation and others.
+ * Copyright (c) 2003, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -15,15 +15,22 @@ package org.eclipse.osgi.tests.services.resolver;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 import org.eclipse.osgi.framework.util.CaseInsensitiveDictionaryMap;
@@ -45,6 +52,8 @@ import org.osgi.framework.Filter;
 import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.Version;
+import org.osgi.framework.hooks.resolver.ResolverHook;
+import org.osgi.framework.hooks.resolver.ResolverHookFactory;
 import org.osgi.framework.namespace.IdentityNamespace;
 import org.osgi.framework.wiring.BundleCapability;
 import org.osgi.framework.wiring.BundleRequirement;
@@ -3187,6 +3196,68 @@ public class StateResolverTest extends AbstractStateTest {
 		assertTrue("2.2", bCache.isResolved()); //$NON-NLS-1$
 	}
 
+	public void testReadStateVersion38() throws BundleException, IOException {
+		// the state files were written by the last version which had the strings inline
+		File stateCache = OSGiTestsActivator.getContext().getDataFile("statecacheV38"); //$NON-NLS-1$
+		stateCache.mkdirs();
+		for (String name : new String[] {".state", ".lazy"}) { //$NON-NLS-1$ //$NON-NLS-2$
+			URL entry = OSGiTestsActivator.getContext().getBundle().getEntry("test_files/stateTests/v38/" + name); //$NON-NLS-1$
+			assertNotNull("Missing state file: " + name, entry); //$NON-NLS-1$
+			InputStream in = entry.openStream();
+			try {
+				Files.copy(in, new File(stateCache, name).toPath(), StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				in.close();
+			}
+		}
+		State state = StateObjectFactory.defaultFactory.readState(stateCache);
+		checkStateVersion38("1", state); //$NON-NLS-1$
+
+		// the state is written back with the current version
+		File current = OSGiTestsActivator.getContext().getDataFile("statecacheV38current"); //$NON-NLS-1$
+		current.mkdirs();
+		StateObjectFactory.defaultFactory.writeState(state, current);
+		checkStateVersion38("2", StateObjectFactory.defaultFactory.readState(current)); //$NON-NLS-1$
+	}
+
+	private void checkStateVersion38(String tag, State state) {
+		assertEquals(tag + ".0", 4, state.getBundles().length); //$NON-NLS-1$
+		BundleDescription a = state.getBundle("a", null); //$NON-NLS-1$
+		BundleDescription b = state.getBundle("b", null); //$NON-NLS-1$
+		BundleDescription f = state.getBundle("f", null); //$NON-NLS-1$
+		BundleDescription c = state.getBundle("c", null); //$NON-NLS-1$
+		assertTrue(tag + ".1", a.isResolved()); //$NON-NLS-1$
+		assertTrue(tag + ".2", b.isResolved()); //$NON-NLS-1$
+		assertTrue(tag + ".3", f.isResolved()); //$NON-NLS-1$
+		assertFalse(tag + ".4", c.isResolved()); //$NON-NLS-1$
+		assertEquals(tag + ".5", "file:b", b.getLocation()); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(tag + ".6", new Version(2, 0, 0), b.getVersion()); //$NON-NLS-1$
+		assertEquals(tag + ".7", "missing.p", c.getImportPackages()[0].getName()); //$NON-NLS-1$ //$NON-NLS-2$
+
+		ExportPackageDescription[] imports = b.getResolvedImports();
+		assertEquals(tag + ".8", 2, imports.length); //$NON-NLS-1$
+		for (ExportPackageDescription imported : imports) {
+			assertEquals(tag + ".9", a, imported.getExporter()); //$NON-NLS-1$
+			if ("a.p".equals(imported.getName())) { //$NON-NLS-1$
+				assertEquals(tag + ".10", new Version(1, 0, 0), imported.getVersion()); //$NON-NLS-1$
+				assertEquals(tag + ".11", "value", imported.getAttributes().get("attr")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			} else {
+				assertEquals(tag + ".12", "a.q", imported.getName()); //$NON-NLS-1$ //$NON-NLS-2$
+				assertEquals(tag + ".13", "a.p", ((String[]) imported.getDirective(Constants.USES_DIRECTIVE))[0]); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+		assertEquals(tag + ".14", a, b.getResolvedRequires()[0]); //$NON-NLS-1$
+		assertEquals(tag + ".15", a, b.getResolvedGenericRequires()[0].getSupplier()); //$NON-NLS-1$
+		assertEquals(tag + ".16", "a", b.getResolvedGenericRequires()[0].getDeclaredAttributes().get("test.cap")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertEquals(tag + ".17", a, f.getHost().getHosts()[0]); //$NON-NLS-1$
+		assertEquals(tag + ".18", 4, state.getExportedPackages().length); //$NON-NLS-1$
+		List<String> exported = new ArrayList<>();
+		for (ExportPackageDescription export : a.getSelectedExports())
+			exported.add(export.getName());
+		Collections.sort(exported);
+		assertEquals(tag + ".19", "[a.f, a.p, a.q]", exported.toString()); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
 	public void testPlatformPropertiesBug207500a() throws BundleException, IOException {
 		State state = buildEmptyState();
 		int bundleID = 0;
@@ -4939,6 +5010,342 @@ public class StateResolverTest extends AbstractStateTest {
 		StateObjectFactory.defaultFactory.writeState(state, stateCache);
 		state = StateObjectFactory.defaultFactory.readState(stateCache);
 	}
+
+	public void testIncrementalResolveMatchesFullResolve() throws BundleException {
+		State state = buildEmptyState();
+		Map<Long, Dictionary> manifests = new HashMap<Long, Dictionary>();
+		BundleDescription a1 = addBundle(state, manifests, 1, "a1", Constants.EXPORT_PACKAGE, "p; version=1"); //$NON-NLS-1$ //$NON-NLS-2$
+		addBundle(state, manifests, 2, "a2", Constants.EXPORT_PACKAGE, "p; version=2"); //$NON-NLS-1$ //$NON-NLS-2$
+		BundleDescription b = addBundle(state, manifests, 3, "b", Constants.EXPORT_PACKAGE, "q; uses:=p", Constants.IMPORT_PACKAGE, "p; version=\"[1,2)\""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		addBundle(state, manifests, 4, "c", Constants.IMPORT_PACKAGE, "p, q"); //$NON-NLS-1$ //$NON-NLS-2$
+		state.resolve();
+		assertSameWiring("initial", state, manifests); //$NON-NLS-1$
+
+		// added bundles are resolved against the uses data kept from the previous resolve
+		addBundle(state, manifests, 5, "d", Constants.IMPORT_PACKAGE, "p; version=\"[2,3)\", q"); //$NON-NLS-1$ //$NON-NLS-2$
+		addBundle(state, manifests, 6, "e", Constants.REQUIRE_BUNDLE, "b", Constants.IMPORT_PACKAGE, "p"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		state.resolve();
+		assertSameWiring("add", state, manifests); //$NON-NLS-1$
+
+		state.removeBundle(2);
+		manifests.remove(Long.valueOf(2));
+		state.resolve();
+		assertSameWiring("remove", state, manifests); //$NON-NLS-1$
+
+		addBundle(state, manifests, 7, "f", Constants.FRAGMENT_HOST, "b", Constants.EXPORT_PACKAGE, "r; uses:=p", Constants.IMPORT_PACKAGE, "p"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		addBundle(state, manifests, 8, "g", Constants.IMPORT_PACKAGE, "p, r"); //$NON-NLS-1$ //$NON-NLS-2$
+		state.resolve(new BundleDescription[] {b});
+		assertSameWiring("fragment", state, manifests); //$NON-NLS-1$
+
+		// a fragment which only adds exports attaches to the resolved host
+		addBundle(state, manifests, 10, "f2", Constants.FRAGMENT_HOST, "b", Constants.EXPORT_PACKAGE, "s; uses:=p"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		addBundle(state, manifests, 11, "h", Constants.IMPORT_PACKAGE, "p, s"); //$NON-NLS-1$ //$NON-NLS-2$
+		state.resolve();
+		assertTrue("f2 is not resolved", state.getBundle(10).isResolved()); //$NON-NLS-1$
+		assertSameWiring("fragment of resolved host", state, manifests); //$NON-NLS-1$
+
+		addBundle(state, manifests, 9, "a3", Constants.EXPORT_PACKAGE, "p; version=1.5"); //$NON-NLS-1$ //$NON-NLS-2$
+		state.resolve(new BundleDescription[] {a1});
+		assertSameWiring("re-resolve", state, manifests); //$NON-NLS-1$
+	}
+
+	private BundleDescription addBundle(State state, Map<Long, Dictionary> manifests, long id, String symbolicName, String... headers) throws BundleException {
+		Hashtable manifest = new Hashtable();
+		manifest.put(Constants.BUNDLE_MANIFESTVERSION, "2"); //$NON-NLS-1$
+		manifest.put(Constants.BUNDLE_SYMBOLICNAME, symbolicName);
+		for (int i = 0; i < headers.length; i += 2)
+			manifest.put(headers[i], headers[i + 1]);
+		manifests.put(id, manifest);
+		BundleDescription bundle = state.getFactory().createBundleDescription(state, manifest, symbolicName, id);
+		state.addBundle(bundle);
+		return bundle;
+	}
+
+	/*
+	 * Resolves the bundles of the state in a new state with a new resolver and checks that
+	 * the bundles are wired the same way in both states.
+	 */
+	private void assertSameWiring(String tag, State state, Map<Long, Dictionary> manifests) throws BundleException {
+		State fresh = buildEmptyState();
+		for (Map.Entry<Long, Dictionary> entry : manifests.entrySet())
+			fresh.addBundle(fresh.getFactory().createBundleDescription(fresh, entry.getValue(), state.getBundle(entry.getKey()).getLocation(), entry.getKey()));
+		fresh.resolve();
+		assertEquals(tag + ": wrong number of bundles", fresh.getBundles().length, state.getBundles().length); //$NON-NLS-1$
+		for (BundleDescription expected : fresh.getBundles()) {
+			BundleDescription actual = state.getBundle(expected.getBundleId());
+			String bundleTag = tag + ": " + expected.getSymbolicName(); //$NON-NLS-1$
+			assertEquals(bundleTag + " resolved", expected.isResolved(), actual.isResolved()); //$NON-NLS-1$
+			assertEquals(bundleTag + " imports", getWires(expected.getResolvedImports()), getWires(actual.getResolvedImports())); //$NON-NLS-1$
+			assertEquals(bundleTag + " exports", getWires(expected.getSelectedExports()), getWires(actual.getSelectedExports())); //$NON-NLS-1$
+			assertEquals(bundleTag + " requires", getIds(expected.getResolvedRequires()), getIds(actual.getResolvedRequires())); //$NON-NLS-1$
+			if (expected.getHost() != null)
+				assertEquals(bundleTag + " hosts", getIds(expected.getHost().getHosts()), getIds(actual.getHost().getHosts())); //$NON-NLS-1$
+		}
+	}
+
+	private static List<String> getWires(ExportPackageDescription[] packages) {
+		List<String> result = new ArrayList<String>();
+		for (ExportPackageDescription pkg : packages)
+			result.add(pkg.getName() + "@" + pkg.getExporter().getBundleId()); //$NON-NLS-1$
+		Collections.sort(result);
+		return result;
+	}
+
+	private static List<Long> getIds(BundleDescription[] bundles) {
+		List<Long> result = new ArrayList<Long>();
+		if (bundles != null)
+			for (BundleDescription bundle : bundles)
+				result.add(bundle.getBundleId());
+		Collections.sort(result);
+		return result;
+	}
+
+	public void testReadDuringResolve() throws Exception {
+		final State state = buildEmptyState();
+		Hashtable manifest = new Hashtable();
+		manifest.put(Constants.BUNDLE_MANIFESTVERSION, "2"); //$NON-NLS-1$
+		manifest.put(Constants.BUNDLE_SYMBOLICNAME, "a"); //$NON-NLS-1$
+		manifest.put(Constants.EXPORT_PACKAGE, "a"); //$NON-NLS-1$
+		BundleDescription a = state.getFactory().createBundleDescription(state, manifest, "a", 1); //$NON-NLS-1$
+		state.addBundle(a);
+		state.resolve();
+		assertTrue("a is not resolved", a.isResolved()); //$NON-NLS-1$
+
+		manifest.put(Constants.BUNDLE_SYMBOLICNAME, "b"); //$NON-NLS-1$
+		manifest.put(Constants.IMPORT_PACKAGE, "a"); //$NON-NLS-1$
+		BundleDescription b = state.getFactory().createBundleDescription(state, manifest, "b", 2); //$NON-NLS-1$
+		state.addBundle(b);
+		long timeStamp = state.getTimeStamp();
+
+		final CountDownLatch resolving = new CountDownLatch(1);
+		final CountDownLatch finishResolve = new CountDownLatch(1);
+		state.setResolverHookFactory(new ResolverHookFactory() {
+			@Override
+			public ResolverHook begin(Collection<BundleRevision> triggers) {
+				resolving.countDown();
+				try {
+					finishResolve.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return null;
+			}
+		});
+		Thread resolver = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				state.resolve(false);
+			}
+		}, "resolver"); //$NON-NLS-1$
+		resolver.start();
+		try {
+			assertTrue("The resolve did not start", resolving.await(10, TimeUnit.SECONDS)); //$NON-NLS-1$
+			// the queries must not wait for the resolve and see the state as it was before the resolve
+			assertEquals("Wrong bundles", 2, state.getBundles().length); //$NON-NLS-1$
+			assertEquals("Wrong bundle", b, state.getBundle(2)); //$NON-NLS-1$
+			assertEquals("Wrong bundle", a, state.getBundle("a", null)); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals("Wrong bundle", b, state.getBundleByLocation("b")); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals("Wrong resolved bundles", 1, state.getResolvedBundles().length); //$NON-NLS-1$
+			assertEquals("Wrong exported packages", 1, state.getExportedPackages().length); //$NON-NLS-1$
+			assertEquals("Wrong time stamp", timeStamp, state.getTimeStamp()); //$NON-NLS-1$
+			assertFalse("State is resolved", state.isResolved()); //$NON-NLS-1$
+		} finally {
+			finishResolve.countDown();
+			resolver.join(10000);
+		}
+		assertFalse("The resolve did not finish", resolver.isAlive()); //$NON-NLS-1$
+		assertEquals("Wrong resolved bundles", 2, state.getResolvedBundles().length); //$NON-NLS-1$
+		assertTrue("State is not resolved", state.isResolved()); //$NON-NLS-1$
+		assertTrue("Time stamp not updated", timeStamp != state.getTimeStamp()); //$NON-NLS-1$
+	}
+
+	public void testReadDuringChanges() throws Exception {
+		final State state = buildEmptyState();
+		final int stableCount = 10;
+		BundleDescription[] stable = new BundleDescription[stableCount];
+		for (int i = 0; i < stableCount; i++) {
+			Hashtable manifest = new Hashtable();
+			manifest.put(Constants.BUNDLE_MANIFESTVERSION, "2"); //$NON-NLS-1$
+			manifest.put(Constants.BUNDLE_SYMBOLICNAME, "stable"); //$NON-NLS-1$
+			manifest.put(Constants.BUNDLE_VERSION, "1.0." + i); //$NON-NLS-1$
+			manifest.put(Constants.EXPORT_PACKAGE, "stable"); //$NON-NLS-1$
+			stable[i] = state.getFactory().createBundleDescription(state, manifest, "stable" + i, i); //$NON-NLS-1$
+			state.addBundle(stable[i]);
+		}
+		state.resolve();
+
+		final Throwable[] writerFailure = new Throwable[1];
+		Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					BundleDescription previous = null;
+					for (int i = 0; i < 2000; i++) {
+						Hashtable manifest = new Hashtable();
+						manifest.put(Constants.BUNDLE_MANIFESTVERSION, "2"); //$NON-NLS-1$
+						manifest.put(Constants.BUNDLE_SYMBOLICNAME, "churn"); //$NON-NLS-1$
+						manifest.put(Constants.EXPORT_PACKAGE, "churn"); //$NON-NLS-1$
+						manifest.put(Constants.IMPORT_PACKAGE, "stable"); //$NON-NLS-1$
+						BundleDescription current = state.getFactory().createBundleDescription(state, manifest, "churn" + i, 100 + i); //$NON-NLS-1$
+						state.addBundle(current);
+						if (previous != null)
+							state.removeBundle(previous);
+						if (i % 10 == 0)
+							state.resolve();
+						previous = current;
+					}
+				} catch (Throwable t) {
+					writerFailure[0] = t;
+				}
+			}
+		}, "writer"); //$NON-NLS-1$
+		writer.start();
+		try {
+			do {
+				// the bundles which are not changed must always be seen in full
+				BundleDescription[] bundles = state.getBundles();
+				int stableFound = 0;
+				for (int i = 0; i < bundles.length; i++) {
+					assertNotNull("Null bundle", bundles[i]); //$NON-NLS-1$
+					for (int j = i + 1; j < bundles.length; j++)
+						assertTrue("Duplicate bundle: " + bundles[i], bundles[i].getBundleId() != bundles[j].getBundleId()); //$NON-NLS-1$
+					if (bundles[i].getBundleId() < stableCount)
+						stableFound++;
+				}
+				assertEquals("Wrong stable bundles", stableCount, stableFound); //$NON-NLS-1$
+				assertEquals("Wrong stable bundles", stableCount, state.getBundles("stable").length); //$NON-NLS-1$ //$NON-NLS-2$
+				assertTrue("Wrong churn bundles", state.getBundles("churn").length <= 2); //$NON-NLS-1$ //$NON-NLS-2$
+				for (int i = 0; i < stableCount; i++) {
+					assertEquals("Wrong bundle", stable[i], state.getBundle(i)); //$NON-NLS-1$
+					assertContains("Missing resolved bundle", state.getResolvedBundles(), stable[i]); //$NON-NLS-1$
+				}
+				assertEquals("Wrong bundle", stable[stableCount - 1], state.getBundle("stable", null)); //$NON-NLS-1$ //$NON-NLS-2$
+				int stableExports = 0;
+				for (ExportPackageDescription export : state.getExportedPackages()) {
+					if ("stable".equals(export.getName())) //$NON-NLS-1$
+						stableExports++;
+				}
+				assertEquals("Wrong stable exports", stableCount, stableExports); //$NON-NLS-1$
+			} while (writer.isAlive());
+		} finally {
+			writer.join(30000);
+		}
+		assertNull("The writer failed: " + writerFailure[0], writerFailure[0]); //$NON-NLS-1$
+		assertEquals("Wrong bundles", stableCount + 1, state.getBundles().length); //$NON-NLS-1$
+		BundleDescription last = state.getBundles("churn")[0]; //$NON-NLS-1$
+		assertEquals("Wrong churn bundle", 2099, last.getBundleId()); //$NON-NLS-1$
+		state.resolve();
+		assertEquals("Wrong resolved bundles", stableCount + 1, state.getResolvedBundles().length); //$NON-NLS-1$
+		state.removeBundle(last);
+		assertEquals("Wrong resolved bundles", stableCount, state.getResolvedBundles().length); //$NON-NLS-1$
+		assertEquals("Wrong bundles", stableCount, state.getBundles().length); //$NON-NLS-1$
+		assertNull("Removed bundle found", state.getBundle(last.getBundleId())); //$NON-NLS-1$
+	}
+
+	public void testVisiblePackagesAfterStateChange() throws BundleException {
+		State state = buildEmptyState();
+		Hashtable manifest = new Hashtable();
+		manifest.put(Constants.BUNDLE_MANIFESTVERSION, "2"); //$NON-NLS-1$
+		manifest.put(Constants.BUNDLE_SYMBOLICNAME, "a"); //$NON-NLS-1$
+		manifest.put(Constants.EXPORT_PACKAGE, "a"); //$NON-NLS-1$
+		BundleDescription a = state.getFactory().createBundleDescription(state, manifest, "a", 1); //$NON-NLS-1$
+		state.addBundle(a);
+
+		manifest = new Hashtable();
+		manifest.put(Constants.BUNDLE_MANIFESTVERSION, "2"); //$NON-NLS-1$
+		manifest.put(Constants.BUNDLE_SYMBOLICNAME, "b"); //$NON-NLS-1$
+		manifest.put(Constants.IMPORT_PACKAGE, "a"); //$NON-NLS-1$
+		manifest.put(Constants.REQUIRE_BUNDLE, "c;resolution:=optional"); //$NON-NLS-1$
+		BundleDescription b = state.getFactory().createBundleDescription(state, manifest, "b", 2); //$NON-NLS-1$
+		state.addBundle(b);
+		state.resolve();
+		assertTrue("b is not resolved", b.isResolved()); //$NON-NLS-1$
+
+		ExportPackageDescription[] visible = state.getStateHelper().getVisiblePackages(b);
+		assertEquals("Wrong number of visible packages", 1, visible.length); //$NON-NLS-1$
+		assertEquals("Wrong visible package", "a", visible[0].getName()); //$NON-NLS-1$ //$NON-NLS-2$
+		// the result is a copy; changing it must not change later results
+		visible[0] = null;
+		visible = state.getStateHelper().getVisiblePackages(b);
+		assertNotNull("Wrong visible package", visible[0]); //$NON-NLS-1$
+
+		manifest = new Hashtable();
+		manifest.put(Constants.BUNDLE_MANIFESTVERSION, "2"); //$NON-NLS-1$
+		manifest.put(Constants.BUNDLE_SYMBOLICNAME, "c"); //$NON-NLS-1$
+		manifest.put(Constants.EXPORT_PACKAGE, "c"); //$NON-NLS-1$
+		BundleDescription c = state.getFactory().createBundleDescription(state, manifest, "c", 3); //$NON-NLS-1$
+		state.addBundle(c);
+		state.resolve(new BundleDescription[] {b});
+		assertTrue("b is not resolved", b.isResolved()); //$NON-NLS-1$
+
+		// the packages of the newly required bundle must be visible
+		visible = state.getStateHelper().getVisiblePackages(b);
+		assertEquals("Wrong number of visible packages", 2, visible.length); //$NON-NLS-1$
+		assertEquals("Wrong visible package", "c", visible[1].getName()); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	public void testVisiblePackagesNotCachedDuringResolve() throws Exception {
+		final State state = buildEmptyState();
+		Hashtable manifest = new Hashtable();
+		manifest.put(Constants.BUNDLE_MANIFESTVERSION, "2"); //$NON-NLS-1$
+		manifest.put(Constants.BUNDLE_SYMBOLICNAME, "a"); //$NON-NLS-1$
+		manifest.put(Constants.EXPORT_PACKAGE, "a"); //$NON-NLS-1$
+		BundleDescription a = state.getFactory().createBundleDescription(state, manifest, "a", 1); //$NON-NLS-1$
+		state.addBundle(a);
+		manifest.put(Constants.BUNDLE_SYMBOLICNAME, "b"); //$NON-NLS-1$
+		manifest.put(Constants.IMPORT_PACKAGE, "a"); //$NON-NLS-1$
+		BundleDescription b = state.getFactory().createBundleDescription(state, manifest, "b", 2); //$NON-NLS-1$
+		state.addBundle(b);
+		state.resolve();
+		assertEquals("Wrong number of visible packages", 1, state.getStateHelper().getVisiblePackages(b).length); //$NON-NLS-1$
+
+		// the cache is internal to the state; there is no other way to tell whether it is used
+		Method getCache = null;
+		for (Class<?> clazz = state.getClass(); getCache == null; clazz = clazz.getSuperclass()) {
+			for (Method method : clazz.getDeclaredMethods()) {
+				if ("getVisiblePackagesCache".equals(method.getName())) //$NON-NLS-1$
+					getCache = method;
+			}
+		}
+		getCache.setAccessible(true);
+		Map<?, ?> before = (Map<?, ?>) getCache.invoke(state, 0);
+		assertNotNull("No cache", before); //$NON-NLS-1$
+		assertTrue("The visible packages are not cached", before.containsKey(b)); //$NON-NLS-1$
+
+		final CountDownLatch resolving = new CountDownLatch(1);
+		final CountDownLatch finishResolve = new CountDownLatch(1);
+		state.setResolverHookFactory(new ResolverHookFactory() {
+			@Override
+			public ResolverHook begin(Collection<BundleRevision> triggers) {
+				resolving.countDown();
+				try {
+					finishResolve.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return null;
+			}
+		});
+		Thread resolver = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				state.resolve(false);
+			}
+		}, "resolver"); //$NON-NLS-1$
+		resolver.start();
+		try {
+			assertTrue("The resolve did not start", resolving.await(10, TimeUnit.SECONDS)); //$NON-NLS-1$
+			assertNull("The visible packages are cached during a resolve", getCache.invoke(state, 0)); //$NON-NLS-1$
+		} finally {
+			finishResolve.countDown();
+			resolver.join(10000);
+		}
+		assertFalse("The resolve did not finish", resolver.isAlive()); //$NON-NLS-1$
+		Map<?, ?> after = (Map<?, ?>) getCache.invoke(state, 0);
+		assertNotNull("No cache", after); //$NON-NLS-1$
+		assertNotSame("The cache was kept by the resolve", before, after); //$NON-NLS-1$
+		assertEquals("Wrong number of visible packages", 1, state.getStateHelper().getVisiblePackages(b).length); //$NON-NLS-1$
+	}
 }
 //testFragmentUpdateNoVersionChanged()
 //testFragmentUpdateVersionChanged()
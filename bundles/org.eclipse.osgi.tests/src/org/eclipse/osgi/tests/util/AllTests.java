@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2009 IBM Corporation and others.
+ * Copyright (c) 2006, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -29,6 +29,8 @@ public class AllTests extends TestSuite {
 		addTest(new TestSuite(ObjectPoolTestCase.class));
 		addTest(new TestSuite(ManifestElementTestCase.class));
 		addTest(new TestSuite(NLSTestCase.class));
+		addTest(new TestSuite(PromiseTest.class));
+		addTest(new TestSuite(HashedWheelTimerTest.class));
 		addBidiTests();
 		addLatinTests();
 	}
@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.osgi.tests.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.eclipse.core.tests.harness.CoreTest;
+import org.eclipse.osgi.internal.util.promise.HashedWheelTimer;
+
+/**
+ * Tests the hashed wheel timer used for promise timeouts and delays.
+ */
+public class HashedWheelTimerTest extends CoreTest {
+	private final AtomicReference<Throwable> uncaught = new AtomicReference<>();
+	private final ThreadFactory threadFactory = new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, getName());
+			t.setDaemon(true);
+			t.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+				@Override
+				public void uncaughtException(Thread thread, Throwable e) {
+					uncaught.set(e);
+				}
+			});
+			return t;
+		}
+	};
+	private HashedWheelTimer timer;
+
+	protected void tearDown() throws Exception {
+		if (timer != null) {
+			timer.stop(10, TimeUnit.SECONDS);
+		}
+	}
+
+	public void testExpiryNotBeforeDeadline() throws Exception {
+		timer = new HashedWheelTimer(threadFactory, 10, TimeUnit.MILLISECONDS, 8);
+		long[] delays = {0, 1, 15, 50, 100, 250};
+		List<TimedOperation> operations = new ArrayList<>();
+		for (long delay : delays) {
+			TimedOperation operation = new TimedOperation(delay);
+			operation.future = timer.schedule(operation, delay, TimeUnit.MILLISECONDS);
+			operations.add(operation);
+		}
+		for (TimedOperation operation : operations) {
+			operation.assertRunOnTime();
+		}
+	}
+
+	public void testDelayLongerThanOneRound() throws Exception {
+		// a round of the wheel takes 8ms
+		timer = new HashedWheelTimer(threadFactory, 1, TimeUnit.MILLISECONDS, 8);
+		List<TimedOperation> operations = new ArrayList<>();
+		for (long delay = 20; delay <= 200; delay += 30) {
+			TimedOperation operation = new TimedOperation(delay);
+			operation.future = timer.schedule(operation, delay, TimeUnit.MILLISECONDS);
+			operations.add(operation);
+		}
+		for (TimedOperation operation : operations) {
+			operation.assertRunOnTime();
+		}
+	}
+
+	public void testCancelBeforeTransfer() throws Exception {
+		// the worker only places new operations on the wheel at the end of a tick
+		timer = new HashedWheelTimer(threadFactory, 200, TimeUnit.MILLISECONDS, 8);
+		AtomicInteger runs = new AtomicInteger();
+		ScheduledFuture<?> future = timer.schedule(new CountingOperation(runs), 0, TimeUnit.MILLISECONDS);
+		assertTrue("Not cancelled.", future.cancel(false)); //$NON-NLS-1$
+		assertCancelled(future);
+		TimedOperation later = new TimedOperation(300);
+		later.future = timer.schedule(later, 300, TimeUnit.MILLISECONDS);
+		later.assertRunOnTime();
+		assertEquals("Cancelled operation was run.", 0, runs.get()); //$NON-NLS-1$
+	}
+
+	public void testCancelAfterTransfer() throws Exception {
+		timer = new HashedWheelTimer(threadFactory, 10, TimeUnit.MILLISECONDS, 8);
+		AtomicInteger runs = new AtomicInteger();
+		ScheduledFuture<?> future = timer.schedule(new CountingOperation(runs), 300, TimeUnit.MILLISECONDS);
+		// wait several ticks so the operation is on the wheel
+		Thread.sleep(100);
+		assertFalse("Done early.", future.isDone()); //$NON-NLS-1$
+		assertTrue("Not cancelled.", future.cancel(false)); //$NON-NLS-1$
+		assertFalse("Cancelled twice.", future.cancel(false)); //$NON-NLS-1$
+		assertCancelled(future);
+		TimedOperation later = new TimedOperation(400);
+		later.future = timer.schedule(later, 400, TimeUnit.MILLISECONDS);
+		later.assertRunOnTime();
+		assertEquals("Cancelled operation was run.", 0, runs.get()); //$NON-NLS-1$
+		assertTrue("Cancelled operation returned by stop.", timer.stop(10, TimeUnit.SECONDS).isEmpty()); //$NON-NLS-1$
+	}
+
+	public void testWakeUpAfterIdle() throws Exception {
+		timer = new HashedWheelTimer(threadFactory, 10, TimeUnit.MILLISECONDS, 8);
+		for (int i = 0; i < 3; i++) {
+			TimedOperation operation = new TimedOperation(20);
+			operation.future = timer.schedule(operation, 20, TimeUnit.MILLISECONDS);
+			operation.assertRunOnTime();
+			// let the worker thread wait for new operations
+			Thread.sleep(100);
+		}
+		// an operation which is cancelled while the worker is idle does not keep it awake
+		timer.schedule(new CountingOperation(new AtomicInteger()), 1, TimeUnit.HOURS).cancel(false);
+		Thread.sleep(100);
+		TimedOperation operation = new TimedOperation(20);
+		operation.future = timer.schedule(operation, 20, TimeUnit.MILLISECONDS);
+		operation.assertRunOnTime();
+	}
+
+	public void testStopReturnsPendingOperations() throws Exception {
+		timer = new HashedWheelTimer(threadFactory, 10, TimeUnit.MILLISECONDS, 8);
+		AtomicInteger runs = new AtomicInteger();
+		// placed on the wheel
+		timer.schedule(new CountingOperation(runs), 1, TimeUnit.HOURS);
+		timer.schedule(new CountingOperation(runs), 2, TimeUnit.HOURS).cancel(false);
+		Thread.sleep(100);
+		// may still be pending
+		timer.schedule(new CountingOperation(runs), 1, TimeUnit.HOURS);
+		ScheduledFuture<?> cancelled = timer.schedule(new CountingOperation(runs), 2, TimeUnit.HOURS);
+		cancelled.cancel(false);
+
+		List<Runnable> unprocessed = timer.stop(10, TimeUnit.SECONDS);
+		assertEquals("Wrong number of unprocessed operations.", 2, unprocessed.size()); //$NON-NLS-1$
+		for (Runnable operation : unprocessed) {
+			operation.run();
+			operation.run();
+		}
+		assertEquals("Unprocessed operations not run once.", 2, runs.get()); //$NON-NLS-1$
+		try {
+			timer.schedule(new CountingOperation(runs), 0, TimeUnit.MILLISECONDS);
+			fail("Scheduled on a stopped timer."); //$NON-NLS-1$
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+		assertTrue("Stopped twice.", timer.stop(10, TimeUnit.SECONDS).isEmpty()); //$NON-NLS-1$
+	}
+
+	public void testStopWaitIsBounded() throws Exception {
+		timer = new HashedWheelTimer(threadFactory, 10, TimeUnit.MILLISECONDS, 8);
+		final CountDownLatch running = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		timer.schedule(new Runnable() {
+			@Override
+			public void run() {
+				running.countDown();
+				try {
+					release.await(30, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, 0, TimeUnit.MILLISECONDS);
+		try {
+			assertTrue("Operation not run.", running.await(10, TimeUnit.SECONDS)); //$NON-NLS-1$
+			long start = System.nanoTime();
+			timer.stop(200, TimeUnit.MILLISECONDS);
+			long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			assertTrue("Stop waited too long: " + elapsed + "ms", elapsed < 5000); //$NON-NLS-1$ //$NON-NLS-2$
+		} finally {
+			release.countDown();
+		}
+	}
+
+	public void testOperationFailure() throws Exception {
+		timer = new HashedWheelTimer(threadFactory, 10, TimeUnit.MILLISECONDS, 8);
+		final RuntimeException failure = new RuntimeException("test failure"); //$NON-NLS-1$
+		ScheduledFuture<?> failed = timer.schedule(new Runnable() {
+			@Override
+			public void run() {
+				throw failure;
+			}
+		}, 0, TimeUnit.MILLISECONDS);
+		failed.get(10, TimeUnit.SECONDS);
+		assertSame("Failure not passed to the uncaught exception handler.", failure, uncaught.get()); //$NON-NLS-1$
+		// the worker thread keeps running
+		TimedOperation operation = new TimedOperation(20);
+		operation.future = timer.schedule(operation, 20, TimeUnit.MILLISECONDS);
+		operation.assertRunOnTime();
+	}
+
+	void assertCancelled(ScheduledFuture<?> future) throws Exception {
+		assertTrue("Not done.", future.isDone()); //$NON-NLS-1$
+		assertTrue("Not cancelled.", future.isCancelled()); //$NON-NLS-1$
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			fail("Cancelled future returned a result."); //$NON-NLS-1$
+		} catch (CancellationException e) {
+			// expected
+		}
+	}
+
+	static class CountingOperation implements Runnable {
+		private final AtomicInteger runs;
+
+		CountingOperation(AtomicInteger runs) {
+			this.runs = runs;
+		}
+
+		@Override
+		public void run() {
+			runs.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Records when it is run relative to when it was scheduled.
+	 */
+	static class TimedOperation implements Runnable {
+		final long delayMillis;
+		final long scheduled = System.nanoTime();
+		volatile long ran;
+		ScheduledFuture<?> future;
+
+		TimedOperation(long delayMillis) {
+			this.delayMillis = delayMillis;
+		}
+
+		@Override
+		public void run() {
+			ran = System.nanoTime();
+		}
+
+		void assertRunOnTime() throws Exception {
+			future.get(10, TimeUnit.SECONDS);
+			assertFalse("Cancelled.", future.isCancelled()); //$NON-NLS-1$
+			long elapsed = TimeUnit.NANOSECONDS.toMillis(ran - scheduled);
+			assertTrue("Run after " + elapsed + "ms before the delay of " + delayMillis + "ms", elapsed >= delayMillis); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2018 IBM Corporation and others.
+ * Copyright (c) 2006, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -15,7 +15,9 @@
 package org.eclipse.osgi.tests.util;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
@@ -87,6 +89,70 @@ public class ManifestElementTestCase extends TestCase {
 		doManifestTest("\r\n");
 	}
 
+	public void testManifestSplitCharacter() throws IOException, BundleException {
+		byte[] value = "test.\u00e9\u20ac".getBytes(StandardCharsets.UTF_8);
+		// split the last multi-byte character across a line continuation
+		ByteArrayOutputStream manifestBytes = new ByteArrayOutputStream();
+		manifestBytes.write("Bundle-SymbolicName: ".getBytes(StandardCharsets.UTF_8));
+		manifestBytes.write(value, 0, value.length - 1);
+		manifestBytes.write("\r\n ".getBytes(StandardCharsets.UTF_8));
+		manifestBytes.write(value, value.length - 1, 1);
+		manifestBytes.write("\r\nBundle-Version: 1.0\r\nBundle-Version: 2.0 \r\n\r\nName: ignored\r\n".getBytes(StandardCharsets.UTF_8));
+		Map<String, String> manifest = ManifestElement.parseBundleManifest(new ByteArrayInputStream(manifestBytes.toByteArray()), null);
+		Assert.assertEquals("Wrong Bundle-SymbolicName.", "test.\u00e9\u20ac", manifest.get(Constants.BUNDLE_SYMBOLICNAME));
+		Assert.assertEquals("Wrong Bundle-Version.", "2.0", manifest.get(Constants.BUNDLE_VERSION));
+		Assert.assertEquals("Wrong number of headers.", 2, manifest.size());
+	}
+
+	public void testManifestNoColon() throws IOException {
+		try {
+			getManifest(Arrays.asList("Bundle-SymbolicName: test", "Bundle-Version 1.0"), "\n");
+			fail("Expected a manifest error.");
+		} catch (BundleException e) {
+			Assert.assertEquals("Wrong error type.", BundleException.MANIFEST_ERROR, e.getType());
+		}
+	}
+
+	public void testManifestMainSectionOnly() throws IOException, BundleException {
+		// the digest sections of a signed bundle follow the main section
+		StringBuilder manifestText = new StringBuilder("Manifest-Version: 1.0\r\nBundle-SymbolicName: test.bsn\r\n\r\n");
+		for (int i = 0; manifestText.length() < 1024 * 1024; i++) {
+			manifestText.append("Name: test/Class").append(i).append(".class\r\nSHA-256-Digest: 0123456789abcdef0123456789abcdef0123456789a=\r\n\r\n");
+		}
+		final byte[] manifestBytes = manifestText.toString().getBytes(StandardCharsets.UTF_8);
+		final int[] read = new int[1];
+		final boolean[] closed = new boolean[1];
+		InputStream in = new ByteArrayInputStream(manifestBytes) {
+			@Override
+			public synchronized int read() {
+				int result = super.read();
+				if (result != -1) {
+					read[0]++;
+				}
+				return result;
+			}
+
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				int result = super.read(b, off, len);
+				if (result > 0) {
+					read[0] += result;
+				}
+				return result;
+			}
+
+			@Override
+			public void close() {
+				closed[0] = true;
+			}
+		};
+		Map<String, String> manifest = ManifestElement.parseBundleManifest(in, null);
+		Assert.assertEquals("Wrong Bundle-SymbolicName.", "test.bsn", manifest.get(Constants.BUNDLE_SYMBOLICNAME));
+		Assert.assertEquals("Wrong number of headers.", 2, manifest.size());
+		Assert.assertTrue("Read past the main section: " + read[0], read[0] <= 8192);
+		Assert.assertTrue("Manifest not closed.", closed[0]);
+	}
+
 	private void doManifestTest(String newLine) throws IOException, BundleException {
 		Map<String, String> manifest = getManifest(TEST_MANIFEST, newLine);
 		Assert.assertEquals("Wrong Bundle-SymbolicName.", "test.bsn", manifest.get(Constants.BUNDLE_SYMBOLICNAME));
@@ -104,6 +104,55 @@ public class ObjectPoolTestCase extends CoreTest {
 		doGC();
 	}
 
+	public void testObjectPool03() throws InterruptedException {
+		// Test interning the same strings from many threads
+		final int num = 2000;
+		final int numThreads = 8;
+		final String prefix = getName() + "_"; //$NON-NLS-1$
+		final List[] results = new List[numThreads];
+		long duplicates = getStringStatistics().getDuplicates();
+		Thread[] threads = new Thread[numThreads];
+		for (int t = 0; t < numThreads; t++) {
+			final List result = new ArrayList();
+			results[t] = result;
+			threads[t] = new Thread(new Runnable() {
+				public void run() {
+					for (int i = 0; i < num; i++) {
+						result.add(ObjectPool.intern(prefix + i));
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		// all threads must get the same pooled objects
+		for (int t = 1; t < numThreads; t++) {
+			for (int i = 0; i < num; i++) {
+				assertTrue("Strings are not the same: " + results[0].get(i), results[0].get(i) == results[t].get(i)); //$NON-NLS-1$
+			}
+		}
+		ObjectPool.Statistics statistics = getStringStatistics();
+		assertTrue("Wrong number of duplicates: " + statistics, statistics.getDuplicates() - duplicates >= num * (numThreads - 1)); //$NON-NLS-1$
+		for (List result : results) {
+			result.clear();
+		}
+		doGC();
+	}
+
+	private static ObjectPool.Statistics getStringStatistics() {
+		for (ObjectPool.Statistics statistics : ObjectPool.getStatistics()) {
+			if (String.class.getName().equals(statistics.getType())) {
+				return statistics;
+			}
+		}
+		fail("No statistics for strings"); //$NON-NLS-1$
+		return null;
+	}
+
 	private static void doGC() {
 		// We go through great effort to force the VM to throw our weakly referenced objects away.
 		System.gc();
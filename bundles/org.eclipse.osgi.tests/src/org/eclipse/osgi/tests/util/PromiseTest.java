@@ -0,0 +1,327 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.osgi.tests.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.eclipse.core.tests.harness.CoreTest;
+import org.osgi.util.function.Consumer;
+import org.osgi.util.function.Function;
+import org.osgi.util.function.Predicate;
+import org.osgi.util.promise.Deferred;
+import org.osgi.util.promise.Promise;
+import org.osgi.util.promise.PromiseFactory;
+
+/**
+ * Tests the resolution of deferred promises by concurrent threads and the
+ * synchronous chaining methods which are computed on the current thread.
+ */
+public class PromiseTest extends CoreTest {
+	private static final String ALLOW_CURRENT_THREAD = "org.osgi.util.promise.allowCurrentThread"; //$NON-NLS-1$
+
+	private final PromiseFactory inline = new PromiseFactory(PromiseFactory.inlineExecutor());
+
+	public void testConcurrentOnResolve() throws Exception {
+		final int threads = 4;
+		final int callbacks = 100;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (int i = 0; i < 200; i++) {
+				final Deferred<Integer> deferred = inline.deferred();
+				final AtomicInteger[] called = new AtomicInteger[threads * callbacks];
+				for (int j = 0; j < called.length; j++) {
+					called[j] = new AtomicInteger();
+				}
+				final CountDownLatch start = new CountDownLatch(1);
+				final CountDownLatch done = new CountDownLatch(threads);
+				for (int t = 0; t < threads; t++) {
+					final int first = t * callbacks;
+					executor.execute(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								start.await();
+								for (int j = first; j < first + callbacks; j++) {
+									final AtomicInteger count = called[j];
+									deferred.getPromise().onResolve(new Runnable() {
+										@Override
+										public void run() {
+											count.incrementAndGet();
+										}
+									});
+								}
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+							} finally {
+								done.countDown();
+							}
+						}
+					});
+				}
+				start.countDown();
+				// resolve while the other threads are registering their callbacks
+				deferred.resolve(Integer.valueOf(i));
+				assertTrue("Callbacks not registered.", done.await(10, TimeUnit.SECONDS)); //$NON-NLS-1$
+				for (int j = 0; j < called.length; j++) {
+					assertEquals("Wrong calls of callback " + j + " in run " + i, 1, called[j].get()); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	public void testConcurrentResolve() throws Exception {
+		final int threads = 4;
+		ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+		try {
+			for (int i = 0; i < 200; i++) {
+				final Deferred<Integer> deferred = inline.deferred();
+				final AtomicInteger resolvers = new AtomicInteger();
+				final AtomicReference<Integer> waited = new AtomicReference<>();
+				final CountDownLatch start = new CountDownLatch(1);
+				final CountDownLatch done = new CountDownLatch(threads + 1);
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							waited.set(deferred.getPromise().getValue());
+						} catch (Exception e) {
+							// the value stays null
+						} finally {
+							done.countDown();
+						}
+					}
+				});
+				for (int t = 0; t < threads; t++) {
+					final Integer value = Integer.valueOf(t);
+					executor.execute(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								start.await();
+								deferred.resolve(value);
+								resolvers.incrementAndGet();
+							} catch (IllegalStateException e) {
+								// already resolved by another thread
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+							} finally {
+								done.countDown();
+							}
+						}
+					});
+				}
+				start.countDown();
+				assertTrue("Resolution did not complete.", done.await(10, TimeUnit.SECONDS)); //$NON-NLS-1$
+				assertEquals("Wrong number of resolvers.", 1, resolvers.get()); //$NON-NLS-1$
+				assertEquals("Waiting thread got a different value.", deferred.getPromise().getValue(), waited.get()); //$NON-NLS-1$
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	public void testResolutionIgnoresPromiseMonitor() throws Exception {
+		final Deferred<Integer> deferred = inline.deferred();
+		final Promise<Integer> promise = deferred.getPromise();
+		final CountDownLatch locked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		Thread holder = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (promise) {
+					locked.countDown();
+					try {
+						release.await(30, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		}, getName());
+		holder.start();
+		try {
+			assertTrue("The promise monitor was not taken.", locked.await(10, TimeUnit.SECONDS)); //$NON-NLS-1$
+			// neither resolving nor reading the promise may wait for its monitor
+			final AtomicReference<Integer> value = new AtomicReference<>();
+			Thread resolver = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					deferred.resolve(Integer.valueOf(1));
+					try {
+						value.set(promise.getValue());
+					} catch (Exception e) {
+						// the value stays null
+					}
+				}
+			}, getName() + "Resolver"); //$NON-NLS-1$
+			resolver.start();
+			resolver.join(10000);
+			assertFalse("Resolution waited for the promise monitor.", resolver.isAlive()); //$NON-NLS-1$
+			assertEquals("Wrong value.", Integer.valueOf(1), value.get()); //$NON-NLS-1$
+		} finally {
+			release.countDown();
+			holder.join(10000);
+		}
+	}
+
+	public void testSyncChainOnResolvedPromise() throws Exception {
+		final Thread current = Thread.currentThread();
+		final List<Thread> called = new ArrayList<>();
+		Promise<String> chain = inline.resolved(Integer.valueOf(1)).map(new Function<Integer, Integer>() {
+			@Override
+			public Integer apply(Integer t) {
+				called.add(Thread.currentThread());
+				return Integer.valueOf(t.intValue() + 1);
+			}
+		}).filter(new Predicate<Integer>() {
+			@Override
+			public boolean test(Integer t) {
+				called.add(Thread.currentThread());
+				return t.intValue() == 2;
+			}
+		}).thenAccept(new Consumer<Integer>() {
+			@Override
+			public void accept(Integer t) {
+				called.add(Thread.currentThread());
+			}
+		}).map(new Function<Integer, String>() {
+			@Override
+			public String apply(Integer t) {
+				called.add(Thread.currentThread());
+				return t.toString();
+			}
+		});
+		assertTrue("Chain not resolved.", chain.isDone()); //$NON-NLS-1$
+		assertEquals("Wrong value.", "2", chain.getValue()); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals("Wrong threads.", Collections.nCopies(4, current), called); //$NON-NLS-1$
+	}
+
+	public void testSyncChainFailures() throws Exception {
+		final Exception failure = new Exception("test failure"); //$NON-NLS-1$
+		Promise<Integer> filtered = inline.resolved(Integer.valueOf(1)).filter(new Predicate<Integer>() {
+			@Override
+			public boolean test(Integer t) {
+				return false;
+			}
+		});
+		assertTrue("Filter not resolved.", filtered.isDone()); //$NON-NLS-1$
+		assertTrue("Wrong filter failure.", filtered.getFailure() instanceof NoSuchElementException); //$NON-NLS-1$
+
+		Promise<Integer> accepted = inline.resolved(Integer.valueOf(1)).thenAccept(new Consumer<Integer>() {
+			@Override
+			public void accept(Integer t) throws Exception {
+				throw failure;
+			}
+		});
+		assertTrue("Consumer not resolved.", accepted.isDone()); //$NON-NLS-1$
+		assertSame("Wrong consumer failure.", failure, accepted.getFailure()); //$NON-NLS-1$
+
+		final AtomicInteger mapped = new AtomicInteger();
+		Promise<Integer> failed = inline.<Integer> failed(failure).map(new Function<Integer, Integer>() {
+			@Override
+			public Integer apply(Integer t) {
+				mapped.incrementAndGet();
+				return t;
+			}
+		});
+		assertTrue("Failed chain not resolved.", failed.isDone()); //$NON-NLS-1$
+		assertSame("Wrong chained failure.", failure, failed.getFailure()); //$NON-NLS-1$
+		assertEquals("Mapper called for a failed promise.", 0, mapped.get()); //$NON-NLS-1$
+	}
+
+	public void testSyncChainOnResolvingThread() throws Exception {
+		final Deferred<Integer> deferred = inline.deferred();
+		final List<Thread> called = Collections.synchronizedList(new ArrayList<Thread>());
+		Promise<Integer> chain = deferred.getPromise().map(new Function<Integer, Integer>() {
+			@Override
+			public Integer apply(Integer t) {
+				called.add(Thread.currentThread());
+				return Integer.valueOf(t.intValue() + 1);
+			}
+		}).filter(new Predicate<Integer>() {
+			@Override
+			public boolean test(Integer t) {
+				called.add(Thread.currentThread());
+				return true;
+			}
+		}).thenAccept(new Consumer<Integer>() {
+			@Override
+			public void accept(Integer t) {
+				called.add(Thread.currentThread());
+			}
+		});
+		assertFalse("Chain resolved early.", chain.isDone()); //$NON-NLS-1$
+		Thread resolver = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				deferred.resolve(Integer.valueOf(1));
+			}
+		}, getName());
+		resolver.start();
+		resolver.join(10000);
+		assertTrue("Chain not resolved.", chain.isDone()); //$NON-NLS-1$
+		assertEquals("Wrong value.", Integer.valueOf(2), chain.getValue()); //$NON-NLS-1$
+		assertEquals("Wrong threads.", Collections.nCopies(3, resolver), called); //$NON-NLS-1$
+	}
+
+	public void testSyncChainWithoutCurrentThread() throws Exception {
+		String previous = System.setProperty(ALLOW_CURRENT_THREAD, Boolean.FALSE.toString());
+		PromiseFactory factory;
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			factory = new PromiseFactory(executor);
+		} finally {
+			if (previous == null) {
+				System.clearProperty(ALLOW_CURRENT_THREAD);
+			} else {
+				System.setProperty(ALLOW_CURRENT_THREAD, previous);
+			}
+		}
+		try {
+			final List<Thread> called = Collections.synchronizedList(new ArrayList<Thread>());
+			Promise<Integer> chain = factory.resolved(Integer.valueOf(1)).map(new Function<Integer, Integer>() {
+				@Override
+				public Integer apply(Integer t) {
+					called.add(Thread.currentThread());
+					return Integer.valueOf(t.intValue() + 1);
+				}
+			}).thenAccept(new Consumer<Integer>() {
+				@Override
+				public void accept(Integer t) {
+					called.add(Thread.currentThread());
+				}
+			});
+			assertEquals("Wrong value.", Integer.valueOf(2), chain.getValue()); //$NON-NLS-1$
+			assertEquals("Wrong number of calls.", 2, called.size()); //$NON-NLS-1$
+			for (Thread thread : called) {
+				assertNotSame("Called on the current thread.", Thread.currentThread(), thread); //$NON-NLS-1$
+			}
+		} catch (InvocationTargetException e) {
+			fail("Chain failed.", e.getCause()); //$NON-NLS-1$
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,544 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.osgi.internal.util.promise;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A hashed timing wheel for scheduled operations.
+ * <p>
+ * Scheduling and cancelling an operation are constant time, at the cost of
+ * running operations on a tick boundary rather than at their exact delay. This
+ * suits large numbers of short-lived timeouts, most of which are cancelled
+ * before they expire.
+ * <p>
+ * New operations are queued and placed on the wheel by a single worker thread
+ * on its next tick. Cancelled operations are queued and removed from the wheel
+ * by the worker thread as well, so the wheel itself is only ever touched by the
+ * worker thread. The worker thread waits when there are no scheduled
+ * operations.
+ */
+public final class HashedWheelTimer implements Runnable {
+	private static final int RUNNING = 0;
+	private static final int STOPPED = 1;
+	/**
+	 * Limit the number of new operations placed on the wheel per tick so the
+	 * worker thread keeps up with the wheel.
+	 */
+	private static final int MAX_PENDING_PER_TICK = 100000;
+
+	/*
+	 * States of a scheduled operation.
+	 */
+	static final int WAITING = 0;
+	static final int EXPIRED = 1;
+	static final int CANCELLED = 2;
+	static final AtomicIntegerFieldUpdater<ScheduledOperation> STATE = AtomicIntegerFieldUpdater.newUpdater(ScheduledOperation.class, "state"); //$NON-NLS-1$
+
+	private final ThreadFactory threadFactory;
+	private final long tickNanos;
+	private final Bucket[] wheel;
+	private final int mask;
+	private final Queue<ScheduledOperation> pending;
+	private final Queue<ScheduledOperation> cancelled;
+	private final Object lock;
+	private final long startTime;
+	private volatile Thread worker;
+	private volatile int state;
+	/**
+	 * Set by the worker thread while it waits for new operations.
+	 */
+	private volatile boolean idle;
+	/**
+	 * The number of operations on the wheel. Only accessed by the worker
+	 * thread.
+	 */
+	private int scheduled;
+
+	/**
+	 * Create a new timer.
+	 *
+	 * @param threadFactory The factory for the worker thread. The worker thread
+	 *            is created when the first operation is scheduled.
+	 * @param tickDuration The duration of a tick of the wheel.
+	 * @param unit The unit of the tick duration.
+	 * @param ticksPerWheel The number of buckets on the wheel. Rounded up to a
+	 *            power of two.
+	 */
+	public HashedWheelTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+		this.threadFactory = requireNonNull(threadFactory);
+		this.tickNanos = unit.toNanos(tickDuration);
+		if (tickNanos <= 0L) {
+			throw new IllegalArgumentException("tickDuration must be greater than 0: " + tickDuration); //$NON-NLS-1$
+		}
+		if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+			throw new IllegalArgumentException("ticksPerWheel out of range: " + ticksPerWheel); //$NON-NLS-1$
+		}
+		int length = Integer.highestOneBit(ticksPerWheel);
+		if (length < ticksPerWheel) {
+			length <<= 1;
+		}
+		wheel = new Bucket[length];
+		for (int i = 0; i < length; i++) {
+			wheel[i] = new Bucket();
+		}
+		mask = length - 1;
+		pending = new ConcurrentLinkedQueue<>();
+		cancelled = new ConcurrentLinkedQueue<>();
+		lock = new Object();
+		startTime = System.nanoTime();
+	}
+
+	/**
+	 * Schedule an operation to run once after the specified delay.
+	 *
+	 * @param operation The operation to run on the worker thread.
+	 * @param delay The delay before running the operation.
+	 * @param unit The unit of the delay.
+	 * @return A future which can be used to cancel the operation.
+	 * @throws RejectedExecutionException If this timer has been stopped.
+	 */
+	public ScheduledFuture<?> schedule(Runnable operation, long delay, TimeUnit unit) {
+		requireNonNull(operation);
+		if (state != RUNNING) {
+			throw new RejectedExecutionException("timer is stopped"); //$NON-NLS-1$
+		}
+		start();
+		long deadline = System.nanoTime() - startTime + Math.max(0L, unit.toNanos(delay));
+		// guard against overflow
+		if (deadline < 0L) {
+			deadline = Long.MAX_VALUE;
+		}
+		ScheduledOperation timeout = new ScheduledOperation(operation, deadline);
+		pending.offer(timeout);
+		if (idle) {
+			synchronized (lock) {
+				lock.notifyAll();
+			}
+		}
+		return timeout;
+	}
+
+	private void start() {
+		if (worker != null) {
+			return;
+		}
+		synchronized (lock) {
+			if ((worker == null) && (state == RUNNING)) {
+				Thread t = threadFactory.newThread(this);
+				t.start();
+				worker = t;
+			}
+		}
+	}
+
+	/**
+	 * Stop this timer.
+	 * <p>
+	 * Waits at most the specified time for the worker thread to finish the
+	 * operation it is running. If the worker thread does not finish in time,
+	 * the operations still on the wheel are left to it and are not returned.
+	 *
+	 * @param timeout The maximum time to wait for the worker thread.
+	 * @param unit The unit of the timeout.
+	 * @return The operations which were scheduled but have neither run nor
+	 *         been cancelled. Running a returned operation runs it only if it
+	 *         has not been cancelled in the meantime.
+	 */
+	public List<Runnable> stop(long timeout, TimeUnit unit) {
+		Thread t;
+		synchronized (lock) {
+			state = STOPPED;
+			lock.notifyAll();
+			t = worker;
+		}
+		boolean terminated = true;
+		if ((t != null) && (t != Thread.currentThread())) {
+			long end = System.nanoTime() + unit.toNanos(timeout);
+			boolean interrupted = false;
+			try {
+				for (long wait = unit.toNanos(timeout); t.isAlive() && (wait > 0L); wait = end - System.nanoTime()) {
+					try {
+						TimeUnit.NANOSECONDS.timedJoin(t, wait);
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+			} finally {
+				if (interrupted) { // restore interrupt status
+					Thread.currentThread().interrupt();
+				}
+			}
+			terminated = !t.isAlive();
+		}
+		List<Runnable> unprocessed = new ArrayList<>();
+		if (terminated) {
+			// the wheel may only be touched once the worker thread is gone
+			for (Bucket bucket : wheel) {
+				bucket.clear(unprocessed);
+			}
+			cancelled.clear();
+		}
+		for (ScheduledOperation operation; (operation = pending.poll()) != null;) {
+			if (!operation.isCancelled()) {
+				unprocessed.add(operation);
+			}
+		}
+		return unprocessed;
+	}
+
+	/**
+	 * Worker thread
+	 */
+	@Override
+	public void run() {
+		long tick = 0L;
+		while (state == RUNNING) {
+			long deadline = waitForTick(tick);
+			if (deadline < 0L) {
+				if (awaitScheduled()) {
+					// the wheel was empty; restart on the current tick
+					tick = (System.nanoTime() - startTime) / tickNanos;
+				}
+				continue;
+			}
+			removeCancelled();
+			transferPending(tick);
+			Bucket bucket = wheel[(int) (tick & mask)];
+			scheduled -= bucket.expire(deadline, pending);
+			tick++;
+		}
+	}
+
+	/**
+	 * Wait for the end of the specified tick.
+	 *
+	 * @return The time of the end of the tick relative to the start of this
+	 *         timer or -1 if the timer is stopped or the worker thread should
+	 *         wait for new operations.
+	 */
+	private long waitForTick(long tick) {
+		long deadline = tickNanos * (tick + 1);
+		for (;;) {
+			if (state != RUNNING) {
+				return -1L;
+			}
+			if ((scheduled == 0) && pending.isEmpty()) {
+				return -1L;
+			}
+			long current = System.nanoTime() - startTime;
+			long sleepNanos = deadline - current;
+			if (sleepNanos <= 0L) {
+				return current;
+			}
+			synchronized (lock) {
+				if (state != RUNNING) {
+					return -1L;
+				}
+				try {
+					TimeUnit.NANOSECONDS.timedWait(lock, sleepNanos);
+				} catch (InterruptedException e) {
+					// ignore; stop notifies the worker thread
+				}
+			}
+		}
+	}
+
+	/**
+	 * Wait until an operation is scheduled or the timer is stopped.
+	 *
+	 * @return {@code true} if operations are pending.
+	 */
+	private boolean awaitScheduled() {
+		removeCancelled();
+		if ((scheduled != 0) || (state != RUNNING)) {
+			return false;
+		}
+		idle = true;
+		try {
+			synchronized (lock) {
+				while (pending.isEmpty() && (state == RUNNING)) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						// ignore; stop notifies the worker thread
+					}
+				}
+			}
+		} finally {
+			idle = false;
+		}
+		return state == RUNNING;
+	}
+
+	private void removeCancelled() {
+		for (ScheduledOperation timeout; (timeout = cancelled.poll()) != null;) {
+			Bucket bucket = timeout.bucket;
+			if (bucket != null) {
+				bucket.remove(timeout);
+				scheduled--;
+			}
+		}
+	}
+
+	private void transferPending(long tick) {
+		for (int i = 0; i < MAX_PENDING_PER_TICK; i++) {
+			ScheduledOperation timeout = pending.poll();
+			if (timeout == null) {
+				return;
+			}
+			if (timeout.isCancelled()) {
+				continue;
+			}
+			long expires = timeout.deadline / tickNanos;
+			timeout.remainingRounds = (expires - tick) / wheel.length;
+			// expire operations which are already due on the current tick
+			long ticks = Math.max(expires, tick);
+			wheel[(int) (ticks & mask)].add(timeout);
+			scheduled++;
+		}
+	}
+
+	long delay(long deadline, TimeUnit unit) {
+		return unit.convert(deadline - (System.nanoTime() - startTime), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Handle an uncaught exception from an operation with the uncaught
+	 * exception handler of the worker thread.
+	 */
+	private static void uncaughtException(Throwable t) {
+		try {
+			Thread thread = Thread.currentThread();
+			thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+		} catch (Throwable ignored) {
+			// we ignore this
+		}
+	}
+
+	/**
+	 * A doubly linked list of the operations on a bucket of the wheel. Only
+	 * accessed by the worker thread.
+	 */
+	private static final class Bucket {
+		private ScheduledOperation head;
+		private ScheduledOperation tail;
+
+		Bucket() {
+			// nothing to initialize
+		}
+
+		void add(ScheduledOperation timeout) {
+			timeout.bucket = this;
+			if (head == null) {
+				head = tail = timeout;
+			} else {
+				tail.next = timeout;
+				timeout.prev = tail;
+				tail = timeout;
+			}
+		}
+
+		ScheduledOperation remove(ScheduledOperation timeout) {
+			ScheduledOperation next = timeout.next;
+			if (timeout.prev != null) {
+				timeout.prev.next = next;
+			}
+			if (next != null) {
+				next.prev = timeout.prev;
+			}
+			if (timeout == head) {
+				head = next;
+			}
+			if (timeout == tail) {
+				tail = timeout.prev;
+			}
+			timeout.prev = null;
+			timeout.next = null;
+			timeout.bucket = null;
+			return next;
+		}
+
+		/**
+		 * Run the operations on this bucket which are due.
+		 *
+		 * @param deadline The end of the current tick.
+		 * @param requeue The queue for operations which are not due yet, to be
+		 *            placed on the wheel again.
+		 * @return The number of operations removed from this bucket.
+		 */
+		int expire(long deadline, Queue<ScheduledOperation> requeue) {
+			int removed = 0;
+			for (ScheduledOperation timeout = head; timeout != null;) {
+				if (timeout.remainingRounds <= 0L) {
+					ScheduledOperation next = remove(timeout);
+					removed++;
+					if (timeout.deadline <= deadline) {
+						timeout.run();
+					} else {
+						// never run an operation early; place it on the wheel again
+						requeue.offer(timeout);
+					}
+					timeout = next;
+				} else if (timeout.isCancelled()) {
+					// the cancellation is queued; removeCancelled will skip it
+					ScheduledOperation next = remove(timeout);
+					removed++;
+					timeout = next;
+				} else {
+					timeout.remainingRounds--;
+					timeout = timeout.next;
+				}
+			}
+			return removed;
+		}
+
+		void clear(List<Runnable> unprocessed) {
+			for (ScheduledOperation timeout = head; timeout != null;) {
+				ScheduledOperation next = remove(timeout);
+				if (!timeout.isCancelled()) {
+					unprocessed.add(timeout);
+				}
+				timeout = next;
+			}
+		}
+	}
+
+	/**
+	 * A scheduled operation.
+	 */
+	private final class ScheduledOperation implements ScheduledFuture<Void>, Runnable {
+		private final Runnable operation;
+		final long deadline;
+		volatile int state;
+		private volatile boolean done;
+		/*
+		 * The following fields are only accessed by the worker thread.
+		 */
+		long remainingRounds;
+		Bucket bucket;
+		ScheduledOperation prev;
+		ScheduledOperation next;
+
+		ScheduledOperation(Runnable operation, long deadline) {
+			this.operation = operation;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Run the operation unless it has been cancelled.
+		 */
+		@Override
+		public void run() {
+			if (!STATE.compareAndSet(this, WAITING, EXPIRED)) {
+				return;
+			}
+			try {
+				operation.run();
+			} catch (Throwable t) {
+				uncaughtException(t);
+			} finally {
+				finish();
+			}
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			if (!STATE.compareAndSet(this, WAITING, CANCELLED)) {
+				return false;
+			}
+			cancelled.offer(this);
+			finish();
+			return true;
+		}
+
+		private void finish() {
+			synchronized (this) {
+				done = true;
+				notifyAll();
+			}
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return state == CANCELLED;
+		}
+
+		@Override
+		public boolean isDone() {
+			return state != WAITING;
+		}
+
+		@Override
+		public Void get() throws InterruptedException, ExecutionException {
+			synchronized (this) {
+				while (!done) {
+					wait();
+				}
+			}
+			return report();
+		}
+
+		@Override
+		public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+			long nanos = unit.toNanos(timeout);
+			long end = System.nanoTime() + nanos;
+			synchronized (this) {
+				while (!done) {
+					if (nanos <= 0L) {
+						throw new TimeoutException();
+					}
+					TimeUnit.NANOSECONDS.timedWait(this, nanos);
+					nanos = end - System.nanoTime();
+				}
+			}
+			return report();
+		}
+
+		private Void report() {
+			if (isCancelled()) {
+				throw new CancellationException();
+			}
+			return null;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return delay(deadline, unit);
+		}
+
+		@Override
+		public int compareTo(Delayed o) {
+			if (o == this) {
+				return 0;
+			}
+			long diff = getDelay(TimeUnit.NANOSECONDS) - o.getDelay(TimeUnit.NANOSECONDS);
+			return (diff < 0L) ? -1 : ((diff > 0L) ? 1 : 0);
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) OSGi Alliance (2014, 2018). All Rights Reserved.
+ * Copyright (c) OSGi Alliance (2014, 2019). All Rights Reserved.
  * 
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,9 +19,7 @@ package org.osgi.util.promise;
 import static java.util.Objects.requireNonNull;
 
 import java.lang.reflect.InvocationTargetException;
-import java.util.NoSuchElementException;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -43,19 +41,25 @@ import org.osgi.util.function.Predicate;
  */
 final class DeferredPromiseImpl<T> extends PromiseImpl<T> {
 	/**
-	 * A CountDownLatch to manage the resolved state of this Promise.
-	 * <p>
-	 * This object is used as the synchronizing object to provide a critical
-	 * section in {@link #tryResolve(Object, Throwable)} so that only a single
-	 * thread can write the resolved state variables and open the latch.
+	 * The synchronizing object used to provide a critical section in
+	 * {@link #tryResolve(Object, Throwable)} so that only a single thread can
+	 * write the resolved state variables and set the {@link #resolved} flag,
+	 * and to wait for the resolution in {@link #await()}. It is private so
+	 * that code synchronizing on this Promise cannot interfere with the
+	 * resolution. Threads only block on it if they actually wait.
+	 */
+	private final Object			lock	= new Object();
+
+	/**
+	 * The resolved state of this Promise.
 	 * <p>
 	 * The resolved state variables, {@link #value} and {@link #fail}, must only
-	 * be written when the latch is closed (getCount() != 0) and must only be
-	 * read when the latch is open (getCount() == 0). The latch state must
-	 * always be checked before writing or reading since the resolved state
-	 * variables' memory consistency is guarded by the latch.
+	 * be written when this flag is false and must only be read when this flag
+	 * is true. The flag must always be checked before writing or reading since
+	 * the resolved state variables' memory consistency is guarded by this
+	 * volatile flag.
 	 */
-	private final CountDownLatch	resolved;
+	private volatile boolean		resolved;
 
 	/**
 	 * The value of this Promise if successfully resolved.
@@ -81,7 +85,6 @@ final class DeferredPromiseImpl<T> extends PromiseImpl<T> {
 	 */
 	DeferredPromiseImpl(PromiseFactory factory) {
 		super(factory);
-		resolved = new CountDownLatch(1);
 	}
 
 	/**
@@ -89,7 +92,24 @@ final class DeferredPromiseImpl<T> extends PromiseImpl<T> {
 	 */
 	@Override
 	public boolean isDone() {
-		return resolved.getCount() == 0;
+		return resolved;
+	}
+
+	/**
+	 * Wait until this Promise is resolved.
+	 * 
+	 * @throws InterruptedException If the current thread was interrupted
+	 *             while waiting.
+	 */
+	private void await() throws InterruptedException {
+		if (resolved) {
+			return;
+		}
+		synchronized (lock) {
+			while (!resolved) {
+				lock.wait();
+			}
+		}
 	}
 
 	/**
@@ -101,7 +121,7 @@ final class DeferredPromiseImpl<T> extends PromiseImpl<T> {
 	 *         DeferredPromiseImpl is not resolved.
 	 */
 	PromiseImpl<T> orDone() {
-		// ensure latch open before reading state
+		// ensure resolved before reading state
 		if (!isDone()) {
 			return this;
 		}
@@ -116,8 +136,8 @@ final class DeferredPromiseImpl<T> extends PromiseImpl<T> {
 	 */
 	@Override
 	public T getValue() throws InvocationTargetException, InterruptedException {
-		// ensure latch open before reading state
-		resolved.await();
+		// ensure resolved before reading state
+		await();
 		if (fail == null) {
 			return value;
 		}
@@ -129,8 +149,8 @@ final class DeferredPromiseImpl<T> extends PromiseImpl<T> {
 	 */
 	@Override
 	public Throwable getFailure() throws InterruptedException {
-		// ensure latch open before reading state
-		resolved.await();
+		// ensure resolved before reading state
+		await();
 		return fail;
 	}
 
@@ -139,7 +159,7 @@ final class DeferredPromiseImpl<T> extends PromiseImpl<T> {
 	 */
 	@Override
 	Result<T> collect() {
-		// ensure latch open before reading state
+		// ensure resolved before reading state
 		if (!isDone()) {
 			return new Result<T>(new AssertionError("promise not resolved"));
 		}
@@ -151,7 +171,7 @@ final class DeferredPromiseImpl<T> extends PromiseImpl<T> {
 
 	@Override
 	public String toString() {
-		// ensure latch open before reading state
+		// ensure resolved before reading state
 		if (!isDone()) {
 			return super.toString() + "[unresolved]";
 		}
@@ -174,21 +194,22 @@ final class DeferredPromiseImpl<T> extends PromiseImpl<T> {
 	 */
 	boolean tryResolve(T v, Throwable f) {
 		// critical section: only one resolver at a time
-		synchronized (resolved) {
+		synchronized (lock) {
 			if (isDone()) {
 				return false;
 			}
 			/*
-			 * The resolved state variables must be set before opening the
-			 * latch. This safely publishes them to be read by other threads
-			 * that must verify the latch is open before reading.
+			 * The resolved state variables must be set before setting the
+			 * resolved flag. This safely publishes them to be read by other
+			 * threads that must verify the flag is set before reading.
 			 */
 			if (f == null) {
 				value = v;
 			} else {
 				fail = f;
 			}
-			resolved.countDown();
+			resolved = true;
+			lock.notifyAll(); // wake any threads waiting in await
 		}
 		notifyCallbacks(); // call any registered callbacks
 		return true;
@@ -365,14 +386,7 @@ final class DeferredPromiseImpl<T> extends PromiseImpl<T> {
 
 		@Override
 		public void run() {
-			Result<T> result = promise.collect();
-			if (result.fail == null) {
-				try {
-					consumer.accept(result.value);
-				} catch (Throwable e) {
-					result.fail = e;
-				}
-			}
+			Result<T> result = accept(promise.collect(), consumer);
 			tryResolve(result.value, result.fail);
 		}
 	}
@@ -393,16 +407,7 @@ final class DeferredPromiseImpl<T> extends PromiseImpl<T> {
 
 		@Override
 		public void run() {
-			Result<T> result = promise.collect();
-			if (result.fail == null) {
-				try {
-					if (!predicate.test(result.value)) {
-						result.fail = new NoSuchElementException();
-					}
-				} catch (Throwable e) { // propagate new exception
-					result.fail = e;
-				}
-			}
+			Result<T> result = test(promise.collect(), predicate);
 			tryResolve(result.value, result.fail);
 		}
 	}
@@ -423,16 +428,8 @@ final class DeferredPromiseImpl<T> extends PromiseImpl<T> {
 
 		@Override
 		public void run() {
-			Result<P> result = promise.collect();
-			T v = null;
-			if (result.fail == null) {
-				try {
-					v = mapper.apply(result.value);
-				} catch (Throwable e) { // propagate new exception
-					result.fail = e;
-				}
-			}
-			tryResolve(v, result.fail);
+			Result<T> result = apply(promise.collect(), mapper);
+			tryResolve(result.value, result.fail);
 		}
 	}
 
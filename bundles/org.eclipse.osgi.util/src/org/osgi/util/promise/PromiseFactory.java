@@ -1,5 +1,5 @@
 /*
- * Copyright (c) OSGi Alliance (2017, 2018). All Rights Reserved.
+ * Copyright (c) OSGi Alliance (2017, 2019). All Rights Reserved.
  * 
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -32,6 +32,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.RunnableScheduledFuture;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
@@ -40,6 +41,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.eclipse.osgi.internal.util.promise.HashedWheelTimer;
 import org.osgi.annotation.versioning.ConsumerType;
 import org.osgi.util.promise.PromiseImpl.Result;
 
@@ -75,6 +77,12 @@ public class PromiseFactory {
 	private final ScheduledExecutorService	scheduledExecutor;
 
 	private final boolean					allowCurrentThread;
+	/**
+	 * If {@code true}, timeouts and delays are scheduled on the default
+	 * hashed wheel timer instead of the default scheduled executor. Only used
+	 * when no scheduled executor was specified.
+	 */
+	private final boolean					hashedWheelTimer;
 
 	/**
 	 * Create a new PromiseFactory with the specified callback executor.
@@ -105,7 +113,10 @@ public class PromiseFactory {
 		allowCurrentThread = Boolean.parseBoolean(System.getProperty(
 				"org.osgi.util.promise.allowCurrentThread",
 				Boolean.TRUE.toString()));
-
+		hashedWheelTimer = (scheduledExecutor == null)
+				&& Boolean.parseBoolean(System.getProperty(
+						"org.osgi.util.promise.hashedWheelTimer",
+						Boolean.FALSE.toString()));
 	}
 
 	/**
@@ -318,6 +329,17 @@ public class PromiseFactory {
 		return allowCurrentThread;
 	}
 
+	/**
+	 * Schedule an operation for a timeout or delay.
+	 */
+	ScheduledFuture< ? > schedule(Runnable operation, long delay,
+			TimeUnit unit) {
+		if (hashedWheelTimer) {
+			return DefaultExecutors.timer().schedule(operation, delay, unit);
+		}
+		return scheduledExecutor().schedule(operation, delay, unit);
+	}
+
 	/**
 	 * An Executor implementation which executes the task immediately on the
 	 * thread calling the {@code Executor.execute} method.
@@ -343,9 +365,12 @@ public class PromiseFactory {
 		private static final DefaultExecutors	callbacks;
 		private static final ScheduledExecutor	scheduledExecutor;
 		private static final ThreadPoolExecutor	callbackExecutor;
+		private static final HashedWheelTimer	timer;
 		static {
 			callbacks = new DefaultExecutors();
 			scheduledExecutor = new ScheduledExecutor(2, callbacks);
+			timer = new HashedWheelTimer(callbacks, 10L, TimeUnit.MILLISECONDS,
+					512);
 			callbackExecutor = new ThreadPoolExecutor(0, 64, 60L,
 					TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
 					callbacks, callbacks);
@@ -359,6 +384,10 @@ public class PromiseFactory {
 			return scheduledExecutor;
 		}
 
+		static HashedWheelTimer timer() {
+			return timer;
+		}
+
 		private final AtomicBoolean	shutdownHookInstalled;
 		private final ThreadFactory	delegateThreadFactory;
 
@@ -382,6 +411,7 @@ public class PromiseFactory {
 					// VM is already shutting down...
 					callbackExecutor.shutdown();
 					scheduledExecutor.shutdown();
+					timer.stop(0L, TimeUnit.SECONDS);
 				}
 			}
 			Thread t = delegateThreadFactory.newThread(r);
@@ -413,6 +443,9 @@ public class PromiseFactory {
 			callbackExecutor.setMaximumPoolSize(
 					Math.max(1, callbackExecutor.getPoolSize()));
 			// Run all delayed callbacks now
+			for (Runnable operation : timer.stop(20, TimeUnit.SECONDS)) {
+				operation.run();
+			}
 			scheduledExecutor.shutdown();
 			BlockingQueue<Runnable> queue = scheduledExecutor.getQueue();
 			if (!queue.isEmpty()) {
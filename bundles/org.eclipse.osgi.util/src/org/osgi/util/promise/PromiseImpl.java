@@ -1,5 +1,5 @@
 /*
- * Copyright (c) OSGi Alliance (2014, 2018). All Rights Reserved.
+ * Copyright (c) OSGi Alliance (2014, 2019). All Rights Reserved.
  * 
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,10 +18,12 @@ package org.osgi.util.promise;
 
 import static java.util.Objects.requireNonNull;
 
+import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import org.osgi.util.function.Consumer;
 import org.osgi.util.function.Function;
@@ -43,11 +45,17 @@ abstract class PromiseImpl<T> implements Promise<T> {
 	 */
 	private final PromiseFactory					factory;
 	/**
-	 * A ConcurrentLinkedQueue to hold the callbacks for this Promise, so no
-	 * additional synchronization is required to write to or read from the
-	 * queue.
+	 * The callbacks for this Promise: {@code null} if there are none, the
+	 * Runnable if there is a single callback, or a ConcurrentLinkedQueue
+	 * holding the callbacks once more than one callback was registered. Only
+	 * updated with {@link #CALLBACKS}, so no additional synchronization is
+	 * required to add or remove callbacks.
 	 */
-	private final ConcurrentLinkedQueue<Runnable>	callbacks;
+	private volatile Object							callbacks;
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<PromiseImpl,Object>	CALLBACKS	= AtomicReferenceFieldUpdater
+			.newUpdater(PromiseImpl.class, Object.class, "callbacks");
 
 	/**
 	 * Initialize this Promise.
@@ -57,7 +65,6 @@ abstract class PromiseImpl<T> implements Promise<T> {
 	 */
 	PromiseImpl(PromiseFactory factory) {
 		this.factory = requireNonNull(factory);
-		callbacks = new ConcurrentLinkedQueue<>();
 	}
 
 	/**
@@ -108,12 +115,63 @@ abstract class PromiseImpl<T> implements Promise<T> {
 				uncaughtException(t);
 			}
 		} else {
-			callbacks.offer(callback);
+			offerCallback(callback);
 			notifyCallbacks(); // call any registered callbacks
 		}
 		return this;
 	}
 
+	/**
+	 * Add a callback to be called when this Promise is resolved.
+	 * 
+	 * @param callback The callback.
+	 */
+	private void offerCallback(Runnable callback) {
+		for (;;) {
+			Object current = callbacks;
+			if (current == null) {
+				if (CALLBACKS.compareAndSet(this, null, callback)) {
+					return;
+				}
+			} else if (current instanceof ConcurrentLinkedQueue) {
+				@SuppressWarnings("unchecked")
+				ConcurrentLinkedQueue<Runnable> queue = (ConcurrentLinkedQueue<Runnable>) current;
+				queue.offer(callback);
+				return;
+			} else {
+				// switch to a queue once there is more than one callback
+				ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+				queue.offer((Runnable) current);
+				queue.offer(callback);
+				if (CALLBACKS.compareAndSet(this, current, queue)) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remove a registered callback.
+	 * 
+	 * @return A registered callback or {@code null} if there are none.
+	 */
+	private Runnable pollCallback() {
+		for (;;) {
+			Object current = callbacks;
+			if (current == null) {
+				return null;
+			}
+			if (current instanceof ConcurrentLinkedQueue) {
+				@SuppressWarnings("unchecked")
+				ConcurrentLinkedQueue<Runnable> queue = (ConcurrentLinkedQueue<Runnable>) current;
+				return queue.poll();
+			}
+			if (CALLBACKS.compareAndSet(this, current, null)) {
+				return (Runnable) current;
+			}
+		}
+	}
+
 	/**
 	 * Call any registered callbacks if this Promise is resolved.
 	 */
@@ -126,7 +184,7 @@ abstract class PromiseImpl<T> implements Promise<T> {
 		 * the queue and executing them, so the order in which callbacks are
 		 * executed cannot be specified.
 		 */
-		for (Runnable callback = callbacks.poll(); callback != null; callback = callbacks.poll()) {
+		for (Runnable callback = pollCallback(); callback != null; callback = pollCallback()) {
 			try {
 				try {
 					factory.executor().execute(callback);
@@ -148,8 +206,7 @@ abstract class PromiseImpl<T> implements Promise<T> {
 			TimeUnit unit) {
 		try {
 			try {
-				return factory.scheduledExecutor().schedule(operation, delay,
-						unit);
+				return factory.schedule(operation, delay, unit);
 			} catch (RejectedExecutionException e) {
 				operation.run();
 			}
@@ -265,6 +322,10 @@ abstract class PromiseImpl<T> implements Promise<T> {
 	 */
 	@Override
 	public Promise<T> thenAccept(Consumer< ? super T> consumer) {
+		if (resolvedInCurrentThread()) {
+			Result<T> result = accept(collect(), requireNonNull(consumer));
+			return completed(result.value, result.fail);
+		}
 		DeferredPromiseImpl<T> chained = deferred();
 		onResolve(chained.new ThenAccept(this, consumer));
 		return chained.orDone();
@@ -276,6 +337,10 @@ abstract class PromiseImpl<T> implements Promise<T> {
 	 */
 	@Override
 	public Promise<T> filter(Predicate<? super T> predicate) {
+		if (resolvedInCurrentThread()) {
+			Result<T> result = test(collect(), requireNonNull(predicate));
+			return completed(result.value, result.fail);
+		}
 		DeferredPromiseImpl<T> chained = deferred();
 		onResolve(chained.new Filter(this, predicate));
 		return chained.orDone();
@@ -286,6 +351,10 @@ abstract class PromiseImpl<T> implements Promise<T> {
 	 */
 	@Override
 	public <R> Promise<R> map(Function<? super T, ? extends R> mapper) {
+		if (resolvedInCurrentThread()) {
+			Result<R> result = apply(collect(), requireNonNull(mapper));
+			return completed(result.value, result.fail);
+		}
 		DeferredPromiseImpl<R> chained = deferred();
 		onResolve(chained.new Map<>(this, mapper));
 		return chained.orDone();
@@ -352,6 +421,37 @@ abstract class PromiseImpl<T> implements Promise<T> {
 		return chained.orDone();
 	}
 
+	/**
+	 * Return whether a callback registered on this Promise would be called
+	 * immediately in the current thread.
+	 * <p>
+	 * In this case the synchronous chaining methods compute the chained
+	 * Promise directly instead of registering a callback with a
+	 * {@link DeferredPromiseImpl}.
+	 * 
+	 * @since 1.1
+	 */
+	boolean resolvedInCurrentThread() {
+		return factory.allowCurrentThread() && isDone();
+	}
+
+	/**
+	 * Return a resolved PromiseImpl using the {@link PromiseFactory} of this
+	 * PromiseImpl.
+	 * 
+	 * @param v The value of the resolved Promise.
+	 * @param f The failure of the resolved Promise or {@code null} if it was
+	 *            successfully resolved.
+	 * @return A ResolvedPromiseImpl or a FailedPromiseImpl.
+	 * @since 1.1
+	 */
+	<V> PromiseImpl<V> completed(V v, Throwable f) {
+		if (f == null) {
+			return resolved(v);
+		}
+		return failed(f);
+	}
+
 	/**
 	 * A holder of the result of a Promise.
 	 * 
@@ -380,6 +480,69 @@ abstract class PromiseImpl<T> implements Promise<T> {
 	 */
 	abstract Result<T> collect();
 
+	/**
+	 * Pass the value of a successful result to the specified consumer.
+	 * <p>
+	 * Used by {@link #thenAccept(Consumer)}.
+	 * 
+	 * @return The specified result, failed with any exception thrown by the
+	 *         consumer.
+	 * @since 1.1
+	 */
+	static <P> Result<P> accept(Result<P> result, Consumer< ? super P> consumer) {
+		if (result.fail == null) {
+			try {
+				consumer.accept(result.value);
+			} catch (Throwable e) {
+				result.fail = e;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Test the value of a successful result with the specified predicate.
+	 * <p>
+	 * Used by {@link #filter(Predicate)}.
+	 * 
+	 * @return The specified result, failed with a
+	 *         {@code NoSuchElementException} if the predicate does not accept
+	 *         the value or with any exception thrown by the predicate.
+	 * @since 1.1
+	 */
+	static <P> Result<P> test(Result<P> result, Predicate< ? super P> predicate) {
+		if (result.fail == null) {
+			try {
+				if (!predicate.test(result.value)) {
+					result.fail = new NoSuchElementException();
+				}
+			} catch (Throwable e) { // propagate new exception
+				result.fail = e;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Map the value of a successful result with the specified function.
+	 * <p>
+	 * Used by {@link #map(Function)}.
+	 * 
+	 * @return A result holding the mapped value, or the failure of the
+	 *         specified result or any exception thrown by the function.
+	 * @since 1.1
+	 */
+	static <P, R> Result<R> apply(Result<P> result, Function< ? super P, ? extends R> mapper) {
+		if (result.fail == null) {
+			try {
+				return new Result<R>(mapper.apply(result.value));
+			} catch (Throwable e) { // propagate new exception
+				return new Result<R>(e);
+			}
+		}
+		return new Result<R>(result.fail);
+	}
+
 	/**
 	 * Return a holder of the result of the specified Promise.
 	 * 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2016 IBM Corporation and others.
+ * Copyright (c) 2003, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -20,8 +20,7 @@ import java.net.*;
 import java.security.CodeSource;
 import java.security.ProtectionDomain;
 import java.util.*;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 import org.eclipse.core.runtime.internal.adaptor.*;
 import org.eclipse.osgi.container.Module;
 import org.eclipse.osgi.container.ModuleRevision;
@@ -129,6 +128,7 @@ public class EclipseStarter {
 	public static final String PROP_REFRESH_BUNDLES = "eclipse.refreshBundles"; //$NON-NLS-1$
 	private static final String PROP_ALLOW_APPRELAUNCH = "eclipse.allowAppRelaunch"; //$NON-NLS-1$
 	private static final String PROP_APPLICATION_LAUNCHDEFAULT = "eclipse.application.launchDefault"; //$NON-NLS-1$
+	private static final String PROP_BUNDLES_INSTALL_THREADS = "osgi.bundles.installThreads"; //$NON-NLS-1$ //The number of threads used to install the bundles
 
 	private static final String FILE_SCHEME = "file:"; //$NON-NLS-1$
 	private static final String REFERENCE_SCHEME = "reference:"; //$NON-NLS-1$
@@ -137,9 +137,10 @@ public class EclipseStarter {
 
 	private static final int DEFAULT_INITIAL_STARTLEVEL = 6; // default value for legacy purposes
 	private static final String DEFAULT_BUNDLES_STARTLEVEL = "4"; //$NON-NLS-1$
+	private static final String DEFAULT_BUNDLES_INSTALL_THREADS = "1"; //$NON-NLS-1$
 
 	private static FrameworkLog log;
-	// directory of serch candidates keyed by directory abs path -> directory listing (bug 122024)
+	// directory of serch candidates keyed by directory abs path -> sorted directory listing (bug 122024)
 	private static Map<String, String[]> searchCandidates = new HashMap<>(4);
 	private static EclipseAppLauncher appLauncher;
 	private static List<Runnable> shutdownHandlers;
@@ -973,43 +974,130 @@ public class EclipseStarter {
 		}
 	}
 
-	private static void installBundles(InitialBundle[] initialBundles, Bundle[] curInitBundles, List<Bundle> startBundles, List<Bundle> lazyActivationBundles, List<Bundle> toRefresh) {
-		for (InitialBundle initialBundle : initialBundles) {
-			Bundle osgiBundle = getBundleByLocation(initialBundle.locationString, curInitBundles);
-			try {
-				// don't need to install if it is already installed
-				if (osgiBundle == null) {
-					InputStream in = LocationHelper.getStream(initialBundle.location);
-					try {
-						osgiBundle = context.installBundle(initialBundle.locationString, in);
-					}catch (BundleException e) {
-						if (e.getType() == BundleException.DUPLICATE_BUNDLE_ERROR) {
+	private static void installBundles(InitialBundle[] initialBundles, Bundle[] curInitBundles, List<Bundle> startBundles, List<Bundle> lazyActivationBundles, List<Bundle> toRefresh) throws InterruptedException {
+		ExecutorService installer = null;
+		Map<InitialBundle, Future<Bundle>> installs = Collections.emptyMap();
+		try {
+			installer = createInstaller(initialBundles, curInitBundles);
+			if (installer != null) {
+				// submit the installs up front; the results are processed in the order of the osgi.bundles list below
+				installs = new HashMap<>(initialBundles.length);
+				for (final InitialBundle initialBundle : initialBundles) {
+					if (getBundleByLocation(initialBundle.locationString, curInitBundles) == null) {
+						installs.put(initialBundle, installer.submit(new Callable<Bundle>() {
+							@Override
+							public Bundle call() throws BundleException, IOException {
+								return installBundle(initialBundle);
+							}
+						}));
+					}
+				}
+			}
+			for (InitialBundle initialBundle : initialBundles) {
+				Bundle osgiBundle = getBundleByLocation(initialBundle.locationString, curInitBundles);
+				try {
+					// don't need to install if it is already installed
+					if (osgiBundle == null) {
+						Future<Bundle> install = installs.get(initialBundle);
+						osgiBundle = install == null ? installBundle(initialBundle) : getInstalledBundle(install);
+						if (osgiBundle == null) {
 							continue;
 							// TODO should attempt to lookup the existing bundle
 						}
-						throw e;
+						// only check for lazy activation header if this is a newly installed bundle and is not marked for persistent start
+						if (!initialBundle.start && hasLazyActivationPolicy(osgiBundle)) {
+							lazyActivationBundles.add(osgiBundle);
+						}
 					}
-					// only check for lazy activation header if this is a newly installed bundle and is not marked for persistent start
-					if (!initialBundle.start && hasLazyActivationPolicy(osgiBundle)) {
-						lazyActivationBundles.add(osgiBundle);
+					// always set the startlevel incase it has changed (bug 111549)
+					// this is a no-op if the level is the same as previous launch.
+					if ((osgiBundle.getState() & Bundle.UNINSTALLED) == 0 && initialBundle.level >= 0) {
+						osgiBundle.adapt(BundleStartLevel.class).setStartLevel(initialBundle.level);
 					}
+					// if this bundle is supposed to be started then add it to the start list
+					if (initialBundle.start) {
+						startBundles.add(osgiBundle);
+					}
+					// include basic bundles in case they were not resolved before
+					if ((osgiBundle.getState() & Bundle.INSTALLED) != 0)
+						toRefresh.add(osgiBundle);
+				} catch (BundleException | IOException e) {
+					FrameworkLogEntry entry = new FrameworkLogEntry(EquinoxContainer.NAME, FrameworkLogEntry.ERROR, 0, NLS.bind(Msg.ECLIPSE_STARTUP_FAILED_INSTALL, initialBundle.location), 0, e, null);
+					log.log(entry);
 				}
-				// always set the startlevel incase it has changed (bug 111549)
-				// this is a no-op if the level is the same as previous launch.
-				if ((osgiBundle.getState() & Bundle.UNINSTALLED) == 0 && initialBundle.level >= 0) {
-					osgiBundle.adapt(BundleStartLevel.class).setStartLevel(initialBundle.level);
-				}
-				// if this bundle is supposed to be started then add it to the start list
-				if (initialBundle.start) {
-					startBundles.add(osgiBundle);
-				}
-				// include basic bundles in case they were not resolved before
-				if ((osgiBundle.getState() & Bundle.INSTALLED) != 0)
-					toRefresh.add(osgiBundle);
-			} catch (BundleException | IOException e) {
-				FrameworkLogEntry entry = new FrameworkLogEntry(EquinoxContainer.NAME, FrameworkLogEntry.ERROR, 0, NLS.bind(Msg.ECLIPSE_STARTUP_FAILED_INSTALL, initialBundle.location), 0, e, null);
-				log.log(entry);
 			}
+		} finally {
+			if (installer != null) {
+				installer.shutdownNow();
+			}
+		}
+	}
+
+	/*
+	 * Returns an executor to install the initial bundles concurrently or null if
+	 * they should be installed one at a time.  Concurrent installs read the bundle
+	 * content and parse the manifests on multiple threads, but the bundle IDs are
+	 * then assigned in the order the installs complete.
+	 */
+	private static ExecutorService createInstaller(InitialBundle[] initialBundles, Bundle[] curInitBundles) {
+		int threadCnt = Integer.parseInt(getProperty(PROP_BUNDLES_INSTALL_THREADS, DEFAULT_BUNDLES_INSTALL_THREADS));
+		if (threadCnt == 1) {
+			return null;
+		}
+		int toInstall = 0;
+		for (InitialBundle initialBundle : initialBundles) {
+			if (getBundleByLocation(initialBundle.locationString, curInitBundles) == null) {
+				toInstall++;
+			}
+		}
+		// use the number of processors when configured value is <=0
+		int maxThreads = Math.min(threadCnt <= 0 ? Runtime.getRuntime().availableProcessors() : threadCnt, toInstall);
+		if (maxThreads <= 1) {
+			return null;
+		}
+		return Executors.newFixedThreadPool(maxThreads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "Initial Bundle Installer"); //$NON-NLS-1$
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/*
+	 * Installs the initial bundle, returns null if the bundle is a duplicate
+	 */
+	private static Bundle installBundle(InitialBundle initialBundle) throws BundleException, IOException {
+		InputStream in = LocationHelper.getStream(initialBundle.location);
+		try {
+			return context.installBundle(initialBundle.locationString, in);
+		} catch (BundleException e) {
+			if (e.getType() == BundleException.DUPLICATE_BUNDLE_ERROR) {
+				return null;
+			}
+			throw e;
+		}
+	}
+
+	private static Bundle getInstalledBundle(Future<Bundle> install) throws BundleException, IOException, InterruptedException {
+		try {
+			return install.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof BundleException) {
+				throw (BundleException) cause;
+			}
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
 		}
 	}
 
@@ -1217,17 +1305,22 @@ public class EclipseStarter {
 			File startFile = new File(start);
 			startFile = LocationHelper.decodePath(startFile);
 			candidates = startFile.list();
-			if (candidates != null)
+			if (candidates != null) {
+				// sort once so each search only visits the names that start with the target
+				Arrays.sort(candidates);
 				searchCandidates.put(start, candidates);
+			}
 		}
 		if (candidates == null)
 			return null;
 		String result = null;
 		Object[] maxVersion = null;
 		boolean resultIsFile = false;
-		for (String candidateName : candidates) {
+		int first = Arrays.binarySearch(candidates, target);
+		for (int i = first < 0 ? -(first + 1) : first; i < candidates.length; i++) {
+			String candidateName = candidates[i];
 			if (!candidateName.startsWith(target))
-				continue;
+				break;
 			boolean simpleJar = false;
 			final char versionSep = candidateName.length() > target.length() ? candidateName.charAt(target.length()) : 0;
 			if (candidateName.length() > target.length() && versionSep != '_' && versionSep != '-') {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2016 IBM Corporation and others.
+ * Copyright (c) 2012, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -64,6 +64,10 @@ public final class ModuleCapability implements BundleCapability {
 		return attributes;
 	}
 
+	Map<String, Object> getTransientAttributes() {
+		return transientAttrs == null ? Collections.<String, Object> emptyMap() : transientAttrs;
+	}
+
 	/**
 	 * Only used by the system module for setting transient attributes associated
 	 * with the {@link NativeNamespace osgi.native} namespace.
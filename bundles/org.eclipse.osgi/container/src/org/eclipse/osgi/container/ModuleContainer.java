@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2018 IBM Corporation and others.
+ * Copyright (c) 2012, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -26,8 +26,10 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -52,6 +54,7 @@ import org.eclipse.osgi.framework.util.ThreadInfoReport;
 import org.eclipse.osgi.internal.container.InternalUtils;
 import org.eclipse.osgi.internal.container.LockSet;
 import org.eclipse.osgi.internal.debug.Debug;
+import org.eclipse.osgi.internal.debug.StartupProfiler;
 import org.eclipse.osgi.internal.framework.EquinoxConfiguration;
 import org.eclipse.osgi.internal.messages.Msg;
 import org.eclipse.osgi.report.resolution.ResolutionReport;
@@ -133,6 +136,8 @@ public final class ModuleContainer implements DebugOptionsListener {
 
 	final boolean restrictParallelStart;
 
+	final boolean parallelEagerStart;
+
 	boolean DEBUG_MONITOR_LAZY = false;
 	boolean DEBUG_BUNDLE_START_TIME = false;
 
@@ -172,6 +177,7 @@ public final class ModuleContainer implements DebugOptionsListener {
 		}
 		this.autoStartOnResolve = Boolean.parseBoolean(autoStartOnResolveProp);
 		this.restrictParallelStart = Boolean.parseBoolean(adaptor.getProperty(EquinoxConfiguration.PROP_EQUINOX_START_LEVEL_RESTRICT_PARALLEL));
+		this.parallelEagerStart = Boolean.parseBoolean(adaptor.getProperty(EquinoxConfiguration.PROP_EQUINOX_START_LEVEL_PARALLEL_EAGER));
 	}
 
 	/**
@@ -799,9 +805,8 @@ public final class ModuleContainer implements DebugOptionsListener {
 				if (timestamp != moduleDatabase.getRevisionsTimestamp())
 					return false; // need to try again
 
-				Map<ModuleRevision, ModuleWiring> wiringCopy = moduleDatabase.getWiringsCopy();
 				for (Map.Entry<ModuleRevision, ModuleWiring> deltaEntry : deltaWiring.entrySet()) {
-					ModuleWiring current = wiringCopy.get(deltaEntry.getKey());
+					ModuleWiring current = moduleDatabase.getWiring(deltaEntry.getKey());
 					if (current != null) {
 						// need to update the provided capabilities, provided and required wires for currently resolved
 						current.setCapabilities(deltaEntry.getValue().getModuleCapabilities(null));
@@ -1147,7 +1152,7 @@ public final class ModuleContainer implements DebugOptionsListener {
 	public Collection<Module> getDependencyClosure(Collection<Module> initial) {
 		moduleDatabase.readLock();
 		try {
-			return getRefreshClosure(initial, moduleDatabase.getWiringsCopy());
+			return getRefreshClosure(initial, moduleDatabase.getWiringsSnapshot());
 		} finally {
 			moduleDatabase.readUnlock();
 		}
@@ -1214,7 +1219,7 @@ public final class ModuleContainer implements DebugOptionsListener {
 					throw new IllegalStateException("Unable to lock module state.", e); //$NON-NLS-1$
 				}
 			}
-			Map<ModuleRevision, ModuleWiring> wirings = moduleDatabase.getWiringsCopy();
+			Map<ModuleRevision, ModuleWiring> wirings = moduleDatabase.getWiringsSnapshot();
 			for (ModuleWiring wiring : wirings.values()) {
 				wiring.validate();
 			}
@@ -1247,7 +1252,7 @@ public final class ModuleContainer implements DebugOptionsListener {
 					module.setState(State.UNINSTALLED);
 				}
 			}
-			Map<ModuleRevision, ModuleWiring> wirings = moduleDatabase.getWiringsCopy();
+			Map<ModuleRevision, ModuleWiring> wirings = moduleDatabase.getWiringsSnapshot();
 			for (ModuleWiring wiring : wirings.values()) {
 				wiring.unload();
 			}
@@ -1292,7 +1297,7 @@ public final class ModuleContainer implements DebugOptionsListener {
 					}
 				}
 			}
-			Map<ModuleRevision, ModuleWiring> wirings = moduleDatabase.getWiringsCopy();
+			Map<ModuleRevision, ModuleWiring> wirings = moduleDatabase.getWiringsSnapshot();
 			for (ModuleWiring wiring : wirings.values()) {
 				wiring.unload();
 			}
@@ -1477,7 +1482,7 @@ public final class ModuleContainer implements DebugOptionsListener {
 			Collection<Module> modules = getModules(bundles);
 			moduleDatabase.readLock();
 			try {
-				Collection<Module> closure = getRefreshClosure(modules, moduleDatabase.getWiringsCopy());
+				Collection<Module> closure = getRefreshClosure(modules, moduleDatabase.getWiringsSnapshot());
 				Collection<Bundle> result = new ArrayList<>(closure.size());
 				for (Module module : closure) {
 					result.add(module.getBundle());
@@ -1700,6 +1705,7 @@ public final class ModuleContainer implements DebugOptionsListener {
 					String beginningSL = adaptor.getProperty(Constants.FRAMEWORK_BEGINNING_STARTLEVEL);
 					newStartLevel = beginningSL == null ? 1 : Integer.parseInt(beginningSL);
 				}
+				StartupProfiler profiler = StartupProfiler.getProfiler(adaptor);
 				try {
 					int currentSL = getStartLevel();
 					if (currentSL == 0) {
@@ -1739,7 +1745,12 @@ public final class ModuleContainer implements DebugOptionsListener {
 									moduleDatabase.readUnlock();
 								}
 							}
-							incStartLevel(toStartLevel, lazyStart, lazyStartParallel, eagerStart, eagerStartParallel);
+							long begin = profiler.begin();
+							try {
+								incStartLevel(toStartLevel, lazyStart, lazyStartParallel, eagerStart, eagerStartParallel);
+							} finally {
+								profiler.end(StartupProfiler.CATEGORY_START_LEVEL, "increment to " + toStartLevel, begin); //$NON-NLS-1$
+							}
 						}
 					} else {
 						for (int i = currentSL; i > newStartLevel; i--) {
@@ -1757,7 +1768,12 @@ public final class ModuleContainer implements DebugOptionsListener {
 									moduleDatabase.readUnlock();
 								}
 							}
-							decStartLevel(toStartLevel, sorted);
+							long begin = profiler.begin();
+							try {
+								decStartLevel(toStartLevel, sorted);
+							} finally {
+								profiler.end(StartupProfiler.CATEGORY_START_LEVEL, "decrement to " + toStartLevel, begin); //$NON-NLS-1$
+							}
 						}
 					}
 					if (currentSL > 0 && newStartLevel > 0) {
@@ -1777,13 +1793,24 @@ public final class ModuleContainer implements DebugOptionsListener {
 			// start parallel bundles first
 			incStartLevel(toStartLevel, lazyStartParallel, true);
 			incStartLevel(toStartLevel, lazyStart, false);
-			incStartLevel(toStartLevel, eagerStartParallel, true);
+			if (parallelEagerStart) {
+				incStartLevelByDependencies(toStartLevel, eagerStartParallel);
+			} else {
+				incStartLevel(toStartLevel, eagerStartParallel, true);
+			}
 			incStartLevel(toStartLevel, eagerStart, false);
 		}
 
+		private boolean isParallelStart(Module module) {
+			if (parallelEagerStart && !module.isLazyActivate()) {
+				return true;
+			}
+			return !restrictParallelStart || module.isParallelActivated();
+		}
+
 		private void separateModulesByActivationPolicy(List<Module> sortedModules, List<Module> lazyStart, List<Module> lazyStartParallel, List<Module> eagerStart, List<Module> eagerStartParallel) {
 			for (Module module : sortedModules) {
-				if (!restrictParallelStart || module.isParallelActivated()) {
+				if (isParallelStart(module)) {
 					if (module.isLazyActivate()) {
 						lazyStartParallel.add(module);
 					} else {
@@ -1799,14 +1826,11 @@ public final class ModuleContainer implements DebugOptionsListener {
 			}
 		}
 
-		private void incStartLevel(final int toStartLevel, List<Module> candidatesToStart, boolean inParallel) {
-			if (candidatesToStart.isEmpty()) {
-				return;
-			}
-			final List<Module> toStart = new ArrayList<>();
-			for (final Module module : candidatesToStart) {
+		private List<Module> getModulesToStart(int toStartLevel, List<Module> candidatesToStart) {
+			List<Module> toStart = new ArrayList<>();
+			for (Module module : candidatesToStart) {
 				if (isRefreshingSystemModule()) {
-					return;
+					return Collections.emptyList();
 				}
 				try {
 					int moduleStartLevel = module.getStartLevel();
@@ -1823,6 +1847,11 @@ public final class ModuleContainer implements DebugOptionsListener {
 					continue;
 				}
 			}
+			return toStart;
+		}
+
+		private void incStartLevel(final int toStartLevel, List<Module> candidatesToStart, boolean inParallel) {
+			List<Module> toStart = getModulesToStart(toStartLevel, candidatesToStart);
 			if (toStart.isEmpty()) {
 				return;
 			}
@@ -1838,14 +1867,7 @@ public final class ModuleContainer implements DebugOptionsListener {
 					@Override
 					public void run() {
 						try {
-							if (debugStartLevel) {
-								Debug.println("StartLevel: resuming bundle; " + ContainerStartLevel.this.toString(module) + "; with startLevel=" + toStartLevel); //$NON-NLS-1$ //$NON-NLS-2$
-							}
-							module.start(StartOptions.TRANSIENT_IF_AUTO_START, StartOptions.TRANSIENT_RESUME);
-						} catch (BundleException e) {
-							adaptor.publishContainerEvent(ContainerEvent.ERROR, module, e);
-						} catch (IllegalStateException e) {
-							// been uninstalled
+							startModule(module, toStartLevel);
 						} finally {
 							done.countDown();
 						}
@@ -1860,6 +1882,95 @@ public final class ModuleContainer implements DebugOptionsListener {
 			}
 		}
 
+		/**
+		 * Starts the modules of a start level in parallel.  A module is only started
+		 * once the modules of the start level it depends on have finished starting.
+		 * The thread of the start level dispatches each module to the executor once
+		 * it is ready to start; so waiting on dependencies never blocks an executor thread.
+		 */
+		private void incStartLevelByDependencies(int toStartLevel, List<Module> candidatesToStart) {
+			List<Module> toStart = getModulesToStart(toStartLevel, candidatesToStart);
+			if (toStart.isEmpty()) {
+				return;
+			}
+			Map<Module, Collection<Module>> dependencies = moduleDatabase.sortByDependencyOrder(toStart);
+			BlockingQueue<ModuleStarter> ready = new LinkedBlockingQueue<>();
+			CountDownLatch done = new CountDownLatch(toStart.size());
+			Map<Module, ModuleStarter> starters = new HashMap<>(toStart.size());
+			for (Module module : toStart) {
+				starters.put(module, new ModuleStarter(module, toStartLevel, ready, done));
+			}
+			for (Module module : toStart) {
+				ModuleStarter starter = starters.get(module);
+				Collection<Module> providers = dependencies.get(module);
+				if (providers != null) {
+					for (Module provider : providers) {
+						starters.get(provider).dependents.add(starter);
+					}
+					starter.waiting.set(providers.size());
+				}
+			}
+			for (Module module : toStart) {
+				ModuleStarter starter = starters.get(module);
+				if (starter.waiting.get() == 0) {
+					ready.add(starter);
+				}
+			}
+			Executor executor = adaptor.getStartLevelExecutor();
+			try {
+				for (int i = 0; i < toStart.size(); i++) {
+					executor.execute(ready.take());
+				}
+				done.await();
+			} catch (InterruptedException e) {
+				adaptor.publishContainerEvent(ContainerEvent.ERROR, moduleDatabase.getModule(0), e);
+			}
+		}
+
+		private void startModule(Module module, int toStartLevel) {
+			try {
+				if (debugStartLevel) {
+					Debug.println("StartLevel: resuming bundle; " + toString(module) + "; with startLevel=" + toStartLevel); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+				module.start(StartOptions.TRANSIENT_IF_AUTO_START, StartOptions.TRANSIENT_RESUME);
+			} catch (BundleException e) {
+				adaptor.publishContainerEvent(ContainerEvent.ERROR, module, e);
+			} catch (IllegalStateException e) {
+				// been uninstalled
+			}
+		}
+
+		private final class ModuleStarter implements Runnable {
+			final Module module;
+			final int toStartLevel;
+			final BlockingQueue<ModuleStarter> ready;
+			final CountDownLatch done;
+			final AtomicInteger waiting = new AtomicInteger();
+			final List<ModuleStarter> dependents = new ArrayList<>(2);
+
+			ModuleStarter(Module module, int toStartLevel, BlockingQueue<ModuleStarter> ready, CountDownLatch done) {
+				this.module = module;
+				this.toStartLevel = toStartLevel;
+				this.ready = ready;
+				this.done = done;
+			}
+
+			@Override
+			public void run() {
+				try {
+					startModule(module, toStartLevel);
+				} finally {
+					// the dependents are ready even if this module failed to start
+					for (ModuleStarter dependent : dependents) {
+						if (dependent.waiting.decrementAndGet() == 0) {
+							ready.add(dependent);
+						}
+					}
+					done.countDown();
+				}
+			}
+		}
+
 		private void decStartLevel(int toStartLevel, List<Module> sortedModules) {
 			ListIterator<Module> iModules = sortedModules.listIterator(sortedModules.size());
 			while (iModules.hasPrevious()) {
@@ -25,6 +25,7 @@ import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -40,6 +41,7 @@ import org.eclipse.osgi.container.namespaces.EquinoxModuleDataNamespace;
 import org.eclipse.osgi.framework.util.ObjectPool;
 import org.eclipse.osgi.internal.container.Capabilities;
 import org.eclipse.osgi.internal.container.ComputeNodeOrder;
+import org.eclipse.osgi.internal.container.ImmutableArrayMap;
 import org.eclipse.osgi.internal.framework.EquinoxConfiguration;
 import org.osgi.framework.BundleException;
 import org.osgi.framework.Constants;
@@ -95,9 +97,22 @@ public class ModuleDatabase {
 	private final Map<Long, Module> modulesById;
 
 	/**
-	 * A map of revision wiring objects.
+	 * A map of revision wiring objects.  Once the map is shared by a
+	 * {@link #getWiringsSnapshot() snapshot} it is no longer modified;
+	 * it is replaced by a modified copy instead.
 	 */
-	final Map<ModuleRevision, ModuleWiring> wirings;
+	Map<ModuleRevision, ModuleWiring> wirings;
+
+	/**
+	 * True if the wirings map is shared by a snapshot.
+	 */
+	private volatile boolean wiringsShared;
+
+	/**
+	 * The cached result of {@link #getWiringsClone()}, or {@code null} if the
+	 * wirings changed since it was created.
+	 */
+	private volatile Map<ModuleRevision, ModuleWiring> wiringsClone;
 
 	/**
 	 * Holds the next id to be assigned to a module when it is installed
@@ -129,6 +144,11 @@ public class ModuleDatabase {
 	 */
 	final Map<Long, EnumSet<Settings>> moduleSettings;
 
+	/**
+	 * A cache of resolution results which is persisted with this database.
+	 */
+	private final ModuleResolutionCache resolutionCache;
+
 	/**
 	 * The initial module start level.
 	 */
@@ -171,6 +191,20 @@ public class ModuleDatabase {
 		this.allTimeStamp = new AtomicLong(constructionTime);
 		this.moduleSettings = new HashMap<>();
 		this.capabilities = new Capabilities();
+		this.resolutionCache = new ModuleResolutionCache(getResolutionCacheSize(adaptor));
+	}
+
+	private static int getResolutionCacheSize(ModuleContainerAdaptor adaptor) {
+		String cacheSize = adaptor.getProperty(EquinoxConfiguration.PROP_RESOLVER_CACHE_SIZE);
+		try {
+			return cacheSize == null ? ModuleResolutionCache.DEFAULT_MAX_ENTRIES : Math.max(0, Integer.parseInt(cacheSize));
+		} catch (NumberFormatException e) {
+			return ModuleResolutionCache.DEFAULT_MAX_ENTRIES;
+		}
+	}
+
+	final ModuleResolutionCache getResolutionCache() {
+		return resolutionCache;
 	}
 
 	/**
@@ -382,6 +416,7 @@ public class ModuleDatabase {
 				}
 			}
 			if (allPendingRemoval) {
+				Map<ModuleRevision, ModuleWiring> wirings = getWiringsForWrite();
 				Collection<ModuleWiring> toRemoveWirings = new ArrayList<>();
 				Map<ModuleWiring, Collection<ModuleWire>> toRemoveWireLists = new HashMap<>();
 				for (ModuleRevision pendingRemoval : dependencyClosure) {
@@ -477,6 +512,25 @@ public class ModuleDatabase {
 		}
 	}
 
+	/**
+	 * Returns an unmodifiable snapshot of the wirings for all revisions.
+	 * Unlike {@link #getWiringsCopy()} the entries are not copied; the
+	 * snapshot shares the wirings map which is copied by the next write
+	 * operation that modifies it.
+	 * <p>
+	 * A read operation protected by the {@link #readLock() read} lock.
+	 * @return an unmodifiable snapshot of the wirings for all revisions.
+	 */
+	final Map<ModuleRevision, ModuleWiring> getWiringsSnapshot() {
+		readLock();
+		try {
+			wiringsShared = true;
+			return Collections.unmodifiableMap(wirings);
+		} finally {
+			readUnlock();
+		}
+	}
+
 	/**
 	 * Returns a cloned snapshot of the wirings of all revisions.  This
 	 * performs a clone of each {@link ModuleWiring}.  The 
@@ -493,16 +547,25 @@ public class ModuleDatabase {
 	 * {@link Resolver#resolve(org.osgi.service.resolver.ResolveContext) resolve}
 	 * operations without holding the read or write lock on this database.
 	 * <p>
+	 * The returned map is unmodifiable.  It is shared by all callers until
+	 * the wirings change, and the cloned wirings are shared with later
+	 * snapshots until the wiring they were cloned from changes.
+	 * <p>
 	 * A read operation protected by the {@link #readLock() read} lock.
 	 * @return a cloned snapshot of the wirings of all revisions.
 	 */
 	final Map<ModuleRevision, ModuleWiring> getWiringsClone() {
 		readLock();
 		try {
-			Map<ModuleRevision, ModuleWiring> clonedWirings = new HashMap<>();
-			for (Map.Entry<ModuleRevision, ModuleWiring> entry : wirings.entrySet()) {
-				ModuleWiring wiring = new ModuleWiring(entry.getKey(), entry.getValue().getModuleCapabilities(null), entry.getValue().getModuleRequirements(null), entry.getValue().getProvidedModuleWires(null), entry.getValue().getRequiredModuleWires(null), entry.getValue().getSubstitutedNames());
-				clonedWirings.put(entry.getKey(), wiring);
+			Map<ModuleRevision, ModuleWiring> clonedWirings = wiringsClone;
+			if (clonedWirings == null) {
+				// the wirings cannot change while holding the read lock
+				clonedWirings = new HashMap<>(wirings.size() * 4 / 3 + 1);
+				for (Map.Entry<ModuleRevision, ModuleWiring> entry : wirings.entrySet()) {
+					clonedWirings.put(entry.getKey(), entry.getValue().getSnapshot());
+				}
+				clonedWirings = Collections.unmodifiableMap(clonedWirings);
+				wiringsClone = clonedWirings;
 			}
 			return clonedWirings;
 		} finally {
@@ -510,6 +573,34 @@ public class ModuleDatabase {
 		}
 	}
 
+	/**
+	 * Returns the wirings map for modification.  If the map is shared
+	 * with a snapshot then it is replaced by a copy first.
+	 * <p>
+	 * Must be called while holding the {@link #writeLock() write} lock.
+	 * @return the wirings map to modify
+	 */
+	private Map<ModuleRevision, ModuleWiring> getWiringsForWrite() {
+		checkWrite();
+		if (wiringsShared) {
+			wirings = new HashMap<>(wirings);
+			wiringsShared = false;
+		}
+		wiringsClone = null;
+		return wirings;
+	}
+
+	/**
+	 * Called when the content of a wiring changes without changing the
+	 * wirings map.
+	 * <p>
+	 * Must be called while holding the {@link #writeLock() write} lock.
+	 */
+	final void wiringChanged() {
+		checkWrite();
+		wiringsClone = null;
+	}
+
 	/**
 	 * Replaces the complete wiring map with the specified wiring
 	 * <p>
@@ -520,8 +611,16 @@ public class ModuleDatabase {
 	final void setWiring(Map<ModuleRevision, ModuleWiring> newWiring) {
 		writeLock();
 		try {
-			wirings.clear();
-			wirings.putAll(newWiring);
+			if (wiringsShared) {
+				// no need to copy the old map
+				wirings = new HashMap<>(newWiring);
+				wiringsShared = false;
+				wiringsClone = null;
+			} else {
+				Map<ModuleRevision, ModuleWiring> current = getWiringsForWrite();
+				current.clear();
+				current.putAll(newWiring);
+			}
 			incrementTimestamps(true);
 		} finally {
 			writeUnlock();
@@ -539,7 +638,7 @@ public class ModuleDatabase {
 	final void mergeWiring(Map<ModuleRevision, ModuleWiring> deltaWiring) {
 		writeLock();
 		try {
-			wirings.putAll(deltaWiring);
+			getWiringsForWrite().putAll(deltaWiring);
 			incrementTimestamps(true);
 		} finally {
 			writeUnlock();
@@ -615,7 +714,50 @@ public class ModuleDatabase {
 		}
 	}
 
+	/**
+	 * Sorts the specified modules by their dependencies and returns the dependencies
+	 * between the modules.  Each module is mapped to the modules of the list it depends
+	 * on which are sorted before it.  Dependencies which are part of a cycle and are
+	 * sorted after the module are not included, so waiting on the returned dependencies
+	 * in the sorted order can never wait forever.
+	 * <p>
+	 * A read operation protected by the {@link #readLock() read} lock.
+	 * @param toSort the modules to sort; the list is sorted in place
+	 * @return the dependencies between the modules
+	 */
+	final Map<Module, Collection<Module>> sortByDependencyOrder(List<Module> toSort) {
+		readLock();
+		try {
+			List<Module[]> references = getReferences(toSort);
+			sortByDependencies(toSort, references);
+			Map<Module, Integer> order = new HashMap<>(toSort.size());
+			for (Module module : toSort) {
+				order.put(module, order.size());
+			}
+			Map<Module, Collection<Module>> dependencies = new HashMap<>(toSort.size());
+			for (Module[] reference : references) {
+				Integer requirer = order.get(reference[0]);
+				Integer provider = order.get(reference[1]);
+				if (requirer != null && provider != null && provider < requirer) {
+					Collection<Module> providers = dependencies.get(reference[0]);
+					if (providers == null) {
+						providers = new HashSet<>();
+						dependencies.put(reference[0], providers);
+					}
+					providers.add(reference[1]);
+				}
+			}
+			return dependencies;
+		} finally {
+			readUnlock();
+		}
+	}
+
 	private Collection<List<Module>> sortByDependencies(List<Module> toSort) {
+		return sortByDependencies(toSort, getReferences(toSort));
+	}
+
+	private List<Module[]> getReferences(List<Module> toSort) {
 		// Build references so we can sort
 		List<Module[]> references = new ArrayList<>(toSort.size());
 		for (Module module : toSort) {
@@ -638,7 +780,10 @@ public class ModuleDatabase {
 				}
 			}
 		}
+		return references;
+	}
 
+	private Collection<List<Module>> sortByDependencies(List<Module> toSort, List<Module[]> references) {
 		// Sort an array using the references
 		Module[] sorted = toSort.toArray(new Module[toSort.size()]);
 		Object[][] cycles = ComputeNodeOrder.computeNodeOrder(sorted, references.toArray(new Module[references.size()][]));
@@ -957,7 +1102,7 @@ public class ModuleDatabase {
 	}
 
 	private static class Persistence {
-		private static final int VERSION = 3;
+		private static final int VERSION = 4;
 		private static final byte NULL = 0;
 		private static final byte OBJECT = 1;
 		private static final byte INDEX = 2;
@@ -1053,26 +1198,119 @@ public class ModuleDatabase {
 			// only persist wirings if there are no removals pending
 			persistWirings &= removalPendings.isEmpty();
 			out.writeBoolean(persistWirings);
-			if (!persistWirings) {
-				return;
+			if (persistWirings) {
+				// prime the object table with all the required wires which reference the modules
+				out.writeInt(wirings.size());
+				for (ModuleWiring wiring : wirings.values()) {
+					List<ModuleWire> requiredWires = wiring.getPersistentRequiredWires();
+					out.writeInt(requiredWires.size());
+					for (ModuleWire wire : requiredWires) {
+						writeWire(wire, out, objectTable);
+					}
+				}
+
+				// now write all the info about each wiring using only indexes from the objectTable
+				for (ModuleWiring wiring : wirings.values()) {
+					writeWiring(wiring, out, objectTable);
+				}
 			}
 
-			// prime the object table with all the required wires which reference the modules
-			out.writeInt(wirings.size());
-			for (ModuleWiring wiring : wirings.values()) {
-				List<ModuleWire> requiredWires = wiring.getPersistentRequiredWires();
-				out.writeInt(requiredWires.size());
-				for (ModuleWire wire : requiredWires) {
-					writeWire(wire, out, objectTable);
+			writeResolutionCache(moduleDatabase.getResolutionCache(), out, objectTable);
+
+			out.flush();
+		}
+
+		private static void writeResolutionCache(ModuleResolutionCache resolutionCache, DataOutputStream out, Map<Object, Integer> objectTable) throws IOException {
+			// only persist the entries which reference the current revisions
+			Map<String, int[][]> persistent = new LinkedHashMap<>();
+			entries: for (Map.Entry<String, Map<ModuleRevision, List<ModuleWire>>> entry : resolutionCache.getEntries().entrySet()) {
+				Map<ModuleRevision, List<ModuleWire>> result = entry.getValue();
+				int[][] indexes = new int[result.size()][];
+				int i = 0;
+				for (Map.Entry<ModuleRevision, List<ModuleWire>> resultEntry : result.entrySet()) {
+					Integer requirer = objectTable.get(resultEntry.getKey());
+					if (requirer == null) {
+						continue entries;
+					}
+					List<ModuleWire> wires = resultEntry.getValue();
+					int[] wireIndexes = new int[1 + wires.size() * 3];
+					wireIndexes[0] = requirer;
+					int j = 1;
+					for (ModuleWire wire : wires) {
+						Integer capability = objectTable.get(wire.getCapability());
+						Integer provider = objectTable.get(wire.getProvider());
+						Integer requirement = objectTable.get(wire.getRequirement());
+						if (capability == null || provider == null || requirement == null) {
+							continue entries;
+						}
+						wireIndexes[j++] = capability;
+						wireIndexes[j++] = provider;
+						wireIndexes[j++] = requirement;
+					}
+					indexes[i++] = wireIndexes;
+				}
+				persistent.put(entry.getKey(), indexes);
+			}
+
+			out.writeInt(persistent.size());
+			for (Map.Entry<String, int[][]> entry : persistent.entrySet()) {
+				out.writeUTF(entry.getKey());
+				int[][] indexes = entry.getValue();
+				out.writeInt(indexes.length);
+				for (int[] wireIndexes : indexes) {
+					out.writeInt(wireIndexes.length);
+					for (int index : wireIndexes) {
+						out.writeInt(index);
+					}
 				}
 			}
+		}
 
-			// now write all the info about each wiring using only indexes from the objectTable
-			for (ModuleWiring wiring : wirings.values()) {
-				writeWiring(wiring, out, objectTable);
+		private static void readResolutionCache(ModuleResolutionCache resolutionCache, DataInputStream in, List<Object> objectTable) throws IOException {
+			int numEntries = in.readInt();
+			for (int i = 0; i < numEntries; i++) {
+				String key = in.readUTF();
+				int numResults = in.readInt();
+				Map<ModuleRevision, List<ModuleWire>> result = new HashMap<>(numResults);
+				boolean valid = true;
+				for (int j = 0; j < numResults; j++) {
+					int[] wireIndexes = new int[in.readInt()];
+					for (int k = 0; k < wireIndexes.length; k++) {
+						wireIndexes[k] = in.readInt();
+					}
+					// keep reading the remaining indexes of an invalid entry but ignore them
+					valid = valid && readCachedWires(wireIndexes, objectTable, result);
+				}
+				if (valid) {
+					resolutionCache.putEntry(key, result);
+				}
 			}
+		}
 
-			out.flush();
+		private static boolean readCachedWires(int[] wireIndexes, List<Object> objectTable, Map<ModuleRevision, List<ModuleWire>> result) {
+			if (wireIndexes.length == 0 || (wireIndexes.length - 1) % 3 != 0) {
+				return false;
+			}
+			Object requirer = getIndexed(wireIndexes[0], objectTable);
+			if (!(requirer instanceof ModuleRevision)) {
+				return false;
+			}
+			List<ModuleWire> wires = new ArrayList<>((wireIndexes.length - 1) / 3);
+			for (int i = 1; i < wireIndexes.length; i += 3) {
+				Object capability = getIndexed(wireIndexes[i], objectTable);
+				Object provider = getIndexed(wireIndexes[i + 1], objectTable);
+				Object requirement = getIndexed(wireIndexes[i + 2], objectTable);
+				if (!(capability instanceof ModuleCapability) || !(provider instanceof ModuleRevision) || !(requirement instanceof ModuleRequirement)) {
+					return false;
+				}
+				wires.add(new ModuleWire((ModuleCapability) capability, (ModuleRevision) provider, (ModuleRequirement) requirement, (ModuleRevision) requirer));
+			}
+			result.put((ModuleRevision) requirer, wires);
+			return true;
+		}
+
+		private static Object getIndexed(int index, List<Object> objectTable) {
+			return index >= 0 && index < objectTable.size() ? objectTable.get(index) : null;
 		}
 
 		private static void getStringsVersionsAndMaps(Module module, ModuleDatabase moduleDatabase, Set<String> allStrings, Set<Version> allVersions, Set<Map<String, ?>> allMaps) {
@@ -1170,35 +1408,38 @@ public class ModuleDatabase {
 
 			moduleDatabase.revisionsTimeStamp.set(revisionsTimeStamp);
 			moduleDatabase.allTimeStamp.set(allTimeStamp);
-			if (!in.readBoolean())
-				return; // no wires persisted
-
-			int numWirings = in.readInt();
-			// prime the table with all the required wires
-			for (int i = 0; i < numWirings; i++) {
-				int numWires = in.readInt();
-				for (int j = 0; j < numWires; j++) {
-					readWire(in, objectTable);
+			if (in.readBoolean()) {
+				int numWirings = in.readInt();
+				// prime the table with all the required wires
+				for (int i = 0; i < numWirings; i++) {
+					int numWires = in.readInt();
+					for (int j = 0; j < numWires; j++) {
+						readWire(in, objectTable);
+					}
 				}
-			}
 
-			// now read all the info about each wiring using only indexes
-			Map<ModuleRevision, ModuleWiring> wirings = new HashMap<>();
-			for (int i = 0; i < numWirings; i++) {
-				ModuleWiring wiring = readWiring(in, objectTable);
-				wirings.put(wiring.getRevision(), wiring);
-			}
-			// TODO need to do this without incrementing the timestamp
-			moduleDatabase.setWiring(wirings);
+				// now read all the info about each wiring using only indexes
+				Map<ModuleRevision, ModuleWiring> wirings = new HashMap<>();
+				for (int i = 0; i < numWirings; i++) {
+					ModuleWiring wiring = readWiring(in, objectTable);
+					wirings.put(wiring.getRevision(), wiring);
+				}
+				// TODO need to do this without incrementing the timestamp
+				moduleDatabase.setWiring(wirings);
 
-			// need to set the resolution state of the modules
-			for (ModuleWiring wiring : wirings.values()) {
-				wiring.getRevision().getRevisions().getModule().setState(State.RESOLVED);
+				// need to set the resolution state of the modules
+				for (ModuleWiring wiring : wirings.values()) {
+					wiring.getRevision().getRevisions().getModule().setState(State.RESOLVED);
+				}
+
+				// Setting the timestamp at the end since some operations increment it
+				moduleDatabase.revisionsTimeStamp.set(revisionsTimeStamp);
+				moduleDatabase.allTimeStamp.set(allTimeStamp);
 			}
 
-			// Setting the timestamp at the end since some operations increment it
-			moduleDatabase.revisionsTimeStamp.set(revisionsTimeStamp);
-			moduleDatabase.allTimeStamp.set(allTimeStamp);
+			if (version >= 4) {
+				readResolutionCache(moduleDatabase.getResolutionCache(), in, objectTable);
+			}
 		}
 
 		private static void writeModule(Module module, ModuleDatabase moduleDatabase, DataOutputStream out, Map<Object, Integer> objectTable) throws IOException {
@@ -1505,9 +1746,10 @@ public class ModuleDatabase {
 					Object value = readMapValue(in, type, objectTable);
 					result.put(key, value);
 				}
-				result = Collections.unmodifiableMap(result);
+				result = count <= ImmutableArrayMap.MAX_SIZE ? ImmutableArrayMap.copyOf(result) : Collections.unmodifiableMap(result);
 			}
-			return result;
+			// share the map with equal maps of revisions installed later
+			return ObjectPool.intern(result);
 		}
 
 		private static Object readMapValue(DataInputStream in, int type, List<Object> objectTable) throws IOException {
@@ -0,0 +1,291 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.osgi.container;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import org.osgi.framework.namespace.NativeNamespace;
+import org.osgi.resource.Resource;
+import org.osgi.resource.Wire;
+
+/**
+ * A bounded cache of resolution results.  Each result is keyed by a fingerprint
+ * of everything the resolver looks at: the content of the installed revisions
+ * including the transient attributes of their capabilities, the revisions which
+ * are resolved together with their current wires, the revisions which are
+ * disabled or already failed to resolve, the root revisions being resolved and
+ * the identity of the resolver hooks.  The wires of the resolved revisions are
+ * part of the key because the uses constraints of a new resolution are checked
+ * against them; a refresh which rewires a resolved revision produces a new key.
+ * <p>
+ * A cached result is only a hint.  The resolver must validate a cached
+ * result against the current state before using it.
+ * <p>
+ * Results are only cached while every resolver hook in use identifies its
+ * filtering by implementing the internal
+ * {@link org.eclipse.osgi.internal.container.IdentifiableResolverHook}
+ * interface.  Any other resolver hook, including all resolver hooks registered
+ * by bundles outside the framework, disables the cache while it is registered.
+ */
+final class ModuleResolutionCache {
+	static final int DEFAULT_MAX_ENTRIES = 4;
+	private static final String DIGEST_ALGORITHM = "SHA-256"; //$NON-NLS-1$
+	private static final Charset UTF_8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+	private static final char[] HEX = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
+	private final int maxEntries;
+	/* guarded by this */
+	private final Map<String, Map<ModuleRevision, List<ModuleWire>>> entries;
+	/* guarded by this; revision content never changes so the digest is computed only once */
+	private final Map<ModuleRevision, String> revisionDigests = new WeakHashMap<>();
+
+	ModuleResolutionCache(final int maxEntries) {
+		this.maxEntries = maxEntries;
+		this.entries = new LinkedHashMap<String, Map<ModuleRevision, List<ModuleWire>>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Map<ModuleRevision, List<ModuleWire>>> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	boolean isEnabled() {
+		return maxEntries > 0;
+	}
+
+	/**
+	 * Returns a copy of the cached result for the specified key, or {@code null}
+	 * if no result is cached for the key.  The returned wire lists may be modified.
+	 * @param key the resolution key
+	 * @return a copy of the cached result or {@code null}
+	 */
+	synchronized Map<Resource, List<Wire>> get(String key) {
+		Map<ModuleRevision, List<ModuleWire>> cached = entries.get(key);
+		if (cached == null) {
+			return null;
+		}
+		Map<Resource, List<Wire>> result = new HashMap<>(cached.size());
+		for (Map.Entry<ModuleRevision, List<ModuleWire>> entry : cached.entrySet()) {
+			result.put(entry.getKey(), new ArrayList<Wire>(entry.getValue()));
+		}
+		return result;
+	}
+
+	/**
+	 * Caches a resolution result for the specified key.
+	 * @param key the resolution key
+	 * @param result the result of the resolve operation
+	 */
+	void put(String key, Map<Resource, List<Wire>> result) {
+		if (!isEnabled()) {
+			return;
+		}
+		Map<ModuleRevision, List<ModuleWire>> copy = new HashMap<>(result.size());
+		for (Map.Entry<Resource, List<Wire>> entry : result.entrySet()) {
+			List<ModuleWire> wires = new ArrayList<>(entry.getValue().size());
+			for (Wire wire : entry.getValue()) {
+				wires.add(new ModuleWire((ModuleCapability) wire.getCapability(), (ModuleRevision) wire.getProvider(), (ModuleRequirement) wire.getRequirement(), (ModuleRevision) wire.getRequirer()));
+			}
+			copy.put((ModuleRevision) entry.getKey(), wires);
+		}
+		putEntry(key, copy);
+	}
+
+	synchronized void putEntry(String key, Map<ModuleRevision, List<ModuleWire>> wires) {
+		if (isEnabled()) {
+			entries.put(key, wires);
+		}
+	}
+
+	/**
+	 * Returns a snapshot of the cached entries, used to persist the cache.
+	 * @return a snapshot of the cached entries
+	 */
+	synchronized Map<String, Map<ModuleRevision, List<ModuleWire>>> getEntries() {
+		return new LinkedHashMap<>(entries);
+	}
+
+	synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Computes the fingerprint of the content of the specified revisions.
+	 * The order of the revisions does not matter.
+	 * @param revisions the revisions
+	 * @return the fingerprint or {@code null} if a fingerprint cannot be computed
+	 */
+	String getFingerprint(Collection<? extends Resource> revisions) {
+		MessageDigest digest = newDigest();
+		if (digest == null) {
+			return null;
+		}
+		List<String> revisionDigests = new ArrayList<>(revisions.size());
+		for (Resource revision : revisions) {
+			revisionDigests.add(getDigest((ModuleRevision) revision) + getTransientAttributes((ModuleRevision) revision));
+		}
+		Collections.sort(revisionDigests);
+		for (String revisionDigest : revisionDigests) {
+			update(digest, revisionDigest);
+		}
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Computes the resolution key for a resolve operation.
+	 * @param installed the fingerprint of all the installed revisions
+	 * @param hookIdentity the identity of the resolver hooks
+	 * @param roots the revisions being resolved; the order is significant
+	 * @param mandatory true if the roots are mandatory
+	 * @param resolved the revisions which are already resolved and their current wirings
+	 * @param disabled the revisions which are disabled
+	 * @param failed the revisions which already failed to resolve
+	 * @return the resolution key or {@code null} if a key cannot be computed
+	 */
+	String getKey(String installed, String hookIdentity, List<Resource> roots, boolean mandatory, Map<ModuleRevision, ModuleWiring> resolved, Collection<? extends Resource> disabled, Collection<? extends Resource> failed) {
+		MessageDigest digest = newDigest();
+		if (installed == null || hookIdentity == null || digest == null) {
+			return null;
+		}
+		update(digest, installed);
+		update(digest, hookIdentity);
+		update(digest, String.valueOf(mandatory));
+		for (Resource root : roots) {
+			update(digest, getDigest((ModuleRevision) root));
+		}
+		update(digest, getWiringFingerprint(resolved));
+		update(digest, getFingerprint(disabled));
+		update(digest, getFingerprint(failed));
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Computes the fingerprint of the content and the current required wires
+	 * of the specified resolved revisions.  The order of the revisions does not matter.
+	 * @param resolved the resolved revisions and their current wirings
+	 * @return the fingerprint or {@code null} if a fingerprint cannot be computed
+	 */
+	private String getWiringFingerprint(Map<ModuleRevision, ModuleWiring> resolved) {
+		MessageDigest digest = newDigest();
+		if (digest == null) {
+			return null;
+		}
+		List<String> wiringDigests = new ArrayList<>(resolved.size());
+		StringBuilder wiringDigest = new StringBuilder();
+		for (Map.Entry<ModuleRevision, ModuleWiring> entry : resolved.entrySet()) {
+			wiringDigest.setLength(0);
+			appendRevision(wiringDigest, entry.getKey()).append(getTransientAttributes(entry.getKey()));
+			List<ModuleWire> requiredWires = entry.getValue().getRequiredModuleWires(null);
+			if (requiredWires != null) {
+				for (ModuleWire wire : requiredWires) {
+					wiringDigest.append('\u0000').append(wire.getRequirement());
+					appendRevision(wiringDigest.append('\u0000'), wire.getProvider());
+					wiringDigest.append('\u0000').append(wire.getCapability());
+				}
+			}
+			wiringDigests.add(wiringDigest.toString());
+		}
+		Collections.sort(wiringDigests);
+		for (String revisionDigest : wiringDigests) {
+			update(digest, revisionDigest);
+		}
+		return toHex(digest.digest());
+	}
+
+	private StringBuilder appendRevision(StringBuilder builder, ModuleRevision revision) {
+		// an updated module can have a removal pending revision with the same content
+		return builder.append(getDigest(revision)).append(revision.isCurrent() ? ";current" : ";pending"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private String getDigest(ModuleRevision revision) {
+		synchronized (this) {
+			String result = revisionDigests.get(revision);
+			if (result != null) {
+				return result;
+			}
+		}
+		MessageDigest digest = newDigest();
+		if (digest == null) {
+			return ""; //$NON-NLS-1$
+		}
+		update(digest, String.valueOf(revision.getRevisions().getModule().getId()));
+		update(digest, String.valueOf(revision.getSymbolicName()));
+		update(digest, String.valueOf(revision.getVersion()));
+		update(digest, String.valueOf(revision.getTypes()));
+		for (ModuleCapability capability : revision.getModuleCapabilities(null)) {
+			update(digest, capability.getNamespace());
+			// transient attributes may change at any time; they are added by getFingerprint
+			update(digest, new TreeMap<>(capability.getPersistentAttributes()).toString());
+			update(digest, new TreeMap<>(capability.getDirectives()).toString());
+		}
+		for (ModuleRequirement requirement : revision.getModuleRequirements(null)) {
+			update(digest, requirement.getNamespace());
+			update(digest, new TreeMap<>(requirement.getAttributes()).toString());
+			update(digest, new TreeMap<>(requirement.getDirectives()).toString());
+		}
+		String result = toHex(digest.digest());
+		synchronized (this) {
+			revisionDigests.put(revision, result);
+		}
+		return result;
+	}
+
+	private static String getTransientAttributes(ModuleRevision revision) {
+		// only osgi.native capabilities have transient attributes
+		List<ModuleCapability> nativeCapabilities = revision.getModuleCapabilities(NativeNamespace.NATIVE_NAMESPACE);
+		if (nativeCapabilities.isEmpty()) {
+			return ""; //$NON-NLS-1$
+		}
+		StringBuilder result = new StringBuilder();
+		for (ModuleCapability capability : nativeCapabilities) {
+			result.append(new TreeMap<>(capability.getTransientAttributes()));
+		}
+		return result.toString();
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance(DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			return null;
+		}
+	}
+
+	private static void update(MessageDigest digest, String value) {
+		digest.update(value.getBytes(UTF_8));
+		// separate the values so different splits of the same characters do not collide
+		digest.update((byte) 0);
+	}
+
+	private static String toHex(byte[] bytes) {
+		char[] result = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			result[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+			result[i * 2 + 1] = HEX[bytes[i] & 0xF];
+		}
+		return new String(result);
+	}
+}
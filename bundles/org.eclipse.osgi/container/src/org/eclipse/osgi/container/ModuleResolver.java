@@ -35,14 +35,17 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import org.apache.felix.resolver.Logger;
 import org.apache.felix.resolver.ResolutionError;
 import org.apache.felix.resolver.ResolverImpl;
 import org.eclipse.osgi.container.ModuleRequirement.DynamicModuleRequirement;
 import org.eclipse.osgi.container.namespaces.EquinoxFragmentNamespace;
+import org.eclipse.osgi.internal.container.IdentifiableResolverHook;
 import org.eclipse.osgi.internal.container.InternalUtils;
 import org.eclipse.osgi.internal.debug.Debug;
+import org.eclipse.osgi.internal.debug.StartupProfiler;
 import org.eclipse.osgi.internal.framework.EquinoxConfiguration;
 import org.eclipse.osgi.internal.framework.EquinoxContainer;
 import org.eclipse.osgi.internal.messages.Msg;
@@ -121,6 +124,7 @@ final class ModuleResolver {
 
 	final ThreadLocal<Boolean> threadResolving = new ThreadLocal<>();
 	final ModuleContainerAdaptor adaptor;
+	final StartupProfiler profiler;
 
 	/**
 	 * Constructs the module resolver with the specified resolver hook factory
@@ -129,6 +133,7 @@ final class ModuleResolver {
 	 */
 	ModuleResolver(final ModuleContainerAdaptor adaptor) {
 		this.adaptor = adaptor;
+		this.profiler = StartupProfiler.getProfiler(adaptor);
 
 		setDebugOptions();
 
@@ -514,6 +519,7 @@ final class ModuleResolver {
 
 		class ResolveLogger extends Logger {
 			private Map<Resource, ResolutionException> errors = null;
+			private int violationCount = 0;
 
 			public ResolveLogger() {
 				super(DEBUG_USES ? Logger.LOG_DEBUG : 0);
@@ -525,6 +531,7 @@ final class ModuleResolver {
 					errors = new HashMap<>();
 				}
 				errors.put(resource, error.toException());
+				violationCount++;
 				if (DEBUG_USES) {
 					Debug.println(new StringBuilder("RESOLVER: Uses constraint violation") //$NON-NLS-1$
 							.append(SEPARATOR).append(TAB) //
@@ -543,6 +550,10 @@ final class ModuleResolver {
 				return errors == null ? Collections.<Resource, ResolutionException> emptyMap() : errors;
 			}
 
+			int getUsesConstraintViolationCount() {
+				return violationCount;
+			}
+
 			@Override
 			public boolean isDebugEnabled() {
 				return DEBUG_USES;
@@ -585,6 +596,18 @@ final class ModuleResolver {
 		private volatile boolean currentlyResolvingMandatory = false;
 		private final Set<Resource> transitivelyResolveFailures = new LinkedHashSet<>();
 		private final Set<Resource> failedToResolve = new HashSet<>();
+		/*
+		 * The revisions known to this resolve process and the fingerprint of their
+		 * content.  Lazily computed the first time the resolution cache is used.
+		 */
+		private Set<ModuleRevision> installed = null;
+		private String installedFingerprint = null;
+		/*
+		 * The number of tasks given to the resolver executor and the total time spent
+		 * running them.  Only collected when debugging the resolver roots.
+		 */
+		private final AtomicLong executorTasks = new AtomicLong();
+		private final AtomicLong executorTaskNanos = new AtomicLong();
 		private AtomicBoolean scheduleTimeout = new AtomicBoolean(true);
 		private AtomicReference<ScheduledFuture<?>> timoutFuture = new AtomicReference<>();
 		/*
@@ -624,7 +647,7 @@ final class ModuleResolver {
 			this.triggers.add(revision);
 			this.triggersMandatory = false;
 			this.optionals = new ArrayList<>(unresolved);
-			this.wirings = wirings;
+			this.wirings = new HashMap<>(wirings);
 			this.previouslyResolved = new HashSet<>(wirings.keySet());
 			this.moduleDatabase = moduleDatabase;
 			this.dynamicReq = dynamicReq;
@@ -942,6 +965,7 @@ final class ModuleResolver {
 				throw new IllegalStateException(Msg.ModuleResolver_RecursiveError);
 			}
 			threadResolving.set(Boolean.TRUE);
+			long begin = profiler.begin();
 			try {
 				try {
 					hook = adaptor.getResolverHookFactory().begin(InternalUtils.asListBundleRevision((List<? extends BundleRevision>) triggers));
@@ -1018,6 +1042,7 @@ final class ModuleResolver {
 				}
 				return report;
 			} finally {
+				profiler.end(StartupProfiler.CATEGORY_RESOLVE, dynamicReq == null ? "resolve" : "resolve dynamic", begin); //$NON-NLS-1$ //$NON-NLS-2$
 				threadResolving.set(Boolean.FALSE);
 			}
 		}
@@ -1089,6 +1114,7 @@ final class ModuleResolver {
 				Debug.println("Resolver: resolve batch size:  " + resolverRevisionBatchSize); //$NON-NLS-1$
 				Debug.println("Resolver: time to resolve:  " + (System.currentTimeMillis() - startTime) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$
 				Debug.println("Resolver: max used memory: " + maxUsedMemory / (1024 * 1024) + "Mo"); //$NON-NLS-1$ //$NON-NLS-2$
+				Debug.println("Resolver: executor tasks: " + executorTasks.get() + " in " + TimeUnit.NANOSECONDS.toMillis(executorTaskNanos.get()) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 			}
 		}
 
@@ -1112,9 +1138,19 @@ final class ModuleResolver {
 			currentlyResolvingMandatory = isMandatory;
 			transitivelyResolveFailures.clear();
 			Map<Resource, List<Wire>> interimResults = null;
+			long begin = profiler.begin();
 			try {
 				transitivelyResolveFailures.addAll(revisions);
-				interimResults = new ResolverImpl(logger, this).resolve(this);
+				String cacheKey = getResolutionCacheKey(revisions, isMandatory);
+				interimResults = getCachedResolution(cacheKey);
+				if (interimResults == null) {
+					int usesConstraintViolations = logger.getUsesConstraintViolationCount();
+					interimResults = new ResolverImpl(logger, this).resolve(this);
+					// only cache complete results; partial results need the resolver to report the failures
+					if (cacheKey != null && usesConstraintViolations == logger.getUsesConstraintViolationCount() && interimResults.keySet().containsAll(revisions)) {
+						moduleDatabase.getResolutionCache().put(cacheKey, interimResults);
+					}
+				}
 				applyInterimResultToWiringCopy(interimResults);
 				if (DEBUG_ROOTS) {
 					Debug.println("Resolver: resolved " + interimResults.size() + " bundles."); //$NON-NLS-1$ //$NON-NLS-2$
@@ -1152,7 +1188,60 @@ final class ModuleResolver {
 				}
 				currentlyResolving = null;
 				currentlyResolvingMandatory = false;
+				profiler.end(StartupProfiler.CATEGORY_RESOLVE, "resolve batch", begin); //$NON-NLS-1$
+			}
+		}
+
+		private String getResolutionCacheKey(List<Resource> roots, boolean isMandatory) {
+			ModuleResolutionCache resolutionCache = moduleDatabase.getResolutionCache();
+			if (dynamicReq != null || !resolutionCache.isEnabled() || !(hook instanceof IdentifiableResolverHook)) {
+				return null;
 			}
+			if (installed == null) {
+				installed = new HashSet<>(unresolved);
+				installed.addAll(previouslyResolved);
+				installedFingerprint = resolutionCache.getFingerprint(installed);
+			}
+			String hookIdentity = ((IdentifiableResolverHook) hook).getHookIdentity();
+			return resolutionCache.getKey(installedFingerprint, hookIdentity, roots, isMandatory, wirings, disabled, failedToResolve);
+		}
+
+		private Map<Resource, List<Wire>> getCachedResolution(String cacheKey) {
+			if (cacheKey == null) {
+				return null;
+			}
+			Map<Resource, List<Wire>> cached = moduleDatabase.getResolutionCache().get(cacheKey);
+			if (cached == null) {
+				return null;
+			}
+			// The key covers everything the resolver looks at, including the current wires of the
+			// resolved revisions which the uses constraints are checked against, but it only identifies revisions
+			// by their content; make sure the cached wires use the same revisions, that no
+			// revision lost its singleton selection and that each capability is still a valid provider.
+			Map<Requirement, List<Capability>> providers = new HashMap<>();
+			for (Map.Entry<Resource, List<Wire>> entry : cached.entrySet()) {
+				if (!installed.contains(entry.getKey()) || wirings.containsKey(entry.getKey()) || disabled.contains(entry.getKey())) {
+					return null;
+				}
+				for (Wire wire : entry.getValue()) {
+					Requirement requirement = wire.getRequirement();
+					if (!installed.contains(wire.getProvider()) || !installed.contains(wire.getCapability().getResource()) || !installed.contains(requirement.getResource())) {
+						return null;
+					}
+					List<Capability> matching = providers.get(requirement);
+					if (matching == null) {
+						matching = findProviders(requirement);
+						providers.put(requirement, matching);
+					}
+					if (!matching.contains(wire.getCapability())) {
+						return null;
+					}
+				}
+			}
+			if (DEBUG_ROOTS) {
+				Debug.println("Resolver: using cached resolution for " + cached.size() + " bundles."); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			return cached;
 		}
 
 		private void applyInterimResultToWiringCopy(Map<Resource, List<Wire>> interimResult) {
@@ -1629,8 +1718,23 @@ final class ModuleResolver {
 		}
 
 		@Override
-		public void execute(Runnable command) {
-			adaptor.getResolverExecutor().execute(command);
+		public void execute(final Runnable command) {
+			if (!DEBUG_ROOTS) {
+				adaptor.getResolverExecutor().execute(command);
+				return;
+			}
+			executorTasks.incrementAndGet();
+			adaptor.getResolverExecutor().execute(new Runnable() {
+				@Override
+				public void run() {
+					long start = System.nanoTime();
+					try {
+						command.run();
+					} finally {
+						executorTaskNanos.addAndGet(System.nanoTime() - start);
+					}
+				}
+			});
 		}
 
 		@Override
@@ -21,6 +21,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import org.eclipse.osgi.framework.util.ObjectPool;
+import org.eclipse.osgi.internal.container.ImmutableArrayMap;
 import org.eclipse.osgi.internal.framework.FilterImpl;
 import org.osgi.framework.AdminPermission;
 import org.osgi.framework.Bundle;
@@ -307,11 +309,17 @@ public final class ModuleRevisionBuilder {
 		if (size == 0) {
 			return Collections.emptyMap();
 		}
+		Map<K, V> copy;
 		if (size == 1) {
 			Map.Entry<K, V> entry = map.entrySet().iterator().next();
-			return Collections.singletonMap(entry.getKey(), entry.getValue());
+			copy = Collections.singletonMap(entry.getKey(), entry.getValue());
+		} else if (size <= ImmutableArrayMap.MAX_SIZE) {
+			copy = ImmutableArrayMap.copyOf(map);
+		} else {
+			copy = Collections.unmodifiableMap(new HashMap<>(map));
 		}
-		return Collections.unmodifiableMap(new HashMap<>(map));
+		// many revisions have equal attributes and directives; share them
+		return ObjectPool.intern(copy);
 	}
 
 	void basicAddCapability(String namespace, Map<String, String> directives, Map<String, Object> attributes) {
@@ -332,6 +340,9 @@ public final class ModuleRevisionBuilder {
 		if (size == 0) {
 			return Collections.emptyMap();
 		}
+		if (map.getClass() == ImmutableArrayMap.class) {
+			return (Map<K, V>) map;
+		}
 		if (size == 1) {
 			if (map.getClass() != SINGLETON_MAP_CLASS) {
 				Map.Entry<? extends K, ? extends V> entry = map.entrySet().iterator().next();
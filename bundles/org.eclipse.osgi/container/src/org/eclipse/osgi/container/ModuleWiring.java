@@ -44,27 +44,61 @@ public final class ModuleWiring implements BundleWiring {
 
 	private static final RuntimePermission GET_CLASSLOADER_PERM = new RuntimePermission("getClassLoader"); //$NON-NLS-1$
 	private static final String DYNAMICALLY_ADDED_IMPORT_DIRECTIVE = "x.dynamically.added"; //$NON-NLS-1$
+	private static final ModuleCapability[] EMPTY_CAPABILITIES = new ModuleCapability[0];
+	private static final ModuleRequirement[] EMPTY_REQUIREMENTS = new ModuleRequirement[0];
+	private static final ModuleWire[] EMPTY_WIRES = new ModuleWire[0];
 	private final ModuleRevision revision;
-	private volatile List<ModuleCapability> capabilities;
-	private volatile List<ModuleRequirement> requirements;
+	// the arrays are never modified; they are replaced so that snapshots can share them
+	private volatile ModuleCapability[] capabilities;
+	private volatile ModuleRequirement[] requirements;
 	private final Collection<String> substitutedPkgNames;
 	private final AtomicLazyInitializer<ModuleLoader> loader = new AtomicLazyInitializer<>();
 	private final LoaderInitializer loaderInitializer = new LoaderInitializer();
-	private volatile List<ModuleWire> providedWires;
-	private volatile List<ModuleWire> requiredWires;
+	private volatile ModuleWire[] providedWires;
+	private volatile ModuleWire[] requiredWires;
 	volatile boolean isValid = true;
 	private final AtomicReference<Set<String>> dynamicMissRef = new AtomicReference<>();
+	private volatile ModuleWiring snapshot;
 
 	ModuleWiring(ModuleRevision revision, List<ModuleCapability> capabilities, List<ModuleRequirement> requirements, List<ModuleWire> providedWires, List<ModuleWire> requiredWires, Collection<String> substitutedPkgNames) {
 		super();
 		this.revision = revision;
-		this.capabilities = capabilities;
-		this.requirements = requirements;
-		this.providedWires = providedWires;
-		this.requiredWires = requiredWires;
+		this.capabilities = capabilities.isEmpty() ? EMPTY_CAPABILITIES : capabilities.toArray(new ModuleCapability[capabilities.size()]);
+		this.requirements = requirements.isEmpty() ? EMPTY_REQUIREMENTS : requirements.toArray(new ModuleRequirement[requirements.size()]);
+		this.providedWires = toArray(providedWires);
+		this.requiredWires = toArray(requiredWires);
 		this.substitutedPkgNames = substitutedPkgNames.isEmpty() ? Collections.<String> emptyList() : substitutedPkgNames;
 	}
 
+	private ModuleWiring(ModuleWiring wiring) {
+		super();
+		this.revision = wiring.revision;
+		this.capabilities = wiring.capabilities;
+		this.requirements = wiring.requirements;
+		this.providedWires = wiring.providedWires;
+		this.requiredWires = wiring.requiredWires;
+		this.substitutedPkgNames = wiring.substitutedPkgNames;
+	}
+
+	private static ModuleWire[] toArray(List<ModuleWire> wires) {
+		return wires.isEmpty() ? EMPTY_WIRES : wires.toArray(new ModuleWire[wires.size()]);
+	}
+
+	/**
+	 * Returns a copy of this wiring which is not changed when this wiring is
+	 * changed.  The copy shares the capabilities, requirements and wires of this
+	 * wiring and is reused until this wiring changes.
+	 * @return a copy of this wiring
+	 */
+	ModuleWiring getSnapshot() {
+		ModuleWiring result = snapshot;
+		if (result == null) {
+			result = new ModuleWiring(this);
+			snapshot = result;
+		}
+		return result;
+	}
+
 	@Override
 	public Bundle getBundle() {
 		return revision.getBundle();
@@ -77,7 +111,7 @@ public final class ModuleWiring implements BundleWiring {
 
 	@Override
 	public boolean isInUse() {
-		return isCurrent() || !providedWires.isEmpty() || isFragmentInUse();
+		return isCurrent() || providedWires.length != 0 || isFragmentInUse();
 	}
 
 	private boolean isFragmentInUse() {
@@ -101,11 +135,11 @@ public final class ModuleWiring implements BundleWiring {
 		return getModuleCapabilities(namespace, capabilities);
 	}
 
-	private List<ModuleCapability> getModuleCapabilities(String namespace, List<ModuleCapability> allCapabilities) {
+	private List<ModuleCapability> getModuleCapabilities(String namespace, ModuleCapability[] allCapabilities) {
 		if (!isValid)
 			return null;
 		if (namespace == null)
-			return new ArrayList<>(allCapabilities);
+			return new ArrayList<>(Arrays.asList(allCapabilities));
 		List<ModuleCapability> result = new ArrayList<>();
 		for (ModuleCapability capability : allCapabilities) {
 			if (namespace.equals(capability.getNamespace())) {
@@ -142,11 +176,11 @@ public final class ModuleWiring implements BundleWiring {
 		return persistentRequriements;
 	}
 
-	private List<ModuleRequirement> getModuleRequirements(String namespace, List<ModuleRequirement> allRequirements) {
+	private List<ModuleRequirement> getModuleRequirements(String namespace, ModuleRequirement[] allRequirements) {
 		if (!isValid)
 			return null;
 		if (namespace == null)
-			return new ArrayList<>(allRequirements);
+			return new ArrayList<>(Arrays.asList(allRequirements));
 		List<ModuleRequirement> result = new ArrayList<>();
 		for (ModuleRequirement requirement : allRequirements) {
 			if (namespace.equals(requirement.getNamespace())) {
@@ -197,7 +231,7 @@ public final class ModuleWiring implements BundleWiring {
 		return getPersistentWires(requiredWires);
 	}
 
-	private List<ModuleWire> getPersistentWires(List<ModuleWire> allWires) {
+	private List<ModuleWire> getPersistentWires(ModuleWire[] allWires) {
 		List<ModuleWire> persistentWires = getWires(null, allWires);
 		if (persistentWires == null) {
 			return null;
@@ -223,11 +257,11 @@ public final class ModuleWiring implements BundleWiring {
 		return InternalUtils.asListBundleWire(getWires(namespace, requiredWires));
 	}
 
-	private List<ModuleWire> getWires(String namespace, List<ModuleWire> allWires) {
+	private List<ModuleWire> getWires(String namespace, ModuleWire[] allWires) {
 		if (!isValid)
 			return null;
 		if (namespace == null)
-			return new ArrayList<>(allWires);
+			return new ArrayList<>(Arrays.asList(allWires));
 		List<ModuleWire> result = new ArrayList<>();
 		for (ModuleWire moduleWire : allWires) {
 			if (namespace.equals(moduleWire.getCapability().getNamespace())) {
@@ -333,15 +367,18 @@ public final class ModuleWiring implements BundleWiring {
 	}
 
 	void setProvidedWires(List<ModuleWire> providedWires) {
-		this.providedWires = providedWires;
+		this.providedWires = toArray(providedWires);
+		this.snapshot = null;
 	}
 
 	void setRequiredWires(List<ModuleWire> requiredWires) {
-		this.requiredWires = requiredWires;
+		this.requiredWires = toArray(requiredWires);
+		this.snapshot = null;
 	}
 
 	void setCapabilities(List<ModuleCapability> capabilities) {
-		this.capabilities = capabilities;
+		this.capabilities = capabilities.isEmpty() ? EMPTY_CAPABILITIES : capabilities.toArray(new ModuleCapability[capabilities.size()]);
+		this.snapshot = null;
 	}
 
 	void unload() {
@@ -427,9 +464,14 @@ public final class ModuleWiring implements BundleWiring {
 		ModuleDatabase moduleDatabase = revision.getRevisions().getContainer().moduleDatabase;
 		moduleDatabase.writeLock();
 		try {
-			List<ModuleRequirement> updatedRequirements = new ArrayList<>(requirements);
-			updatedRequirements.addAll(newRequirements);
+			ModuleRequirement[] current = requirements;
+			ModuleRequirement[] updatedRequirements = Arrays.copyOf(current, current.length + newRequirements.size());
+			for (int i = 0; i < newRequirements.size(); i++) {
+				updatedRequirements[current.length + i] = newRequirements.get(i);
+			}
 			requirements = updatedRequirements;
+			snapshot = null;
+			moduleDatabase.wiringChanged();
 		} finally {
 			moduleDatabase.writeUnlock();
 		}
@@ -468,7 +510,7 @@ public final class ModuleWiring implements BundleWiring {
 		}
 		// Could cache this, but seems unnecessary since it will only be used by the resolver
 		List<Wire> substitutionWires = new ArrayList<>(substitutedPkgNames.size());
-		List<ModuleWire> current = requiredWires;
+		ModuleWire[] current = requiredWires;
 		for (ModuleWire wire : current) {
 			Capability cap = wire.getCapability();
 			if (PackageNamespace.PACKAGE_NAMESPACE.equals(cap.getNamespace())) {
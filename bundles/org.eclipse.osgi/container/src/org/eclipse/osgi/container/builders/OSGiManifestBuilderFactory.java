@@ -27,6 +27,7 @@ import org.eclipse.osgi.container.ModuleRevisionBuilder;
 import org.eclipse.osgi.container.namespaces.EclipsePlatformNamespace;
 import org.eclipse.osgi.container.namespaces.EquinoxFragmentNamespace;
 import org.eclipse.osgi.container.namespaces.EquinoxModuleDataNamespace;
+import org.eclipse.osgi.internal.container.ParsedManifest;
 import org.eclipse.osgi.internal.framework.EquinoxContainer;
 import org.eclipse.osgi.internal.framework.FilterImpl;
 import org.eclipse.osgi.internal.messages.Msg;
@@ -103,26 +104,26 @@ public final class OSGiManifestBuilderFactory {
 		Object symbolicName = getSymbolicNameAndVersion(builder, manifest, symbolicNameAlias, manifestVersion);
 
 		Collection<Map<String, Object>> exportedPackages = new ArrayList<>();
-		getPackageExports(builder, ManifestElement.parseHeader(Constants.EXPORT_PACKAGE, manifest.get(Constants.EXPORT_PACKAGE)), symbolicName, exportedPackages);
-		getPackageExports(builder, ManifestElement.parseHeader(HEADER_OLD_PROVIDE_PACKAGE, manifest.get(HEADER_OLD_PROVIDE_PACKAGE)), symbolicName, exportedPackages);
+		getPackageExports(builder, parseHeader(manifest, Constants.EXPORT_PACKAGE), symbolicName, exportedPackages);
+		getPackageExports(builder, parseHeader(manifest, HEADER_OLD_PROVIDE_PACKAGE), symbolicName, exportedPackages);
 		if (extraExports != null && !extraExports.isEmpty()) {
 			getPackageExports(builder, ManifestElement.parseHeader(Constants.EXPORT_PACKAGE, extraExports), symbolicName, exportedPackages);
 		}
 		getPackageImports(builder, manifest, exportedPackages, manifestVersion);
 
-		getRequireBundle(builder, ManifestElement.parseHeader(Constants.REQUIRE_BUNDLE, manifest.get(Constants.REQUIRE_BUNDLE)));
+		getRequireBundle(builder, parseHeader(manifest, Constants.REQUIRE_BUNDLE));
 
-		getProvideCapabilities(builder, ManifestElement.parseHeader(Constants.PROVIDE_CAPABILITY, manifest.get(Constants.PROVIDE_CAPABILITY)), extraCapabilities == null);
+		getProvideCapabilities(builder, parseHeader(manifest, Constants.PROVIDE_CAPABILITY), extraCapabilities == null);
 		if (extraCapabilities != null && !extraCapabilities.isEmpty()) {
 			getProvideCapabilities(builder, ManifestElement.parseHeader(Constants.PROVIDE_CAPABILITY, extraCapabilities), false);
 		}
-		getRequireCapabilities(builder, ManifestElement.parseHeader(Constants.REQUIRE_CAPABILITY, manifest.get(Constants.REQUIRE_CAPABILITY)));
+		getRequireCapabilities(builder, parseHeader(manifest, Constants.REQUIRE_CAPABILITY));
 
 		addRequireEclipsePlatform(builder, manifest);
 
 		getEquinoxDataCapability(builder, manifest);
 
-		getFragmentHost(builder, ManifestElement.parseHeader(Constants.FRAGMENT_HOST, manifest.get(Constants.FRAGMENT_HOST)));
+		getFragmentHost(builder, parseHeader(manifest, Constants.FRAGMENT_HOST));
 
 		convertBREEs(builder, manifest);
 
@@ -130,11 +131,18 @@ public final class OSGiManifestBuilderFactory {
 		return builder;
 	}
 
+	private static ManifestElement[] parseHeader(Map<String, String> manifest, String header) throws BundleException {
+		if (manifest instanceof ParsedManifest) {
+			return ((ParsedManifest) manifest).getManifestElements(header);
+		}
+		return ManifestElement.parseHeader(header, manifest.get(header));
+	}
+
 	private static void validateHeaders(Map<String, String> manifest) throws BundleException {
 		for (String definedOSGiValidateHeader : DEFINED_OSGI_VALIDATE_HEADERS) {
 			String header = manifest.get(definedOSGiValidateHeader);
 			if (header != null) {
-				ManifestElement[] elements = ManifestElement.parseHeader(definedOSGiValidateHeader, header);
+				ManifestElement[] elements = parseHeader(manifest, definedOSGiValidateHeader);
 				checkForDuplicateDirectivesAttributes(definedOSGiValidateHeader, elements);
 				if (definedOSGiValidateHeader == Constants.IMPORT_PACKAGE) {
 					checkImportExportSyntax(definedOSGiValidateHeader, elements, false, false);
@@ -267,7 +275,7 @@ public final class OSGiManifestBuilderFactory {
 		Object symbolicName = null;
 		String symbolicNameHeader = manifest.get(Constants.BUNDLE_SYMBOLICNAME);
 		if (symbolicNameHeader != null) {
-			ManifestElement[] symbolicNameElements = ManifestElement.parseHeader(Constants.BUNDLE_SYMBOLICNAME, symbolicNameHeader);
+			ManifestElement[] symbolicNameElements = parseHeader(manifest, Constants.BUNDLE_SYMBOLICNAME);
 			if (symbolicNameElements.length > 0) {
 				ManifestElement bsnElement = symbolicNameElements[0];
 				builder.setSymbolicName(bsnElement.getValue());
@@ -347,8 +355,8 @@ public final class OSGiManifestBuilderFactory {
 
 	private static void getPackageImports(ModuleRevisionBuilder builder, Map<String, String> manifest, Collection<Map<String, Object>> exportedPackages, int manifestVersion) throws BundleException {
 		Collection<String> importPackageNames = new ArrayList<>();
-		ManifestElement[] importElements = ManifestElement.parseHeader(Constants.IMPORT_PACKAGE, manifest.get(Constants.IMPORT_PACKAGE));
-		ManifestElement[] dynamicImportElements = ManifestElement.parseHeader(Constants.DYNAMICIMPORT_PACKAGE, manifest.get(Constants.DYNAMICIMPORT_PACKAGE));
+		ManifestElement[] importElements = parseHeader(manifest, Constants.IMPORT_PACKAGE);
+		ManifestElement[] dynamicImportElements = parseHeader(manifest, Constants.DYNAMICIMPORT_PACKAGE);
 		addPackageImports(builder, importElements, importPackageNames, false);
 		addPackageImports(builder, dynamicImportElements, importPackageNames, true);
 		if (manifestVersion < 2)
@@ -560,7 +568,7 @@ public final class OSGiManifestBuilderFactory {
 		Map<String, Object> attributes = new HashMap<>();
 
 		// Get the activation policy attributes
-		ManifestElement[] policyElements = ManifestElement.parseHeader(Constants.BUNDLE_ACTIVATIONPOLICY, manifest.get(Constants.BUNDLE_ACTIVATIONPOLICY));
+		ManifestElement[] policyElements = parseHeader(manifest, Constants.BUNDLE_ACTIVATIONPOLICY);
 		if (policyElements != null) {
 			ManifestElement policy = policyElements[0];
 			String policyName = policy.getValue();
@@ -576,9 +584,9 @@ public final class OSGiManifestBuilderFactory {
 				}
 			}
 		} else {
-			policyElements = ManifestElement.parseHeader(EquinoxModuleDataNamespace.LAZYSTART_HEADER, manifest.get(EquinoxModuleDataNamespace.LAZYSTART_HEADER));
+			policyElements = parseHeader(manifest, EquinoxModuleDataNamespace.LAZYSTART_HEADER);
 			if (policyElements == null) {
-				policyElements = ManifestElement.parseHeader(EquinoxModuleDataNamespace.AUTOSTART_HEADER, manifest.get(EquinoxModuleDataNamespace.AUTOSTART_HEADER));
+				policyElements = parseHeader(manifest, EquinoxModuleDataNamespace.AUTOSTART_HEADER);
 			}
 			if (policyElements != null) {
 				ManifestElement policy = policyElements[0];
@@ -611,7 +619,7 @@ public final class OSGiManifestBuilderFactory {
 		}
 
 		// Get the class path
-		ManifestElement[] classpathElements = ManifestElement.parseHeader(Constants.BUNDLE_CLASSPATH, manifest.get(Constants.BUNDLE_CLASSPATH));
+		ManifestElement[] classpathElements = parseHeader(manifest, Constants.BUNDLE_CLASSPATH);
 		if (classpathElements != null) {
 			List<String> classpath = new ArrayList<>();
 			for (ManifestElement element : classpathElements) {
@@ -622,7 +630,7 @@ public final class OSGiManifestBuilderFactory {
 		}
 
 		// Get the buddy policy list
-		ManifestElement[] buddyPolicies = ManifestElement.parseHeader(EquinoxModuleDataNamespace.BUDDY_POLICY_HEADER, manifest.get(EquinoxModuleDataNamespace.BUDDY_POLICY_HEADER));
+		ManifestElement[] buddyPolicies = parseHeader(manifest, EquinoxModuleDataNamespace.BUDDY_POLICY_HEADER);
 		if (buddyPolicies != null) {
 			List<String> policies = new ArrayList<>();
 			for (ManifestElement element : buddyPolicies) {
@@ -632,7 +640,7 @@ public final class OSGiManifestBuilderFactory {
 		}
 
 		// Get the registered buddy list
-		ManifestElement[] registeredBuddies = ManifestElement.parseHeader(EquinoxModuleDataNamespace.REGISTERED_BUDDY_HEADER, manifest.get(EquinoxModuleDataNamespace.REGISTERED_BUDDY_HEADER));
+		ManifestElement[] registeredBuddies = parseHeader(manifest, EquinoxModuleDataNamespace.REGISTERED_BUDDY_HEADER);
 		if (registeredBuddies != null) {
 			List<String> buddies = new ArrayList<>();
 			for (ManifestElement element : registeredBuddies) {
@@ -943,7 +951,7 @@ public final class OSGiManifestBuilderFactory {
 	}
 
 	private static void getNativeCode(ModuleRevisionBuilder builder, Map<String, String> manifest) throws BundleException {
-		ManifestElement[] elements = ManifestElement.parseHeader(Constants.BUNDLE_NATIVECODE, manifest.get(Constants.BUNDLE_NATIVECODE));
+		ManifestElement[] elements = parseHeader(manifest, Constants.BUNDLE_NATIVECODE);
 		if (elements == null) {
 			return;
 		}
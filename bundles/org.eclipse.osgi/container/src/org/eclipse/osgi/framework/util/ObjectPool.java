@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2016 IBM Corporation and others.
+ * Copyright (c) 2009, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -7,46 +7,189 @@
  * https://www.eclipse.org/legal/epl-2.0/
  *
  * SPDX-License-Identifier: EPL-2.0
- * 
+ *
  * Contributors:
  *     IBM Corporation - initial API and implementation
  *******************************************************************************/
 package org.eclipse.osgi.framework.util;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
 import org.eclipse.osgi.internal.debug.Debug;
+import org.osgi.framework.Version;
 
+/**
+ * A pool of weakly referenced objects used to share equal instances.
+ * <p>
+ * Strings, versions and maps are pooled separately from other objects.  Each pool is
+ * split into stripes that are locked independently so that threads interning
+ * different objects in parallel rarely wait on each other.
+ */
 public class ObjectPool {
 	//private static String OPTION_DEBUG_OBJECTPOOL_ADDS = Debug.ECLIPSE_OSGI + "/debug/objectPool/adds"; //$NON-NLS-1$
 	//private static String OPTION_DEBUG_OBJECTPOOL_DUPS = Debug.ECLIPSE_OSGI + "/debug/objectPool/dups"; //$NON-NLS-1$
 	// TODO need to set these
 	private static final boolean DEBUG_OBJECTPOOL_ADDS = false;
 	private static final boolean DEBUG_OBJECTPOOL_DUPS = false;
-	private static Map<Object, WeakReference<Object>> objectCache = new WeakHashMap<>();
+	// must be a power of two
+	private static final int STRIPES = 32;
+
+	private static final Pool strings = new Pool(String.class.getName());
+	private static final Pool versions = new Pool(Version.class.getName());
+	private static final Pool maps = new Pool(Map.class.getName());
+	private static final Pool others = new Pool(Object.class.getName());
 
 	@SuppressWarnings("unchecked")
 	public static <T> T intern(T obj) {
-		synchronized (objectCache) {
-			WeakReference<Object> ref = objectCache.get(obj);
-			if (ref != null) {
-				Object refValue = ref.get();
-				if (refValue != null) {
-					obj = (T) refValue;
-					if (DEBUG_OBJECTPOOL_DUPS)
-						Debug.println("[ObjectPool] Found duplicate object: " + getObjectString(obj)); //$NON-NLS-1$
+		return (T) getPool(obj).intern(obj);
+	}
+
+	/**
+	 * Returns the statistics of each pool.  The statistics are a snapshot
+	 * taken without stopping other threads from interning objects.
+	 * @return the statistics of each pool
+	 */
+	public static List<Statistics> getStatistics() {
+		List<Statistics> result = new ArrayList<>(4);
+		result.add(strings.getStatistics());
+		result.add(versions.getStatistics());
+		result.add(maps.getStatistics());
+		result.add(others.getStatistics());
+		return Collections.unmodifiableList(result);
+	}
+
+	private static Pool getPool(Object obj) {
+		if (obj instanceof String) {
+			return strings;
+		}
+		if (obj instanceof Version) {
+			return versions;
+		}
+		if (obj instanceof Map) {
+			return maps;
+		}
+		return others;
+	}
+
+	private static String getObjectString(Object obj) {
+		return "[(" + obj.getClass().getName() + ") " + obj.toString() + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+	/**
+	 * The statistics of a pool.
+	 */
+	public static final class Statistics {
+		private final String type;
+		private final long requests;
+		private final long duplicates;
+		private final int size;
+
+		Statistics(String type, long requests, long duplicates, int size) {
+			this.type = type;
+			this.requests = requests;
+			this.duplicates = duplicates;
+			this.size = size;
+		}
+
+		/**
+		 * Returns the name of the type of objects held by the pool.
+		 * @return the name of the type of objects held by the pool
+		 */
+		public String getType() {
+			return type;
+		}
+
+		/**
+		 * Returns the number of objects which were interned with the pool.
+		 * @return the number of objects which were interned
+		 */
+		public long getRequests() {
+			return requests;
+		}
+
+		/**
+		 * Returns the number of interned objects which were replaced by an
+		 * equal object already in the pool.
+		 * @return the number of duplicate objects which were replaced
+		 */
+		public long getDuplicates() {
+			return duplicates;
+		}
+
+		/**
+		 * Returns the number of objects currently in the pool.
+		 * @return the number of objects currently in the pool
+		 */
+		public int getSize() {
+			return size;
+		}
+
+		@Override
+		public String toString() {
+			return type + " pool: size=" + size + " requests=" + requests + " duplicates=" + duplicates; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+	}
+
+	private static final class Pool {
+		private final String type;
+		private final Stripe[] stripes = new Stripe[STRIPES];
+
+		Pool(String type) {
+			this.type = type;
+			for (int i = 0; i < stripes.length; i++) {
+				stripes[i] = new Stripe();
+			}
+		}
+
+		Object intern(Object obj) {
+			int hash = obj.hashCode();
+			// spread the high bits so that similar hash codes use different stripes
+			Stripe stripe = stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+			synchronized (stripe) {
+				stripe.requests++;
+				WeakReference<Object> ref = stripe.objects.get(obj);
+				if (ref != null) {
+					Object refValue = ref.get();
+					if (refValue != null) {
+						stripe.duplicates++;
+						if (DEBUG_OBJECTPOOL_DUPS)
+							Debug.println("[ObjectPool] Found duplicate object: " + getObjectString(refValue)); //$NON-NLS-1$
+						return refValue;
+					}
 				}
-			} else {
-				objectCache.put(obj, new WeakReference<Object>(obj));
+				// the object is not pooled yet or the pooled object was collected
+				stripe.objects.put(obj, new WeakReference<>(obj));
 				if (DEBUG_OBJECTPOOL_ADDS)
-					Debug.println("[ObjectPool] Added unique object to pool: " + getObjectString(obj) + " Pool size: " + objectCache.size()); //$NON-NLS-1$ //$NON-NLS-2$
+					Debug.println("[ObjectPool] Added unique object to pool: " + getObjectString(obj) + " Pool size: " + stripe.objects.size()); //$NON-NLS-1$ //$NON-NLS-2$
 			}
+			return obj;
+		}
+
+		Statistics getStatistics() {
+			long requests = 0;
+			long duplicates = 0;
+			int size = 0;
+			for (Stripe stripe : stripes) {
+				synchronized (stripe) {
+					requests += stripe.requests;
+					duplicates += stripe.duplicates;
+					size += stripe.objects.size();
+				}
+			}
+			return new Statistics(type, requests, duplicates, size);
 		}
-		return obj;
 	}
 
-	private static String getObjectString(Object obj) {
-		return "[(" + obj.getClass().getName() + ") " + obj.toString() + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	private static final class Stripe {
+		/* guarded by this */
+		final Map<Object, WeakReference<Object>> objects = new WeakHashMap<>();
+		/* guarded by this */
+		long requests;
+		/* guarded by this */
+		long duplicates;
 	}
 }
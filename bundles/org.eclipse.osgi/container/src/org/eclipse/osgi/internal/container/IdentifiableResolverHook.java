@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.osgi.internal.container;
+
+import org.osgi.framework.hooks.resolver.ResolverHook;
+
+/**
+ * A resolver hook which identifies the way it filters.  The resolver only
+ * reuses the result of a previous resolve operation if the identity of the
+ * resolver hooks has not changed.
+ * <p>
+ * Reusing results is opt-in.  A resolver hook returned by a
+ * {@link org.osgi.framework.hooks.resolver.ResolverHookFactory ResolverHookFactory}
+ * must implement this interface to allow the resolver to reuse results while
+ * the hook is in use; results are never reused while a hook which does not
+ * implement this interface is in use.
+ * <p>
+ * This interface is internal to the framework.  Resolver hooks registered by
+ * other bundles do not implement it, so the resolution cache is disabled
+ * whenever such a hook is registered.
+ */
+public interface IdentifiableResolverHook extends ResolverHook {
+	/**
+	 * Returns an identity of the filtering done by this hook for the current
+	 * resolve operation.  The identity must change whenever the configuration
+	 * or state of the hook changes the way it filters and it must be stable
+	 * across framework restarts for the same filtering.
+	 * @return the identity of the hook or {@code null} if the results of
+	 * the current resolve operation must not be reused
+	 */
+	String getHookIdentity();
+}
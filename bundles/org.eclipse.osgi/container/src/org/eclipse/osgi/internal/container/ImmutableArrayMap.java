@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.osgi.internal.container;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import org.eclipse.osgi.framework.util.ObjectPool;
+import org.osgi.framework.Version;
+
+/**
+ * An immutable map which stores its keys and values in a single array.
+ * Lookups are a linear search, so this map is only meant for the small
+ * attribute and directive maps of capabilities and requirements.
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public final class ImmutableArrayMap<K, V> extends AbstractMap<K, V> {
+	/**
+	 * The maximum number of entries copied into an array map.  Larger maps
+	 * are faster to search with a hash map.
+	 */
+	public static final int MAX_SIZE = 16;
+
+	// keys at even indexes, the value of each key follows it
+	private final Object[] table;
+
+	private ImmutableArrayMap(Object[] table) {
+		this.table = table;
+	}
+
+	/**
+	 * Returns an immutable copy of the specified map.  String and version
+	 * keys and values are shared with equal objects in the {@link ObjectPool}.
+	 * @param map the map to copy; must not have more than {@link #MAX_SIZE} entries
+	 * @return an immutable copy of the map
+	 */
+	public static <K, V> ImmutableArrayMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+		Object[] table = new Object[map.size() * 2];
+		int i = 0;
+		for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+			table[i++] = intern(entry.getKey());
+			table[i++] = intern(entry.getValue());
+		}
+		if (i != table.length) {
+			throw new IllegalArgumentException("The map changed while being copied."); //$NON-NLS-1$
+		}
+		return new ImmutableArrayMap<>(table);
+	}
+
+	private static Object intern(Object object) {
+		return object instanceof String || object instanceof Version ? ObjectPool.intern(object) : object;
+	}
+
+	@Override
+	public int size() {
+		return table.length / 2;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V get(Object key) {
+		int index = indexOf(key);
+		return index < 0 ? null : (V) table[index + 1];
+	}
+
+	private int indexOf(Object key) {
+		for (int i = 0; i < table.length; i += 2) {
+			Object k = table[i];
+			if (k == key || (k != null && k.equals(key))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		// not cached to keep the map small; the set is a view of the table
+		return new AbstractSet<Map.Entry<K, V>>() {
+			@Override
+			public Iterator<Map.Entry<K, V>> iterator() {
+				return new Iterator<Map.Entry<K, V>>() {
+					private int next = 0;
+
+					@Override
+					public boolean hasNext() {
+						return next < table.length;
+					}
+
+					@SuppressWarnings("unchecked")
+					@Override
+					public Map.Entry<K, V> next() {
+						if (next >= table.length) {
+							throw new NoSuchElementException();
+						}
+						Map.Entry<K, V> entry = new AbstractMap.SimpleImmutableEntry<>((K) table[next], (V) table[next + 1]);
+						next += 2;
+						return entry;
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return table.length / 2;
+			}
+		};
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2012, 2018 IBM Corporation and others.
+ * Copyright (c) 2012, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -13,8 +13,8 @@
  *******************************************************************************/
 package org.eclipse.osgi.internal.container;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
@@ -30,14 +30,29 @@ import java.util.concurrent.locks.ReentrantLock;
  * the locks, but this proved to be a flawed approach because of the unpredictable
  * timing of garbage collection, particularly with autoboxed types (e.g. bundle
  * long ids).
+ *
+ * The locks are held in a concurrent map so that threads locking different objects
+ * never wait on each other.  Each lock counts the threads using it; once the count
+ * drops to zero the lock is retired and removed from the map, and a thread which
+ * finds a retired lock retries with a new one.
  */
 public class LockSet<T> {
 	static final class LockHolder {
-		private final AtomicInteger useCount = new AtomicInteger(0);
+		// starts at one for the thread which creates the holder; zero means retired
+		private final AtomicInteger useCount = new AtomicInteger(1);
 		private final ReentrantLock lock = new ReentrantLock();
 
-		int incrementUseCount() {
-			return useCount.incrementAndGet();
+		boolean incrementUseCount() {
+			for (;;) {
+				int current = useCount.get();
+				if (current == 0) {
+					// retired; the holder must not be used again
+					return false;
+				}
+				if (useCount.compareAndSet(current, current + 1)) {
+					return true;
+				}
+			}
 		}
 
 		int decremementUseCount() {
@@ -58,20 +73,12 @@ public class LockSet<T> {
 		}
 	}
 
-	private final Map<T, LockHolder> locks = new HashMap<>();
+	private final ConcurrentMap<T, LockHolder> locks = new ConcurrentHashMap<>();
 
 	public boolean tryLock(T t, long time, TimeUnit unit) throws InterruptedException {
 		final boolean previousInterruption = Thread.interrupted();
 		try {
-			LockHolder lock;
-			synchronized (locks) {
-				lock = locks.get(t);
-				if (lock == null) {
-					lock = new LockHolder();
-					locks.put(t, lock);
-				}
-				lock.incrementUseCount();
-			}
+			LockHolder lock = useLock(t);
 			// all interested threads have the lock object and the use count is the number of such threads
 			boolean acquired = false;
 			try {
@@ -79,12 +86,8 @@ public class LockSet<T> {
 				return acquired;
 			} finally {
 				if (!acquired) {
-					synchronized (locks) {
-						// If, after failing to acquire the lock, no other thread is using the lock, discard it.
-						if (lock.decremementUseCount() == 0) {
-							locks.remove(t);
-						}
-					}
+					// If, after failing to acquire the lock, no other thread is using the lock, discard it.
+					release(t, lock);
 				}
 			}
 		} finally {
@@ -94,22 +97,41 @@ public class LockSet<T> {
 		}
 	}
 
-	public void unlock(T t) {
-		synchronized (locks) {
+	private LockHolder useLock(T t) {
+		for (;;) {
 			LockHolder lock = locks.get(t);
-			if (lock == null)
-				throw new IllegalStateException("No lock found."); //$NON-NLS-1$
-			lock.unlock();
-			// If, after unlocking, no other thread is using the lock, discard it.
-			if (lock.decremementUseCount() == 0) {
-				locks.remove(t);
+			if (lock == null) {
+				lock = new LockHolder();
+				LockHolder existing = locks.putIfAbsent(t, lock);
+				if (existing == null) {
+					return lock;
+				}
+				lock = existing;
 			}
+			if (lock.incrementUseCount()) {
+				return lock;
+			}
+			// the lock was retired by another thread; make sure it is gone before trying again
+			locks.remove(t, lock);
 		}
 	}
 
-	public String getLockInfo(T t) {
-		synchronized (locks) {
-			return String.valueOf(locks.get(t));
+	private void release(T t, LockHolder lock) {
+		if (lock.decremementUseCount() == 0) {
+			locks.remove(t, lock);
 		}
 	}
+
+	public void unlock(T t) {
+		LockHolder lock = locks.get(t);
+		if (lock == null)
+			throw new IllegalStateException("No lock found."); //$NON-NLS-1$
+		lock.unlock();
+		// If, after unlocking, no other thread is using the lock, discard it.
+		release(t, lock);
+	}
+
+	public String getLockInfo(T t) {
+		return String.valueOf(locks.get(t));
+	}
 }
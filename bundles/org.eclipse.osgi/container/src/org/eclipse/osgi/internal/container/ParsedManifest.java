@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.osgi.internal.container;
+
+import org.eclipse.osgi.util.ManifestElement;
+import org.osgi.framework.BundleException;
+
+/**
+ * A bundle manifest which caches the parsed elements of its headers.  The
+ * manifest builder uses the cached elements instead of parsing the header
+ * values each time a builder is created for the manifest.
+ */
+public interface ParsedManifest {
+	/**
+	 * Returns the parsed elements of the specified header.  The returned
+	 * elements are shared and must not be modified.
+	 * @param header the name of the header
+	 * @return the elements of the header as returned by {@link ManifestElement#parseHeader(String, String)}
+	 * @throws BundleException if the header value is invalid
+	 */
+	ManifestElement[] getManifestElements(String header) throws BundleException;
+}
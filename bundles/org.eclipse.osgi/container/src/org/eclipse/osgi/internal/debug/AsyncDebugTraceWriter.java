@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.osgi.internal.debug;
+
+/**
+ * An asynchronous sink for trace entries.  Entries are stored in a fixed size
+ * in-memory ring and written to the trace file in batches by a background thread.
+ * Tracing threads never wait on file I/O; if the ring is full the newest entries
+ * are dropped and the number of dropped entries is recorded in the trace file.
+ */
+class AsyncDebugTraceWriter implements Runnable {
+	/** The default number of entries the ring can hold */
+	static final int DEFAULT_BUFFER_SIZE = 8192;
+	/** The maximum number of entries written in one batch */
+	private static final int MAX_BATCH = 512;
+
+	private final String threadName;
+	/** guarded by this */
+	private final FrameworkDebugTraceEntry[] entries;
+	/** guarded by this; the trace which created each entry in the ring */
+	private final EclipseDebugTrace[] traces;
+	/** guarded by this; the index of the oldest entry */
+	private int head = 0;
+	/** guarded by this; the number of entries in the ring */
+	private int count = 0;
+	/** guarded by this; the number of entries dropped since the last batch was taken */
+	private long dropped = 0;
+	/** guarded by this; the number of batches taken by the writer thread */
+	private long taken = 0;
+	/** guarded by this; the number of batches completely written by the writer thread */
+	private long written = 0;
+	/** guarded by this */
+	private Thread writerThread;
+	/** guarded by this */
+	private boolean stopped = false;
+
+	AsyncDebugTraceWriter(String threadName, int bufferSize) {
+		this.threadName = threadName;
+		int size = bufferSize > 0 ? bufferSize : DEFAULT_BUFFER_SIZE;
+		this.entries = new FrameworkDebugTraceEntry[size];
+		this.traces = new EclipseDebugTrace[size];
+	}
+
+	/**
+	 * Queues the entry to be written by the writer thread.  The writer
+	 * thread is started if it is not running.
+	 * @param trace the trace which created the entry
+	 * @param entry the entry to write
+	 */
+	synchronized void offer(EclipseDebugTrace trace, FrameworkDebugTraceEntry entry) {
+		stopped = false;
+		if (count == entries.length) {
+			dropped++;
+			return;
+		}
+		int tail = (head + count) % entries.length;
+		entries[tail] = entry;
+		traces[tail] = trace;
+		count++;
+		if (writerThread == null) {
+			startWriter();
+		} else if (count == 1) {
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Waits for all entries queued before this call to be written.
+	 */
+	void flush() {
+		synchronized (this) {
+			if (writerThread == null || Thread.currentThread() == writerThread) {
+				return;
+			}
+			boolean interrupted = false;
+			while ((count > 0 || written < taken) && writerThread != null) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Writes any remaining entries and stops the writer thread.  The writer
+	 * thread is started again if more entries are queued.
+	 */
+	void stop() {
+		flush();
+		Thread current;
+		synchronized (this) {
+			stopped = true;
+			current = writerThread;
+			notifyAll();
+		}
+		if (current != null && current != Thread.currentThread()) {
+			try {
+				current.join(5000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			writeEntries();
+		} finally {
+			// the writer thread may end with an error; write the remaining entries
+			// with a new writer thread and do not leave flush waiting for this one
+			synchronized (this) {
+				if (writerThread == Thread.currentThread()) {
+					writerThread = null;
+					if (count > 0) {
+						startWriter();
+					}
+					notifyAll();
+				}
+			}
+		}
+	}
+
+	/* guarded by this */
+	private void startWriter() {
+		Thread writer = new Thread(this, threadName);
+		writer.setDaemon(true);
+		writer.start();
+		writerThread = writer;
+	}
+
+	private void writeEntries() {
+		FrameworkDebugTraceEntry[] batch = new FrameworkDebugTraceEntry[Math.min(MAX_BATCH, entries.length)];
+		while (true) {
+			EclipseDebugTrace trace;
+			int batchSize;
+			long batchDropped;
+			synchronized (this) {
+				while (count == 0) {
+					if (stopped) {
+						// cleared while holding the lock so a new entry starts a new writer thread
+						writerThread = null;
+						notifyAll();
+						return;
+					}
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						// ignore and check for entries again
+					}
+				}
+				// write consecutive entries from the same trace together
+				trace = traces[head];
+				batchSize = 0;
+				while (count > 0 && batchSize < batch.length && traces[head] == trace) {
+					batch[batchSize++] = entries[head];
+					entries[head] = null;
+					traces[head] = null;
+					head = (head + 1) % entries.length;
+					count--;
+				}
+				batchDropped = dropped;
+				dropped = 0;
+				taken++;
+			}
+			try {
+				trace.writeRecords(batch, batchSize, batchDropped);
+			} catch (RuntimeException e) {
+				System.err.println("An exception occurred while writing to the platform trace file: ");//$NON-NLS-1$
+				e.printStackTrace(System.err);
+			} finally {
+				for (int i = 0; i < batchSize; i++) {
+					batch[i] = null;
+				}
+				synchronized (this) {
+					written++;
+					notifyAll();
+				}
+			}
+		}
+	}
+}
@@ -40,6 +40,10 @@ class EclipseDebugTrace implements DebugTrace {
 	private static final String PROP_TRACE_SIZE_MAX = "eclipse.trace.size.max"; //$NON-NLS-1$
 	/** The system property used to specify the maximum number of backup trace files to use */
 	private static final String PROP_TRACE_FILE_MAX = "eclipse.trace.backup.max"; //$NON-NLS-1$
+	/** The system property used to specify the format of trace entries */
+	static final String PROP_TRACE_FORMAT = "eclipse.trace.format"; //$NON-NLS-1$
+	/** The compact trace entry format value */
+	static final String TRACE_FORMAT_COMPACT = "compact"; //$NON-NLS-1$
 	/** The trace message for a thread stack dump */
 	private final static String MESSAGE_THREAD_DUMP = "Thread Stack dump: "; //$NON-NLS-1$
 	/** The trace message for a method completing with a return value */
@@ -107,6 +111,8 @@ class EclipseDebugTrace implements DebugTrace {
 	private FrameworkDebugOptions debugOptions = null;
 
 	private final boolean consoleLog;
+	/** Use the compact entry format: no padding and the timestamp in milliseconds */
+	private final boolean compactFormat;
 
 	/**
 	 * Construct a new EclipseDebugTrace for the specified bundle symbolic name and write messages to the specified
@@ -121,6 +127,7 @@ class EclipseDebugTrace implements DebugTrace {
 		this.traceClass = traceClass != null ? traceClass.getName() : null;
 		this.debugOptions = debugOptions;
 		this.bundleSymbolicName = bundleSymbolicName;
+		this.compactFormat = TRACE_FORMAT_COMPACT.equalsIgnoreCase(debugOptions.getConfiguration().getConfiguration(PROP_TRACE_FORMAT));
 		readLogProperties();
 	}
 
@@ -342,18 +349,43 @@ class EclipseDebugTrace implements DebugTrace {
 	private void writeRecord(final FrameworkDebugTraceEntry entry) {
 
 		if (entry != null) {
+			AsyncDebugTraceWriter asyncWriter = debugOptions.getAsyncTraceWriter();
+			if (asyncWriter != null) {
+				asyncWriter.offer(this, entry);
+				return;
+			}
+			writeRecords(new FrameworkDebugTraceEntry[] {entry}, 1, 0);
+		}
+	}
+
+	/**
+	 * Write the specified FrameworkTraceEntry objects to the trace file.  The file
+	 * is checked for rotation, opened and flushed once for all the entries.
+	 * 
+	 * @param entries The FrameworkTraceEntry objects to write to the log file.
+	 * @param count The number of entries to write.
+	 * @param dropped The number of entries which have been dropped before the entries to write.
+	 */
+	void writeRecords(final FrameworkDebugTraceEntry[] entries, final int count, final long dropped) {
+
+		if (count > 0) {
 			synchronized (debugOptions.getWriteLock()) {
 				final File tracingFile = debugOptions.getFile(); // the tracing file may be null if it has not been set
 				Writer traceWriter = null;
 				try {
 					// check to see if the file should be rotated
-					checkTraceFileSize(tracingFile, entry.getTimestamp());
+					checkTraceFileSize(tracingFile, entries[0].getTimestamp());
 					// open the trace file
 					traceWriter = openWriter(tracingFile);
 					if (debugOptions.newSession()) {
-						writeSession(traceWriter, entry.getTimestamp());
+						writeSession(traceWriter, entries[0].getTimestamp());
+					}
+					if (dropped > 0) {
+						writeComment(traceWriter, dropped + " trace entries were dropped because the trace buffer was full"); //$NON-NLS-1$
+					}
+					for (int i = 0; i < count; i++) {
+						writeMessage(traceWriter, entries[i]);
 					}
-					writeMessage(traceWriter, entry);
 					// flush the writer
 					traceWriter.flush();
 				} catch (Exception ex) {
@@ -542,6 +574,10 @@ class EclipseDebugTrace implements DebugTrace {
 	 */
 	private void writeMessage(final Writer traceWriter, final FrameworkDebugTraceEntry entry) throws IOException {
 
+		if (compactFormat) {
+			writeCompactMessage(traceWriter, entry);
+			return;
+		}
 		final StringBuilder message = new StringBuilder(EclipseDebugTrace.TRACE_ELEMENT_DELIMITER);
 		message.append(" "); //$NON-NLS-1$
 		message.append(encodeText(entry.getThreadName()));
@@ -594,6 +630,45 @@ class EclipseDebugTrace implements DebugTrace {
 		}
 	}
 
+	/**
+	 * Writes the specified trace entry object to the trace file using the compact format.
+	 * The elements are separated by {@link EclipseDebugTrace#TRACE_ELEMENT_DELIMITER} without
+	 * padding and the time stamp is written as milliseconds since the epoch.
+	 * 
+	 * @param traceWriter the trace writer
+	 * @param entry The trace entry object to write to the trace file
+	 * @throws IOException If an error occurs while writing this message
+	 */
+	private void writeCompactMessage(final Writer traceWriter, final FrameworkDebugTraceEntry entry) throws IOException {
+
+		final StringBuilder message = new StringBuilder(128);
+		message.append(EclipseDebugTrace.TRACE_ELEMENT_DELIMITER);
+		message.append(encodeText(entry.getThreadName()));
+		message.append(EclipseDebugTrace.TRACE_ELEMENT_DELIMITER);
+		message.append(entry.getTimestamp());
+		message.append(EclipseDebugTrace.TRACE_ELEMENT_DELIMITER);
+		if (debugOptions.isVerbose()) {
+			message.append(entry.getBundleSymbolicName());
+			message.append(EclipseDebugTrace.TRACE_ELEMENT_DELIMITER);
+			message.append(encodeText(entry.getOptionPath()));
+			message.append(EclipseDebugTrace.TRACE_ELEMENT_DELIMITER);
+			message.append(entry.getClassName());
+			message.append(EclipseDebugTrace.TRACE_ELEMENT_DELIMITER);
+			message.append(entry.getMethodName());
+			message.append(EclipseDebugTrace.TRACE_ELEMENT_DELIMITER);
+			message.append(entry.getLineNumber());
+			message.append(EclipseDebugTrace.TRACE_ELEMENT_DELIMITER);
+		}
+		message.append(encodeText(entry.getMessage()));
+		if (entry.getThrowable() != null) {
+			message.append(EclipseDebugTrace.TRACE_ELEMENT_DELIMITER);
+			message.append(this.getFormattedThrowable(entry.getThrowable()));
+		}
+		message.append(EclipseDebugTrace.TRACE_ELEMENT_DELIMITER);
+		message.append(EclipseDebugTrace.LINE_SEPARATOR);
+		traceWriter.write(message.toString());
+	}
+
 	/**
 	 * Encodes the specified string to replace any occurrence of the {@link EclipseDebugTrace#TRACE_ELEMENT_DELIMITER}
 	 * string with the {@link EclipseDebugTrace#TRACE_ELEMENT_DELIMITER_ENCODED}
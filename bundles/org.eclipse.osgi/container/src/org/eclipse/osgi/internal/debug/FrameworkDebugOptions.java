@@ -47,6 +47,10 @@ public class FrameworkDebugOptions implements DebugOptions, ServiceTrackerCustom
 	private static final String OSGI_DEBUG = "osgi.debug"; //$NON-NLS-1$
 	private static final String OSGI_DEBUG_VERBOSE = "osgi.debug.verbose"; //$NON-NLS-1$
 	public static final String PROP_TRACEFILE = "osgi.tracefile"; //$NON-NLS-1$
+	/** The property used to enable writing trace entries asynchronously */
+	public static final String PROP_TRACE_ASYNC = "eclipse.trace.async"; //$NON-NLS-1$
+	/** The property used to specify the number of trace entries buffered for asynchronous writing */
+	public static final String PROP_TRACE_ASYNC_BUFFER = "eclipse.trace.async.buffer"; //$NON-NLS-1$
 	/** The default name of the .options file if loading when the -debug command-line argument is used */
 	private static final String OPTIONS = ".options"; //$NON-NLS-1$
 
@@ -69,11 +73,14 @@ public class FrameworkDebugOptions implements DebugOptions, ServiceTrackerCustom
 	private final EquinoxConfiguration environmentInfo;
 	private volatile BundleContext context;
 	private volatile ServiceTracker<DebugOptionsListener, DebugOptionsListener> listenerTracker;
+	/** The asynchronous trace writer; null if trace entries are written synchronously */
+	private final AsyncDebugTraceWriter asyncTraceWriter;
 
 	public FrameworkDebugOptions(EquinoxConfiguration environmentInfo) {
 		this.environmentInfo = environmentInfo;
 		// check if verbose debugging was set during initialization.  This needs to be set even if debugging is disabled
 		this.verboseDebug = Boolean.valueOf(environmentInfo.getConfiguration(OSGI_DEBUG_VERBOSE, Boolean.TRUE.toString())).booleanValue();
+		this.asyncTraceWriter = createAsyncTraceWriter(environmentInfo);
 		// if no debug option was specified, don't even bother to try.
 		// Must ensure that the options slot is null as this is the signal to the
 		// platform that debugging is not enabled.
@@ -127,6 +134,25 @@ public class FrameworkDebugOptions implements DebugOptions, ServiceTrackerCustom
 		listenerTracker.close();
 		listenerTracker = null;
 		this.context = null;
+		if (asyncTraceWriter != null) {
+			asyncTraceWriter.stop();
+		}
+	}
+
+	private static AsyncDebugTraceWriter createAsyncTraceWriter(EquinoxConfiguration environmentInfo) {
+		if (!Boolean.valueOf(environmentInfo.getConfiguration(PROP_TRACE_ASYNC, Boolean.FALSE.toString())).booleanValue()) {
+			return null;
+		}
+		int bufferSize = AsyncDebugTraceWriter.DEFAULT_BUFFER_SIZE;
+		String bufferProp = environmentInfo.getConfiguration(PROP_TRACE_ASYNC_BUFFER);
+		if (bufferProp != null) {
+			try {
+				bufferSize = Integer.parseInt(bufferProp.trim());
+			} catch (NumberFormatException e) {
+				// ignore and use the default
+			}
+		}
+		return new AsyncDebugTraceWriter("Equinox Trace Writer", bufferSize); //$NON-NLS-1$
 	}
 
 	/**
@@ -419,6 +445,10 @@ public class FrameworkDebugOptions implements DebugOptions, ServiceTrackerCustom
 	 */
 	@Override
 	public void setFile(final File traceFile) {
+		if (asyncTraceWriter != null) {
+			// write the pending entries to the previous file
+			asyncTraceWriter.flush();
+		}
 		synchronized (lock) {
 			this.outFile = traceFile;
 			if (this.outFile != null)
@@ -444,6 +474,10 @@ public class FrameworkDebugOptions implements DebugOptions, ServiceTrackerCustom
 		return writeLock;
 	}
 
+	AsyncDebugTraceWriter getAsyncTraceWriter() {
+		return asyncTraceWriter;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.eclipse.osgi.service.debug.DebugOptions#getVerbose()
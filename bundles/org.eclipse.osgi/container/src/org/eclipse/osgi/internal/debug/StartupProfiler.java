@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.osgi.internal.debug;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records a timeline of the framework lifecycle: bundle installs, resolve operations,
+ * class loader creation, bundle activators, start-level changes and the loading and
+ * saving of the framework storage.
+ * <p>
+ * The timeline is written in the Chrome trace event format which can be viewed with
+ * chrome://tracing or imported into other trace viewers.  When profiling is disabled
+ * the {@link #DISABLED} profiler is used; its methods do nothing except return.
+ */
+public final class StartupProfiler {
+	/**
+	 * A source of the profiler for the container.  Implemented by container
+	 * adaptors which support profiling.
+	 */
+	public interface Provider {
+		/**
+		 * Returns the profiler of the framework.
+		 * @return the profiler of the framework, never {@code null}
+		 */
+		StartupProfiler getStartupProfiler();
+	}
+
+	public static final String CATEGORY_INSTALL = "install"; //$NON-NLS-1$
+	public static final String CATEGORY_RESOLVE = "resolve"; //$NON-NLS-1$
+	public static final String CATEGORY_CLASSLOADER = "classloader"; //$NON-NLS-1$
+	public static final String CATEGORY_ACTIVATOR = "activator"; //$NON-NLS-1$
+	public static final String CATEGORY_START_LEVEL = "startlevel"; //$NON-NLS-1$
+	public static final String CATEGORY_STORAGE = "storage"; //$NON-NLS-1$
+	public static final String CATEGORY_FRAMEWORK = "framework"; //$NON-NLS-1$
+
+	/**
+	 * The profiler used when profiling is disabled.
+	 */
+	public static final StartupProfiler DISABLED = new StartupProfiler(null, 0);
+
+	// limits the memory used when the profiler is left enabled for a long running framework
+	private static final int DEFAULT_MAX_EVENTS = 100000;
+
+	private final File output;
+	private final int maxEvents;
+	private final long startNanos = System.nanoTime();
+	private final ConcurrentLinkedQueue<Event> events = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger eventCount = new AtomicInteger();
+	private final Map<Long, String> threadNames = new ConcurrentHashMap<>();
+
+	private StartupProfiler(File output, int maxEvents) {
+		this.output = output;
+		this.maxEvents = maxEvents;
+	}
+
+	/**
+	 * Creates a profiler which writes the timeline to the specified file.
+	 * @param output the path of the file to write the timeline to; may be {@code null}
+	 * @return a new profiler, or the {@link #DISABLED} profiler if the output is {@code null}
+	 */
+	public static StartupProfiler create(String output) {
+		if (output == null || output.isEmpty()) {
+			return DISABLED;
+		}
+		return new StartupProfiler(new File(output), DEFAULT_MAX_EVENTS);
+	}
+
+	/**
+	 * Returns the profiler of the specified container adaptor.
+	 * @param adaptor the container adaptor
+	 * @return the profiler of the adaptor, or the {@link #DISABLED} profiler
+	 */
+	public static StartupProfiler getProfiler(Object adaptor) {
+		return adaptor instanceof Provider ? ((Provider) adaptor).getStartupProfiler() : DISABLED;
+	}
+
+	public boolean isEnabled() {
+		return output != null;
+	}
+
+	/**
+	 * Marks the beginning of an operation.
+	 * @return the begin time to pass to {@link #end(String, Object, long)}
+	 */
+	public long begin() {
+		return output == null ? 0 : System.nanoTime();
+	}
+
+	/**
+	 * Records an operation which began at the specified time and ended now.
+	 * @param category the category of the operation
+	 * @param name the name of the operation; converted to a string only when the timeline is written
+	 * @param begin the time returned by {@link #begin()}
+	 */
+	public void end(String category, Object name, long begin) {
+		if (output != null) {
+			record(new Event(category, name, begin, System.nanoTime(), false));
+		}
+	}
+
+	/**
+	 * Records an instant event.
+	 * @param category the category of the event
+	 * @param name the name of the event; converted to a string only when the timeline is written
+	 */
+	public void mark(String category, Object name) {
+		if (output != null) {
+			long now = System.nanoTime();
+			record(new Event(category, name, now, now, true));
+		}
+	}
+
+	private void record(Event event) {
+		if (eventCount.incrementAndGet() > maxEvents) {
+			// keep the count from overflowing
+			eventCount.decrementAndGet();
+			return;
+		}
+		if (!threadNames.containsKey(event.threadId)) {
+			threadNames.put(event.threadId, Thread.currentThread().getName());
+		}
+		events.add(event);
+	}
+
+	/**
+	 * Writes the timeline recorded so far to the output file of this profiler.
+	 * @throws IOException if an error occurs writing the timeline
+	 */
+	public void write() throws IOException {
+		if (output == null) {
+			return;
+		}
+		File parent = output.getAbsoluteFile().getParentFile();
+		if (parent != null) {
+			parent.mkdirs();
+		}
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output), "UTF-8"))) { //$NON-NLS-1$
+			write(writer);
+		}
+	}
+
+	/**
+	 * Writes the timeline recorded so far to the specified writer.
+	 * @param writer the writer
+	 * @throws IOException if an error occurs writing the timeline
+	 */
+	public void write(Writer writer) throws IOException {
+		writer.write("{\"traceEvents\":["); //$NON-NLS-1$
+		boolean first = true;
+		for (Map.Entry<Long, String> thread : threadNames.entrySet()) {
+			first = separate(writer, first);
+			writer.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":"); //$NON-NLS-1$
+			writer.write(String.valueOf(thread.getKey()));
+			writer.write(",\"args\":{\"name\":"); //$NON-NLS-1$
+			writeString(writer, thread.getValue());
+			writer.write("}}"); //$NON-NLS-1$
+		}
+		for (Event event : events) {
+			first = separate(writer, first);
+			writer.write("{\"name\":"); //$NON-NLS-1$
+			writeString(writer, String.valueOf(event.name));
+			writer.write(",\"cat\":"); //$NON-NLS-1$
+			writeString(writer, event.category);
+			writer.write(",\"pid\":1,\"tid\":"); //$NON-NLS-1$
+			writer.write(String.valueOf(event.threadId));
+			writer.write(",\"ts\":"); //$NON-NLS-1$
+			writer.write(toMicros(event.begin - startNanos));
+			if (event.instant) {
+				writer.write(",\"ph\":\"i\",\"s\":\"t\"}"); //$NON-NLS-1$
+			} else {
+				writer.write(",\"ph\":\"X\",\"dur\":"); //$NON-NLS-1$
+				writer.write(toMicros(event.end - event.begin));
+				writer.write('}');
+			}
+		}
+		writer.write("],\"displayTimeUnit\":\"ms\"}"); //$NON-NLS-1$
+		writer.flush();
+	}
+
+	private static boolean separate(Writer writer, boolean first) throws IOException {
+		if (!first) {
+			writer.write(",\n"); //$NON-NLS-1$
+		}
+		return false;
+	}
+
+	private static String toMicros(long nanos) {
+		// the trace format uses fractional microseconds
+		return (nanos / 1000) + "." + (nanos % 1000 / 100); //$NON-NLS-1$
+	}
+
+	private static void writeString(Writer writer, String value) throws IOException {
+		writer.write('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				writer.write('\\');
+				writer.write(c);
+			} else if (c < ' ') {
+				writer.write(String.format("\\u%04x", Integer.valueOf(c))); //$NON-NLS-1$
+			} else {
+				writer.write(c);
+			}
+		}
+		writer.write('"');
+	}
+
+	private static final class Event {
+		final String category;
+		final Object name;
+		final long begin;
+		final long end;
+		final boolean instant;
+		final long threadId = Thread.currentThread().getId();
+
+		Event(String category, Object name, long begin, long end, boolean instant) {
+			this.category = category;
+			this.name = name;
+			this.begin = begin;
+			this.end = end;
+			this.instant = instant;
+		}
+	}
+}
@@ -35,6 +35,7 @@ import org.eclipse.osgi.container.ModuleWiring;
 import org.eclipse.osgi.container.namespaces.EquinoxModuleDataNamespace;
 import org.eclipse.osgi.framework.eventmgr.EventDispatcher;
 import org.eclipse.osgi.internal.debug.Debug;
+import org.eclipse.osgi.internal.debug.StartupProfiler;
 import org.eclipse.osgi.internal.loader.BundleLoader;
 import org.eclipse.osgi.internal.messages.Msg;
 import org.eclipse.osgi.internal.serviceregistry.HookContext;
@@ -770,6 +771,16 @@ public class BundleContextImpl implements BundleContext, EventDispatcher<Object,
 	 *            method failed
 	 */
 	protected void start() throws BundleException {
+		StartupProfiler profiler = container.getStartupProfiler();
+		long begin = profiler.begin();
+		try {
+			start0();
+		} finally {
+			profiler.end(StartupProfiler.CATEGORY_ACTIVATOR, bundle, begin);
+		}
+	}
+
+	private void start0() throws BundleException {
 		long start = 0;
 		try {
 			if (debug.DEBUG_BUNDLE_TIME) {
@@ -886,6 +897,16 @@ public class BundleContextImpl implements BundleContext, EventDispatcher<Object,
 	 *            and the BundleActivator.stop() method failed
 	 */
 	protected void stop() throws BundleException {
+		StartupProfiler profiler = container.getStartupProfiler();
+		long begin = profiler.begin();
+		try {
+			stop0();
+		} finally {
+			profiler.end(StartupProfiler.CATEGORY_ACTIVATOR, bundle, begin);
+		}
+	}
+
+	private void stop0() throws BundleException {
 		try {
 			final BundleActivator bundleActivator = activator;
 			AccessController.doPrivileged(new PrivilegedExceptionAction<Void>() {
@@ -27,6 +27,7 @@ import java.util.concurrent.ThreadFactory;
 import org.eclipse.osgi.framework.eventmgr.ListenerQueue;
 import org.eclipse.osgi.framework.log.FrameworkLogEntry;
 import org.eclipse.osgi.framework.util.SecureAction;
+import org.eclipse.osgi.internal.debug.StartupProfiler;
 import org.eclipse.osgi.internal.framework.legacy.PackageAdminImpl;
 import org.eclipse.osgi.internal.framework.legacy.StartLevelImpl;
 import org.eclipse.osgi.internal.hookregistry.ClassLoaderHook;
@@ -55,6 +56,7 @@ public class EquinoxContainer implements ThreadFactory, Runnable {
 
 	private final EquinoxConfiguration equinoxConfig;
 	private final EquinoxLogServices logServices;
+	private final StartupProfiler startupProfiler;
 	private final Storage storage;
 	private final PackageAdmin packageAdmin;
 	private final StartLevel startLevel;
@@ -90,6 +92,7 @@ public class EquinoxContainer implements ThreadFactory, Runnable {
 		this.logServices = new EquinoxLogServices(this.equinoxConfig);
 		this.equinoxConfig.logMessages(this.logServices);
 		this.equinoxConfig.getHookRegistry().initialize();
+		this.startupProfiler = StartupProfiler.create(equinoxConfig.getConfiguration(EquinoxConfiguration.PROP_STARTUP_PROFILE));
 		try {
 			this.storage = Storage.createStorage(this);
 		} catch (IOException | BundleException e) {
@@ -145,6 +148,10 @@ public class EquinoxContainer implements ThreadFactory, Runnable {
 		return equinoxConfig.getEquinoxLocations();
 	}
 
+	public StartupProfiler getStartupProfiler() {
+		return startupProfiler;
+	}
+
 	public EquinoxLogServices getLogServices() {
 		return logServices;
 	}
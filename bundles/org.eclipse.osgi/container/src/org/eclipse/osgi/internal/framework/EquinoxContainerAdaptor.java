@@ -13,6 +13,7 @@
  *******************************************************************************/
 package org.eclipse.osgi.internal.framework;
 
+import java.io.IOException;
 import java.security.ProtectionDomain;
 import java.util.EnumSet;
 import java.util.List;
@@ -21,10 +22,12 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -39,7 +42,9 @@ import org.eclipse.osgi.container.ModuleRevision;
 import org.eclipse.osgi.container.ModuleRevisionBuilder;
 import org.eclipse.osgi.container.ModuleWiring;
 import org.eclipse.osgi.container.SystemModule;
+import org.eclipse.osgi.framework.log.FrameworkLogEntry;
 import org.eclipse.osgi.internal.container.AtomicLazyInitializer;
+import org.eclipse.osgi.internal.debug.StartupProfiler;
 import org.eclipse.osgi.internal.hookregistry.ClassLoaderHook;
 import org.eclipse.osgi.internal.loader.BundleLoader;
 import org.eclipse.osgi.internal.loader.FragmentLoader;
@@ -55,7 +60,7 @@ import org.osgi.framework.FrameworkListener;
 import org.osgi.framework.hooks.resolver.ResolverHookFactory;
 import org.osgi.framework.wiring.BundleRevision;
 
-public class EquinoxContainerAdaptor extends ModuleContainerAdaptor {
+public class EquinoxContainerAdaptor extends ModuleContainerAdaptor implements StartupProfiler.Provider {
 	private final EquinoxContainer container;
 	private final Storage storage;
 	private final OSGiFrameworkHooks hooks;
@@ -100,17 +105,15 @@ public class EquinoxContainerAdaptor extends ModuleContainerAdaptor {
 
 		// Use two different executors for resolver and start-level because of the different queue requirements
 
-		// For the resolver we must use a SynchronousQueue because multiple threads
-		// can kick off a resolution operation and block one of the executor threads
-		// per resolution operation.
-		// If the number of concurrent resolution operations reaches the number of
-		// executor threads then each executor thread may end up blocked causing the
-		// executor to no longer accept work.  A SynchronousQueue prevents that from
-		// happening.
+		// For the resolver we use a single work-stealing pool for the life of the framework.
+		// The resolver tasks never block on each other; the thread which kicks off a
+		// resolution operation is the only one waiting for the tasks to complete and it
+		// is never one of the pool threads.  Tasks forked by other tasks are queued
+		// locally to the pool thread that forked them and stolen by idle pool threads.
 		this.resolverExecutor = new AtomicLazyInitializer<>();
-		this.lazyResolverExecutorCreator = createLazyExecutorCreator( //
+		this.lazyResolverExecutorCreator = createLazyForkJoinExecutorCreator( //
 				"Equinox resolver thread - " + EquinoxContainerAdaptor.this.toString(), //$NON-NLS-1$
-				resolverThreadCnt, new SynchronousQueue<Runnable>());
+				resolverThreadCnt);
 
 		// For the start-level we can safely use a growing queue because the thread feeding the
 		// start-level executor with work is a single thread and it can safely block waiting
@@ -122,6 +125,31 @@ public class EquinoxContainerAdaptor extends ModuleContainerAdaptor {
 
 	}
 
+	private Callable<Executor> createLazyForkJoinExecutorCreator(final String threadName, int threadCnt) {
+		// use the number of processors when configured value is <=0
+		final int parallelism = threadCnt <= 0 ? Runtime.getRuntime().availableProcessors() : threadCnt;
+		return new Callable<Executor>() {
+			@Override
+			public Executor call() throws Exception {
+				if (parallelism == 1) {
+					return createSynchronousExecutor();
+				}
+				// try to name the threads with useful name
+				ForkJoinWorkerThreadFactory threadFactory = new ForkJoinWorkerThreadFactory() {
+					@Override
+					public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+						ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+						t.setName(threadName);
+						t.setDaemon(true);
+						return t;
+					}
+				};
+				// use FIFO scheduling for forked tasks that are never joined
+				return new ForkJoinPool(parallelism, threadFactory, null, true);
+			}
+		};
+	}
+
 	private Callable<Executor> createLazyExecutorCreator(final String threadName, int threadCnt, final BlockingQueue<Runnable> queue) {
 		// use the number of processors when configured value is <=0
 		final int maxThreads = threadCnt <= 0 ? Runtime.getRuntime().availableProcessors() : threadCnt;
@@ -129,13 +157,7 @@ public class EquinoxContainerAdaptor extends ModuleContainerAdaptor {
 			@Override
 			public Executor call() throws Exception {
 				if (maxThreads == 1) {
-					// just do synchronous execution with current thread
-					return new Executor() {
-						@Override
-						public void execute(Runnable command) {
-							command.run();
-						}
-					};
+					return createSynchronousExecutor();
 				}
 				// Always want to create core threads until max size
 				int coreThreads = maxThreads;
@@ -160,6 +182,16 @@ public class EquinoxContainerAdaptor extends ModuleContainerAdaptor {
 		};
 	}
 
+	private static Executor createSynchronousExecutor() {
+		// just do synchronous execution with current thread
+		return new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				command.run();
+			}
+		};
+	}
+
 	private static ClassLoader getModuleClassLoaderParent(EquinoxConfiguration configuration, ClassLoader bootLoader) {
 		// allow hooks to determine the parent class loader
 		for (ClassLoaderHook hook : configuration.getHookRegistry().getClassLoaderHooks()) {
@@ -204,6 +236,15 @@ public class EquinoxContainerAdaptor extends ModuleContainerAdaptor {
 
 	@Override
 	public void publishContainerEvent(ContainerEvent type, Module module, Throwable error, FrameworkListener... listeners) {
+		StartupProfiler profiler = container.getStartupProfiler();
+		if (profiler.isEnabled() && (type == ContainerEvent.STARTED || type == ContainerEvent.STOPPED)) {
+			profiler.mark(StartupProfiler.CATEGORY_FRAMEWORK, type);
+			try {
+				profiler.write();
+			} catch (IOException e) {
+				container.getLogServices().log(EquinoxContainer.NAME, FrameworkLogEntry.WARNING, "Error writing the startup profile.", e); //$NON-NLS-1$
+			}
+		}
 		EquinoxEventPublisher publisher = container.getEventPublisher();
 		if (publisher != null) {
 			publisher.publishFrameworkEvent(getType(type), module.getBundle(), error, listeners);
@@ -229,6 +270,11 @@ public class EquinoxContainerAdaptor extends ModuleContainerAdaptor {
 		return (SystemModule) new EquinoxBundle.SystemBundle(storage.getModuleContainer(), container).getModule();
 	}
 
+	@Override
+	public StartupProfiler getStartupProfiler() {
+		return container.getStartupProfiler();
+	}
+
 	@Override
 	public String getProperty(String key) {
 		return storage.getConfiguration().getConfiguration(key);
@@ -25,6 +25,7 @@ import org.eclipse.osgi.container.Module.State;
 import org.eclipse.osgi.container.ModuleCollisionHook;
 import org.eclipse.osgi.container.ModuleContainer;
 import org.eclipse.osgi.framework.util.ArrayMap;
+import org.eclipse.osgi.internal.container.IdentifiableResolverHook;
 import org.eclipse.osgi.internal.debug.Debug;
 import org.eclipse.osgi.internal.messages.Msg;
 import org.eclipse.osgi.internal.serviceregistry.HookContext;
@@ -246,7 +247,7 @@ class OSGiFrameworkHooks {
 			return new CoreResolverHook(hookRefs, systemModule);
 		}
 
-		class CoreResolverHook implements ResolutionReport.Listener, ResolverHook {
+		class CoreResolverHook implements ResolutionReport.Listener, IdentifiableResolverHook {
 			private final List<HookReference> hooks;
 			private final Module systemModule;
 
@@ -292,6 +293,26 @@ class OSGiFrameworkHooks {
 				}
 			}
 
+			@Override
+			public String getHookIdentity() {
+				// the boot filtering above is part of the identity
+				StringBuilder identity = new StringBuilder(isBootInit() ? "boot;" : "running;"); //$NON-NLS-1$ //$NON-NLS-2$
+				for (HookReference hookRef : hooks) {
+					// only hooks which identify their own configuration allow cached results to be used
+					Bundle registrant = hookRef.reference.getBundle();
+					if (registrant == null || !(hookRef.hook instanceof IdentifiableResolverHook))
+						return null;
+					String hookIdentity = ((IdentifiableResolverHook) hookRef.hook).getHookIdentity();
+					if (hookIdentity == null)
+						return null;
+					// service ids are not stable across restarts; use the registering bundle and hook type
+					identity.append(registrant.getBundleId()).append(':') //
+							.append(hookRef.hook.getClass().getName()).append(':') //
+							.append(hookIdentity).append(';');
+				}
+				return identity.toString();
+			}
+
 			private boolean isBootInit() {
 				return systemModule == null || !Module.RESOLVED_SET.contains(systemModule.getState()) || (systemModule.getState().equals(State.STARTING) && inInit);
 			}
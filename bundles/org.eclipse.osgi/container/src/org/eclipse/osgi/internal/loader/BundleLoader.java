@@ -43,6 +43,7 @@ import org.eclipse.osgi.container.ModuleWiring;
 import org.eclipse.osgi.container.builders.OSGiManifestBuilderFactory;
 import org.eclipse.osgi.container.namespaces.EquinoxModuleDataNamespace;
 import org.eclipse.osgi.internal.debug.Debug;
+import org.eclipse.osgi.internal.debug.StartupProfiler;
 import org.eclipse.osgi.internal.framework.EquinoxConfiguration;
 import org.eclipse.osgi.internal.framework.EquinoxContainer;
 import org.eclipse.osgi.internal.hookregistry.ClassLoaderHook;
@@ -259,16 +260,22 @@ public class BundleLoader extends ModuleLoader {
 		// this may result in multiple classloaders being constructed but only one will be used.
 		final List<ClassLoaderHook> hooks = container.getConfiguration().getHookRegistry().getClassLoaderHooks();
 		final Generation generation = (Generation) wiring.getRevision().getRevisionInfo();
-		if (System.getSecurityManager() == null) {
-			result = createClassLoaderPrivledged(parent, generation.getBundleInfo().getStorage().getConfiguration(), this, generation, hooks);
-		} else {
-			final ClassLoader cl = parent;
-			result = AccessController.doPrivileged(new PrivilegedAction<ModuleClassLoader>() {
-				@Override
-				public ModuleClassLoader run() {
-					return createClassLoaderPrivledged(cl, generation.getBundleInfo().getStorage().getConfiguration(), BundleLoader.this, generation, hooks);
-				}
-			});
+		StartupProfiler profiler = container.getStartupProfiler();
+		long begin = profiler.begin();
+		try {
+			if (System.getSecurityManager() == null) {
+				result = createClassLoaderPrivledged(parent, generation.getBundleInfo().getStorage().getConfiguration(), this, generation, hooks);
+			} else {
+				final ClassLoader cl = parent;
+				result = AccessController.doPrivileged(new PrivilegedAction<ModuleClassLoader>() {
+					@Override
+					public ModuleClassLoader run() {
+						return createClassLoaderPrivledged(cl, generation.getBundleInfo().getStorage().getConfiguration(), BundleLoader.this, generation, hooks);
+					}
+				});
+			}
+		} finally {
+			profiler.end(StartupProfiler.CATEGORY_CLASSLOADER, wiring.getRevision(), begin);
 		}
 
 		// Synchronize on classLoaderCreatedMonitor in order to ensure hooks are called before returning.
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2018 Cognos Incorporated, IBM Corporation and others
+ * Copyright (c) 2006, 2019 Cognos Incorporated, IBM Corporation and others
  *
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0 which
@@ -18,16 +18,17 @@ import java.util.Collections;
 import java.util.Enumeration;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.eclipse.equinox.log.LogFilter;
 import org.eclipse.equinox.log.SynchronousLogListener;
+import org.eclipse.osgi.framework.log.FrameworkLogEntry;
 import org.eclipse.osgi.framework.util.ArrayMap;
+import org.eclipse.osgi.internal.framework.EquinoxConfiguration;
 import org.eclipse.osgi.internal.framework.EquinoxContainer;
 import org.eclipse.osgi.internal.log.OrderedExecutor.OrderedTaskQueue;
 import org.osgi.framework.Bundle;
@@ -42,21 +43,6 @@ public class ExtendedLogReaderServiceFactory implements ServiceFactory<ExtendedL
 
 	static final int MAX_RECURSIONS = 50;
 
-	static final class LogTask implements Runnable {
-		private final LogEntry logEntry;
-		private final LogListener listener;
-
-		LogTask(LogEntry logEntry, LogListener listener) {
-			this.logEntry = logEntry;
-			this.listener = listener;
-		}
-
-		@Override
-		public void run() {
-			safeLogged(listener, logEntry);
-		}
-	}
-
 	@SuppressWarnings("unchecked")
 	private static final Enumeration<LogEntry> EMPTY_ENUMERATION = Collections.enumeration(Collections.EMPTY_LIST);
 
@@ -73,7 +59,8 @@ public class ExtendedLogReaderServiceFactory implements ServiceFactory<ExtendedL
 
 	private final ReentrantReadWriteLock listenersLock = new ReentrantReadWriteLock();
 	private ArrayMap<LogListener, Object[]> listeners = new ArrayMap<>(5);
-	private LogFilter[] filters = null;
+	// replaced (never modified) each time the listeners change so it can be read without the listenersLock
+	private volatile LogFilter[] filters = null;
 	private final ThreadLocal<int[]> nestedCallCount = new ThreadLocal<>();
 	private final LinkedList<LogEntry> history;
 	private final int maxHistory;
@@ -150,6 +137,10 @@ public class ExtendedLogReaderServiceFactory implements ServiceFactory<ExtendedL
 	}
 
 	boolean isLoggable(final Bundle bundle, final String name, final int level) {
+		if (filters == null) {
+			// no listeners; avoid the nested call counting and privileged call overhead
+			return false;
+		}
 		if (System.getSecurityManager() != null) {
 			return AccessController.doPrivileged(new PrivilegedAction<Boolean>() {
 				@Override
@@ -162,18 +153,12 @@ public class ExtendedLogReaderServiceFactory implements ServiceFactory<ExtendedL
 	}
 
 	boolean isLoggablePrivileged(Bundle bundle, String name, int level) {
-		LogFilter[] filtersCopy;
-		listenersLock.readLock().lock();
-		try {
-			filtersCopy = filters;
-		} finally {
-			listenersLock.readLock().unlock();
-		}
+		LogFilter[] filtersCopy = filters;
+		if (filtersCopy == null)
+			return false;
 		try {
 			if (incrementNestedCount() == MAX_RECURSIONS)
 				return false;
-			if (filtersCopy == null)
-				return false;
 
 			if (filtersCopy == ALWAYS_LOG)
 				return true;
@@ -247,7 +232,7 @@ public class ExtendedLogReaderServiceFactory implements ServiceFactory<ExtendedL
 					LogListener listener = listenersCopy.getKey(i);
 					OrderedTaskQueue orderedTaskQueue = (OrderedTaskQueue) listenerObjects[1];
 					if (orderedTaskQueue != null) {
-						orderedTaskQueue.execute(new LogTask(logEntry, listener), size);
+						orderedTaskQueue.execute(logEntry, size);
 					} else {
 						// log synchronously
 						safeLogged(listener, logEntry);
@@ -277,7 +262,7 @@ public class ExtendedLogReaderServiceFactory implements ServiceFactory<ExtendedL
 			Object[] listenerObjects = listenersCopy.get(listener);
 			if (listenerObjects == null) {
 				// Only create a task queue for non-SynchronousLogListeners
-				OrderedTaskQueue taskQueue = (listener instanceof SynchronousLogListener) ? null : executor.createQueue();
+				OrderedTaskQueue taskQueue = (listener instanceof SynchronousLogListener) ? null : executor.createQueue(listener);
 				listenerObjects = new Object[] {filter, taskQueue};
 			} else if (filter != listenerObjects[0]) {
 				// update the filter
@@ -304,8 +289,10 @@ public class ExtendedLogReaderServiceFactory implements ServiceFactory<ExtendedL
 			filtersList.add(filter);
 		}
 
-		if (filtersList.isEmpty())
+		if (filtersList.isEmpty()) {
 			filters = null;
+			return;
+		}
 
 		filters = filtersList.toArray(new LogFilter[filtersList.size()]);
 	}
@@ -322,6 +309,15 @@ public class ExtendedLogReaderServiceFactory implements ServiceFactory<ExtendedL
 		}
 	}
 
+	/**
+	 * Returns the number of log entries dropped because a listener queue was full.
+	 * @return the number of dropped log entries
+	 */
+	long getDroppedCount() {
+		OrderedExecutor current = executor;
+		return current == null ? 0 : current.getDroppedCount();
+	}
+
 	Enumeration<LogEntry> getLog() {
 		if (history == null) {
 			return EMPTY_ENUMERATION;
@@ -334,123 +330,232 @@ public class ExtendedLogReaderServiceFactory implements ServiceFactory<ExtendedL
 }
 
 /**
-* This Executor uses OrderedTaskQueue to execute tasks in a FIFO order.
+* This Executor uses OrderedTaskQueue to deliver log entries to each listener in a FIFO order.
 */
 class OrderedExecutor implements ThreadFactory {
+	/**
+	 * The policy used when a listener queue is full.
+	 */
+	enum OverflowPolicy {
+		/**
+		 * The oldest queued entry is dropped.  This is the default because
+		 * it never makes the logging thread wait for a slow listener.
+		 */
+		DROP_OLDEST,
+		/**
+		 * The new entry is dropped.
+		 */
+		DROP_NEWEST,
+		/**
+		 * The logging thread waits for the listener to catch up.
+		 */
+		BLOCK;
+
+		static OverflowPolicy parse(String value) {
+			if (value == null) {
+				return DROP_OLDEST;
+			}
+			value = value.trim();
+			if ("drop.newest".equalsIgnoreCase(value)) { //$NON-NLS-1$
+				return DROP_NEWEST;
+			}
+			if ("block".equalsIgnoreCase(value)) { //$NON-NLS-1$
+				return BLOCK;
+			}
+			return DROP_OLDEST;
+		}
+	}
+
+	// the maximum number of entries delivered to a listener before giving other listeners a chance
+	static final int MAX_BATCH = 100;
+	private static final long BLOCK_WAIT = 500;
+
 	private final int nThreads = Math.min(Runtime.getRuntime().availableProcessors(), 10);
+	private final EquinoxContainer equinoxContainer;
 	private final String logThreadName;
 	private final ThreadPoolExecutor delegate;
+	// holds at most one batch task per listener queue
 	private final LinkedBlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+	private final int maxQueued;
+	private final OverflowPolicy overflowPolicy;
+	private final AtomicLong droppedCount = new AtomicLong();
 	private int coreSize = 0;
 
 	public OrderedExecutor(final EquinoxContainer equinoxContainer) {
+		this.equinoxContainer = equinoxContainer;
 		this.logThreadName = "Equinox Log Thread - " + equinoxContainer.toString(); //$NON-NLS-1$
 		this.delegate = new ThreadPoolExecutor(0, nThreads, 10L, TimeUnit.SECONDS, queue, this);
+		EquinoxConfiguration config = equinoxContainer.getConfiguration();
+		int max = 0;
+		String maxProp = config.getConfiguration(EquinoxConfiguration.PROP_LOG_LISTENER_QUEUE_MAX);
+		if (maxProp != null) {
+			try {
+				max = Integer.parseInt(maxProp.trim());
+			} catch (NumberFormatException e) {
+				// ignore and use 0 (unbounded)
+			}
+		}
+		this.maxQueued = Math.max(0, max);
+		this.overflowPolicy = OverflowPolicy.parse(config.getConfiguration(EquinoxConfiguration.PROP_LOG_LISTENER_QUEUE_OVERFLOW));
 	}
 
 	@Override
 	public Thread newThread(Runnable r) {
-		Thread t = new Thread(r, logThreadName);
+		Thread t = new LogThread(r, logThreadName);
 		t.setDaemon(true);
 		return t;
 	}
 
-	void executeOrderedTask(Runnable task, OrderedTaskQueue dependencyQueue, int numListeners) {
-		OrderedTaskQueue.OrderedTask firstOrderedTask;
+	void scheduleQueue(OrderedTaskQueue taskQueue, int numListeners) {
 		synchronized (this) {
-			// This will either queue the task to wait for existing ones to finish
-			// or it will return the first ordered task so it can kick off the execution
-			// for ordered task queue
-			firstOrderedTask = dependencyQueue.addTaskAndReturnIfFirst(task);
-			if (firstOrderedTask != null) {
-				// Check that we are at the optimal target for core pool size
-				int targetSize = Math.min(nThreads, numListeners);
-				if (coreSize < targetSize) {
-					coreSize = targetSize;
-					delegate.setCorePoolSize(coreSize);
-				}
+			// Check that we are at the optimal target for core pool size
+			int targetSize = Math.min(nThreads, numListeners);
+			if (coreSize < targetSize) {
+				coreSize = targetSize;
+				delegate.setCorePoolSize(coreSize);
 			}
 		}
+		delegate.execute(taskQueue);
+	}
 
-		// execute the first ordered task now
-		if (firstOrderedTask != null) {
-			delegate.execute(firstOrderedTask);
+	void queueDrained() {
+		synchronized (this) {
+			if (queue.isEmpty()) {
+				// The event storm has ended, let the threads be reclaimed
+				delegate.setCorePoolSize(0);
+				coreSize = 0;
+			}
 		}
 	}
 
-	OrderedTaskQueue createQueue() {
-		return new OrderedTaskQueue();
+	OrderedTaskQueue createQueue(LogListener listener) {
+		return new OrderedTaskQueue(listener);
 	}
 
 	void shutdown() {
 		delegate.shutdown();
 	}
 
-	void executeNextTask(OrderedTaskQueue taskQueue) {
-		OrderedTaskQueue.OrderedTask nextTask;
-		synchronized (this) {
-			nextTask = taskQueue.getNextTask();
-			if (nextTask == null && queue.isEmpty()) {
-				// The event storm has ended, let the threads be reclaimed
-				delegate.setCorePoolSize(0);
-				coreSize = 0;
-			}
+	long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	void reportDropped(LogListener listener, long dropped) {
+		EquinoxLogServices logServices = equinoxContainer.getLogServices();
+		if (logServices != null) {
+			logServices.log(EquinoxContainer.NAME, FrameworkLogEntry.WARNING, "Dropped " + dropped + " log entries for the log listener because its queue was full: " + listener, null); //$NON-NLS-1$ //$NON-NLS-2$
 		}
-		if (nextTask != null) {
-			delegate.execute(nextTask);
+	}
+
+	static final class LogThread extends Thread {
+		LogThread(Runnable r, String name) {
+			super(r, name);
 		}
 	}
 
 	/**
-	 * Keeps an list of ordered tasks and guarantees the tasks are run in the order
-	 * they are queued.  Tasks executed with this queue will always be run
-	 * in FIFO order and will never run in parallel to guarantee events are
-	 * received in the proper order by the listener.  Each log listener
-	 * has its own ordered task queue.
-	 * <p>
-	 * Note that only the execute method is thread safe.  All other methods
-	 * must be guarded by the OrderedExecutor monitor.
+	 * Keeps a queue of log entries for a listener and guarantees the entries are
+	 * delivered in the order they are queued.  Entries queued with this queue
+	 * will always be delivered in FIFO order and never in parallel to guarantee
+	 * events are received in the proper order by the listener.  Consecutive queued
+	 * entries are delivered in batches by a single task.  Each log listener has
+	 * its own ordered task queue.
 	 */
-	class OrderedTaskQueue {
-		private final Queue<OrderedTask> dependencyQueue = new LinkedList<>();
-		private AtomicReference<OrderedTask> firstTask = new AtomicReference<>();
+	class OrderedTaskQueue implements Runnable {
+		private final LogListener listener;
+		private final LinkedList<LogEntry> entries = new LinkedList<>();
+		// guarded by this; true while a batch task is queued or running
+		private boolean scheduled;
+		// guarded by this; entries dropped since the last report
+		private long dropped;
 
-		void execute(Runnable task, int numListeners) {
-			executeOrderedTask(task, this, numListeners);
+		OrderedTaskQueue(LogListener listener) {
+			this.listener = listener;
 		}
 
-		OrderedTask addTaskAndReturnIfFirst(Runnable task) {
-			OrderedTask orderedTask = new OrderedTask(task);
-			if (firstTask.compareAndSet(null, orderedTask)) {
-				return orderedTask;
+		void execute(LogEntry logEntry, int numListeners) {
+			synchronized (this) {
+				if (maxQueued > 0 && entries.size() >= maxQueued && !makeRoom()) {
+					return;
+				}
+				entries.add(logEntry);
+				if (scheduled) {
+					return;
+				}
+				scheduled = true;
 			}
-			dependencyQueue.add(orderedTask);
-			return null;
+			scheduleQueue(this, numListeners);
 		}
 
-		OrderedTask getNextTask() {
-			OrderedTask nextTask = dependencyQueue.poll();
-			if (nextTask == null) {
-				// The queue has been drained reset the first task.
-				// the next task for this ordered task queue will become the first again
-				firstTask.set(null);
+		/*
+		 * Applies the overflow policy to a full queue.  Returns false if the
+		 * new entry must be dropped.  Must be called while holding this monitor.
+		 */
+		private boolean makeRoom() {
+			switch (overflowPolicy) {
+				case DROP_NEWEST :
+					entryDropped();
+					return false;
+				case BLOCK :
+					// never block a log thread; it may be the thread needed to drain this queue
+					if (Thread.currentThread() instanceof LogThread) {
+						return true;
+					}
+					boolean interrupted = false;
+					while (entries.size() >= maxQueued && !delegate.isShutdown()) {
+						try {
+							wait(BLOCK_WAIT);
+						} catch (InterruptedException e) {
+							interrupted = true;
+						}
+					}
+					if (interrupted) {
+						Thread.currentThread().interrupt();
+					}
+					return true;
+				default :
+					entries.removeFirst();
+					entryDropped();
+					return true;
 			}
-			return nextTask;
 		}
 
-		class OrderedTask implements Runnable {
-			private final Runnable task;
+		private void entryDropped() {
+			dropped++;
+			droppedCount.incrementAndGet();
+		}
 
-			public OrderedTask(Runnable task) {
-				this.task = task;
+		@Override
+		public void run() {
+			LogEntry[] batch;
+			long droppedToReport = 0;
+			synchronized (this) {
+				int size = Math.min(entries.size(), MAX_BATCH);
+				batch = new LogEntry[size];
+				for (int i = 0; i < size; i++) {
+					batch[i] = entries.removeFirst();
+				}
+				notifyAll();
 			}
-
-			@Override
-			public void run() {
-				try {
-					task.run();
-				} finally {
-					executeNextTask(OrderedTaskQueue.this);
+			for (LogEntry logEntry : batch) {
+				ExtendedLogReaderServiceFactory.safeLogged(listener, logEntry);
+			}
+			boolean more;
+			synchronized (this) {
+				more = !entries.isEmpty();
+				if (!more) {
+					scheduled = false;
+					droppedToReport = dropped;
+					dropped = 0;
+				}
+			}
+			if (more) {
+				// more entries arrived; queue another batch behind the other listeners
+				delegate.execute(this);
+			} else {
+				queueDrained();
+				if (droppedToReport > 0) {
+					reportDropped(listener, droppedToReport);
 				}
 			}
 		}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2016 Cognos Incorporated, IBM Corporation and others
+ * Copyright (c) 2006, 2019 Cognos Incorporated, IBM Corporation and others
  *
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0 which
@@ -59,6 +59,15 @@ public class ExtendedLogReaderServiceImpl implements ExtendedLogReaderService {
 		listeners.remove(listener);
 	}
 
+	/**
+	 * Returns the number of log entries dropped for asynchronous log listeners
+	 * because their queue was full.
+	 * @return the number of dropped log entries
+	 */
+	public long getDroppedCount() {
+		return factory.getDroppedCount();
+	}
+
 	private synchronized void checkShutdown() {
 		if (listeners == null)
 			throw new IllegalStateException("LogReaderService is shutdown."); //$NON-NLS-1$
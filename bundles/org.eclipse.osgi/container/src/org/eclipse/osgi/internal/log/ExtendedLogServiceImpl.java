@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2016 Cognos Incorporated, IBM Corporation and others
+ * Copyright (c) 2006, 2019 Cognos Incorporated, IBM Corporation and others
  *
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0 which
@@ -25,6 +25,8 @@ public class ExtendedLogServiceImpl implements ExtendedLogService {
 
 	private final ExtendedLogServiceFactory factory;
 	private volatile Bundle bundle;
+	// the logger used by the LogService methods, cached to avoid the name computation and map lookup per call
+	private volatile LoggerImpl defaultLogger;
 	private final Map<Class<? extends org.osgi.service.log.Logger>, Map<String, LoggerImpl>> loggerCache = new HashMap<>();
 	private final String LOG_SERVICE = "LogService"; //$NON-NLS-1$
 
@@ -56,7 +58,7 @@ public class ExtendedLogServiceImpl implements ExtendedLogService {
 	@SuppressWarnings("deprecation")
 	@Override
 	public void log(ServiceReference<?> sr, int level, String message, Throwable exception) {
-		getLogger((String) null).log(sr, level, message, exception);
+		getDefaultLogger().log(sr, level, message, exception);
 	}
 
 	@Override
@@ -66,7 +68,7 @@ public class ExtendedLogServiceImpl implements ExtendedLogService {
 
 	@Override
 	public void log(Object context, int level, String message, Throwable exception) {
-		getLogger((String) null).log(context, level, message, exception);
+		getDefaultLogger().log(context, level, message, exception);
 	}
 
 	@Override
@@ -95,12 +97,31 @@ public class ExtendedLogServiceImpl implements ExtendedLogService {
 
 	@Override
 	public String getName() {
-		return getLogger((String) null).getName();
+		return getDefaultLogger().getName();
 	}
 
 	@Override
 	public boolean isLoggable(int level) {
-		return getLogger((String) null).isLoggable(level);
+		return getDefaultLogger().isLoggable(level);
+	}
+
+	private LoggerImpl getDefaultLogger() {
+		LoggerImpl current = defaultLogger;
+		if (current == null) {
+			// create and cache the logger while holding the lock used by setBundle
+			// so that a logger named for a previous bundle is never cached
+			factory.contextsLock.writeLock().lock();
+			try {
+				current = defaultLogger;
+				if (current == null) {
+					current = (LoggerImpl) getLogger((String) null);
+					defaultLogger = current;
+				}
+			} finally {
+				factory.contextsLock.writeLock().unlock();
+			}
+		}
+		return current;
 	}
 
 	// package private methods called from Logger
@@ -113,6 +134,7 @@ public class ExtendedLogServiceImpl implements ExtendedLogService {
 		try {
 			Bundle previous = this.bundle;
 			this.bundle = bundle;
+			this.defaultLogger = null;
 			factory.loggerContextTargetMap.replaceSystemBundleLogService(previous, bundle);
 		} finally {
 			factory.contextsLock.writeLock().unlock();
@@ -152,21 +174,19 @@ public class ExtendedLogServiceImpl implements ExtendedLogService {
 			factory.contextsLock.readLock().unlock();
 		}
 		if (logger == null) {
-			LoggerContext loggerContext = factory.loggerContextTargetMap.getEffectiveLoggerContext(bundle);
-			if (loggerType == FormatterLogger.class) {
-				logger = new FormatterLoggerImpl(this, name, loggerContext);
-			} else if (loggerType == org.osgi.service.log.Logger.class) {
-				logger = new LoggerImpl(this, name, loggerContext);
-			} else {
-				throw new IllegalArgumentException(loggerType.getName());
-			}
+			// create the logger while holding the write lock so that a concurrent
+			// change to the logger contexts cannot be missed by the new logger
 			factory.contextsLock.writeLock().lock();
 			try {
-				LoggerImpl existing = loggers.get(name);
-				if (existing == null) {
+				logger = loggers.get(name);
+				if (logger == null) {
+					LoggerContext loggerContext = factory.loggerContextTargetMap.getEffectiveLoggerContext(bundle);
+					if (loggerType == FormatterLogger.class) {
+						logger = new FormatterLoggerImpl(this, name, loggerContext);
+					} else {
+						logger = new LoggerImpl(this, name, loggerContext);
+					}
 					loggers.put(name, logger);
-				} else {
-					logger = existing;
 				}
 			} finally {
 				factory.contextsLock.writeLock().unlock();
@@ -182,172 +202,172 @@ public class ExtendedLogServiceImpl implements ExtendedLogService {
 
 	@Override
 	public boolean isTraceEnabled() {
-		return getLogger((String) null).isTraceEnabled();
+		return getDefaultLogger().isTraceEnabled();
 	}
 
 	@Override
 	public void trace(String message) {
-		getLogger((String) null).trace(message);
+		getDefaultLogger().trace(message);
 	}
 
 	@Override
 	public void trace(String format, Object arg) {
-		getLogger((String) null).trace(format, arg);
+		getDefaultLogger().trace(format, arg);
 	}
 
 	@Override
 	public void trace(String format, Object arg1, Object arg2) {
-		getLogger((String) null).trace(format, arg1, arg2);
+		getDefaultLogger().trace(format, arg1, arg2);
 	}
 
 	@Override
 	public void trace(String format, Object... arguments) {
-		getLogger((String) null).trace(format, arguments);
+		getDefaultLogger().trace(format, arguments);
 	}
 
 	@Override
 	public boolean isDebugEnabled() {
-		return getLogger((String) null).isDebugEnabled();
+		return getDefaultLogger().isDebugEnabled();
 	}
 
 	@Override
 	public void debug(String message) {
-		getLogger((String) null).debug(message);
+		getDefaultLogger().debug(message);
 	}
 
 	@Override
 	public void debug(String format, Object arg) {
-		getLogger((String) null).debug(format, arg);
+		getDefaultLogger().debug(format, arg);
 	}
 
 	@Override
 	public void debug(String format, Object arg1, Object arg2) {
-		getLogger((String) null).debug(format, arg1, arg2);
+		getDefaultLogger().debug(format, arg1, arg2);
 	}
 
 	@Override
 	public void debug(String format, Object... arguments) {
-		getLogger((String) null).debug(format, arguments);
+		getDefaultLogger().debug(format, arguments);
 	}
 
 	@Override
 	public boolean isInfoEnabled() {
-		return getLogger((String) null).isInfoEnabled();
+		return getDefaultLogger().isInfoEnabled();
 	}
 
 	@Override
 	public void info(String message) {
-		getLogger((String) null).info(message);
+		getDefaultLogger().info(message);
 	}
 
 	@Override
 	public void info(String format, Object arg) {
-		getLogger((String) null).info(format, arg);
+		getDefaultLogger().info(format, arg);
 	}
 
 	@Override
 	public void info(String format, Object arg1, Object arg2) {
-		getLogger((String) null).info(format, arg1, arg2);
+		getDefaultLogger().info(format, arg1, arg2);
 	}
 
 	@Override
 	public void info(String format, Object... arguments) {
-		getLogger((String) null).info(format, arguments);
+		getDefaultLogger().info(format, arguments);
 	}
 
 	@Override
 	public boolean isWarnEnabled() {
-		return getLogger((String) null).isWarnEnabled();
+		return getDefaultLogger().isWarnEnabled();
 	}
 
 	@Override
 	public void warn(String message) {
-		getLogger((String) null).warn(message);
+		getDefaultLogger().warn(message);
 	}
 
 	@Override
 	public void warn(String format, Object arg) {
-		getLogger((String) null).warn(format, arg);
+		getDefaultLogger().warn(format, arg);
 	}
 
 	@Override
 	public void warn(String format, Object arg1, Object arg2) {
-		getLogger((String) null).warn(format, arg1, arg2);
+		getDefaultLogger().warn(format, arg1, arg2);
 	}
 
 	@Override
 	public void warn(String format, Object... arguments) {
-		getLogger((String) null).warn(format, arguments);
+		getDefaultLogger().warn(format, arguments);
 	}
 
 	@Override
 	public boolean isErrorEnabled() {
-		return getLogger((String) null).isErrorEnabled();
+		return getDefaultLogger().isErrorEnabled();
 	}
 
 	@Override
 	public void error(String message) {
-		getLogger((String) null).error(message);
+		getDefaultLogger().error(message);
 	}
 
 	@Override
 	public void error(String format, Object arg) {
-		getLogger((String) null).error(format, arg);
+		getDefaultLogger().error(format, arg);
 	}
 
 	@Override
 	public void error(String format, Object arg1, Object arg2) {
-		getLogger((String) null).error(format, arg1, arg2);
+		getDefaultLogger().error(format, arg1, arg2);
 	}
 
 	@Override
 	public void error(String format, Object... arguments) {
-		getLogger((String) null).error(format, arguments);
+		getDefaultLogger().error(format, arguments);
 	}
 
 	@Override
 	public void audit(String message) {
-		getLogger((String) null).audit(message);
+		getDefaultLogger().audit(message);
 	}
 
 	@Override
 	public void audit(String format, Object arg) {
-		getLogger((String) null).audit(format, arg);
+		getDefaultLogger().audit(format, arg);
 	}
 
 	@Override
 	public void audit(String format, Object arg1, Object arg2) {
-		getLogger((String) null).audit(format, arg1, arg2);
+		getDefaultLogger().audit(format, arg1, arg2);
 	}
 
 	@Override
 	public void audit(String format, Object... arguments) {
-		getLogger((String) null).audit(format, arguments);
+		getDefaultLogger().audit(format, arguments);
 	}
 
 	@Override
 	public <E extends Exception> void trace(LoggerConsumer<E> consumer) throws E {
-		getLogger((String) null).trace(consumer);
+		getDefaultLogger().trace(consumer);
 	}
 
 	@Override
 	public <E extends Exception> void debug(LoggerConsumer<E> consumer) throws E {
-		getLogger((String) null).debug(consumer);
+		getDefaultLogger().debug(consumer);
 	}
 
 	@Override
 	public <E extends Exception> void info(LoggerConsumer<E> consumer) throws E {
-		getLogger((String) null).info(consumer);
+		getDefaultLogger().info(consumer);
 	}
 
 	@Override
 	public <E extends Exception> void warn(LoggerConsumer<E> consumer) throws E {
-		getLogger((String) null).warn(consumer);
+		getDefaultLogger().warn(consumer);
 	}
 
 	@Override
 	public <E extends Exception> void error(LoggerConsumer<E> consumer) throws E {
-		getLogger((String) null).error(consumer);
+		getDefaultLogger().error(consumer);
 	}
 
 	void applyLogLevels(EquinoxLoggerContext effectiveLoggerContext) {
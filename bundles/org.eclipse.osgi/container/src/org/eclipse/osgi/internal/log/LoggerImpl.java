@@ -26,7 +26,9 @@ public class LoggerImpl implements Logger {
 	protected final ExtendedLogServiceImpl logServiceImpl;
 	protected final String name;
 
-	private LogLevel enabledLevel = LogLevel.TRACE;
+	// the effective level is pushed to the logger each time its logger context changes;
+	// disabled calls only need to read and compare this value
+	private volatile LogLevel enabledLevel = LogLevel.TRACE;
 
 	public LoggerImpl(ExtendedLogServiceImpl logServiceImpl, String name, LoggerContext loggerContext) {
 		this.logServiceImpl = logServiceImpl;
@@ -112,17 +114,23 @@ public class LoggerImpl implements Logger {
 
 	@Override
 	public void trace(String message) {
-		trace(message, EMPTY);
+		if (isTraceEnabled()) {
+			trace(message, EMPTY);
+		}
 	}
 
 	@Override
 	public void trace(String format, Object arg) {
-		trace(format, new Object[] {arg});
+		if (isTraceEnabled()) {
+			trace(format, new Object[] {arg});
+		}
 	}
 
 	@Override
 	public void trace(String format, Object arg1, Object arg2) {
-		trace(format, new Object[] {arg1, arg2});
+		if (isTraceEnabled()) {
+			trace(format, new Object[] {arg1, arg2});
+		}
 	}
 
 	@Override
@@ -137,17 +145,23 @@ public class LoggerImpl implements Logger {
 
 	@Override
 	public void debug(String message) {
-		debug(message, EMPTY);
+		if (isDebugEnabled()) {
+			debug(message, EMPTY);
+		}
 	}
 
 	@Override
 	public void debug(String format, Object arg) {
-		debug(format, new Object[] {arg});
+		if (isDebugEnabled()) {
+			debug(format, new Object[] {arg});
+		}
 	}
 
 	@Override
 	public void debug(String format, Object arg1, Object arg2) {
-		debug(format, new Object[] {arg1, arg2});
+		if (isDebugEnabled()) {
+			debug(format, new Object[] {arg1, arg2});
+		}
 	}
 
 	@Override
@@ -162,17 +176,23 @@ public class LoggerImpl implements Logger {
 
 	@Override
 	public void info(String message) {
-		info(message, EMPTY);
+		if (isInfoEnabled()) {
+			info(message, EMPTY);
+		}
 	}
 
 	@Override
 	public void info(String format, Object arg) {
-		info(format, new Object[] {arg});
+		if (isInfoEnabled()) {
+			info(format, new Object[] {arg});
+		}
 	}
 
 	@Override
 	public void info(String format, Object arg1, Object arg2) {
-		info(format, new Object[] {arg1, arg2});
+		if (isInfoEnabled()) {
+			info(format, new Object[] {arg1, arg2});
+		}
 	}
 
 	@Override
@@ -187,17 +207,23 @@ public class LoggerImpl implements Logger {
 
 	@Override
 	public void warn(String message) {
-		warn(message, EMPTY);
+		if (isWarnEnabled()) {
+			warn(message, EMPTY);
+		}
 	}
 
 	@Override
 	public void warn(String format, Object arg) {
-		warn(format, new Object[] {arg});
+		if (isWarnEnabled()) {
+			warn(format, new Object[] {arg});
+		}
 	}
 
 	@Override
 	public void warn(String format, Object arg1, Object arg2) {
-		warn(format, new Object[] {arg1, arg2});
+		if (isWarnEnabled()) {
+			warn(format, new Object[] {arg1, arg2});
+		}
 	}
 
 	@Override
@@ -212,17 +238,23 @@ public class LoggerImpl implements Logger {
 
 	@Override
 	public void error(String message) {
-		error(message, EMPTY);
+		if (isErrorEnabled()) {
+			error(message, EMPTY);
+		}
 	}
 
 	@Override
 	public void error(String format, Object arg) {
-		error(format, new Object[] {arg});
+		if (isErrorEnabled()) {
+			error(format, new Object[] {arg});
+		}
 	}
 
 	@Override
 	public void error(String format, Object arg1, Object arg2) {
-		error(format, new Object[] {arg1, arg2});
+		if (isErrorEnabled()) {
+			error(format, new Object[] {arg1, arg2});
+		}
 	}
 
 	@Override
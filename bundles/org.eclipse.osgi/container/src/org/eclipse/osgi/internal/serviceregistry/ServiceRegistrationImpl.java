@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2017 IBM Corporation and others.
+ * Copyright (c) 2003, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -63,17 +63,18 @@ public class ServiceRegistrationImpl<S> implements ServiceRegistration<S>, Compa
 	/* @GuardedBy("registrationLock") */
 	private final List<BundleContextImpl> contextsUsing;
 
-	/** properties for this registration. */
-	/* @GuardedBy("registrationLock") */
-	private Map<String, Object> properties;
+	/** properties and service ranking for this registration.
+	 * An immutable snapshot which is replaced, never modified, when the
+	 * properties are set. Written while holding registrationLock but
+	 * read without holding it. Keeping the ranking in the same snapshot
+	 * means a reader never sees the ranking of one set of properties
+	 * together with another set of properties.
+	 */
+	private volatile PropertiesSnapshot properties;
 
 	/** service id. */
 	private final long serviceid;
 
-	/** service ranking. */
-	/* @GuardedBy("registrationLock") */
-	private int serviceranking;
-
 	/* internal object to use for synchronization */
 	private final Object registrationLock = new Object();
 
@@ -163,7 +164,7 @@ public class ServiceRegistrationImpl<S> implements ServiceRegistration<S>, Compa
 				}
 
 				ref = reference; /* used to publish event outside sync */
-				previousProperties = this.properties;
+				previousProperties = this.properties.map;
 				this.properties = createProperties(props);
 			}
 			registry.modifyServiceRegistration(context, this);
@@ -313,10 +314,10 @@ public class ServiceRegistrationImpl<S> implements ServiceRegistration<S>, Compa
 	 * ServiceRegistration.
 	 *
 	 * @param p The properties for this service.
-	 * @return A Properties object for this ServiceRegistration.
+	 * @return A properties snapshot for this ServiceRegistration.
 	 */
 	/* @GuardedBy("registrationLock") */
-	private Map<String, Object> createProperties(Dictionary<String, ?> p) {
+	private PropertiesSnapshot createProperties(Dictionary<String, ?> p) {
 		assert Thread.holdsLock(registrationLock);
 		ServiceProperties props = new ServiceProperties(p, FRAMEWORK_SET_SERVICE_PROPERTIES_COUNT);
 
@@ -336,6 +337,7 @@ public class ServiceRegistrationImpl<S> implements ServiceRegistration<S>, Compa
 		props.put(Constants.SERVICE_SCOPE, scope);
 
 		Object ranking = props.get(Constants.SERVICE_RANKING);
+		final int serviceranking;
 		if (ranking instanceof Integer) {
 			serviceranking = ((Integer) ranking).intValue();
 		} else {
@@ -345,17 +347,17 @@ public class ServiceRegistrationImpl<S> implements ServiceRegistration<S>, Compa
 			}
 		}
 
-		return props.asUnmodifiableMap();
+		return new PropertiesSnapshot(props.asUnmodifiableMap(), serviceranking);
 	}
 
 	/**
 	 * Return the properties object. This is for framework internal use only.
+	 * The returned properties are an immutable snapshot which can be used
+	 * without holding any lock, for example to match a filter.
 	 * @return The service registration's properties.
 	 */
 	public Map<String, Object> getProperties() {
-		synchronized (registrationLock) {
-			return properties;
-		}
+		return properties.map;
 	}
 
 	/**
@@ -371,9 +373,7 @@ public class ServiceRegistrationImpl<S> implements ServiceRegistration<S>, Compa
 	 * no property by that name.
 	 */
 	Object getProperty(String key) {
-		synchronized (registrationLock) {
-			return ServiceProperties.cloneValue(properties.get(key));
-		}
+		return ServiceProperties.cloneValue(properties.map.get(key));
 	}
 
 	/**
@@ -387,9 +387,7 @@ public class ServiceRegistrationImpl<S> implements ServiceRegistration<S>, Compa
 	 * @return The list of property key names.
 	 */
 	String[] getPropertyKeys() {
-		synchronized (registrationLock) {
-			return properties.keySet().toArray(new String[0]);
-		}
+		return properties.map.keySet().toArray(new String[0]);
 	}
 
 	/**
@@ -403,9 +401,7 @@ public class ServiceRegistrationImpl<S> implements ServiceRegistration<S>, Compa
 	 * @return A copy of the properties.
 	 */
 	Dictionary<String, Object> getPropertiesCopy() {
-		synchronized (registrationLock) {
-			return new ServiceProperties(properties);
-		}
+		return new ServiceProperties(properties.map);
 	}
 
 	/**
@@ -421,9 +417,7 @@ public class ServiceRegistrationImpl<S> implements ServiceRegistration<S>, Compa
 	 * @return The service ranking for this service.
 	 */
 	int getRanking() {
-		synchronized (registrationLock) {
-			return serviceranking;
-		}
+		return properties.ranking;
 	}
 
 	String[] getClasses() {
@@ -748,4 +742,18 @@ public class ServiceRegistrationImpl<S> implements ServiceRegistration<S>, Compa
 		}
 		return 1;
 	}
+
+	/**
+	 * The properties of a registration together with the service ranking
+	 * taken from them. Published by a single volatile write.
+	 */
+	private static final class PropertiesSnapshot {
+		final Map<String, Object> map;
+		final int ranking;
+
+		PropertiesSnapshot(Map<String, Object> map, int ranking) {
+			this.map = map;
+			this.ranking = ranking;
+		}
+	}
 }
@@ -28,6 +28,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.eclipse.osgi.container.Module;
 import org.eclipse.osgi.container.ModuleRevision;
 import org.eclipse.osgi.framework.eventmgr.CopyOnWriteIdentityMap;
@@ -97,6 +99,16 @@ public class ServiceRegistry {
 	/* @GuardedBy("this") */
 	private final Map<BundleContextImpl, List<ServiceRegistrationImpl<?>>> publishedServicesByContext;
 
+	/** Sorted snapshots of the hook registrations by hook class name.
+	 * The arrays are never modified.  An entry is removed each time a registration
+	 * for its class name is added, modified or removed and is recomputed
+	 * on the next call to the hooks of that class name.
+	 * Entries are only added or removed while holding this lock;
+	 * the map may be read without holding a lock.
+	 */
+	private final ConcurrentMap<String, ServiceRegistrationImpl<?>[]> hookRegistrations;
+	private static final ServiceRegistrationImpl<?>[] NO_HOOKS = new ServiceRegistrationImpl<?>[0];
+
 	/** next free service id. */
 	/* @GuardedBy("this") */
 	private long serviceid;
@@ -128,6 +140,7 @@ public class ServiceRegistry {
 		publishedServicesByContext = new HashMap<>(initialCapacity);
 		allPublishedServices = new ArrayList<>(initialCapacity);
 		serviceEventListeners = new LinkedHashMap<>(initialCapacity);
+		hookRegistrations = new ConcurrentHashMap<>(initialSubCapacity);
 		Module systemModule = container.getStorage().getModuleContainer().getModule(0);
 		systemBundleContext = (BundleContextImpl) systemModule.getBundle().getBundleContext();
 		systemBundleContext.provisionServicesInUseMap();
@@ -360,14 +373,16 @@ public class ServiceRegistry {
 			references.add(reference);
 		}
 
-		Collection<ServiceReferenceImpl<?>> copyReferences = references;
-		if (context.getBundleImpl().getBundleId() == 0) {
-			// Make a copy for the purposes of calling the hooks;
-			// The the removals from the hooks are ignored for the system bundle
-			copyReferences = new ArrayList<>(references);
+		if (hasHooks(findHookName)) {
+			Collection<ServiceReferenceImpl<?>> copyReferences = references;
+			if (context.getBundleImpl().getBundleId() == 0) {
+				// Make a copy for the purposes of calling the hooks;
+				// The the removals from the hooks are ignored for the system bundle
+				copyReferences = new ArrayList<>(references);
+			}
+			Collection<ServiceReference<?>> shrinkable = new ShrinkableCollection<ServiceReference<?>>(copyReferences);
+			notifyFindHooks(context, clazz, filterstring, allservices, shrinkable);
 		}
-		Collection<ServiceReference<?>> shrinkable = new ShrinkableCollection<ServiceReference<?>>(copyReferences);
-		notifyFindHooks(context, clazz, filterstring, allservices, shrinkable);
 
 		int size = references.size();
 		if (size == 0) {
@@ -868,9 +883,11 @@ public class ServiceRegistry {
 		 * removals from that collection will result in removals of the
 		 * entry from the snapshot.
 		 */
-		Collection<BundleContext> contexts = asBundleContexts(listenerSnapshot.keySet());
-		notifyEventHooksPrivileged(event, contexts);
-		if (!listenerSnapshot.isEmpty()) {
+		if (hasHooks(eventHookName)) {
+			Collection<BundleContext> contexts = asBundleContexts(listenerSnapshot.keySet());
+			notifyEventHooksPrivileged(event, contexts);
+		}
+		if (!listenerSnapshot.isEmpty() && hasHooks(eventListenerHookName)) {
 			Map<BundleContext, Collection<ListenerInfo>> listeners = new ShrinkableValueCollectionMap<BundleContext, ListenerInfo>(listenerSnapshot);
 			notifyEventListenerHooksPrivileged(event, listeners);
 		}
@@ -955,6 +972,7 @@ public class ServiceRegistry {
 		// The list is sorted, so we must find the proper location to insert
 		insertIndex = -Collections.binarySearch(allPublishedServices, registration) - 1;
 		allPublishedServices.add(insertIndex, registration);
+		invalidateHookRegistrations(registration);
 	}
 
 	/**
@@ -986,6 +1004,7 @@ public class ServiceRegistry {
 		// The list is sorted, so we must find the proper location to insert
 		insertIndex = -Collections.binarySearch(allPublishedServices, registration) - 1;
 		allPublishedServices.add(insertIndex, registration);
+		invalidateHookRegistrations(registration);
 	}
 
 	/**
@@ -1014,6 +1033,57 @@ public class ServiceRegistry {
 
 		// Remove the ServiceRegistrationImpl from the list of all published Services.
 		allPublishedServices.remove(registration);
+		invalidateHookRegistrations(registration);
+	}
+
+	/**
+	 * Discard the hook snapshots for the class names of a registration.
+	 * 
+	 * @param registration The ServiceRegistration which was added, modified or removed.
+	 */
+	/* @GuardedBy("this") */
+	private void invalidateHookRegistrations(ServiceRegistrationImpl<?> registration) {
+		assert Thread.holdsLock(this);
+		if (hookRegistrations.isEmpty()) {
+			return;
+		}
+		for (String clazz : registration.getClasses()) {
+			hookRegistrations.remove(clazz);
+		}
+	}
+
+	/**
+	 * Lookup the hook registrations for a hook class name.  The returned
+	 * array is sorted in the natural order of ServiceRegistrationImpl and
+	 * must not be modified.
+	 * 
+	 * @param hookName The class name of the hook.
+	 * @return The registrations of the hook class name.
+	 */
+	private ServiceRegistrationImpl<?>[] lookupHookRegistrations(String hookName) {
+		ServiceRegistrationImpl<?>[] hooks = hookRegistrations.get(hookName);
+		if (hooks != null) {
+			return hooks;
+		}
+		synchronized (this) {
+			hooks = hookRegistrations.get(hookName);
+			if (hooks == null) {
+				List<ServiceRegistrationImpl<?>> services = publishedServicesByClass.get(hookName);
+				hooks = (services == null || services.isEmpty()) ? NO_HOOKS : services.toArray(new ServiceRegistrationImpl<?>[services.size()]);
+				hookRegistrations.put(hookName, hooks);
+			}
+			return hooks;
+		}
+	}
+
+	/**
+	 * Returns true if any hook services of the specified class name are registered.
+	 * 
+	 * @param hookName The class name of the hook.
+	 * @return true if any hook services are registered.
+	 */
+	boolean hasHooks(String hookName) {
+		return lookupHookRegistrations(hookName).length != 0;
 	}
 
 	/**
@@ -1315,8 +1385,8 @@ public class ServiceRegistry {
 	 * @param hookContext Context to use when calling the hook services.
 	 */
 	public void notifyHooksPrivileged(HookContext hookContext) {
-		List<ServiceRegistrationImpl<?>> hooks = lookupServiceRegistrations(hookContext.getHookClassName(), null);
-		// Since the list is already sorted, we don't need to sort the list to call the hooks
+		ServiceRegistrationImpl<?>[] hooks = lookupHookRegistrations(hookContext.getHookClassName());
+		// Since the array is already sorted, we don't need to sort the array to call the hooks
 		// in the proper order.
 
 		for (ServiceRegistrationImpl<?> registration : hooks) {
@@ -1428,6 +1498,9 @@ public class ServiceRegistry {
 	 * if they are being removed.
 	 */
 	private void notifyListenerHooks(final Collection<ListenerInfo> listeners, final boolean added) {
+		if (!hasHooks(listenerHookName)) {
+			return;
+		}
 		if (System.getSecurityManager() == null) {
 			notifyListenerHooksPrivileged(listeners, added);
 		} else {
@@ -18,6 +18,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.lang.ref.SoftReference;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.security.ProtectionDomain;
@@ -25,6 +26,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -39,6 +41,7 @@ import org.eclipse.osgi.framework.log.FrameworkLogEntry;
 import org.eclipse.osgi.framework.util.CaseInsensitiveDictionaryMap;
 import org.eclipse.osgi.framework.util.ThreadInfoReport;
 import org.eclipse.osgi.internal.container.LockSet;
+import org.eclipse.osgi.internal.container.ParsedManifest;
 import org.eclipse.osgi.internal.debug.Debug;
 import org.eclipse.osgi.internal.framework.EquinoxConfiguration;
 import org.eclipse.osgi.internal.framework.EquinoxContainer;
@@ -78,6 +81,8 @@ public final class BundleInfo {
 		private List<StorageHook<?, ?>> storageHooks;
 		private long lastModified;
 		private boolean isMRJar;
+		// parsed headers are only needed while the revision is built; let the GC reclaim them
+		private SoftReference<Map<String, ManifestElement[]>> manifestElements;
 
 		Generation(long generationId) {
 			this.generationId = generationId;
@@ -166,6 +171,22 @@ public final class BundleInfo {
 			}
 		}
 
+		ManifestElement[] getManifestElements(String header) throws BundleException {
+			synchronized (genMonitor) {
+				Map<String, ManifestElement[]> parsed = manifestElements == null ? null : manifestElements.get();
+				if (parsed == null) {
+					parsed = new HashMap<>();
+					manifestElements = new SoftReference<>(parsed);
+				} else if (parsed.containsKey(header)) {
+					return parsed.get(header);
+				}
+				// invalid values are not cached; they fail each time they are parsed
+				ManifestElement[] elements = ManifestElement.parseHeader(header, getHeaders().get(header));
+				parsed.put(header, elements);
+				return elements;
+			}
+		}
+
 		public Dictionary<String, String> getHeaders(String locale) {
 			ManifestLocalization current = getManifestLocalization();
 			return current.getHeaders(locale);
@@ -574,7 +595,7 @@ public final class BundleInfo {
 		return false;
 	}
 
-	static class CachedManifest extends Dictionary<String, String> implements Map<String, String> {
+	static class CachedManifest extends Dictionary<String, String> implements Map<String, String>, ParsedManifest {
 		private final Map<String, String> cached;
 		private final Generation generation;
 
@@ -599,6 +620,11 @@ public final class BundleInfo {
 			return generation.getRawHeaders().get(key);
 		}
 
+		@Override
+		public ManifestElement[] getManifestElements(String header) throws BundleException {
+			return generation.getManifestElements(header);
+		}
+
 		@Override
 		public boolean isEmpty() {
 			return generation.getRawHeaders().isEmpty();
@@ -67,6 +67,7 @@ import org.eclipse.osgi.framework.util.FilePath;
 import org.eclipse.osgi.framework.util.ObjectPool;
 import org.eclipse.osgi.framework.util.SecureAction;
 import org.eclipse.osgi.internal.debug.Debug;
+import org.eclipse.osgi.internal.debug.StartupProfiler;
 import org.eclipse.osgi.internal.framework.EquinoxConfiguration;
 import org.eclipse.osgi.internal.framework.EquinoxContainer;
 import org.eclipse.osgi.internal.framework.EquinoxContainerAdaptor;
@@ -239,6 +240,7 @@ public class Storage {
 			container.getConfiguration().setConfiguration(Constants.FRAMEWORK_STORAGE, childRoot.getParentFile().getAbsolutePath());
 		}
 
+		long begin = container.getStartupProfiler().begin();
 		InputStream info = getInfoInputStream();
 		DataInputStream data = info == null ? null : new DataInputStream(new BufferedInputStream(info));
 		try {
@@ -277,6 +279,7 @@ public class Storage {
 					// just move on
 				}
 			}
+			container.getStartupProfiler().end(StartupProfiler.CATEGORY_STORAGE, "load", begin); //$NON-NLS-1$
 		}
 	}
 
@@ -651,6 +654,16 @@ public class Storage {
 	}
 
 	public Generation install(Module origin, String bundleLocation, URLConnection content) throws BundleException {
+		StartupProfiler profiler = equinoxContainer.getStartupProfiler();
+		long begin = profiler.begin();
+		try {
+			return install0(origin, bundleLocation, content);
+		} finally {
+			profiler.end(StartupProfiler.CATEGORY_INSTALL, bundleLocation, begin);
+		}
+	}
+
+	private Generation install0(Module origin, String bundleLocation, URLConnection content) throws BundleException {
 		if (osgiLocation.isReadOnly()) {
 			throw new BundleException("The framework storage area is read only.", BundleException.INVALID_OPERATION); //$NON-NLS-1$
 		}
@@ -1272,14 +1285,20 @@ public class Storage {
 			synchronized (this.saveMonitor) {
 				if (lastSavedTimestamp == moduleDatabase.getTimestamp())
 					return;
-				childStorageManager = getChildStorageManager();
-				mos = childStorageManager.getOutputStream(FRAMEWORK_INFO);
-				out = new DataOutputStream(new BufferedOutputStream(mos));
-				saveGenerations(out);
-				savePermissionData(out);
-				moduleDatabase.store(out, true);
-				lastSavedTimestamp = moduleDatabase.getTimestamp();
-				success = true;
+				StartupProfiler profiler = equinoxContainer.getStartupProfiler();
+				long begin = profiler.begin();
+				try {
+					childStorageManager = getChildStorageManager();
+					mos = childStorageManager.getOutputStream(FRAMEWORK_INFO);
+					out = new DataOutputStream(new BufferedOutputStream(mos));
+					saveGenerations(out);
+					savePermissionData(out);
+					moduleDatabase.store(out, true);
+					lastSavedTimestamp = moduleDatabase.getTimestamp();
+					success = true;
+				} finally {
+					profiler.end(StartupProfiler.CATEGORY_STORAGE, "save", begin); //$NON-NLS-1$
+				}
 			}
 		} finally {
 			if (!success) {
@@ -90,6 +90,11 @@ public class ResolverImpl implements Resolver
         private final Set<Requirement> m_mutated = new HashSet<Requirement>();
         private final Set<Requirement> m_sub_mutated = new HashSet<Requirement>();
         private final ConcurrentMap<String, List<String>> m_usesCache = new ConcurrentHashMap<String, List<String>>();
+        // Holds the wire candidates and package spaces calculated for the last
+        // permutation; package spaces that do not depend on a changed wire
+        // candidate are reused by the next permutation.
+        private Map<Resource, List<WireCandidate>> m_lastWireCandidates = Collections.emptyMap();
+        private Map<Resource, Packages> m_lastPackages = Collections.emptyMap();
         private ResolutionError m_currentError;
         volatile private CancellationException m_isCancelled = null;
 
@@ -140,6 +145,19 @@ public class ResolverImpl implements Resolver
             return m_usesCache;
         }
 
+        Map<Resource, List<WireCandidate>> getLastWireCandidates() {
+            return m_lastWireCandidates;
+        }
+
+        Map<Resource, Packages> getLastPackages() {
+            return m_lastPackages;
+        }
+
+        void setLastPackageSpaces(Map<Resource, List<WireCandidate>> wireCandidates, Map<Resource, Packages> packages) {
+            m_lastWireCandidates = wireCandidates;
+            m_lastPackages = packages;
+        }
+
         void permutateIfNeeded(PermutationType type, Requirement req, Candidates permutation) {
             List<Capability> candidates = permutation.getCandidates(req);
             if ((candidates != null) && (candidates.size() > 1))
@@ -233,6 +251,8 @@ public class ResolverImpl implements Resolver
             m_multipleCardCandidates = null;
             m_processedDeltas.clear();
             m_currentError = null;
+            m_lastWireCandidates = Collections.emptyMap();
+            m_lastPackages = Collections.emptyMap();
         }
 
         boolean checkMultiple(
@@ -1162,10 +1182,22 @@ public class ResolverImpl implements Resolver
             executor.await();
         }
 
+        // Find the package spaces which must be calculated again.  The package
+        // space of a resource only depends on its own wire candidates and the
+        // package spaces of the resources providing its wire candidates, so the
+        // package spaces of the last permutation are reused for resources that
+        // do not depend on a changed wire candidate, directly or indirectly.
+        final Set<Resource> changed = getChangedResources(session, allWireCandidates);
+
         // Parallel get all exported packages
         final OpenHashMap<Resource, Packages> allPackages = new OpenHashMap<Resource, Packages>(allCandidates.getNbResources());
         for (final Resource resource : allWireCandidates.keySet())
         {
+            if (!changed.contains(resource))
+            {
+                allPackages.put(resource, session.getLastPackages().get(resource));
+                continue;
+            }
             final Packages packages = new Packages(resource);
             allPackages.put(resource, packages);
             executor.execute(new Runnable()
@@ -1180,7 +1212,7 @@ public class ResolverImpl implements Resolver
         executor.await();
 
         // Parallel compute package lists
-        for (final Resource resource : allWireCandidates.keySet())
+        for (final Resource resource : changed)
         {
             executor.execute(new Runnable()
             {
@@ -1196,10 +1228,9 @@ public class ResolverImpl implements Resolver
         // First, sequentially compute packages for resources
         // that have required packages, so that all recursive
         // calls can be done without threading problems
-        for (Map.Entry<Resource, Packages> entry : allPackages.fast())
+        for (final Resource resource : changed)
         {
-            final Resource resource = entry.getKey();
-            final Packages packages = entry.getValue();
+            final Packages packages = allPackages.get(resource);
             if (!packages.m_requiredPkgs.isEmpty())
             {
                 getPackageSourcesInternal(session, allPackages, resource, packages);
@@ -1207,10 +1238,9 @@ public class ResolverImpl implements Resolver
         }
         // Next, for all remaining resources, we can compute them
         // in parallel, as they won't refer to other resource packages
-        for (Map.Entry<Resource, Packages> entry : allPackages.fast())
+        for (final Resource resource : changed)
         {
-            final Resource resource = entry.getKey();
-            final Packages packages = entry.getValue();
+            final Packages packages = allPackages.get(resource);
             if (packages.m_sources.isEmpty())
             {
                 executor.execute(new Runnable()
@@ -1225,7 +1255,7 @@ public class ResolverImpl implements Resolver
         executor.await();
 
         // Parallel compute uses
-        for (final Resource resource : allWireCandidates.keySet())
+        for (final Resource resource : changed)
         {
             executor.execute(new Runnable()
             {
@@ -1237,9 +1267,58 @@ public class ResolverImpl implements Resolver
         }
         executor.await();
 
+        session.setLastPackageSpaces(allWireCandidates, allPackages);
         return allPackages;
     }
 
+    private static Set<Resource> getChangedResources(
+            ResolveSession session,
+            Map<Resource, List<WireCandidate>> allWireCandidates)
+    {
+        Map<Resource, List<WireCandidate>> lastWireCandidates = session.getLastWireCandidates();
+        Map<Resource, Packages> lastPackages = session.getLastPackages();
+        Map<Resource, List<Resource>> dependents = new HashMap<Resource, List<Resource>>(allWireCandidates.size());
+        Set<Resource> changed = new LinkedHashSet<Resource>();
+        LinkedList<Resource> toVisit = new LinkedList<Resource>();
+        for (Map.Entry<Resource, List<WireCandidate>> entry : allWireCandidates.entrySet())
+        {
+            Resource resource = entry.getKey();
+            for (WireCandidate w : entry.getValue())
+            {
+                Resource provider = w.capability.getResource();
+                List<Resource> providerDependents = dependents.get(provider);
+                if (providerDependents == null)
+                {
+                    providerDependents = new ArrayList<Resource>();
+                    dependents.put(provider, providerDependents);
+                }
+                providerDependents.add(resource);
+            }
+            if (!lastPackages.containsKey(resource)
+                || !entry.getValue().equals(lastWireCandidates.get(resource)))
+            {
+                changed.add(resource);
+                toVisit.add(resource);
+            }
+        }
+        // Everything that depends on a changed resource must be calculated again
+        while (!toVisit.isEmpty())
+        {
+            List<Resource> resourceDependents = dependents.get(toVisit.removeFirst());
+            if (resourceDependents != null)
+            {
+                for (Resource dependent : resourceDependents)
+                {
+                    if (changed.add(dependent))
+                    {
+                        toVisit.add(dependent);
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
     private static List<String> parseUses(String s) {
         int nb = 1;
         int l = s.length();
@@ -2089,6 +2168,27 @@ public class ResolverImpl implements Resolver
             this.requirement = requirement;
             this.capability = capability;
         }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (!(o instanceof WireCandidate))
+            {
+                return false;
+            }
+            WireCandidate other = (WireCandidate) o;
+            return requirement.equals(other.requirement) && capability.equals(other.capability);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * requirement.hashCode() + capability.hashCode();
+        }
     }
 
     public static class Packages
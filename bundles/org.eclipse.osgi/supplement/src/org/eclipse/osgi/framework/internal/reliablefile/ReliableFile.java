@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2017 IBM Corporation and others.
+ * Copyright (c) 2003, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -17,6 +17,7 @@ package org.eclipse.osgi.framework.internal.reliablefile;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.zip.Adler32;
 import java.util.zip.CRC32;
 import java.util.zip.Checksum;
 
@@ -77,18 +78,35 @@ public class ReliableFile {
 	 * @see org.eclipse.osgi.internal.location.LocationHelper#PROP_OSGI_LOCKING
 	 */
 	public static final String PROP_OSGI_LOCKING = "osgi.locking"; //$NON-NLS-1$
+	/**
+	 * Property to set the checksum used to sign new ReliableFile contents. The value <code>crc32</code>
+	 * is the default. The value <code>adler32</code> uses a checksum that is faster to calculate. Files 
+	 * signed with either checksum are verified regardless of this property.
+	 * <p>
+	 * Adler32 is only used when this property is explicitly set to <code>adler32</code>. Versions of 
+	 * ReliableFile which do not support it do not recognize the signature of such files; they read 
+	 * them as files without a signature and return the signature as part of the contents. The property
+	 * must therefore not be set for a configuration which may still be opened by an older version.
+	 * Going back to an older version requires the files to be written again without this property.
+	 * </p>
+	 */
+	public static final String PROP_CHECKSUM = "osgi.reliableFile.checksum"; //$NON-NLS-1$
 
 	private static final int FILETYPE_VALID = 0;
 	private static final int FILETYPE_CORRUPT = 1;
 	private static final int FILETYPE_NOSIGNATURE = 2;
+	// signed with the checksum not used to verify the file
+	private static final int FILETYPE_OTHER_CHECKSUM = 3;
 
 	private static final byte identifier1[] = {'.', 'c', 'r', 'c'};
+	private static final byte identifier1Adler32[] = {'.', 'a', 'd', 'l'};
 	private static final byte identifier2[] = {'.', 'v', '1', '\n'};
 
 	private static final int BUF_SIZE = 4096;
 	private static final int maxInputStreamBuffer;
 	private static final int defaultMaxGenerations;
 	private static final boolean fileSharing;
+	private static final boolean useAdler32;
 	//our cache of the last looked up generations for a file
 	private static File lastGenerationFile = null;
 	private static int[] lastGenerations = null;
@@ -123,6 +141,8 @@ public class ReliableFile {
 			}
 		}
 		fileSharing = tmpFileSharing;
+
+		useAdler32 = "adler32".equalsIgnoreCase(System.getProperty(PROP_CHECKSUM)); //$NON-NLS-1$
 	}
 
 	/** File object for original reference file */
@@ -279,6 +299,15 @@ public class ReliableFile {
 						}
 						Checksum cksum = getChecksumCalculator();
 						int filetype = getStreamType(tempIS, cksum, fileSize);
+						if (filetype == FILETYPE_OTHER_CHECKSUM) {
+							// the file was signed with the other checksum; verify it again with that one
+							cksum = getChecksumCalculator(!(cksum instanceof Adler32));
+							try (InputStream otherIS = new FileInputStream(file)) {
+								filetype = getStreamType(otherIS, cksum, fileSize);
+							}
+							if (filetype == FILETYPE_OTHER_CHECKSUM)
+								filetype = FILETYPE_CORRUPT;
+						}
 						info = new CacheInfo(filetype, cksum, timeStamp, fileSize);
 						cacheFiles.put(file, info);
 					} catch (IOException e) {/*ignore*/
@@ -703,7 +732,7 @@ public class ReliableFile {
 	 */
 	void writeChecksumSignature(OutputStream out, Checksum checksum) throws IOException {
 		// tag on our signature and checksum
-		out.write(ReliableFile.identifier1);
+		out.write(checksum instanceof Adler32 ? ReliableFile.identifier1Adler32 : ReliableFile.identifier1);
 		out.write(intToHex((int) checksum.getValue()));
 		out.write(ReliableFile.identifier2);
 	}
@@ -766,8 +795,11 @@ public class ReliableFile {
 	 * a reliable file checksum
 	 */
 	Checksum getChecksumCalculator() {
-		// Using CRC32 because Adler32 isn't in the eeMinimum library.
-		return new CRC32();
+		return getChecksumCalculator(useAdler32);
+	}
+
+	private static Checksum getChecksumCalculator(boolean adler32) {
+		return adler32 ? new Adler32() : new CRC32();
 	}
 
 	/**
@@ -815,16 +847,23 @@ public class ReliableFile {
 			}
 
 			int i, j;
-			for (i = 0; i < 4; i++)
-				if (identifier1[i] != data[i]) {
-					crc.update(data, 0, 16); // update crc w/ sig bytes
-					return FILETYPE_NOSIGNATURE;
-				}
 			for (i = 0, j = 12; i < 4; i++, j++)
 				if (identifier2[i] != data[j]) {
 					crc.update(data, 0, 16); // update crc w/ sig bytes
 					return FILETYPE_NOSIGNATURE;
 				}
+			boolean adler32 = crc instanceof Adler32;
+			byte[] expected = adler32 ? identifier1Adler32 : identifier1;
+			for (i = 0; i < 4; i++)
+				if (expected[i] != data[i]) {
+					byte[] other = adler32 ? identifier1 : identifier1Adler32;
+					for (i = 0; i < 4; i++)
+						if (other[i] != data[i]) {
+							crc.update(data, 0, 16); // update crc w/ sig bytes
+							return FILETYPE_NOSIGNATURE;
+						}
+					return FILETYPE_OTHER_CHECKSUM;
+				}
 			long crccmp = Long.valueOf(new String(data, 4, 8, StandardCharsets.UTF_8), 16).longValue();
 			if (crccmp == crc.getValue()) {
 				return FILETYPE_VALID;
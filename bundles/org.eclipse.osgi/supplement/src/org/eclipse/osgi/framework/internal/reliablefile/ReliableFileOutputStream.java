@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2006 IBM Corporation and others.
+ * Copyright (c) 2003, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -38,6 +38,8 @@ public class ReliableFileOutputStream extends FilterOutputStream {
 
 	private boolean outputOpen = false;
 
+	private boolean signatureWritten = false;
+
 	/**
 	 * Constructs a new ReliableFileOutputStream on the File <code>file</code>.  If the
 	 * file exists, it is written over.  See the constructor which can append to
@@ -125,12 +127,8 @@ public class ReliableFileOutputStream extends FilterOutputStream {
 	}
 
 	public File closeIntermediateFile() throws IOException {
-		if (reliable == null)
-			throw new IOException("ReliableFile stream not open"); //$NON-NLS-1$
+		flushIntermediateFile();
 		if (outputOpen) {
-			// tag on our signature and checksum
-			reliable.writeChecksumSignature(out, crc);
-			out.flush();
 			try {
 				((FileOutputStream) out).getFD().sync();
 			} catch (IOException e) {
@@ -144,6 +142,25 @@ public class ReliableFileOutputStream extends FilterOutputStream {
 		return reliable.getOutputFile();
 	}
 
+	/**
+	 * Completes the contents of the intermediate file without syncing or closing it.
+	 * This allows the intermediate files of several streams to be synced together 
+	 * by calling {@link #closeIntermediateFile()} after all of them are complete.
+	 * No more data may be written to this stream after calling this method.
+	 *
+	 * @exception 	java.io.IOException If an error occurs writing the file.
+	 */
+	public void flushIntermediateFile() throws IOException {
+		if (reliable == null)
+			throw new IOException("ReliableFile stream not open"); //$NON-NLS-1$
+		if (outputOpen && !signatureWritten) {
+			// tag on our signature and checksum
+			reliable.writeChecksumSignature(out, crc);
+			out.flush();
+			signatureWritten = true;
+		}
+	}
+
 	/**
 	 * Override default FilterOutputStream method.
 	 * @see FilterOutputStream#write(byte[])
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2004, 2014 IBM Corporation and others.
+ * Copyright (c) 2004, 2019 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -861,12 +861,10 @@ public final class StorageManager {
 					ReliableFileOutputStream rfos = (ReliableFileOutputStream) out.getOutputStream();
 					rfos.abort();
 				} else {
-					// plain FileOutputStream();
-					if (out.getState() == ManagedOutputStream.ST_OPEN) {
-						try {
-							out.getOutputStream().close();
-						} catch (IOException e) {/*do nothing*/
-						}
+					// plain FileOutputStream(); streams in a set stay open until the whole set is closed
+					try {
+						out.getOutputStream().close();
+					} catch (IOException e) {/*do nothing*/
 					}
 					out.getOutputFile().delete();
 				}
@@ -889,32 +887,34 @@ public final class StorageManager {
 		if (smos.getState() != ManagedOutputStream.ST_OPEN)
 			return;
 		ManagedOutputStream[] streamSet = smos.getStreamSet();
+		// the files of a set are synced together once all streams in the set are closed
 		if (smos.getOutputFile() == null) {
 			// this is a ReliableFileOutputStream
 			ReliableFileOutputStream rfos = (ReliableFileOutputStream) smos.getOutputStream();
-			// manage file deletes
-			File file = rfos.closeIntermediateFile();
-			smos.setState(ManagedOutputStream.ST_CLOSED);
-			String target = smos.getTarget();
 			if (streamSet == null) {
+				// manage file deletes
+				File file = rfos.closeIntermediateFile();
+				smos.setState(ManagedOutputStream.ST_CLOSED);
+				String target = smos.getTarget();
 				add(target, StorageManager.FILETYPE_RELIABLEFILE);
 				update(new String[] {smos.getTarget()}, new String[] {file.getName()});
 				ReliableFile.fileUpdated(new File(getBase(), smos.getTarget()));
+			} else {
+				rfos.flushIntermediateFile();
+				smos.setState(ManagedOutputStream.ST_CLOSED);
 			}
 		} else {
 			// this is a plain old file output steam
 			OutputStream out = smos.getOutputStream();
 			out.flush();
-			try {
-				((FileOutputStream) out).getFD().sync();
-			} catch (SyncFailedException e) {/*ignore*/
-			}
-			out.close();
-			smos.setState(ManagedOutputStream.ST_CLOSED);
-			String target = smos.getTarget();
 			if (streamSet == null) {
+				syncAndClose(out);
+				smos.setState(ManagedOutputStream.ST_CLOSED);
+				String target = smos.getTarget();
 				add(target, StorageManager.FILETYPE_STANDARD);
 				update(new String[] {target}, new String[] {smos.getOutputFile().getName()});
+			} else {
+				smos.setState(ManagedOutputStream.ST_CLOSED);
 			}
 		}
 
@@ -926,7 +926,15 @@ public final class StorageManager {
 						return; //done
 					}
 				}
-				//all streams are closed, we need to update storage manager
+				//all streams are closed, sync the content of the set before it is updated
+				for (ManagedOutputStream stream : streamSet) {
+					if (stream.getOutputFile() == null) {
+						((ReliableFileOutputStream) stream.getOutputStream()).closeIntermediateFile();
+					} else {
+						syncAndClose(stream.getOutputStream());
+					}
+				}
+				//we need to update storage manager
 				String[] targets = new String[streamSet.length];
 				String[] sources = new String[streamSet.length];
 				for (int idx = 0; idx < streamSet.length; idx++) {
@@ -949,4 +957,12 @@ public final class StorageManager {
 			}
 		}
 	}
-}
\ No newline at end of file
+
+	private static void syncAndClose(OutputStream out) throws IOException {
+		try {
+			((FileOutputStream) out).getFD().sync();
+		} catch (SyncFailedException e) {/*ignore*/
+		}
+		out.close();
+	}
+}
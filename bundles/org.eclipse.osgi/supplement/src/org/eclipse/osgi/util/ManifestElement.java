@@ -14,11 +14,11 @@
 
 package org.eclipse.osgi.util;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -353,9 +353,10 @@ public class ManifestElement {
 			String next = tokenizer.getString(";,"); //$NON-NLS-1$
 			if (next == null)
 				throw new BundleException(NLS.bind(Msg.MANIFEST_INVALID_HEADER_EXCEPTION, header, value), BundleException.MANIFEST_ERROR);
-			List<String> headerValues = new ArrayList<>();
-			StringBuilder headerValue = new StringBuilder(next);
-			headerValues.add(next);
+			// most elements have a single value; only create the list for multiple values
+			String firstValue = next;
+			List<String> headerValues = null;
+			StringBuilder headerValue = null;
 
 			if (SupplementDebug.STATIC_DEBUG_MANIFEST)
 				System.out.print("parseHeader: " + next); //$NON-NLS-1$
@@ -379,14 +380,19 @@ public class ManifestElement {
 						directive = true;
 				}
 				if (c == ';' || c == ',' || c == '\0') /* more */ {
+					if (headerValues == null) {
+						headerValues = new ArrayList<>(4);
+						headerValues.add(firstValue);
+						headerValue = new StringBuilder(firstValue);
+					}
 					headerValues.add(next);
-					headerValue.append(";").append(next); //$NON-NLS-1$
+					headerValue.append(';').append(next);
 					if (SupplementDebug.STATIC_DEBUG_MANIFEST)
 						System.out.print(";" + next); //$NON-NLS-1$
 				}
 			}
 			// found the header value create a manifestElement for it.
-			ManifestElement manifestElement = new ManifestElement(headerValue.toString(), headerValues.toArray(new String[headerValues.size()]));
+			ManifestElement manifestElement = headerValues == null ? new ManifestElement(firstValue, new String[] {firstValue}) : new ManifestElement(headerValue.toString(), headerValues.toArray(new String[headerValues.size()]));
 
 			// now add any attributes/directives for the manifestElement.
 			while (c == '=' || c == ':') {
@@ -504,32 +510,15 @@ public class ManifestElement {
 		if (headers == null)
 			headers = new HashMap<>();
 
-		manifest = new BufferedInputStream(manifest);
 		try {
-
-			ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
-			while (true) {
-				String line = readLine(manifest, buffer);
-				/* The java.util.jar classes in JDK 1.3 use the value of the last
-				 * encountered manifest header. So we do the same to emulate
-				 * this behavior. We no longer throw a BundleException
-				 * for duplicate manifest headers.
-				 */
-
-				if ((line == null) || (line.length() == 0)) /* EOF or empty line */
-				{
-					break; /* done processing main attributes */
-				}
-
-				int colon = line.indexOf(':');
-				if (colon == -1) /* no colon */
-				{
-					throw new BundleException(NLS.bind(Msg.MANIFEST_INVALID_LINE_NOCOLON, line), BundleException.MANIFEST_ERROR);
-				}
-				String header = line.substring(0, colon).trim();
-				String value = line.substring(colon + 1).trim();
-				// intern the header here because they likely have constants for them anyway
-				headers.put(header.intern(), value);
+			ManifestReader reader = new ManifestReader(manifest);
+			/* The java.util.jar classes in JDK 1.3 use the value of the last
+			 * encountered manifest header. So we do the same to emulate
+			 * this behavior. We no longer throw a BundleException
+			 * for duplicate manifest headers.
+			 */
+			while (reader.readLine()) {
+				reader.putHeader(headers);
 			}
 		} finally {
 			try {
@@ -541,51 +530,161 @@ public class ManifestElement {
 		return headers;
 	}
 
-	private static String readLine(InputStream input, ByteArrayOutputStream buffer) throws IOException {
-		// Read a header 'line'
-		// A header line may span multiple lines with line continuations using a beginning space.
-		// This method reads all the line continuations into a single string.
-		// Care must be taken for cases where double byte UTF characters are split
-		// across line continuations.
-		// This is why BufferedReader.readLine is not used here.  We must process the 
-		// CR LF chars ourselves
-		lineLoop: while (true) {
-			int c = input.read();
-			if (c == '\n') { // LF
-				// next char is either a continuation (space) char or the first char of the next header
-				input.mark(1);
-				c = input.read();
-				if (c != ' ') {
-					// This first char of the next header, reset so we don't loose the char
-					input.reset();
-					break lineLoop;
+	/**
+	 * Reads the header lines of a manifest from its bytes in a single pass.
+	 * Continuation lines are only copied when a header spans multiple lines;
+	 * otherwise the header name and value are decoded directly from the
+	 * manifest bytes.
+	 */
+	private static final class ManifestReader {
+		private static final Charset UTF_8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+		// the maximum number of bytes read at once, the same as a BufferedInputStream
+		private static final int MAX_READ = 8192;
+		// the input stream; null at the end of the stream
+		private InputStream in;
+		// holds the bytes read so far
+		private byte[] bytes;
+		private int length;
+		private int position;
+		// the current line is bytes[lineStart, lineEnd) unless it has continuations
+		private int lineStart;
+		private int lineEnd;
+		// holds the current line if it has continuations
+		private byte[] joined = new byte[0];
+		// the length of the joined line; -1 if the line has no continuations
+		private int joinedLength;
+
+		ManifestReader(InputStream in) throws IOException {
+			this.in = in;
+			this.bytes = new byte[Math.min(Math.max(in.available(), 1024), MAX_READ)];
+		}
+
+		/**
+		 * Returns the next byte of the manifest.  The bytes are read from the input
+		 * stream as they are needed so reading stops at the end of the main section
+		 * and the other sections, for example the digests of a signed bundle, are
+		 * not read into memory.
+		 */
+		private int read() throws IOException {
+			if (position == length) {
+				if (in == null) {
+					return -1;
+				}
+				if (length == bytes.length) {
+					bytes = Arrays.copyOf(bytes, bytes.length * 2);
+				}
+				int read = in.read(bytes, length, Math.min(bytes.length - length, MAX_READ));
+				if (read <= 0) {
+					in = null;
+					return -1;
 				}
-				// This is a continuation, skip the space and read the next char
-				c = input.read();
-			} else if (c == '\r') { // CR
-				// next char is either a continuation (space) char, LF or the first char of the next header
-				input.mark(1);
-				c = input.read();
+				length += read;
+			}
+			return bytes[position++] & 0xFF;
+		}
+
+		/**
+		 * Reads the next header 'line'.  A header line may span multiple lines with
+		 * line continuations using a beginning space.  Continuations are joined on
+		 * bytes so that UTF-8 characters split across line continuations are decoded
+		 * correctly.  The CR and LF characters are processed here to do this.
+		 * @return false if the line is empty, at the end of the main attributes
+		 */
+		boolean readLine() throws IOException {
+			lineStart = lineEnd = position;
+			joinedLength = -1;
+			while (true) {
+				int c = read();
 				if (c == '\n') { // LF
 					// next char is either a continuation (space) char or the first char of the next header
-					input.mark(1);
-					c = input.read();
+					int mark = position;
+					c = read();
+					if (c != ' ') {
+						// This first char of the next header, reset so we don't loose the char
+						position = mark;
+						break;
+					}
+					// This is a continuation, skip the space and read the next char
+					c = read();
+				} else if (c == '\r') { // CR
+					// next char is either a continuation (space) char, LF or the first char of the next header
+					int mark = position;
+					c = read();
+					if (c == '\n') { // LF
+						// next char is either a continuation (space) char or the first char of the next header
+						mark = position;
+						c = read();
+						if (c != ' ') {
+							// This first char of the next header, reset so we don't loose the char
+							position = mark;
+							break;
+						}
+					}
+					if (c != ' ') {
+						// This first char of the next header, reset so we don't loose the char
+						position = mark;
+						break;
+					}
+					c = read();
+				}
+				if (c == -1) {
+					break;
+				}
+				append(position - 1);
+			}
+			return joinedLength < 0 ? lineEnd > lineStart : joinedLength > 0;
+		}
+
+		private void append(int index) {
+			if (joinedLength < 0) {
+				if (index == lineEnd) {
+					// still a single range of the manifest bytes
+					lineEnd++;
+					return;
 				}
-				if (c != ' ') {
-					// This first char of the next header, reset so we don't loose the char
-					input.reset();
-					break lineLoop;
+				// a continuation; copy the line read so far
+				joinedLength = lineEnd - lineStart;
+				if (joined.length <= joinedLength) {
+					joined = new byte[Math.max(256, joinedLength * 2)];
 				}
-				c = input.read();
+				System.arraycopy(bytes, lineStart, joined, 0, joinedLength);
+			}
+			if (joinedLength == joined.length) {
+				joined = Arrays.copyOf(joined, joinedLength * 2);
+			}
+			joined[joinedLength++] = bytes[index];
+		}
+
+		void putHeader(Map<String, String> headers) throws BundleException {
+			byte[] line = joinedLength < 0 ? bytes : joined;
+			int start = joinedLength < 0 ? lineStart : 0;
+			int end = joinedLength < 0 ? lineEnd : joinedLength;
+			// ':' is never part of a multi-byte UTF-8 character
+			int colon = start;
+			while (colon < end && line[colon] != ':') {
+				colon++;
+			}
+			if (colon == end) /* no colon */
+			{
+				throw new BundleException(NLS.bind(Msg.MANIFEST_INVALID_LINE_NOCOLON, decode(line, start, end)), BundleException.MANIFEST_ERROR);
+			}
+			// intern the header here because they likely have constants for them anyway
+			headers.put(decode(line, start, colon).intern(), decode(line, colon + 1, end));
+		}
+
+		/**
+		 * Decodes the bytes of the range trimmed in the same way as {@link String#trim()}.
+		 * Only single byte characters are trimmed, so the range is trimmed before decoding.
+		 */
+		private static String decode(byte[] line, int start, int end) {
+			while (start < end && (line[start] & 0xFF) <= ' ') {
+				start++;
 			}
-			if (c == -1) {
-				break lineLoop;
+			while (end > start && (line[end - 1] & 0xFF) <= ' ') {
+				end--;
 			}
-			buffer.write(c);
+			return new String(line, start, end - start, UTF_8);
 		}
-		String result = buffer.toString("UTF8"); //$NON-NLS-1$
-		buffer.reset();
-		return result;
 	}
 
 	@Override